@@ -1,5 +1,10 @@
 package com.android.aft.AFAppManager.loader;
 
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.http.Header;
+
 import android.content.Context;
 
 import com.android.aft.AFAppManager.AMConfig;
@@ -9,9 +14,11 @@ import com.android.aft.AFAppManager.parser.BuildInfoParser;
 import com.android.aft.AFCoreTools.DebugTools;
 import com.android.aft.AFCuteXmlParser.AFCuteXmlParser;
 import com.android.aft.AFCuteXmlParser.AFCuteXmlParserResult;
+import com.android.aft.AFCuteXmlParser.AFXmlPushSession;
 import com.android.aft.AFDataLoader.AFDataException;
 import com.android.aft.AFDataLoader.AFDataLoader;
 import com.android.aft.AFNetworkConnection.AFNetworkConnection;
+import com.android.aft.AFNetworkConnection.AFNetworkConnectionRequest;
 import com.android.aft.AFNetworkConnection.AFNetworkConnectionResult;
 
 public class GetApplicationBuildInfoLoader extends AFDataLoader<ApplicationBuildInfo> {
@@ -26,24 +33,41 @@ public class GetApplicationBuildInfoLoader extends AFDataLoader<ApplicationBuild
     protected boolean doLoad(Context ctx) throws AFDataException {
         DebugTools.TimeLogger tl = new DebugTools.TimeLogger(mProjectDir + " - build-info.xml");
 
-        // Dl data
-        tl.step("Download file");
-        AFNetworkConnectionResult result_dl;
+        // Parse data while they are downloaded
+        tl.step("Download and parse data");
+        AFNetworkConnectionRequest request = new AFNetworkConnectionRequest(getBuildInfoUrl());
+        request.readHttpResponse = false;
+
+        AFCuteXmlParser parser = new BuildInfoParser();
+        AFXmlPushSession session = parser.push();
+        AFNetworkConnectionResult result_dl = null;
         try {
-            result_dl = new AFNetworkConnection().wget(getBuildInfoUrl());
+            result_dl = new AFNetworkConnection().wget(request);
+
+            InputStream in = result_dl.mResponse.getEntity().getContent();
+            Header contentEncoding = result_dl.mResponse.getFirstHeader("Content-Encoding");
+            if (contentEncoding != null && contentEncoding.getValue().equalsIgnoreCase("gzip"))
+                in = new GZIPInputStream(in);
+
+            try {
+                byte[] buffer = new byte[4096];
+                int s;
+                while ((s = in.read(buffer)) != -1)
+                    if (!session.feed(buffer, 0, s))
+                        break;
+            } finally {
+                in.close();
+            }
         } catch (Exception e) {
             DebugTools.e("Cannot download build-info file", e);
             tl.finish();
             return false;
+        } finally {
+            if (result_dl != null)
+                result_dl.close();
         }
 
-        // Dump data
-        DebugTools.stringdump("build-info.xml", result_dl.mResult);
-
-        // Parse data
-        tl.step("Parse data");
-        AFCuteXmlParser parser = new BuildInfoParser();
-        AFCuteXmlParserResult result_parser = parser.parse(result_dl.mResult);
+        AFCuteXmlParserResult result_parser = session.finish();
 
         if (!result_parser.status()) {
             DebugTools.d("Parsing failed");
@@ -9,7 +9,14 @@ public class BuildInfoParser extends AFCuteXmlParser {
 
     public BuildInfoParser() {
 
+        // Only the start tag is read, so in push parsing each delivery is
+        // read as soon as it arrives
         addNodeAction(new AFNodeAction<Object>("project") {
+            @Override
+            public boolean isStartTagAction() {
+                return true;
+            }
+
             @Override
             public void onNode(Object cookie) {
                 ApplicationBuildInfo info = new ApplicationBuildInfo();
@@ -17,7 +24,8 @@ public class BuildInfoParser extends AFCuteXmlParser {
                 info.name = getStringAttribute("name");
                 info.revision = getStringAttribute("revision");
 
-                read_children(info);
+                // Cookie of the deliveries, read after this action
+                getContext().setCookie(info);
 
                 getContext().getResult().setData(info);
             }
@@ -0,0 +1,143 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ */
+package com.android.aft.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONException;
+import org.json.JSONTokener;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.android.aft.AFCoreTools.DebugTools;
+import com.android.aft.AFCuteJsonParser.AFArrayJsonAction;
+import com.android.aft.AFCuteJsonParser.AFCuteJsonParser;
+import com.android.aft.AFCuteJsonParser.AFCuteJsonParserContext;
+import com.android.aft.AFCuteJsonParser.AFCuteJsonParserResult;
+import com.android.aft.AFCuteJsonParser.AFJsonValue;
+import com.android.aft.AFCuteJsonParser.AFObjectInsideArrayJsonAction;
+import com.android.aft.AFCuteJsonParser.AFObjectJsonAction;
+
+/**
+ * Cost of action dispatch in AFCuteJsonParser.
+ *
+ * dispatch looks up the actions of one object of an array, the allocation
+ * per node is its gc.alloc.rate.norm with -prof gc. parse reads a document
+ * of 1000 such objects. The parser has actions for the document plus a
+ * number of named actions which never match.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AFJsonDispatchBenchmark {
+
+    private static final int ITEMS = 1000;
+
+    // Number of added actions
+    @Param({ "0", "16", "64" })
+    public int actions;
+
+    private byte[] mData;
+    private AFCuteJsonParser mParser;
+    private AFCuteJsonParserContext mContext;
+
+    // Number of objects seen by the actions
+    private int mCount;
+
+    @Setup
+    public void setup() throws JSONException, UnsupportedEncodingException {
+        DebugTools.setLogLevel(DebugTools.LOG_LEVEL_ERROR);
+        AFCuteJsonParser.hasDebug = false;
+
+        StringBuilder json = new StringBuilder("{\"items\":[");
+        for (int i = 0; i < ITEMS; ++i) {
+            if (i != 0)
+                json.append(',');
+            json.append("{\"id\":").append(i).append(",\"name\":\"item ").append(i)
+                .append("\",\"tags\":[\"a\",\"b\"],\"price\":{\"value\":").append(i % 100).append(".5}}");
+        }
+        json.append("]}");
+        mData = json.toString().getBytes("UTF-8");
+
+        mParser = new AFCuteJsonParser();
+        mParser.addAction(new AFArrayJsonAction<Object>("items") {
+            @Override
+            public void onArray(Object cookie) {
+                read_values();
+            }
+        });
+        mParser.addAction(new AFObjectInsideArrayJsonAction<Object>("items") {
+            @Override
+            public void onObject(Object cookie) {
+                ++mCount;
+            }
+        });
+        mParser.addAction(new AFObjectJsonAction<Object>("price") {
+            @Override
+            public void onObject(Object cookie) {
+                ++mCount;
+            }
+        });
+        for (int i = 0; i < actions; ++i) {
+            mParser.addAction(new AFObjectJsonAction<Object>("unused" + i) {
+                @Override
+                public void onObject(Object cookie) {
+                }
+            });
+        }
+
+        // Context on the first object of the array
+        AFJsonValue root = new AFJsonValue(AFJsonValue.ROOT_VALUE_NAME, new JSONTokener(json.toString()).nextValue());
+        AFJsonValue items = root.getJsonObjectEntry("items");
+        mContext = new AFCuteJsonParserContext();
+        mContext.setCurrent(root);
+        mContext.pushValue(items);
+        mContext.pushValue(items.getJsonArrayEntry(0));
+    }
+
+    @Benchmark
+    public boolean dispatch() {
+        return mParser.tryToCallActionNode(mContext);
+    }
+
+    @Benchmark
+    public int parse() {
+        mCount = 0;
+        AFCuteJsonParserResult result = mParser.parse(new ByteArrayInputStream(mData));
+        if (!result.status())
+            throw new IllegalStateException("Cannot parse: " + result.getErrorMsg());
+
+        return mCount;
+    }
+
+}
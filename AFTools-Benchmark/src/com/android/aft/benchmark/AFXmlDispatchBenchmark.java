@@ -0,0 +1,138 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ */
+package com.android.aft.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.android.aft.AFCoreTools.DebugTools;
+import com.android.aft.AFCuteXmlParser.AFCuteXmlParser;
+import com.android.aft.AFCuteXmlParser.AFCuteXmlParserContext;
+import com.android.aft.AFCuteXmlParser.AFCuteXmlParserResult;
+import com.android.aft.AFCuteXmlParser.AFLowXmlParsers;
+import com.android.aft.AFCuteXmlParser.AFNodeAction;
+import com.android.aft.AFCuteXmlParser.AFNodeActionPath;
+import com.android.aft.AFCuteXmlParser.AFNodeActionSonOf;
+
+/**
+ * Cost of action dispatch in AFCuteXmlParser.
+ *
+ * The flat document is parsed by the fast low level parser with its usual
+ * actions plus a number of actions of a kind which never match, so that a
+ * change of the dispatch cost shows up whatever the low level parser.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AFXmlDispatchBenchmark {
+
+    // Kind of the added actions
+    @Param({ "name", "sonof", "path", "custom" })
+    public String kind;
+
+    // Number of added actions
+    @Param({ "0", "16", "64" })
+    public int actions;
+
+    private byte[] mData;
+    private AFCuteXmlParser mParser;
+
+    @Setup
+    public void setup() {
+        DebugTools.setLogLevel(DebugTools.LOG_LEVEL_ERROR);
+
+        mData = AFXmlDocuments.FLAT.getData(1000);
+        mParser = AFXmlDocuments.FLAT.createParser();
+        mParser.setLowParser(AFLowXmlParsers.FAST);
+
+        // Half of the actions are on nodes of the document
+        final String[] names = { "product", "name", "price", "stock" };
+        for (int i = 0; i < actions; ++i) {
+            final String name = i % 2 == 0 ? names[i / 2 % names.length] : "unused" + i;
+            mParser.addNodeAction(createAction(name, i));
+        }
+    }
+
+    private AFNodeAction<Object> createAction(String name, int i) {
+        if ("name".equals(kind)) {
+            // Registered after the actions of the document so never called
+            return new AFNodeAction<Object>(name) {
+                @Override
+                public void onNode(Object cookie) {
+                }
+            };
+        }
+
+        if ("sonof".equals(kind)) {
+            return new AFNodeActionSonOf<Object>(name, "parent" + i) {
+                @Override
+                public void onNode(Object cookie) {
+                }
+            };
+        }
+
+        if ("path".equals(kind)) {
+            return new AFNodeActionPath<Object>("/catalog/parent" + i + "//" + name + "[@id='" + i + "']") {
+                @Override
+                public void onNode(Object cookie) {
+                }
+            };
+        }
+
+        if ("custom".equals(kind)) {
+            return new AFNodeAction<Object>(name) {
+                @Override
+                public boolean isCorrectNode(AFCuteXmlParserContext context) {
+                    return super.isCorrectNode(context) && context.getDepth() > 100;
+                }
+
+                @Override
+                public void onNode(Object cookie) {
+                }
+            };
+        }
+
+        throw new IllegalArgumentException("Unknown kind " + kind);
+    }
+
+    @Benchmark
+    public Object parse() {
+        AFCuteXmlParserResult result = mParser.parse(new ByteArrayInputStream(mData));
+        if (!result.status())
+            throw new IllegalStateException("Cannot parse: " + result.getErrorMsg());
+
+        return result.getData();
+    }
+
+}
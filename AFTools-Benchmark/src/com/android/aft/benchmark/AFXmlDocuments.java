@@ -0,0 +1,335 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ */
+
+package com.android.aft.benchmark;
+
+import java.io.UnsupportedEncodingException;
+
+import com.android.aft.AFCuteXmlParser.AFCuteXmlParser;
+import com.android.aft.AFCuteXmlParser.AFNodeAction;
+import com.android.aft.AFCuteXmlParser.AFNodeActionAtDepth;
+import com.android.aft.AFCuteXmlParser.AFNodeActionSonOf;
+
+/**
+ * Representative documents of the benchmarks with a parser reading them
+ * like an application would.
+ *
+ * Parsers give as result data a Summary of what they read, so that parsing
+ * work cannot be removed by the JIT.
+ */
+public enum AFXmlDocuments {
+
+    /**
+     * Flat list of small records with text content
+     */
+    FLAT("flat") {
+        @Override
+        String build(int count) {
+            StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<catalog>\n");
+            for (int i = 0; i < count; ++i) {
+                sb.append("  <product id=\"").append(i).append("\">\n")
+                  .append("    <name>Product ").append(i).append("</name>\n")
+                  .append("    <price>").append(i % 100).append(".50</price>\n")
+                  .append("    <stock>").append(i % 7).append("</stock>\n")
+                  .append("  </product>\n");
+            }
+            return sb.append("</catalog>\n").toString();
+        }
+
+        @Override
+        AFCuteXmlParser createParser() {
+            AFCuteXmlParser parser = new AFCuteXmlParser();
+            parser.addNodeAction(new RootAction("catalog"));
+            parser.addNodeAction(new AFNodeActionSonOf<Summary>("product", "catalog") {
+                @Override
+                public void onNode(Summary summary) {
+                    summary.add(getIntAttribute("id"));
+                    read_children(summary);
+                }
+            });
+            parser.addNodeAction(new AFNodeActionSonOf<Summary>("name", "product") {
+                @Override
+                public void onNode(Summary summary) {
+                    summary.add(read_content());
+                }
+            });
+            parser.addNodeAction(new AFNodeActionSonOf<Summary>("price", "product") {
+                @Override
+                public void onNode(Summary summary) {
+                    summary.add(readDoubleContent());
+                }
+            });
+            parser.addNodeAction(new AFNodeActionSonOf<Summary>("stock", "product") {
+                @Override
+                public void onNode(Summary summary) {
+                    summary.add(readIntContent());
+                }
+            });
+            return parser;
+        }
+    },
+
+    /**
+     * Deeply nested nodes with values at the bottom
+     */
+    DEEP("deep") {
+        private final static int DEPTH = 64;
+
+        @Override
+        String build(int count) {
+            StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<tree>\n");
+            for (int i = 0; i < count / DEPTH + 1; ++i) {
+                for (int d = 0; d < DEPTH; ++d)
+                    sb.append("<node level=\"").append(d).append("\">");
+                sb.append("<value>").append(i).append("</value>");
+                for (int d = 0; d < DEPTH; ++d)
+                    sb.append("</node>");
+                sb.append('\n');
+            }
+            return sb.append("</tree>\n").toString();
+        }
+
+        @Override
+        AFCuteXmlParser createParser() {
+            AFCuteXmlParser parser = new AFCuteXmlParser();
+            parser.addNodeAction(new RootAction("tree"));
+            parser.addNodeAction(new AFNodeActionSonOf<Summary>("node", "tree") {
+                @Override
+                public void onNode(Summary summary) {
+                    read_children(summary);
+                }
+            });
+            parser.addNodeAction(new AFNodeActionSonOf<Summary>("node", "node") {
+                @Override
+                public void onNode(Summary summary) {
+                    read_children(summary);
+                }
+            });
+            parser.addNodeAction(new AFNodeActionSonOf<Summary>("value", "node") {
+                @Override
+                public void onNode(Summary summary) {
+                    summary.add(readIntContent());
+                }
+            });
+            return parser;
+        }
+    },
+
+    /**
+     * Empty nodes with many attributes
+     */
+    ATTRIBUTES("attributes") {
+        private final static int ATTRIBUTES = 16;
+
+        @Override
+        String build(int count) {
+            StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<items>\n");
+            for (int i = 0; i < count; ++i) {
+                sb.append("  <item");
+                for (int a = 0; a < ATTRIBUTES; ++a)
+                    sb.append(" attr").append(a).append("=\"value ").append(i + a).append('"');
+                sb.append(" id=\"").append(i).append("\" enabled=\"").append(i % 2 == 0).append("\"/>\n");
+            }
+            return sb.append("</items>\n").toString();
+        }
+
+        @Override
+        AFCuteXmlParser createParser() {
+            AFCuteXmlParser parser = new AFCuteXmlParser();
+            parser.addNodeAction(new RootAction("items"));
+            parser.addNodeAction(new AFNodeActionSonOf<Summary>("item", "items") {
+                @Override
+                public void onNode(Summary summary) {
+                    summary.add(getIntAttribute("id"));
+                    summary.add(getBooleanAttribute("enabled") ? 1 : 0);
+                    summary.add(getStringAttribute("attr0"));
+                    summary.add(getStringAttribute("attr15"));
+                }
+            });
+            return parser;
+        }
+    },
+
+    /**
+     * Records with large CDATA sections containing markup
+     */
+    CDATA("cdata") {
+        @Override
+        String build(int count) {
+            StringBuilder body = new StringBuilder();
+            for (int i = 0; i < 16; ++i)
+                body.append("<p>Paragraph ").append(i).append(" with <b>bold</b> & <i>italic</i> text.</p>");
+
+            StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<posts>\n");
+            for (int i = 0; i < count; ++i) {
+                sb.append("  <post id=\"").append(i).append("\">")
+                  .append("<body><![CDATA[").append(body).append("]]></body>")
+                  .append("</post>\n");
+            }
+            return sb.append("</posts>\n").toString();
+        }
+
+        @Override
+        AFCuteXmlParser createParser() {
+            AFCuteXmlParser parser = new AFCuteXmlParser();
+            parser.addNodeAction(new RootAction("posts"));
+            parser.addNodeAction(new AFNodeActionSonOf<Summary>("post", "posts") {
+                @Override
+                public void onNode(Summary summary) {
+                    summary.add(getIntAttribute("id"));
+                    read_children(summary);
+                }
+            });
+            parser.addNodeAction(new AFNodeActionSonOf<Summary>("body", "post") {
+                @Override
+                public void onNode(Summary summary) {
+                    summary.add(read_content());
+                }
+            });
+            return parser;
+        }
+    },
+
+    /**
+     * Build information of AFAppManager, read like BuildInfoParser does
+     */
+    BUILD_INFO("buildinfo") {
+        @Override
+        String build(int count) {
+            StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<project name=\"AFAppManager\" revision=\"1234\">\n");
+            for (int i = 0; i < count; ++i) {
+                sb.append("  <delivery name=\"bin/AFAppManager-").append(i).append(".apk\"")
+                  .append(" mode=\"").append(i % 2 == 0 ? "release" : "debug").append('"')
+                  .append(" release_key=\"").append(i % 2 == 0).append('"')
+                  .append(" signed=\"true\"/>\n");
+            }
+            return sb.append("</project>\n").toString();
+        }
+
+        @Override
+        AFCuteXmlParser createParser() {
+            AFCuteXmlParser parser = new AFCuteXmlParser();
+            parser.addNodeAction(new AFNodeAction<Object>("project") {
+                @Override
+                public void onNode(Object cookie) {
+                    Summary summary = new Summary();
+                    summary.add(getStringAttribute("name"));
+                    summary.add(getStringAttribute("revision"));
+                    read_children(summary);
+                    setResultData(summary);
+                }
+            });
+            parser.addNodeAction(new AFNodeAction<Summary>("delivery") {
+                @Override
+                public void onNode(Summary summary) {
+                    summary.add(getStringAttribute("name"));
+                    summary.add(getStringAttribute("mode"));
+                    summary.add(getBooleanAttribute("release_key") ? 1 : 0);
+                    summary.add(getBooleanAttribute("signed") ? 1 : 0);
+                }
+            });
+            return parser;
+        }
+    };
+
+    /**
+     * What a parser read, only sizes and sums are kept
+     */
+    public final static class Summary {
+        public int count;
+        public long sum;
+
+        void add(String value) {
+            ++count;
+            if (value != null)
+                sum += value.length();
+        }
+
+        void add(long value) {
+            ++count;
+            sum += value;
+        }
+
+        void add(double value) {
+            ++count;
+            sum += (long) value;
+        }
+    }
+
+    /**
+     * Action on the root node giving a Summary as result data
+     */
+    final static class RootAction extends AFNodeActionAtDepth<Object> {
+        RootAction(String nodeName) {
+            super(nodeName, 1);
+        }
+
+        @Override
+        public void onNode(Object cookie) {
+            Summary summary = new Summary();
+            read_children(summary);
+            setResultData(summary);
+        }
+    }
+
+    private final String mName;
+
+    private AFXmlDocuments(String name) {
+        mName = name;
+    }
+
+    /**
+     * @return Name of the document used as benchmark parameter
+     */
+    public String getName() {
+        return mName;
+    }
+
+    /**
+     * @param name Name of a document
+     * @return The document or null
+     */
+    public static AFXmlDocuments get(String name) {
+        for (AFXmlDocuments document : values())
+            if (document.mName.equals(name))
+                return document;
+
+        return null;
+    }
+
+    /**
+     * @param count Number of records
+     * @return UTF-8 data of the document
+     */
+    public byte[] getData(int count) {
+        try {
+            return build(count).getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    abstract String build(int count);
+
+    /**
+     * @return A parser of the document giving a Summary as result data
+     */
+    abstract AFCuteXmlParser createParser();
+
+}
@@ -0,0 +1,93 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ */
+package com.android.aft.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.android.aft.AFCoreTools.DebugTools;
+import com.android.aft.AFCuteXmlParser.AFCuteXmlParser;
+import com.android.aft.AFCuteXmlParser.AFCuteXmlParserResult;
+import com.android.aft.AFCuteXmlParser.AFLowXmlParsers;
+
+/**
+ * Parsing of the representative documents with each low level parser.
+ *
+ * Throughput is in documents per millisecond and latency is the sampled time
+ * of one parsing. Run with "-prof gc" to get the allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AFXmlParserBenchmark {
+
+    @Param({ AFLowXmlParsers.PULL, AFLowXmlParsers.HOME_MADE, AFLowXmlParsers.FAST })
+    public String engine;
+
+    @Param({ "flat", "deep", "attributes", "cdata", "buildinfo" })
+    public String document;
+
+    // Number of records of the document
+    @Param({ "1000" })
+    public int count;
+
+    private byte[] mData;
+    private AFCuteXmlParser mParser;
+
+    @Setup
+    public void setup() {
+        DebugTools.setLogLevel(DebugTools.LOG_LEVEL_ERROR);
+
+        AFXmlDocuments doc = AFXmlDocuments.get(document);
+        if (doc == null)
+            throw new IllegalArgumentException("Unknown document " + document);
+
+        mData = doc.getData(count);
+        mParser = doc.createParser();
+        mParser.setLowParser(engine);
+
+        // Do not measure a failing parsing
+        parse();
+    }
+
+    @Benchmark
+    public Object parse() {
+        AFCuteXmlParserResult result = mParser.parse(new ByteArrayInputStream(mData));
+        if (!result.status())
+            throw new IllegalStateException("Cannot parse " + document + " with " + engine + ": " + result.getErrorMsg());
+
+        return result.getData();
+    }
+
+}
@@ -0,0 +1,7 @@
+package android.content;
+
+/**
+ * Stand-in of android.content.Context for benchmarks, never instantiated by parsers
+ */
+public abstract class Context {
+}
@@ -0,0 +1,37 @@
+package android.util;
+
+import java.util.TreeMap;
+
+/**
+ * Stand-in of android.util.SparseArray for benchmarks
+ */
+public class SparseArray<E> {
+
+    private final TreeMap<Integer, E> mValues = new TreeMap<Integer, E>();
+
+    public E get(int key) {
+        return mValues.get(key);
+    }
+
+    public void put(int key, E value) {
+        mValues.put(key, value);
+    }
+
+    public int size() {
+        return mValues.size();
+    }
+
+    public int keyAt(int index) {
+        int i = 0;
+        for (Integer key : mValues.keySet())
+            if (i++ == index)
+                return key;
+
+        throw new ArrayIndexOutOfBoundsException(index);
+    }
+
+    public E valueAt(int index) {
+        return mValues.get(keyAt(index));
+    }
+
+}
@@ -0,0 +1,22 @@
+package android.widget;
+
+/**
+ * Stand-in of android.widget.TextView for benchmarks, never used by parsers
+ */
+public class TextView {
+
+    private CharSequence mText = "";
+
+    public CharSequence getText() {
+        return mText;
+    }
+
+    public void setText(CharSequence text) {
+        mText = text;
+    }
+
+    public void append(CharSequence text) {
+        mText = mText.toString() + text;
+    }
+
+}
@@ -0,0 +1,578 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ */
+
+package com.android.aft.AFCuteJsonParser.Processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+/**
+ * Generate an AFJsonObjectMapper subclass for each model class annotated
+ * with AFJsonObject.
+ *
+ * The generated mapper reads the entries of an object once with an
+ * AFJsonReader: the hash of each entry name selects the field to set in a
+ * switch and the name is then compared, values are read as primitive types.
+ * It writes the bound fields of a model object with an AFJsonWriter, except
+ * the fields with an adder: the adder does not set them. There is no lookup
+ * by name, no reflection and no boxing at runtime.
+ *
+ * Annotations are found by name, so the processor does not depend on the
+ * AFTools library.
+ */
+@SupportedAnnotationTypes({ AFJsonBindingProcessor.OBJECT, AFJsonBindingProcessor.FIELD })
+public class AFJsonBindingProcessor extends AbstractProcessor {
+
+    private final static String PACKAGE = "com.android.aft.AFCuteJsonParser";
+
+    final static String OBJECT = PACKAGE + ".Binding.AFJsonObject";
+    final static String FIELD = PACKAGE + ".Binding.AFJsonField";
+
+    // Suffix of the generated mapper class name
+    final static String MAPPER_SUFFIX = "JsonMapper";
+
+    private enum Kind {
+        STRING, INT, LONG, DOUBLE, BOOLEAN, MODEL, COLLECTION
+    }
+
+    /**
+     * Field bound to an entry
+     */
+    private static class Field {
+        VariableElement element;
+        String name;
+        Kind kind;
+
+        // Entry name
+        String jsonName;
+
+        // Model of a MODEL or COLLECTION field
+        Model model;
+
+        // Method adding a child model or null
+        String adder;
+    }
+
+    /**
+     * Model class bound to an object
+     */
+    private static class Model {
+        TypeElement type;
+
+        // Name of the map method in generated code
+        String methodName;
+
+        // Name of the write method in generated code
+        String writeMethodName;
+
+        final List<Field> fields = new ArrayList<Field>();
+    }
+
+    /**
+     * Error on an element of the models
+     */
+    private static class BindingException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        final Element element;
+
+        BindingException(Element element, String msg) {
+            super(msg);
+            this.element = element;
+        }
+    }
+
+    // Models read during this round
+    private final Map<TypeElement, Model> mModels = new HashMap<TypeElement, Model>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        final TypeElement object = processingEnv.getElementUtils().getTypeElement(OBJECT);
+        if (object == null)
+            return false;
+
+        mModels.clear();
+        for (Element element : roundEnv.getElementsAnnotatedWith(object)) {
+            try {
+                if (element.getKind() != ElementKind.CLASS)
+                    throw new BindingException(element, "AFJsonObject is only supported on classes");
+
+                generate(getModel((TypeElement) element));
+            } catch (BindingException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, e.getMessage(), e.element);
+            } catch (IOException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Cannot write mapper: " + e.getMessage(), element);
+            }
+        }
+
+        return true;
+    }
+
+    //
+    // Models
+    //
+
+    private Model getModel(TypeElement type) throws BindingException {
+        Model model = mModels.get(type);
+        if (model != null)
+            return model;
+
+        if (getAnnotation(type, OBJECT) == null)
+            throw new BindingException(type, type.getQualifiedName() + " is not annotated with AFJsonObject");
+        if (type.getModifiers().contains(Modifier.ABSTRACT))
+            throw new BindingException(type, "Model class cannot be abstract");
+        if (type.getNestingKind().isNested() && !type.getModifiers().contains(Modifier.STATIC))
+            throw new BindingException(type, "Nested model class must be static");
+
+        model = new Model();
+        model.type = type;
+
+        // Registered before reading fields for models containing themselves
+        mModels.put(type, model);
+
+        for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            final AnnotationMirror annotation = getAnnotation(field, FIELD);
+            if (annotation == null)
+                continue;
+            if (field.getModifiers().contains(Modifier.STATIC) || field.getModifiers().contains(Modifier.FINAL))
+                throw new BindingException(field, "Bound field cannot be static or final");
+
+            Field f = new Field();
+            f.element = field;
+            f.name = field.getSimpleName().toString();
+            f.kind = getKind(field.asType());
+
+            if (f.kind == null)
+                throw new BindingException(field, "Field must be String, int, long, double, boolean, a model or a collection of models");
+
+            if (f.kind == Kind.MODEL)
+                f.model = getModel((TypeElement) ((DeclaredType) field.asType()).asElement());
+            else if (f.kind == Kind.COLLECTION)
+                f.model = getModel((TypeElement) ((DeclaredType) ((DeclaredType) field.asType()).getTypeArguments().get(0)).asElement());
+
+            f.jsonName = getString(annotation, "value");
+            if (f.jsonName.length() == 0)
+                f.jsonName = f.name;
+
+            final String adder = getString(annotation, "adder");
+            if (adder.length() != 0) {
+                if (f.model == null)
+                    throw new BindingException(field, "Adder is only supported on model fields");
+                checkAdder(type, adder, field);
+                f.adder = adder;
+            }
+
+            for (Field other : model.fields)
+                if (other.jsonName.equals(f.jsonName))
+                    throw new BindingException(field, "Entry " + f.jsonName + " is already bound to field " + other.name);
+
+            model.fields.add(f);
+        }
+
+        return model;
+    }
+
+    /**
+     * @return Kind of a field type, null if it is not supported
+     */
+    private Kind getKind(TypeMirror type) {
+        switch (type.getKind()) {
+        case INT:
+            return Kind.INT;
+        case LONG:
+            return Kind.LONG;
+        case DOUBLE:
+            return Kind.DOUBLE;
+        case BOOLEAN:
+            return Kind.BOOLEAN;
+        case DECLARED:
+            break;
+        default:
+            return null;
+        }
+
+        final DeclaredType declared = (DeclaredType) type;
+        final TypeElement element = (TypeElement) declared.asElement();
+        if (element.getQualifiedName().contentEquals("java.lang.String"))
+            return Kind.STRING;
+        if (getAnnotation(element, OBJECT) != null)
+            return Kind.MODEL;
+
+        // Collection of models
+        final TypeElement collection = processingEnv.getElementUtils().getTypeElement("java.util.Collection");
+        if (declared.getTypeArguments().size() == 1
+            && processingEnv.getTypeUtils().isAssignable(processingEnv.getTypeUtils().erasure(type), processingEnv.getTypeUtils().erasure(collection.asType()))) {
+            final TypeMirror item = declared.getTypeArguments().get(0);
+            if (item.getKind() == TypeKind.DECLARED && getAnnotation(((DeclaredType) item).asElement(), OBJECT) != null)
+                return Kind.COLLECTION;
+        }
+
+        return null;
+    }
+
+    private void checkAdder(TypeElement type, String adder, Element field) throws BindingException {
+        for (ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(type)))
+            if (method.getSimpleName().contentEquals(adder) && method.getParameters().size() == 1)
+                return;
+
+        throw new BindingException(field, "No method " + adder + " with one parameter in " + type.getQualifiedName());
+    }
+
+    /**
+     * Check that a model element can be used from the package of the generated mapper
+     */
+    private void checkAccess(Element element, String pkg) throws BindingException {
+        final Set<Modifier> modifiers = element.getModifiers();
+        if (modifiers.contains(Modifier.PRIVATE))
+            throw new BindingException(element, element.getSimpleName() + " cannot be private");
+
+        if (!modifiers.contains(Modifier.PUBLIC) && !getPackage(element).equals(pkg))
+            throw new BindingException(element, element.getSimpleName() + " must be public to be used by the mapper of package " + pkg);
+    }
+
+    private void checkModelAccess(Model model, String pkg) throws BindingException {
+        checkAccess(model.type, pkg);
+
+        boolean hasConstructor = false;
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(model.type.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty()) {
+                checkAccess(constructor, pkg);
+                hasConstructor = true;
+            }
+        }
+        if (!hasConstructor)
+            throw new BindingException(model.type, "Model class needs a constructor without parameter");
+
+        for (Field f : model.fields)
+            checkAccess(f.element, pkg);
+    }
+
+    //
+    // Generation
+    //
+
+    private void generate(Model root) throws BindingException, IOException {
+        final String pkg = getPackage(root.type);
+        final String className = root.type.getSimpleName() + MAPPER_SUFFIX;
+        final String rootType = typeName(root.type);
+
+        // Models reachable from root in order of discovery
+        final Map<TypeElement, Model> models = new LinkedHashMap<TypeElement, Model>();
+        collect(root, models);
+
+        final Map<String, Model> methodNames = new HashMap<String, Model>();
+        for (Model model : models.values()) {
+            checkModelAccess(model, pkg);
+
+            String name = "map" + model.type.getSimpleName();
+            for (int i = 2; methodNames.containsKey(name); ++i)
+                name = "map" + model.type.getSimpleName() + i;
+            methodNames.put(name, model);
+            model.methodName = name;
+            model.writeMethodName = "write" + name.substring("map".length());
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("// Generated by ").append(AFJsonBindingProcessor.class.getSimpleName())
+          .append(" from ").append(root.type.getQualifiedName()).append(", do not edit\n");
+        if (pkg.length() != 0)
+            sb.append("package ").append(pkg).append(";\n");
+        sb.append('\n');
+        sb.append("import java.io.IOException;\n");
+        sb.append('\n');
+        sb.append("import org.json.JSONException;\n");
+        sb.append('\n');
+        sb.append("import ").append(PACKAGE).append(".AFJsonObjectMapper;\n");
+        sb.append("import ").append(PACKAGE).append(".AFJsonReader;\n");
+        sb.append("import ").append(PACKAGE).append(".AFJsonWriter;\n");
+        sb.append('\n');
+        sb.append("public class ").append(className).append(" extends AFJsonObjectMapper<").append(rootType).append("> {\n");
+
+        // Constructors
+        sb.append('\n');
+        sb.append("    /**\n");
+        sb.append("     * Map the objects of a name, AFJsonValue.ROOT_VALUE_NAME for the root object\n");
+        sb.append("     */\n");
+        sb.append("    public ").append(className).append("(String name) {\n");
+        sb.append("        super(name, null);\n");
+        sb.append("    }\n");
+        sb.append('\n');
+        sb.append("    protected ").append(className).append("(String name, String arrayName) {\n");
+        sb.append("        super(name, arrayName);\n");
+        sb.append("    }\n");
+        sb.append('\n');
+        sb.append("    /**\n");
+        sb.append("     * Map the objects of the arrays of a name\n");
+        sb.append("     */\n");
+        sb.append("    public static ").append(className).append(" insideArray(String arrayName) {\n");
+        sb.append("        return new ").append(className).append("(\"\", arrayName);\n");
+        sb.append("    }\n");
+
+        sb.append('\n');
+        sb.append("    @Override\n");
+        sb.append("    public ").append(rootType).append(" map(AFJsonReader reader) throws IOException, JSONException {\n");
+        sb.append("        final ").append(rootType).append(" object = new ").append(rootType).append("();\n");
+        sb.append("        ").append(root.methodName).append("(reader, object);\n");
+        sb.append("        return object;\n");
+        sb.append("    }\n");
+
+        sb.append('\n');
+        sb.append("    @Override\n");
+        sb.append("    public void write(AFJsonWriter writer, ").append(rootType).append(" object) throws IOException, JSONException {\n");
+        sb.append("        ").append(root.writeMethodName).append("(writer, object);\n");
+        sb.append("    }\n");
+
+        for (Model model : models.values()) {
+            appendMapMethod(sb, model);
+            appendWriteMethod(sb, model);
+        }
+
+        sb.append('\n');
+        sb.append("}\n");
+
+        final String qualifiedName = pkg.length() == 0 ? className : pkg + "." + className;
+        Writer writer = processingEnv.getFiler().createSourceFile(qualifiedName, root.type).openWriter();
+        try {
+            writer.write(sb.toString());
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static void collect(Model model, Map<TypeElement, Model> models) {
+        if (models.containsKey(model.type))
+            return;
+
+        models.put(model.type, model);
+        for (Field f : model.fields)
+            if (f.model != null)
+                collect(f.model, models);
+    }
+
+    /**
+     * Append the method setting the fields of a model from the entries of the current object
+     */
+    private static void appendMapMethod(StringBuilder sb, Model model) {
+        // Fields by hash of entry name, in a stable order
+        final Map<Integer, List<Field>> hashes = new TreeMap<Integer, List<Field>>();
+        for (Field f : model.fields) {
+            final Integer hash = Integer.valueOf(f.jsonName.hashCode());
+            if (!hashes.containsKey(hash))
+                hashes.put(hash, new ArrayList<Field>());
+            hashes.get(hash).add(f);
+        }
+
+        sb.append('\n');
+        sb.append("    private static void ").append(model.methodName).append("(AFJsonReader reader, ")
+          .append(typeName(model.type)).append(" object) throws IOException, JSONException {\n");
+        sb.append("        while (reader.nextName()) {\n");
+        if (!hashes.isEmpty()) {
+            sb.append("            switch (reader.getNameHash()) {\n");
+            for (Map.Entry<Integer, List<Field>> entry : hashes.entrySet()) {
+                sb.append("            case ").append(entry.getKey()).append(":\n");
+                boolean first = true;
+                for (Field f : entry.getValue()) {
+                    sb.append(first ? "                if" : "                else if")
+                      .append(" (reader.isName(").append(quote(f.jsonName)).append("))");
+                    appendRead(sb, f);
+                    first = false;
+                }
+                sb.append("                break;\n");
+            }
+            sb.append("            }\n");
+        }
+        sb.append("        }\n");
+        sb.append("    }\n");
+    }
+
+    /**
+     * Append the block reading the value of an entry in a field of object
+     */
+    private static void appendRead(StringBuilder sb, Field f) {
+        final String field = "object." + f.name;
+        switch (f.kind) {
+        case STRING:
+            sb.append("\n                    ").append(field).append(" = reader.readString(").append(field).append(");\n");
+            return;
+        case INT:
+            sb.append("\n                    ").append(field).append(" = reader.readInt(").append(field).append(");\n");
+            return;
+        case LONG:
+            sb.append("\n                    ").append(field).append(" = reader.readLong(").append(field).append(");\n");
+            return;
+        case DOUBLE:
+            sb.append("\n                    ").append(field).append(" = reader.readDouble(").append(field).append(");\n");
+            return;
+        case BOOLEAN:
+            sb.append("\n                    ").append(field).append(" = reader.readBoolean(").append(field).append(");\n");
+            return;
+        default:
+            break;
+        }
+
+        final String type = typeName(f.model.type);
+        sb.append(" {\n");
+        if (f.kind == Kind.MODEL) {
+            sb.append("                    if (reader.beginObject()) {\n");
+            sb.append("                        final ").append(type).append(" child = new ").append(type).append("();\n");
+            sb.append("                        ").append(f.model.methodName).append("(reader, child);\n");
+            if (f.adder != null)
+                sb.append("                        object.").append(f.adder).append("(child);\n");
+            else
+                sb.append("                        ").append(field).append(" = child;\n");
+            sb.append("                    }\n");
+        }
+        else {
+            sb.append("                    if (reader.beginArray()) {\n");
+            sb.append("                        while (reader.nextElement()) {\n");
+            sb.append("                            if (reader.beginObject()) {\n");
+            sb.append("                                final ").append(type).append(" child = new ").append(type).append("();\n");
+            sb.append("                                ").append(f.model.methodName).append("(reader, child);\n");
+            if (f.adder != null)
+                sb.append("                                object.").append(f.adder).append("(child);\n");
+            else
+                sb.append("                                ").append(field).append(".add(child);\n");
+            sb.append("                            }\n");
+            sb.append("                        }\n");
+            sb.append("                    }\n");
+        }
+        sb.append("                }\n");
+    }
+
+    /**
+     * Append the method writing the bound fields of a model as an object
+     */
+    private static void appendWriteMethod(StringBuilder sb, Model model) {
+        sb.append('\n');
+        sb.append("    private static void ").append(model.writeMethodName).append("(AFJsonWriter writer, ")
+          .append(typeName(model.type)).append(" object) throws IOException, JSONException {\n");
+        sb.append("        writer.beginObject();\n");
+        for (Field f : model.fields) {
+            // Children given to an adder are not kept in the field
+            if (f.adder != null)
+                continue;
+
+            final String field = "object." + f.name;
+            sb.append("        writer.name(").append(quote(f.jsonName)).append(")");
+            switch (f.kind) {
+            case MODEL:
+                sb.append(";\n");
+                sb.append("        if (").append(field).append(" == null)\n");
+                sb.append("            writer.nullValue();\n");
+                sb.append("        else\n");
+                sb.append("            ").append(f.model.writeMethodName).append("(writer, ").append(field).append(");\n");
+                break;
+            case COLLECTION:
+                sb.append(";\n");
+                sb.append("        if (").append(field).append(" == null)\n");
+                sb.append("            writer.nullValue();\n");
+                sb.append("        else {\n");
+                sb.append("            writer.beginArray();\n");
+                sb.append("            for (").append(typeName(f.model.type)).append(" child : ").append(field).append(") {\n");
+                sb.append("                if (child == null)\n");
+                sb.append("                    writer.nullValue();\n");
+                sb.append("                else\n");
+                sb.append("                    ").append(f.model.writeMethodName).append("(writer, child);\n");
+                sb.append("            }\n");
+                sb.append("            writer.endArray();\n");
+                sb.append("        }\n");
+                break;
+            default:
+                sb.append(".value(").append(field).append(");\n");
+                break;
+            }
+        }
+        sb.append("        writer.endObject();\n");
+        sb.append("    }\n");
+    }
+
+    //
+    // Tools
+    //
+
+    private static AnnotationMirror getAnnotation(Element element, String name) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors())
+            if (((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(name))
+                return mirror;
+
+        return null;
+    }
+
+    private String getString(AnnotationMirror mirror, String name) {
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+                 : processingEnv.getElementUtils().getElementValuesWithDefaults(mirror).entrySet())
+            if (entry.getKey().getSimpleName().contentEquals(name))
+                return (String) entry.getValue().getValue();
+
+        return "";
+    }
+
+    private String getPackage(Element element) {
+        final PackageElement pkg = processingEnv.getElementUtils().getPackageOf(element);
+        return pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+    }
+
+    private static String typeName(TypeElement type) {
+        return type.getQualifiedName().toString();
+    }
+
+    private static String quote(String value) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); ++i) {
+            final char c = value.charAt(i);
+            if (c == '"' || c == '\\')
+                sb.append('\\');
+            sb.append(c);
+        }
+
+        return sb.append('"').toString();
+    }
+
+}
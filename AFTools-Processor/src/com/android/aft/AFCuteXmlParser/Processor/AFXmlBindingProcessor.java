@@ -0,0 +1,581 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ */
+
+package com.android.aft.AFCuteXmlParser.Processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+/**
+ * Generate an AFCuteXmlParser subclass for each model class annotated with
+ * AFXmlNode.
+ *
+ * The generated parser has an action for the root node and one action for
+ * each element field of the models reachable from the root model. Attributes
+ * are read in one pass over the attributes of the tag: the names read for a
+ * model are a constant array and the slot of each attribute in it selects the
+ * field to set, so there is no lookup by name and no reflection at runtime.
+ *
+ * Annotations are found by name, so the processor does not depend on the
+ * AFTools library.
+ */
+@SupportedAnnotationTypes({ AFXmlBindingProcessor.NODE, AFXmlBindingProcessor.ATTRIBUTE,
+                            AFXmlBindingProcessor.CONTENT, AFXmlBindingProcessor.ELEMENT })
+public class AFXmlBindingProcessor extends AbstractProcessor {
+
+    private final static String PACKAGE = "com.android.aft.AFCuteXmlParser";
+
+    final static String NODE = PACKAGE + ".Binding.AFXmlNode";
+    final static String ATTRIBUTE = PACKAGE + ".Binding.AFXmlAttribute";
+    final static String CONTENT = PACKAGE + ".Binding.AFXmlContent";
+    final static String ELEMENT = PACKAGE + ".Binding.AFXmlElement";
+
+    // Suffix of the generated parser class name
+    final static String PARSER_SUFFIX = "XmlParser";
+
+    private enum Kind {
+        STRING, INT, LONG, DOUBLE, BOOLEAN, MODEL, COLLECTION
+    }
+
+    /**
+     * Field bound to an attribute, the content or a child node
+     */
+    private static class Field {
+        VariableElement element;
+        String name;
+        Kind kind;
+
+        // Attribute or child node name
+        String xmlName;
+
+        // Model of a MODEL or COLLECTION field
+        Model model;
+
+        // Method adding a child model or null
+        String adder;
+    }
+
+    /**
+     * Model class bound to a node
+     */
+    private static class Model {
+        TypeElement type;
+        String nodeName;
+
+        // Name of the attribute name array in generated code
+        String attributsName;
+
+        final List<Field> attributes = new ArrayList<Field>();
+        final List<Field> elements = new ArrayList<Field>();
+        Field content;
+    }
+
+    /**
+     * Error on an element of the models
+     */
+    private static class BindingException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        final Element element;
+
+        BindingException(Element element, String msg) {
+            super(msg);
+            this.element = element;
+        }
+    }
+
+    // Models read during this round
+    private final Map<TypeElement, Model> mModels = new HashMap<TypeElement, Model>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        final TypeElement node = processingEnv.getElementUtils().getTypeElement(NODE);
+        if (node == null)
+            return false;
+
+        mModels.clear();
+        for (Element element : roundEnv.getElementsAnnotatedWith(node)) {
+            try {
+                if (element.getKind() != ElementKind.CLASS)
+                    throw new BindingException(element, "AFXmlNode is only supported on classes");
+
+                generate(getModel((TypeElement) element));
+            } catch (BindingException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, e.getMessage(), e.element);
+            } catch (IOException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Cannot write parser: " + e.getMessage(), element);
+            }
+        }
+
+        return true;
+    }
+
+    //
+    // Models
+    //
+
+    private Model getModel(TypeElement type) throws BindingException {
+        Model model = mModels.get(type);
+        if (model != null)
+            return model;
+
+        final AnnotationMirror node = getAnnotation(type, NODE);
+        if (node == null)
+            throw new BindingException(type, type.getQualifiedName() + " is not annotated with AFXmlNode");
+        if (type.getModifiers().contains(Modifier.ABSTRACT))
+            throw new BindingException(type, "Model class cannot be abstract");
+        if (type.getNestingKind().isNested() && !type.getModifiers().contains(Modifier.STATIC))
+            throw new BindingException(type, "Nested model class must be static");
+
+        model = new Model();
+        model.type = type;
+        model.nodeName = getString(node, "value");
+
+        // Registered before reading fields for models containing themselves
+        mModels.put(type, model);
+
+        for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            final AnnotationMirror attribute = getAnnotation(field, ATTRIBUTE);
+            final AnnotationMirror content = getAnnotation(field, CONTENT);
+            final AnnotationMirror element = getAnnotation(field, ELEMENT);
+
+            final int count = (attribute != null ? 1 : 0) + (content != null ? 1 : 0) + (element != null ? 1 : 0);
+            if (count == 0)
+                continue;
+            if (count > 1)
+                throw new BindingException(field, "A field can only have one binding annotation");
+            if (field.getModifiers().contains(Modifier.STATIC) || field.getModifiers().contains(Modifier.FINAL))
+                throw new BindingException(field, "Bound field cannot be static or final");
+
+            Field f = new Field();
+            f.element = field;
+            f.name = field.getSimpleName().toString();
+            f.kind = getKind(field.asType());
+
+            if (attribute != null || content != null) {
+                if (f.kind == null || f.kind == Kind.MODEL || f.kind == Kind.COLLECTION)
+                    throw new BindingException(field, "Attribute and content fields must be String, int, long, double or boolean");
+
+                if (attribute != null) {
+                    f.xmlName = getString(attribute, "value");
+                    model.attributes.add(f);
+                }
+                else {
+                    if (model.content != null)
+                        throw new BindingException(field, "Model has several content fields");
+                    model.content = f;
+                }
+                continue;
+            }
+
+            if (f.kind == null)
+                throw new BindingException(field, "Element field must be String, int, long, double, boolean, a model or a collection of models");
+
+            if (f.kind == Kind.MODEL)
+                f.model = getModel((TypeElement) ((DeclaredType) field.asType()).asElement());
+            else if (f.kind == Kind.COLLECTION)
+                f.model = getModel((TypeElement) ((DeclaredType) ((DeclaredType) field.asType()).getTypeArguments().get(0)).asElement());
+
+            f.xmlName = getString(element, "value");
+            if (f.xmlName.length() == 0) {
+                if (f.model == null)
+                    throw new BindingException(field, "Node name is needed for a value element");
+                f.xmlName = f.model.nodeName;
+            }
+
+            final String adder = getString(element, "adder");
+            if (adder.length() != 0) {
+                if (f.model == null)
+                    throw new BindingException(field, "Adder is only supported on model elements");
+                checkAdder(type, adder, field);
+                f.adder = adder;
+            }
+
+            model.elements.add(f);
+        }
+
+        if (model.content != null && !model.elements.isEmpty())
+            throw new BindingException(type, "Model cannot have both content and element fields");
+
+        return model;
+    }
+
+    /**
+     * @return Kind of a field type, null if it is not supported
+     */
+    private Kind getKind(TypeMirror type) {
+        switch (type.getKind()) {
+        case INT:
+            return Kind.INT;
+        case LONG:
+            return Kind.LONG;
+        case DOUBLE:
+            return Kind.DOUBLE;
+        case BOOLEAN:
+            return Kind.BOOLEAN;
+        case DECLARED:
+            break;
+        default:
+            return null;
+        }
+
+        final DeclaredType declared = (DeclaredType) type;
+        final TypeElement element = (TypeElement) declared.asElement();
+        if (element.getQualifiedName().contentEquals("java.lang.String"))
+            return Kind.STRING;
+        if (getAnnotation(element, NODE) != null)
+            return Kind.MODEL;
+
+        // Collection of models
+        final TypeElement collection = processingEnv.getElementUtils().getTypeElement("java.util.Collection");
+        if (declared.getTypeArguments().size() == 1
+            && processingEnv.getTypeUtils().isAssignable(processingEnv.getTypeUtils().erasure(type), processingEnv.getTypeUtils().erasure(collection.asType()))) {
+            final TypeMirror item = declared.getTypeArguments().get(0);
+            if (item.getKind() == TypeKind.DECLARED && getAnnotation(((DeclaredType) item).asElement(), NODE) != null)
+                return Kind.COLLECTION;
+        }
+
+        return null;
+    }
+
+    private void checkAdder(TypeElement type, String adder, Element field) throws BindingException {
+        for (ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(type)))
+            if (method.getSimpleName().contentEquals(adder) && method.getParameters().size() == 1)
+                return;
+
+        throw new BindingException(field, "No method " + adder + " with one parameter in " + type.getQualifiedName());
+    }
+
+    /**
+     * Check that a model element can be used from the package of the generated parser
+     */
+    private void checkAccess(Element element, String pkg) throws BindingException {
+        final Set<Modifier> modifiers = element.getModifiers();
+        if (modifiers.contains(Modifier.PRIVATE))
+            throw new BindingException(element, element.getSimpleName() + " cannot be private");
+
+        if (!modifiers.contains(Modifier.PUBLIC) && !getPackage(element).equals(pkg))
+            throw new BindingException(element, element.getSimpleName() + " must be public to be used by the parser of package " + pkg);
+    }
+
+    private void checkModelAccess(Model model, String pkg) throws BindingException {
+        checkAccess(model.type, pkg);
+
+        boolean hasConstructor = false;
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(model.type.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty()) {
+                checkAccess(constructor, pkg);
+                hasConstructor = true;
+            }
+        }
+        if (!hasConstructor)
+            throw new BindingException(model.type, "Model class needs a constructor without parameter");
+
+        for (Field f : model.attributes)
+            checkAccess(f.element, pkg);
+        for (Field f : model.elements)
+            checkAccess(f.element, pkg);
+        if (model.content != null)
+            checkAccess(model.content.element, pkg);
+    }
+
+    //
+    // Generation
+    //
+
+    private void generate(Model root) throws BindingException, IOException {
+        final String pkg = getPackage(root.type);
+        final String className = root.type.getSimpleName() + PARSER_SUFFIX;
+
+        // Models reachable from root in order of discovery
+        final Map<TypeElement, Model> models = new LinkedHashMap<TypeElement, Model>();
+        collect(root, models);
+
+        final Set<String> arrayNames = new HashSet<String>();
+        for (Model model : models.values()) {
+            checkModelAccess(model, pkg);
+
+            model.attributsName = null;
+            if (!model.attributes.isEmpty()) {
+                String name = constantName(model.type.getSimpleName().toString()) + "_ATTRIBUTS";
+                for (int i = 2; arrayNames.contains(name); ++i)
+                    name = constantName(model.type.getSimpleName().toString()) + i + "_ATTRIBUTS";
+                arrayNames.add(name);
+                model.attributsName = name;
+            }
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("// Generated by ").append(AFXmlBindingProcessor.class.getSimpleName())
+          .append(" from ").append(root.type.getQualifiedName()).append(", do not edit\n");
+        if (pkg.length() != 0)
+            sb.append("package ").append(pkg).append(";\n");
+        sb.append('\n');
+        boolean hasElements = false;
+        boolean hasAttributes = false;
+        boolean hasValues = false;
+        for (Model model : models.values()) {
+            hasElements |= !model.elements.isEmpty();
+            hasAttributes |= !model.attributes.isEmpty();
+            for (Field f : model.attributes)
+                hasValues |= f.kind != Kind.STRING;
+        }
+
+        sb.append("import ").append(PACKAGE).append(".AFCuteXmlParser;\n");
+        sb.append("import ").append(PACKAGE).append(".AFNodeActionAtDepth;\n");
+        if (hasElements)
+            sb.append("import ").append(PACKAGE).append(".AFNodeActionSonOf;\n");
+        if (hasAttributes)
+            sb.append("import ").append(PACKAGE).append(".AFXmlTag;\n");
+        if (hasValues)
+            sb.append("import ").append(PACKAGE).append(".AFXmlValues;\n");
+        sb.append('\n');
+        sb.append("public class ").append(className).append(" extends AFCuteXmlParser {\n");
+
+        // Attribute slots
+        for (Model model : models.values()) {
+            if (model.attributsName == null)
+                continue;
+
+            sb.append('\n');
+            sb.append("    // Attributes of ").append(model.nodeName).append(", the index of a name is its slot\n");
+            sb.append("    private final static String[] ").append(model.attributsName).append(" = {");
+            for (int i = 0; i < model.attributes.size(); ++i)
+                sb.append(i == 0 ? " " : ", ").append(quote(model.attributes.get(i).xmlName));
+            sb.append(" };\n");
+        }
+
+        // Actions
+        sb.append('\n');
+        sb.append("    public ").append(className).append("() {\n");
+        sb.append("        addNodeAction(new AFNodeActionAtDepth<Object>(").append(quote(root.nodeName)).append(", 1) {\n");
+        sb.append("            @Override\n");
+        sb.append("            public void onNode(Object cookie) {\n");
+        appendNode(sb, root);
+        sb.append("                setResultData(node);\n");
+        sb.append("            }\n");
+        sb.append("        });\n");
+
+        for (Model model : models.values()) {
+            for (Field f : model.elements) {
+                final String parentType = typeName(model.type);
+                sb.append('\n');
+                sb.append("        addNodeAction(new AFNodeActionSonOf<").append(parentType).append(">(")
+                  .append(quote(f.xmlName)).append(", ").append(quote(model.nodeName)).append(") {\n");
+                sb.append("            @Override\n");
+                sb.append("            public void onNode(").append(parentType).append(" parent) {\n");
+                if (f.model == null)
+                    sb.append("                ").append(readContent(f, "parent")).append('\n');
+                else {
+                    appendNode(sb, f.model);
+                    if (f.adder != null)
+                        sb.append("                parent.").append(f.adder).append("(node);\n");
+                    else if (f.kind == Kind.COLLECTION)
+                        sb.append("                parent.").append(f.name).append(".add(node);\n");
+                    else
+                        sb.append("                parent.").append(f.name).append(" = node;\n");
+                }
+                sb.append("            }\n");
+                sb.append("        });\n");
+            }
+        }
+        sb.append("    }\n");
+
+        // Attribute binding
+        for (Model model : models.values()) {
+            if (model.attributsName == null)
+                continue;
+
+            sb.append('\n');
+            sb.append("    private static void bind(AFXmlTag tag, ").append(typeName(model.type)).append(" node) {\n");
+            sb.append("        for (int i = 0, count = tag.getAttributCount(); i < count; ++i) {\n");
+            sb.append("            switch (tag.getAttributSlot(i, ").append(model.attributsName).append(")) {\n");
+            for (int i = 0; i < model.attributes.size(); ++i) {
+                sb.append("            case ").append(i).append(":\n");
+                sb.append("                ").append(readAttribute(model.attributes.get(i))).append('\n');
+                sb.append("                break;\n");
+            }
+            sb.append("            }\n");
+            sb.append("        }\n");
+            sb.append("    }\n");
+        }
+
+        sb.append('\n');
+        sb.append("}\n");
+
+        final String qualifiedName = pkg.length() == 0 ? className : pkg + "." + className;
+        Writer writer = processingEnv.getFiler().createSourceFile(qualifiedName, root.type).openWriter();
+        try {
+            writer.write(sb.toString());
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static void collect(Model model, Map<TypeElement, Model> models) {
+        if (models.containsKey(model.type))
+            return;
+
+        models.put(model.type, model);
+        for (Field f : model.elements)
+            if (f.model != null)
+                collect(f.model, models);
+    }
+
+    /**
+     * Append the creation of the object of a model from the current node in a local variable node
+     */
+    private static void appendNode(StringBuilder sb, Model model) {
+        final String type = typeName(model.type);
+        sb.append("                final ").append(type).append(" node = new ").append(type).append("();\n");
+        if (model.attributsName != null)
+            sb.append("                bind(getContext().getCurrent(), node);\n");
+        if (model.content != null)
+            sb.append("                ").append(readContent(model.content, "node")).append('\n');
+        if (!model.elements.isEmpty())
+            sb.append("                read_children(node);\n");
+    }
+
+    /**
+     * @return Statement setting a field with the content of current node, the field value is the default value
+     */
+    private static String readContent(Field f, String object) {
+        final String field = object + "." + f.name;
+        switch (f.kind) {
+        case INT:
+            return field + " = readIntContent(" + field + ");";
+        case LONG:
+            return field + " = readLongContent(" + field + ");";
+        case DOUBLE:
+            return field + " = readDoubleContent(" + field + ");";
+        case BOOLEAN:
+            return field + " = readBooleanContent(" + field + ");";
+        default:
+            return field + " = read_content();";
+        }
+    }
+
+    /**
+     * @return Statement setting a field of node with the value of attribute i of tag
+     */
+    private static String readAttribute(Field f) {
+        final String field = "node." + f.name;
+        switch (f.kind) {
+        case INT:
+            return field + " = AFXmlValues.parseInt(tag.getAttributValue(i), " + field + ");";
+        case LONG:
+            return field + " = AFXmlValues.parseLong(tag.getAttributValue(i), " + field + ");";
+        case DOUBLE:
+            return field + " = AFXmlValues.parseDouble(tag.getAttributValue(i), " + field + ");";
+        case BOOLEAN:
+            return field + " = AFXmlValues.parseBoolean(tag.getAttributValue(i));";
+        default:
+            return field + " = tag.getAttributValue(i);";
+        }
+    }
+
+    //
+    // Tools
+    //
+
+    private static AnnotationMirror getAnnotation(Element element, String name) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors())
+            if (((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(name))
+                return mirror;
+
+        return null;
+    }
+
+    private String getString(AnnotationMirror mirror, String name) {
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+                 : processingEnv.getElementUtils().getElementValuesWithDefaults(mirror).entrySet())
+            if (entry.getKey().getSimpleName().contentEquals(name))
+                return (String) entry.getValue().getValue();
+
+        return "";
+    }
+
+    private String getPackage(Element element) {
+        final PackageElement pkg = processingEnv.getElementUtils().getPackageOf(element);
+        return pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+    }
+
+    private static String typeName(TypeElement type) {
+        return type.getQualifiedName().toString();
+    }
+
+    /**
+     * @return Upper case name with '_' between words of a class name
+     */
+    private static String constantName(String name) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < name.length(); ++i) {
+            final char c = name.charAt(i);
+            if (i > 0 && Character.isUpperCase(c) && !Character.isUpperCase(name.charAt(i - 1)))
+                sb.append('_');
+            sb.append(Character.toUpperCase(c));
+        }
+
+        return sb.toString();
+    }
+
+    private static String quote(String value) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); ++i) {
+            final char c = value.charAt(i);
+            if (c == '"' || c == '\\')
+                sb.append('\\');
+            sb.append(c);
+        }
+
+        return sb.append('"').toString();
+    }
+
+}
@@ -0,0 +1,903 @@
+package com.android.aft.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import org.json.JSONTokener;
+
+import android.test.AndroidTestCase;
+
+import com.android.aft.AFCuteJsonParser.AFArrayJsonAction;
+import com.android.aft.AFCuteJsonParser.AFCuteJsonParser;
+import com.android.aft.AFCuteJsonParser.AFCuteJsonParser.ArrayElementConsumer;
+import com.android.aft.AFCuteJsonParser.AFCuteJsonParserResult;
+import com.android.aft.AFCuteJsonParser.AFJsonAction;
+import com.android.aft.AFCuteJsonParser.AFJsonBinaryCache;
+import com.android.aft.AFCuteJsonParser.AFJsonKey;
+import com.android.aft.AFCuteJsonParser.AFJsonWriter;
+import com.android.aft.AFCuteJsonParser.AFJsonValue;
+import com.android.aft.AFCuteJsonParser.AFObjectInsideArrayJsonAction;
+import com.android.aft.AFCuteJsonParser.AFObjectJsonAction;
+import com.android.aft.AFCuteJsonParser.AFRootObjectJsonAction;
+import com.android.aft.AFCuteJsonParser.Binding.AFJsonField;
+import com.android.aft.AFCuteJsonParser.Binding.AFJsonObject;
+import com.android.aft.AFNetworkConnection.AFJsonEntity;
+
+public class AFCuteJsonParserTestCase extends AndroidTestCase {
+
+    private static final String DOCUMENT =
+        "{\"title\":\"h\\u00e9llo \\\"x\\\"\",\"count\":42,"
+        + "\"items\":[{\"id\":\"a\",\"big\":12345678901234,\"ok\":true,\"sub\":{\"deep\":{\"x\":1}}},"
+        + "{\"id\":\"b\",\"big\":-1,\"ok\":false}],"
+        + "\"nums\":[1,2.5,-3e2,null],\"other\":{\"deep\":{}}}";
+
+    private static InputStream stream(String json) throws Exception {
+        return new ByteArrayInputStream(json.getBytes("UTF-8"));
+    }
+
+    private static AFCuteJsonParser buildParser(final StringBuilder log) {
+        AFCuteJsonParser parser = new AFCuteJsonParser();
+        parser.addAction(new AFRootObjectJsonAction<Object>() {
+            @Override
+            public void onObject(Object cookie) {
+                log.append("root:" + getStringValueOf("title") + "/" + getIntValueOf("count") + ";");
+            }
+        });
+        parser.addAction(new AFArrayJsonAction<Object>("items") {
+            @Override
+            public void onArray(Object cookie) {
+                log.append("items;");
+                read_values();
+                log.append("/items;");
+            }
+        });
+        parser.addAction(new AFObjectInsideArrayJsonAction<Object>("items") {
+            @Override
+            public void onObject(Object cookie) {
+                log.append("item:" + getStringValueOf("id") + "," + getLongValueOf("big") + "," + getBooleanValueOf("ok") + ";");
+            }
+        });
+        parser.addAction(new AFArrayJsonAction<Object>("nums") {
+            @Override
+            public void onArray(Object cookie) {
+                log.append("nums:" + getNumberOfEntry() + ":" + getValue(2) + ";");
+            }
+        });
+        parser.addAction(new AFObjectJsonAction<Object>("deep") {
+            @Override
+            public void onObject(Object cookie) {
+                log.append("deep;");
+            }
+        });
+        return parser;
+    }
+
+    public void testStreamSameAsString() throws Exception {
+        StringBuilder tree = new StringBuilder();
+        AFCuteJsonParserResult r = buildParser(tree).parse(DOCUMENT);
+        assertTrue("String parsing", r.success());
+
+        StringBuilder streamed = new StringBuilder();
+        r = buildParser(streamed).parse(stream(DOCUMENT));
+        assertTrue("Stream parsing", r.success());
+
+        assertEquals("Actions called on stream", "root:h\u00e9llo \"x\"/42;items;item:a,12345678901234,true;deep;item:b,-1,false;/items;nums:4:-300.0;deep;",
+                     streamed.toString());
+        assertEquals("Same actions as string parsing", tree.toString(), streamed.toString());
+    }
+
+    public void testStreamUtf8() throws Exception {
+        StringBuilder log = new StringBuilder();
+        AFCuteJsonParserResult r = buildParser(log).parse(stream("\uFEFF{\"items\":[{\"id\":\"\u00e7\u20ac\ud83d\ude00\"}]}"));
+        assertTrue("Stream parsing", r.success());
+        assertEquals("Decoded values", "root:null/-1;items;item:\u00e7\u20ac\ud83d\ude00,-1,null;/items;", log.toString());
+    }
+
+    public void testStreamErrors() throws Exception {
+        String[] documents = {
+            "{\"items\":[1,2",
+            "{\"a\" 1}",
+            "[1,]",
+            "",
+            "{\"items\":[{\"id\":tru}]}",
+        };
+
+        for (String json : documents) {
+            AFCuteJsonParserResult r = buildParser(new StringBuilder()).parse(stream(json));
+            assertTrue("Invalid json '" + json + "'", r.failed());
+        }
+    }
+
+    public void testLazyValues() throws Exception {
+        AFJsonValue root = new AFJsonValue(new JSONTokener("{\"a\":[10,{\"b\":true},\"s\"],\"c\":null}").nextValue());
+        assertEquals("Number of entries", 2, root.getNumberOfChildren());
+
+        AFJsonValue array = root.getJsonObjectEntry("a");
+        assertEquals("Number of array entries", 3, array.getNumberOfChildren());
+        assertSame("Same entry", array, root.getJsonObjectEntry("a"));
+        assertNull("Unknown entry", root.getJsonObjectEntry("x"));
+        assertNull("No entry by index in object", root.getJsonArrayEntry(0));
+
+        AFJsonValue entry = array.getJsonArrayEntry(1);
+        assertEquals("Index of entry", 1, entry.getIndex());
+        assertEquals("Name of entry", "1", entry.getName());
+        assertSame("Same entry", entry, array.getJsonArrayEntry(1));
+        assertNull("Out of array", array.getJsonArrayEntry(3));
+        assertEquals("Entry of object", Boolean.TRUE, entry.getJsonObjectEntry("b").getValueAsBoolean());
+
+        assertSame("Children reuse built entries", entry, array.getChildren().toArray()[1]);
+        assertEquals("Null entry", AFJsonValue.JsonValueType.JsonNull, root.getJsonObjectEntry("c").getType());
+        assertEquals("Index of object entry", -1, root.getJsonObjectEntry("c").getIndex());
+    }
+
+    private static String buildWideObjects(int fields) {
+        StringBuilder sb = new StringBuilder("{\"list\":[");
+        for (int o = 0; o < 3; ++o) {
+            if (o != 0)
+                sb.append(',');
+            sb.append('{');
+            // Second object has another field order
+            for (int i = 0; i < fields; ++i) {
+                final int f = o == 1 ? fields - 1 - i : i;
+                sb.append("\"f").append(f).append("\":").append(o * 1000 + f).append(',');
+            }
+            sb.append("\"last\":true}");
+        }
+        return sb.append("]}").toString();
+    }
+
+    private static final AFJsonKey KEY_F0 = new AFJsonKey("f0");
+    private static final AFJsonKey KEY_F7 = new AFJsonKey("f7");
+    private static final AFJsonKey KEY_F19 = new AFJsonKey("f19");
+    private static final AFJsonKey KEY_MISSING = new AFJsonKey("f20");
+
+    private static void checkKeyedLookups(boolean streamed) throws Exception {
+        final StringBuilder log = new StringBuilder();
+        AFCuteJsonParser parser = new AFCuteJsonParser();
+        parser.addAction(new AFObjectInsideArrayJsonAction<Object>("list") {
+            @Override
+            public void onObject(Object cookie) {
+                log.append(getIntValueOf(KEY_F0) + "," + getIntValueOf("f7") + "," + getLongValueOf(KEY_F7) + ","
+                           + getIntValueOf(KEY_F19) + "," + hasValueOf(KEY_MISSING) + "," + hasValueOf("f20") + ";");
+            }
+        });
+
+        final String json = buildWideObjects(20);
+        AFCuteJsonParserResult r = streamed ? parser.parse(stream(json)) : parser.parse(json);
+        assertTrue("Parsing", r.success());
+        assertEquals("Keyed values", "0,7,7,19,false,false;1000,1007,1007,1019,false,false;2000,2007,2007,2019,false,false;", log.toString());
+    }
+
+    public void testKeyedLookupsString() throws Exception {
+        checkKeyedLookups(false);
+    }
+
+    public void testKeyedLookupsStream() throws Exception {
+        checkKeyedLookups(true);
+    }
+
+    private static String buildArray(int count) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < count; ++i) {
+            if (i != 0)
+                sb.append(',');
+            sb.append("{\"id\":").append(i).append(",\"tags\":[\"t").append(i).append("\"]}");
+        }
+        return sb.append(']').toString();
+    }
+
+    private static class CountingInputStream extends ByteArrayInputStream {
+        volatile int mRead;
+
+        CountingInputStream(byte[] data) {
+            super(data);
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) {
+            final int n = super.read(b, off, len);
+            if (n > 0)
+                mRead += n;
+            return n;
+        }
+    }
+
+    private static class IdConsumer implements ArrayElementConsumer {
+        final List<Integer> mIds = new ArrayList<Integer>();
+        Boolean mSuccess;
+        int mFailAt = -1;
+
+        @Override
+        public void onElement(AFJsonValue element) throws Exception {
+            if (mIds.size() == mFailAt)
+                throw new IOException("Cannot insert");
+            mIds.add(element.getJsonObjectEntry("id").getValueAsNumber().intValue());
+        }
+
+        @Override
+        public void onEnd(boolean success) {
+            mSuccess = success;
+        }
+    }
+
+    public void testParseArrayBackpressure() throws Exception {
+        final int count = 5000;
+        final byte[] data = buildArray(count).getBytes("UTF-8");
+        final CountingInputStream in = new CountingInputStream(data);
+        final int[] readAtFirst = new int[1];
+
+        IdConsumer consumer = new IdConsumer() {
+            @Override
+            public void onElement(AFJsonValue element) throws Exception {
+                if (mIds.isEmpty()) {
+                    // Let the reader fill the queue
+                    Thread.sleep(100);
+                    readAtFirst[0] = in.mRead;
+                }
+                assertEquals("Element fully read", "t" + mIds.size(), element.getJsonObjectEntry("tags").getJsonArrayEntry(0).getValueAsString());
+                super.onElement(element);
+            }
+        };
+
+        AFCuteJsonParserResult r = new AFCuteJsonParser().parseArray(in, AFJsonValue.ROOT_VALUE_NAME, 4, consumer);
+        assertTrue("Parsing", r.success());
+        assertEquals("Consumer end", Boolean.TRUE, consumer.mSuccess);
+        assertEquals("Number of elements", count, consumer.mIds.size());
+        for (int i = 0; i < count; ++i)
+            assertEquals("Element order", i, consumer.mIds.get(i).intValue());
+
+        assertTrue("Reader waits for the consumer: " + readAtFirst[0] + " of " + data.length, readAtFirst[0] < data.length / 2);
+    }
+
+    public void testParseArrayNamed() throws Exception {
+        final StringBuilder log = new StringBuilder();
+        AFCuteJsonParser parser = new AFCuteJsonParser();
+        parser.addAction(new AFRootObjectJsonAction<Object>() {
+            @Override
+            public void onObject(Object cookie) {
+                log.append("root:" + getIntValueOf("total") + ";");
+            }
+        });
+        parser.addAction(new AFObjectJsonAction<Object>("info") {
+            @Override
+            public void onObject(Object cookie) {
+                log.append("info;");
+            }
+        });
+        parser.addAction(new AFObjectInsideArrayJsonAction<Object>("orders") {
+            @Override
+            public void onObject(Object cookie) {
+                log.append("order;");
+            }
+        });
+
+        IdConsumer consumer = new IdConsumer();
+        String json = "{\"total\":3,\"orders\":" + buildArray(3) + ",\"info\":{\"orders\":[]}}";
+        AFCuteJsonParserResult r = parser.parseArray(stream(json), "orders", 1, consumer);
+        assertTrue("Parsing", r.success());
+        assertEquals("Streamed elements", "[0, 1, 2]", consumer.mIds.toString());
+        assertEquals("Actions on other values", "root:3;info;", log.toString());
+
+        // Array not read by an action on its parent
+        consumer = new IdConsumer();
+        r = new AFCuteJsonParser().parseArray(stream(json), "orders", 1, consumer);
+        assertTrue("Parsing", r.success());
+        assertEquals("Streamed elements", "[0, 1, 2]", consumer.mIds.toString());
+    }
+
+    public void testParseArrayErrors() throws Exception {
+        IdConsumer consumer = new IdConsumer();
+        consumer.mFailAt = 10;
+        AFCuteJsonParserResult r = new AFCuteJsonParser().parseArray(stream(buildArray(1000)), AFJsonValue.ROOT_VALUE_NAME, 2, consumer);
+        assertTrue("Consumer failure", r.failed());
+        assertEquals("Elements before failure", 10, consumer.mIds.size());
+        assertNull("No end after failure", consumer.mSuccess);
+
+        consumer = new IdConsumer();
+        final String json = buildArray(10);
+        r = new AFCuteJsonParser().parseArray(stream(json.substring(0, json.length() / 2)), AFJsonValue.ROOT_VALUE_NAME, 2, consumer);
+        assertTrue("Truncated data", r.failed());
+        assertEquals("Consumer end", Boolean.FALSE, consumer.mSuccess);
+    }
+
+    public void testParseArrayConsumerError() throws Exception {
+        // An Error of the consumer does not block the reader on the full queue
+        IdConsumer consumer = new IdConsumer() {
+            @Override
+            public void onElement(AFJsonValue element) throws Exception {
+                if (mIds.size() == 10)
+                    throw new AssertionError("Consumer assertion");
+                super.onElement(element);
+            }
+        };
+
+        AFCuteJsonParserResult r = new AFCuteJsonParser().parseArray(stream(buildArray(1000)), AFJsonValue.ROOT_VALUE_NAME, 2, consumer);
+        assertTrue("Consumer error", r.failed());
+        assertEquals("Error message", "Array consumer failed: Consumer assertion", r.getErrorMsg());
+        assertEquals("Elements before error", 10, consumer.mIds.size());
+        assertNull("No end after error", consumer.mSuccess);
+    }
+
+    public void testParseArrayActionFailure() throws Exception {
+        AFCuteJsonParser parser = new AFCuteJsonParser();
+        parser.addAction(new AFObjectJsonAction<Object>("info") {
+            @Override
+            public void onObject(Object cookie) {
+                throw new IllegalStateException("Action failed");
+            }
+        });
+
+        // The consumer is ended before the exception is thrown to the caller
+        IdConsumer consumer = new IdConsumer();
+        String json = "{\"orders\":" + buildArray(3) + ",\"info\":{}}";
+        try {
+            parser.parseArray(stream(json), "orders", 1, consumer);
+            fail("Action exception");
+        } catch (IllegalStateException e) {
+            assertEquals("Action exception", "Action failed", e.getMessage());
+        }
+        assertEquals("Streamed elements", "[0, 1, 2]", consumer.mIds.toString());
+        assertEquals("Consumer end", Boolean.FALSE, consumer.mSuccess);
+    }
+
+    public void testParseArrayInterrupted() throws Exception {
+        final Thread reader = Thread.currentThread();
+        IdConsumer consumer = new IdConsumer() {
+            @Override
+            public void onEnd(boolean success) {
+                // The reader waits for the end in finish
+                reader.interrupt();
+                super.onEnd(success);
+            }
+        };
+
+        AFCuteJsonParserResult r = new AFCuteJsonParser().parseArray(stream(buildArray(3)), AFJsonValue.ROOT_VALUE_NAME, 1, consumer);
+        assertTrue("Interrupt flag restored", Thread.interrupted());
+        assertTrue("Parsing", r.success());
+        assertEquals("Consumer end", Boolean.TRUE, consumer.mSuccess);
+    }
+
+    // Mapped by the ProductJsonMapper generated by the binding processor
+    @AFJsonObject
+    public static class Product {
+        @AFJsonField
+        public String name;
+        @AFJsonField
+        public int count = -1;
+        @AFJsonField
+        public long id;
+        @AFJsonField
+        public double price;
+        @AFJsonField
+        public boolean available;
+        @AFJsonField
+        public Product part;
+        @AFJsonField
+        public List<Product> variants = new ArrayList<Product>();
+
+        // Only the names of accessories are kept
+        @AFJsonField(value = "accessories", adder = "addAccessory")
+        public List<Product> accessories;
+        public final List<String> accessoryNames = new ArrayList<String>();
+
+        public void addAccessory(Product accessory) {
+            accessoryNames.add(accessory.name);
+        }
+    }
+
+    private static final String PRODUCT =
+        "{\"name\":\"lamp\",\"skipped\":{\"name\":\"x\",\"a\":[1,{}]},\"id\":12345678901,\"price\":19.5,"
+        + "\"available\":true,\"count\":7,\"part\":{\"name\":\"bulb\",\"count\":2},"
+        + "\"variants\":[{\"name\":\"red\",\"count\":\"7\"},3,{\"name\":\"blue\",\"variants\":[]}],\"extra\":null,"
+        + "\"accessories\":[{\"name\":\"shade\"},{\"name\":\"cord\"}]}";
+
+    private static void checkProduct(Product p) {
+        assertEquals("String field", "lamp", p.name);
+        assertEquals("Long field", 12345678901L, p.id);
+        assertTrue("Double field", p.price == 19.5);
+        assertTrue("Boolean field", p.available);
+        assertEquals("Int field", 7, p.count);
+        assertEquals("Nested model", "bulb", p.part.name);
+        assertEquals("Nested int field", 2, p.part.count);
+        assertEquals("Collection size", 2, p.variants.size());
+        assertEquals("Collection item", "blue", p.variants.get(1).name);
+        assertEquals("Default kept on wrong type", -1, p.variants.get(0).count);
+    }
+
+    public void testMapperString() throws Exception {
+        AFCuteJsonParser parser = new AFCuteJsonParser();
+        parser.addAction(new ProductJsonMapper(AFJsonValue.ROOT_VALUE_NAME));
+        AFCuteJsonParserResult r = parser.parse(PRODUCT);
+        assertTrue("Parsing", r.success());
+        checkProduct((Product) r.getData());
+        assertEquals("Adder", "[shade, cord]", ((Product) r.getData()).accessoryNames.toString());
+        assertNull("Field of adder not set", ((Product) r.getData()).accessories);
+    }
+
+    public void testMapperStream() throws Exception {
+        AFCuteJsonParser parser = new AFCuteJsonParser();
+        parser.addAction(new ProductJsonMapper(AFJsonValue.ROOT_VALUE_NAME));
+        AFCuteJsonParserResult r = parser.parse(stream(PRODUCT));
+        assertTrue("Parsing", r.success());
+        checkProduct((Product) r.getData());
+        assertEquals("Adder", "[shade, cord]", ((Product) r.getData()).accessoryNames.toString());
+    }
+
+    public void testMapperInsideArray() throws Exception {
+        final List<Product> products = new ArrayList<Product>();
+        final StringBuilder log = new StringBuilder();
+        AFCuteJsonParser parser = new AFCuteJsonParser();
+        parser.addAction(new AFRootObjectJsonAction<Object>() {
+            @Override
+            public void onObject(Object cookie) {
+                read_values(products);
+            }
+        });
+        parser.addAction(ProductJsonMapper.insideArray("products"));
+        // Children of a mapped object are not given to actions
+        parser.addAction(new AFObjectJsonAction<Object>("part") {
+            @Override
+            public void onObject(Object cookie) {
+                log.append("part;");
+            }
+        });
+
+        String json = "{\"products\":[" + PRODUCT + ",{\"name\":\"desk\"}],\"part\":{}}";
+        for (int i = 0; i < 2; ++i) {
+            products.clear();
+            log.setLength(0);
+            AFCuteJsonParserResult r = i == 0 ? parser.parse(json) : parser.parse(stream(json));
+            assertTrue("Parsing", r.success());
+            assertEquals("Mapped objects", 2, products.size());
+            checkProduct(products.get(0));
+            assertEquals("Second object", "desk", products.get(1).name);
+            assertEquals("Actions outside mapped objects", "part;", log.toString());
+        }
+    }
+
+    public void testMapperErrors() throws Exception {
+        AFCuteJsonParser parser = new AFCuteJsonParser();
+        parser.addAction(new ProductJsonMapper(AFJsonValue.ROOT_VALUE_NAME));
+        AFCuteJsonParserResult r = parser.parse(stream(PRODUCT.substring(0, PRODUCT.length() / 2)));
+        assertTrue("Truncated data", r.failed());
+    }
+
+    private static final String NUMBERS =
+        "{\"int\":42,\"negative\":-7,\"long\":12345678901,\"double\":1.5,\"exact\":0.10,"
+        + "\"exponent\":1e3}";
+
+    // Out of the range of long, read differently by org.json versions
+    private static final String HUGE_NUMBER = "123456789012345678901234";
+
+    private static void checkNumbers(AFObjectJsonAction<?> action, boolean exact) {
+        assertEquals("Int", 42, action.getIntValueOf("int"));
+        assertEquals("Negative int", -7, action.getLongValueOf("negative"));
+        assertEquals("Long", 12345678901L, action.getLongValueOf("long"));
+        assertTrue("Double", action.getDoubleValueOf("double") == 1.5);
+        assertTrue("Int as double", action.getDoubleValueOf("int") == 42);
+        assertEquals("Truncated double", 1, action.getIntValueOf("double"));
+        assertEquals("Exponent", 1000, action.getIntValueOf("exponent"));
+        assertEquals("Missing", -1, action.getIntValueOf("missing"));
+        assertEquals("Integer object", Integer.valueOf(42), action.getValueOf("int").getValueAsNumber());
+        assertEquals("Long object", Long.valueOf(12345678901L), action.getValueOf("long").getValueAsNumber());
+        assertEquals("BigDecimal of long", new BigDecimal("12345678901"), action.getBigDecimalValueOf("long"));
+        assertEquals("BigDecimal of double", new BigDecimal("1.5"), action.getBigDecimalValueOf("double"));
+        assertNull("BigDecimal of missing", action.getBigDecimalValueOf("missing"));
+        if (exact) {
+            // Text of the data
+            assertEquals("Exact BigDecimal", new BigDecimal("0.10"), action.getBigDecimalValueOf("exact"));
+            assertEquals("Exact huge", new BigDecimal(HUGE_NUMBER), action.getBigDecimalValueOf("huge"));
+        }
+    }
+
+    private static AFCuteJsonParser buildNumbersParser(final StringBuilder log, final boolean exact) {
+        AFCuteJsonParser parser = new AFCuteJsonParser();
+        parser.setExactNumbers(exact);
+        parser.addAction(new AFRootObjectJsonAction<Object>() {
+            @Override
+            public void onObject(Object cookie) {
+                checkNumbers(this, exact);
+                log.append("root;");
+            }
+        });
+        return parser;
+    }
+
+    private static void checkNumbers(boolean streamed, boolean exact) throws Exception {
+        final StringBuilder log = new StringBuilder();
+        AFCuteJsonParser parser = buildNumbersParser(log, exact);
+
+        AFCuteJsonParserResult r;
+        if (streamed)
+            r = parser.parse(stream(NUMBERS.replace("}", ",\"huge\":" + HUGE_NUMBER + "}")));
+        else
+            r = parser.parse(NUMBERS);
+        assertTrue("Parsing", r.success());
+        assertEquals("Action", "root;", log.toString());
+    }
+
+    public void testNumbersString() throws Exception {
+        checkNumbers(false, false);
+    }
+
+    public void testNumbersStream() throws Exception {
+        checkNumbers(true, false);
+    }
+
+    public void testNumbersStreamExact() throws Exception {
+        checkNumbers(true, true);
+    }
+
+    // Integers of 19 and 20 chars, the fast path of the tokenizer reads up to 18 chars
+    private static final String LONG_BOUNDS =
+        "{\"max\":9223372036854775807,\"min\":-9223372036854775808,\"digits19\":1234567890123456789,"
+        + "\"past\":9223372036854775808}";
+
+    public void testNumbersLongRange() throws Exception {
+        final StringBuilder log = new StringBuilder();
+        AFCuteJsonParser parser = new AFCuteJsonParser();
+        parser.addAction(new AFRootObjectJsonAction<Object>() {
+            @Override
+            public void onObject(Object cookie) {
+                assertEquals("Max long", Long.MAX_VALUE, getLongValueOf("max"));
+                assertEquals("Min long", Long.MIN_VALUE, getLongValueOf("min"));
+                assertEquals("19 digits", 1234567890123456789L, getLongValueOf("digits19"));
+                assertEquals("Long object", Long.valueOf(1234567890123456789L), getValueOf("digits19").getValueAsNumber());
+                assertEquals("Min long object", Long.valueOf(Long.MIN_VALUE), getValueOf("min").getValueAsNumber());
+                assertTrue("Past long range is a double", getValueOf("past").getValueAsNumber() instanceof Double);
+                assertTrue("Past long range value", getDoubleValueOf("past") == 9223372036854775808.0);
+                log.append("root;");
+            }
+        });
+
+        assertTrue("Stream parsing", parser.parse(stream(LONG_BOUNDS)).success());
+        assertTrue("Binary parsing", parser.parse(binary(LONG_BOUNDS)).success());
+        assertEquals("Actions", "root;root;", log.toString());
+    }
+
+    private static class RecordingTracer implements AFCuteJsonParser.Tracer {
+        final StringBuilder mEvents = new StringBuilder();
+
+        @Override
+        public void onValue(int depth, AFJsonValue value) {
+            mEvents.append(depth).append(':').append(value.getName()).append(';');
+        }
+
+        @Override
+        public void onArrayHandOff(int depth, AFJsonValue array) {
+            mEvents.append(depth).append(":hand-off ").append(array.getName()).append(';');
+        }
+
+        @Override
+        public void onAction(int depth, AFJsonAction<?> action) {
+            mEvents.append(depth).append(":action;");
+        }
+    }
+
+    public void testTracer() throws Exception {
+        final String json = "{\"a\":1,\"o\":{\"b\":[true]}}";
+        for (int i = 0; i < 2; ++i) {
+            final boolean streamed = i == 1;
+            AFCuteJsonParser parser = new AFCuteJsonParser();
+            parser.addAction(new AFObjectJsonAction<Object>("o") {
+                @Override
+                public void onObject(Object cookie) {
+                }
+            });
+            RecordingTracer tracer = new RecordingTracer();
+            parser.setTracer(tracer);
+
+            // Disabled by default
+            assertTrue("Parsing", (streamed ? parser.parse(stream(json)) : parser.parse(json)).success());
+            assertEquals("No events without debug", "", tracer.mEvents.toString());
+
+            parser.setDebug(Boolean.TRUE);
+            assertTrue("Debug", parser.hasDebug());
+            assertTrue("Parsing", (streamed ? parser.parse(stream(json)) : parser.parse(json)).success());
+            assertEquals("Events", "1:" + AFJsonValue.ROOT_VALUE_NAME + ";2:a;2:o;2:action;3:b;4:0;", tracer.mEvents.toString());
+
+            // Other parsers are not traced
+            AFCuteJsonParser other = new AFCuteJsonParser();
+            assertTrue("Debug of other parser", !other.hasDebug());
+        }
+    }
+
+    public void testIndexAfterName() throws Exception {
+        AFJsonValue array = new AFJsonValue(new JSONTokener("[10,{\"b\":true}]").nextValue());
+        AFJsonValue entry = array.getJsonArrayEntry(1);
+        assertEquals("Name of entry", "1", entry.getName());
+        assertEquals("Index of entry after its name", 1, entry.getIndex());
+        assertEquals("Index of object entry", -1, entry.getJsonObjectEntry("b").getIndex());
+
+        // Names are built by the tracer before the actions are looked up
+        final String json = "{\"list\":[{\"a\":1},{\"a\":2}]}";
+        for (int i = 0; i < 2; ++i) {
+            final boolean streamed = i == 1;
+            final StringBuilder log = new StringBuilder();
+            AFCuteJsonParser parser = new AFCuteJsonParser();
+            parser.addAction(new AFObjectInsideArrayJsonAction<Object>("list") {
+                @Override
+                public void onObject(Object cookie) {
+                    log.append("item:" + getIntValueOf("a") + ";");
+                }
+            });
+            parser.setTracer(new AFCuteJsonParser.Tracer() {
+                @Override
+                public void onValue(int depth, AFJsonValue value) {
+                    log.append(value.getName()).append('@').append(value.getIndex()).append(';');
+                }
+
+                @Override
+                public void onArrayHandOff(int depth, AFJsonValue array) {
+                }
+
+                @Override
+                public void onAction(int depth, AFJsonAction<?> action) {
+                }
+            });
+            parser.setDebug(Boolean.TRUE);
+
+            assertTrue("Parsing", (streamed ? parser.parse(stream(json)) : parser.parse(json)).success());
+            assertEquals("Dispatch after names", AFJsonValue.ROOT_VALUE_NAME + "@-1;list@-1;0@0;item:1;a@-1;1@1;item:2;a@-1;", log.toString());
+        }
+    }
+
+    private static String write(Object value, int bufferSize) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AFJsonWriter writer = new AFJsonWriter(out, bufferSize);
+        writer.value(value);
+        assertTrue("Complete", writer.isComplete());
+        writer.flush();
+        return new String(out.toByteArray(), "UTF-8");
+    }
+
+    public void testWriterValues() throws Exception {
+        Map<String, Object> map = new LinkedHashMap<String, Object>();
+        map.put("s", "a\"b\\c\n\t\u0001/");
+        map.put("i", Integer.valueOf(-42));
+        map.put("l", Long.valueOf(Long.MIN_VALUE));
+        map.put("d", Double.valueOf(1.5));
+        map.put("n", Double.valueOf(3.0));
+        map.put("b", Boolean.TRUE);
+        map.put("z", null);
+        map.put("a", new Object[] { Integer.valueOf(1), "x", new JSONObject().put("k", JSONObject.NULL) });
+        map.put("e", new ArrayList<Object>());
+
+        final String expected = "{\"s\":\"a\\\"b\\\\c\\n\\t\\u0001/\",\"i\":-42,\"l\":-9223372036854775808,"
+            + "\"d\":1.5,\"n\":3,\"b\":true,\"z\":null,\"a\":[1,\"x\",{\"k\":null}],\"e\":[]}";
+        assertEquals("Written", expected, write(map, 8192));
+        assertEquals("Written with a small buffer", expected, write(map, 1));
+    }
+
+    public void testWriterUtf8() throws Exception {
+        // 2, 3 and 4 bytes chars, then a lone surrogate
+        final String text = "\u00e9\u20ac\ud83d\ude00";
+        final String json = write(text + "\ud83d", 64);
+        assertEquals("Encoded", "\"" + text + "\ufffd\"", json);
+
+        assertEquals("Read back", text + "\ufffd", new JSONTokener(json).nextValue());
+    }
+
+    public void testWriterStructureErrors() throws Exception {
+        AFJsonWriter writer = new AFJsonWriter(new ByteArrayOutputStream());
+        writer.beginObject();
+        try {
+            writer.value(1);
+            fail("Value without name");
+        } catch (JSONException e) {
+            // Expected
+        }
+        writer.name("a");
+        try {
+            writer.endObject();
+            fail("End after name");
+        } catch (JSONException e) {
+            // Expected
+        }
+        writer.beginArray().endArray();
+        try {
+            writer.endArray();
+            fail("End of array in object");
+        } catch (JSONException e) {
+            // Expected
+        }
+        assertTrue("Incomplete", !writer.isComplete());
+        writer.endObject();
+        assertTrue("Complete", writer.isComplete());
+        try {
+            writer.value("b");
+            fail("Second root value");
+        } catch (JSONException e) {
+            // Expected
+        }
+    }
+
+    public void testWriterMapperRoundTrip() throws Exception {
+        AFCuteJsonParser parser = new AFCuteJsonParser();
+        ProductJsonMapper mapper = new ProductJsonMapper(AFJsonValue.ROOT_VALUE_NAME);
+        parser.addAction(mapper);
+        Product product = (Product) parser.parse(PRODUCT).getData();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AFJsonWriter writer = new AFJsonWriter(out, 16);
+        writer.value(product, mapper);
+        writer.flush();
+
+        Product read = (Product) parser.parse(new ByteArrayInputStream(out.toByteArray())).getData();
+        checkProduct(read);
+        assertTrue("Entry of adder not written", out.toString("UTF-8").indexOf("accessories") == -1);
+
+        // Writer reused for another document
+        out.reset();
+        writer.reset(out);
+        writer.value(read.part, mapper);
+        writer.flush();
+        assertEquals("Reused writer", "{\"name\":\"bulb\",\"count\":2,\"id\":0,\"price\":0,\"available\":false,"
+            + "\"part\":null,\"variants\":[]}", out.toString("UTF-8"));
+    }
+
+    public void testJsonEntity() throws Exception {
+        AFCuteJsonParser parser = new AFCuteJsonParser();
+        ProductJsonMapper mapper = new ProductJsonMapper(AFJsonValue.ROOT_VALUE_NAME);
+        parser.addAction(mapper);
+        Product product = (Product) parser.parse(PRODUCT).getData();
+
+        AFJsonEntity entity = new AFJsonEntity(product, mapper);
+        assertTrue("Repeatable", entity.isRepeatable());
+        assertEquals("Unknown length", -1, entity.getContentLength());
+        for (int i = 0; i < 2; ++i) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            entity.writeTo(out);
+            checkProduct((Product) parser.parse(new ByteArrayInputStream(out.toByteArray())).getData());
+        }
+
+        entity = new AFJsonEntity(new AFJsonEntity.Body() {
+            @Override
+            public void write(AFJsonWriter writer) throws IOException, JSONException {
+                writer.beginArray();
+            }
+        });
+        try {
+            entity.writeTo(new ByteArrayOutputStream());
+            fail("Incomplete body");
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+
+    private static ByteBuffer binary(String json) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AFJsonBinaryCache.write(stream(json), out);
+        return ByteBuffer.wrap(out.toByteArray());
+    }
+
+    public void testBinaryCacheSameAsString() throws Exception {
+        StringBuilder tree = new StringBuilder();
+        assertTrue("String parsing", buildParser(tree).parse(DOCUMENT).success());
+
+        // A buffer is parsed several times
+        ByteBuffer data = binary(DOCUMENT);
+        for (int i = 0; i < 2; ++i) {
+            StringBuilder cached = new StringBuilder();
+            AFCuteJsonParserResult r = buildParser(cached).parse(data);
+            assertTrue("Binary parsing", r.success());
+            assertEquals("Same actions as string parsing", tree.toString(), cached.toString());
+        }
+        assertEquals("Position of buffer", 0, data.position());
+
+        // Chars of any size and a lone surrogate are kept
+        StringBuilder log = new StringBuilder();
+        AFCuteJsonParserResult r = buildParser(log).parse(binary("{\"items\":[{\"id\":\"\u0000\u00e7\u20ac\ud83d\ude00\\ud83d\"}]}"));
+        assertTrue("Binary parsing", r.success());
+        assertEquals("Decoded values", "root:null/-1;items;item:\u0000\u00e7\u20ac\ud83d\ude00\ud83d,-1,null;/items;", log.toString());
+    }
+
+    public void testBinaryCacheValues() throws Exception {
+        AFCuteJsonParser parser = new AFCuteJsonParser();
+        parser.addAction(new ProductJsonMapper(AFJsonValue.ROOT_VALUE_NAME));
+        AFCuteJsonParserResult r = parser.parse(binary(PRODUCT));
+        assertTrue("Mapper parsing", r.success());
+        checkProduct((Product) r.getData());
+
+        final String numbers = NUMBERS.replace("}", ",\"huge\":" + HUGE_NUMBER + ",\"min\":-9223372036854775808}");
+        final StringBuilder log = new StringBuilder();
+        assertTrue("Numbers parsing", buildNumbersParser(log, true).parse(binary(numbers)).success());
+        assertEquals("Numbers action", "root;", log.toString());
+
+        // Integers out of the range of the text fast path
+        log.setLength(0);
+        parser = new AFCuteJsonParser();
+        parser.addAction(new AFRootObjectJsonAction<Object>() {
+            @Override
+            public void onObject(Object cookie) {
+                assertEquals("Smallest long", Long.MIN_VALUE, getLongValueOf("min"));
+                assertTrue("Huge as double", getDoubleValueOf("huge") == 1.2345678901234568E23);
+                log.append("root;");
+            }
+        });
+        assertTrue("Numbers parsing", parser.parse(binary(numbers)).success());
+        assertEquals("Numbers action", "root;", log.toString());
+    }
+
+    public void testBinaryCacheFile() throws Exception {
+        File file = File.createTempFile("cache", ".json.bin");
+        try {
+            FileOutputStream out = new FileOutputStream(file);
+            try {
+                AFJsonBinaryCache.write(stream(PRODUCT), out);
+            } finally {
+                out.close();
+            }
+
+            AFCuteJsonParser parser = new AFCuteJsonParser();
+            parser.addAction(new ProductJsonMapper(AFJsonValue.ROOT_VALUE_NAME));
+            AFCuteJsonParserResult r = parser.parse(AFJsonBinaryCache.map(file));
+            assertTrue("Parsing of mapped file", r.success());
+            checkProduct((Product) r.getData());
+
+            // Raw json is not a cache
+            out = new FileOutputStream(file);
+            try {
+                out.write(PRODUCT.getBytes("UTF-8"));
+            } finally {
+                out.close();
+            }
+            try {
+                AFJsonBinaryCache.map(file);
+                fail("Map of json text");
+            } catch (IOException e) {
+                // Expected
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    public void testBinaryCacheErrors() throws Exception {
+        try {
+            binary("{\"a\":[1,]}");
+            fail("Write of invalid json");
+        } catch (JSONException e) {
+            // Expected
+        }
+
+        ByteBuffer data = binary(DOCUMENT);
+        data.limit(data.limit() - 3);
+        assertTrue("Truncated data", buildParser(new StringBuilder()).parse(data).failed());
+
+        // Tag of the first name after the header and the root length
+        data = binary(DOCUMENT);
+        data.put(10, (byte) 42);
+        assertTrue("Invalid tag", buildParser(new StringBuilder()).parse(data).failed());
+
+        data = binary(DOCUMENT);
+        data.put(9, (byte) (data.get(9) - 1));
+        assertTrue("Invalid container length", buildParser(new StringBuilder()).parse(data).failed());
+
+        // Root string whose length does not fit in a long
+        ByteBuffer text = binary("\"abc\"");
+        data = ByteBuffer.allocate(text.limit() + 9);
+        data.put(text.array(), 0, 6);
+        for (int i = 0; i < 9; ++i)
+            data.put((byte) 0xFF);
+        data.put((byte) 0x01).put(text.array(), 7, 3).flip();
+        assertTrue("Negative text length", new AFCuteJsonParser().parse(data).failed());
+
+        data = ByteBuffer.wrap(DOCUMENT.getBytes("UTF-8"));
+        assertTrue("Json text", buildParser(new StringBuilder()).parse(data).failed());
+    }
+
+}
@@ -0,0 +1,1373 @@
+package com.android.aft.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import android.test.AndroidTestCase;
+
+import com.android.aft.AFCuteXmlParser.AFCuteXmlParser;
+import com.android.aft.AFCuteXmlParser.AFCuteXmlParserContext;
+import com.android.aft.AFCuteXmlParser.AFCuteXmlParserResult;
+import com.android.aft.AFCuteXmlParser.AFLowXmlParser;
+import com.android.aft.AFCuteXmlParser.AFLowXmlParsers;
+import com.android.aft.AFCuteXmlParser.AFNodeAction;
+import com.android.aft.AFCuteXmlParser.AFNodeActionAtDepth;
+import com.android.aft.AFCuteXmlParser.AFNodeActionPath;
+import com.android.aft.AFCuteXmlParser.AFNodeActionSonOf;
+import com.android.aft.AFCuteXmlParser.AFNodeActionSonOfAtDepth;
+import com.android.aft.AFCuteXmlParser.AFNodeActionUnderNodeAtRelativeDepth;
+import com.android.aft.AFCuteXmlParser.AFXmlCursor;
+import com.android.aft.AFCuteXmlParser.AFXmlPushSession;
+import com.android.aft.AFCuteXmlParser.AFXmlSymbolTable;
+import com.android.aft.AFCuteXmlParser.AFXmlTag;
+import com.android.aft.AFCuteXmlParser.Binding.AFXmlAttribute;
+import com.android.aft.AFCuteXmlParser.Binding.AFXmlContent;
+import com.android.aft.AFCuteXmlParser.Binding.AFXmlElement;
+import com.android.aft.AFCuteXmlParser.Binding.AFXmlNode;
+import com.android.aft.AFCuteXmlParser.LowParser.Binary.AFXmlBinaryCache;
+import com.android.aft.AFCuteXmlParser.LowParser.Fast.AFFastLowXmlParser;
+
+public class AFCuteXmlParserTestCase extends AndroidTestCase {
+
+    private static final int DEEP_NESTING = 100000;
+
+    private AFLowXmlParser mDefaultParser;
+
+    // Parse the binary cache of data instead of data
+    private boolean mBinaryCache;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mDefaultParser = AFCuteXmlParser.parser;
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        AFCuteXmlParser.parser = mDefaultParser;
+        super.tearDown();
+    }
+
+    private static ByteBuffer binary(InputStream xml) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AFXmlBinaryCache.write(xml, out);
+        return ByteBuffer.wrap(out.toByteArray());
+    }
+
+    private AFCuteXmlParserResult parse(AFCuteXmlParser parser, InputStream xml) {
+        if (!mBinaryCache)
+            return parser.parse(xml);
+
+        try {
+            return parser.parse(binary(xml));
+        } catch (IOException e) {
+            fail("Binary cache: " + e);
+            return null;
+        }
+    }
+
+    private AFCuteXmlParserResult parse(AFCuteXmlParser parser, String xml) {
+        if (!mBinaryCache)
+            return parser.parse(xml);
+
+        try {
+            return parse(parser, new ByteArrayInputStream(xml.getBytes("UTF-8")));
+        } catch (IOException e) {
+            fail("Binary cache: " + e);
+            return null;
+        }
+    }
+
+    private static String buildDeepXml(int depth) {
+        StringBuilder sb = new StringBuilder(depth * 9 + 64);
+        sb.append("<root>");
+        for (int i = 0; i < depth; ++i)
+            sb.append("<n>");
+        sb.append("<leaf id=\"42\">value</leaf>");
+        for (int i = 0; i < depth; ++i)
+            sb.append("</n>");
+        sb.append("<after/></root>");
+        return sb.toString();
+    }
+
+    private static class LeafAction extends AFNodeActionAtDepth<Object> {
+        int mCount;
+        int mId;
+        String mContent;
+
+        LeafAction(int depth) {
+            super("leaf", depth);
+        }
+
+        @Override
+        public void onNode(Object cookie) {
+            ++mCount;
+            mId = getIntAttribute("id");
+            mContent = read_content();
+        }
+    }
+
+    private static class CountAction extends AFNodeAction<Object> {
+        int mCount;
+
+        CountAction(String nodeName) {
+            super(nodeName);
+        }
+
+        @Override
+        public void onNode(Object cookie) {
+            ++mCount;
+        }
+    }
+
+    private void checkDeepNesting() {
+        // <root> is at depth 1, the leaf is under all <n> nodes
+        LeafAction leaf = new LeafAction(DEEP_NESTING + 2);
+        CountAction after = new CountAction("after");
+
+        AFCuteXmlParser parser = new AFCuteXmlParser();
+        parser.addNodeAction(leaf);
+        parser.addNodeAction(after);
+
+        AFCuteXmlParserResult result = parse(parser, buildDeepXml(DEEP_NESTING));
+        assertTrue("Parsing status", result.status());
+        assertEquals("Leaf found once", 1, leaf.mCount);
+        assertEquals("Leaf attribute", 42, leaf.mId);
+        assertEquals("Leaf content", "value", leaf.mContent);
+        assertEquals("Node after the deep nodes", 1, after.mCount);
+    }
+
+    private void checkDeepNestingUnderAction() {
+        // Action reading its children itself, nodes under it must not use the java stack
+        CountAction root = new CountAction("root") {
+            @Override
+            public void onNode(Object cookie) {
+                super.onNode(cookie);
+                read_children();
+            }
+        };
+        LeafAction leaf = new LeafAction(DEEP_NESTING + 2);
+
+        AFCuteXmlParser parser = new AFCuteXmlParser();
+        parser.addNodeAction(root);
+        parser.addNodeAction(leaf);
+
+        AFCuteXmlParserResult result = parse(parser, buildDeepXml(DEEP_NESTING));
+        assertTrue("Parsing status", result.status());
+        assertEquals("Root found once", 1, root.mCount);
+        assertEquals("Leaf found once", 1, leaf.mCount);
+    }
+
+    // Nested actions calling read_children use the java stack of the parsing thread
+    private static final int RECURSIVE_NESTING = 10000;
+    private static final long RECURSIVE_STACK_SIZE = 16 * 1024 * 1024;
+
+    private void checkDeepNestingRecursingActions() throws Throwable {
+        final CountAction node = new CountAction("n") {
+            @Override
+            public void onNode(Object cookie) {
+                super.onNode(cookie);
+                read_children();
+            }
+        };
+        final LeafAction leaf = new LeafAction(RECURSIVE_NESTING + 2);
+
+        final AFCuteXmlParser parser = new AFCuteXmlParser();
+        parser.addNodeAction(node);
+        parser.addNodeAction(leaf);
+
+        final AFCuteXmlParserResult[] result = new AFCuteXmlParserResult[1];
+        final Throwable[] error = new Throwable[1];
+        Thread thread = new Thread(null, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    result[0] = parse(parser, buildDeepXml(RECURSIVE_NESTING));
+                } catch (Throwable e) {
+                    error[0] = e;
+                }
+            }
+        }, "DeepParsing", RECURSIVE_STACK_SIZE);
+        thread.start();
+        thread.join();
+
+        if (error[0] != null)
+            throw error[0];
+        assertTrue("Parsing status", result[0].status());
+        assertEquals("Nested actions", RECURSIVE_NESTING, node.mCount);
+        assertEquals("Leaf found once", 1, leaf.mCount);
+        assertEquals("Leaf content", "value", leaf.mContent);
+    }
+
+    private static final String SKIP_XML =
+        "<root>"
+        + "<skipped a=\"x>y\" b='/>'><deep><!-- <item/> --><![CDATA[</skipped>]]><x/><item id=\"9\"/></deep></skipped>"
+        + "<item id=\"1\"/>"
+        + "<list><item id=\"2\">text</item></list>"
+        + "<item id=\"3\"><sub><item id=\"4\"/></sub></item>"
+        + "</root>";
+
+    private static class ItemAtDepthAction extends AFNodeActionAtDepth<Object> {
+        StringBuilder mIds = new StringBuilder();
+
+        ItemAtDepthAction(int depth) {
+            super("item", depth);
+        }
+
+        @Override
+        public void onNode(Object cookie) {
+            mIds.append(getIntAttribute("id"));
+        }
+    }
+
+    private void checkSkipUnmatchedChildren() {
+        // Only <item> nodes under <root> can match
+        ItemAtDepthAction item = new ItemAtDepthAction(2);
+
+        AFCuteXmlParser parser = new AFCuteXmlParser();
+        parser.addNodeAction(item);
+
+        AFCuteXmlParserResult result = parse(parser, SKIP_XML);
+        assertTrue("Parsing status", result.status());
+        assertEquals("Items under root", "13", item.mIds.toString());
+    }
+
+    private void checkConsumeChildren() {
+        CountAction list = new CountAction("list") {
+            @Override
+            public void onNode(Object cookie) {
+                super.onNode(cookie);
+                consume_children();
+            }
+        };
+        ItemAtDepthAction item = new ItemAtDepthAction(3);
+
+        AFCuteXmlParser parser = new AFCuteXmlParser();
+        parser.addNodeAction(list);
+        parser.addNodeAction(item);
+
+        AFCuteXmlParserResult result = parse(parser, SKIP_XML);
+        assertTrue("Parsing status", result.status());
+        assertEquals("List found once", 1, list.mCount);
+        assertEquals("Items under list are consumed", "", item.mIds.toString());
+    }
+
+    public void testSkipDefaultParser() {
+        checkSkipUnmatchedChildren();
+        checkConsumeChildren();
+    }
+
+    public void testSkipFastParser() {
+        AFCuteXmlParser.parser = new AFFastLowXmlParser();
+        checkSkipUnmatchedChildren();
+        checkConsumeChildren();
+    }
+
+    private static final String DISPATCH_XML =
+        "<root>"
+        + "<a><v>1</v></a>"
+        + "<b><v>2</v></b>"
+        + "<c><d><v>3</v></d></c>"
+        + "<v special=\"yes\">4</v>"
+        + "<v>5</v>"
+        + "</root>";
+
+    private void checkActionDispatch() {
+        final StringBuilder calls = new StringBuilder();
+
+        AFCuteXmlParser parser = new AFCuteXmlParser();
+        parser.addNodeAction(new AFNodeActionSonOf<Object>("v", "a") {
+            @Override
+            public void onNode(Object cookie) {
+                calls.append("sonOf:").append(read_content()).append(' ');
+            }
+        });
+        parser.addNodeAction(new AFNodeActionSonOfAtDepth<Object>("v", 3, "b") {
+            @Override
+            public void onNode(Object cookie) {
+                calls.append("sonOfAtDepth:").append(read_content()).append(' ');
+            }
+        });
+        parser.addNodeAction(new AFNodeActionUnderNodeAtRelativeDepth<Object>("v", "c", 2) {
+            @Override
+            public void onNode(Object cookie) {
+                calls.append("under:").append(read_content()).append(' ');
+            }
+        });
+        parser.addNodeAction(new AFNodeAction<Object>("v") {
+            @Override
+            public boolean isCorrectNode(AFCuteXmlParserContext context) {
+                return super.isCorrectNode(context) && context.getCurrent().hasAttribute("special");
+            }
+
+            @Override
+            public void onNode(Object cookie) {
+                calls.append("custom:").append(read_content()).append(' ');
+            }
+        });
+        parser.addNodeAction(new AFNodeAction<Object>("v") {
+            @Override
+            public void onNode(Object cookie) {
+                calls.append("any:").append(read_content()).append(' ');
+            }
+        });
+
+        // Parse twice with the same parser
+        for (int i = 0; i < 2; ++i) {
+            calls.setLength(0);
+            AFCuteXmlParserResult result = parse(parser, DISPATCH_XML);
+            assertTrue("Parsing status", result.status());
+            assertEquals("Called actions", "sonOf:1 sonOfAtDepth:2 under:3 custom:4 any:5 ", calls.toString());
+        }
+    }
+
+    private static final String LATE_ACTION_XML = "<other><item/><late/><end/></other>";
+
+    private void checkActionAddedDuringParsing() {
+        final CountAction late = new CountAction("late");
+        final int[] ids = new int[2];
+
+        AFCuteXmlParser parser = new AFCuteXmlParser();
+        parser.addNodeAction(new AFNodeAction<Object>("item") {
+            @Override
+            public void onNode(Object cookie) {
+                if (late.getParser() == null)
+                    getParser().addNodeAction(late);
+            }
+        });
+        parser.addNodeAction(new AFNodeAction<Object>("end") {
+            @Override
+            public void onNode(Object cookie) {
+                AFXmlSymbolTable symbols = getContext().getSymbolTable();
+                ids[0] = symbols.getId("other");
+                ids[1] = symbols.getId("late");
+            }
+        });
+
+        // The name of the new action gets the next id of the parser table,
+        // it must not be the id of a name already seen by the parsing
+        AFCuteXmlParserResult result = parse(parser, LATE_ACTION_XML);
+        assertTrue("Parsing status", result.status());
+        assertEquals("Action added during parsing not called", 0, late.mCount);
+        assertTrue("Distinct ids: " + ids[0] + " " + ids[1], ids[0] != ids[1]);
+
+        result = parse(parser, LATE_ACTION_XML);
+        assertTrue("Parsing status", result.status());
+        assertEquals("Action called by next parsing", 1, late.mCount);
+        assertTrue("Distinct ids: " + ids[0] + " " + ids[1], ids[0] != ids[1]);
+    }
+
+    public void testActionDispatchDefaultParser() {
+        checkActionDispatch();
+        checkActionAddedDuringParsing();
+    }
+
+    public void testActionDispatchFastParser() {
+        AFCuteXmlParser.parser = new AFFastLowXmlParser();
+        checkActionDispatch();
+        checkActionAddedDuringParsing();
+    }
+
+    // Text with 2, 3 and 4 bytes UTF-8 chars
+    private static final String ENCODING_TEXT = "caf\u00e9 \u4e2d \ud83d\ude00";
+
+    private static class TextAction extends AFNodeAction<Object> {
+        String mName;
+        String mContent;
+
+        TextAction() {
+            super("text");
+        }
+
+        @Override
+        public void onNode(Object cookie) {
+            mName = getStringAttribute("name");
+            mContent = read_content();
+        }
+    }
+
+    private static String buildEncodingXml(String encoding) {
+        StringBuilder sb = new StringBuilder();
+        if (encoding != null)
+            sb.append("<?xml version=\"1.0\" encoding=\"").append(encoding).append("\"?>");
+        sb.append("<root><text name=\"").append(ENCODING_TEXT).append("\">");
+
+        // Several window sizes of content
+        for (int i = 0; i < 3000; ++i)
+            sb.append(ENCODING_TEXT);
+        sb.append("</text></root>");
+        return sb.toString();
+    }
+
+    private static String expectedContent() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 3000; ++i)
+            sb.append(ENCODING_TEXT);
+        return sb.toString();
+    }
+
+    private void checkParse(String message, InputStream xml, String name, String content) {
+        TextAction text = new TextAction();
+        AFCuteXmlParser parser = new AFCuteXmlParser();
+        parser.addNodeAction(text);
+
+        AFCuteXmlParserResult result = parse(parser, xml);
+        assertTrue(message + " parsing status", result.status());
+        assertEquals(message + " attribute", name, text.mName);
+        assertEquals(message + " content", content, text.mContent);
+    }
+
+    private static InputStream concat(byte[] head, byte[] data) {
+        byte[] b = new byte[head.length + data.length];
+        System.arraycopy(head, 0, b, 0, head.length);
+        System.arraycopy(data, 0, b, head.length, data.length);
+        return new ByteArrayInputStream(b);
+    }
+
+    private void checkEncodings() throws Exception {
+        final String content = expectedContent();
+
+        // Default UTF-8
+        checkParse("UTF-8", new ByteArrayInputStream(buildEncodingXml(null).getBytes("UTF-8")), ENCODING_TEXT, content);
+
+        // UTF-8 with byte order mark
+        checkParse("UTF-8 BOM", concat(new byte[] { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF }, buildEncodingXml("UTF-8").getBytes("UTF-8")),
+                   ENCODING_TEXT, content);
+
+        // UTF-16 with byte order mark
+        checkParse("UTF-16LE BOM", concat(new byte[] { (byte) 0xFF, (byte) 0xFE }, buildEncodingXml(null).getBytes("UTF-16LE")),
+                   ENCODING_TEXT, content);
+
+        // ISO-8859-1 declared in prolog
+        String latin1 = "caf\u00e9 \u00e0 \u00ff";
+        String xml = "<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?><root><text name=\"" + latin1 + "\">" + latin1 + "</text></root>";
+        checkParse("ISO-8859-1", new ByteArrayInputStream(xml.getBytes("ISO-8859-1")), latin1, latin1);
+
+        // String
+        TextAction text = new TextAction();
+        AFCuteXmlParser parser = new AFCuteXmlParser();
+        parser.addNodeAction(text);
+
+        AFCuteXmlParserResult result = parse(parser, buildEncodingXml(null));
+        assertTrue("String parsing status", result.status());
+        assertEquals("String attribute", ENCODING_TEXT, text.mName);
+        assertEquals("String content", content, text.mContent);
+    }
+
+    public void testEncodingsDefaultParser() throws Exception {
+        checkEncodings();
+    }
+
+    private static class CloseCheckStream extends ByteArrayInputStream {
+        boolean mClosed;
+
+        CloseCheckStream(byte[] data) {
+            super(data);
+        }
+
+        @Override
+        public void close() throws IOException {
+            mClosed = true;
+            super.close();
+        }
+    }
+
+    private void checkNotClosed(String message, CloseCheckStream xml) {
+        // Several root nodes, so the data are read up to their end
+        AFCuteXmlParser parser = new AFCuteXmlParser() {
+            @Override
+            protected void start(AFCuteXmlParserContext ctx) {
+                ctx.setAcceptSeveralNodeOnRoot(true);
+            }
+        };
+        parser.addNodeAction(new TextAction());
+
+        AFCuteXmlParserResult result = parse(parser, xml);
+        assertTrue(message + " parsing status", result.status());
+        assertFalse(message + " not closed", xml.mClosed);
+    }
+
+    public void testEncodingsFastParser() throws Exception {
+        AFCuteXmlParser.parser = new AFFastLowXmlParser();
+        checkEncodings();
+
+        // The stream is closed by the caller, not at end of data
+        final String xml = "<text name=\"n\">" + ENCODING_TEXT + "</text><text name=\"m\"/>";
+        checkNotClosed("UTF-8 stream", new CloseCheckStream(xml.getBytes("UTF-8")));
+        checkNotClosed("UTF-16 stream", new CloseCheckStream(("\uFEFF" + xml).getBytes("UTF-16LE")));
+    }
+
+    private static final int STREAM_ITEMS = 20000;
+
+    private static class Product {
+        int mId;
+        String mName;
+    }
+
+    private static class ProductParser extends AFCuteXmlParser {
+        int mCatalogCount;
+
+        ProductParser() {
+            addNodeAction(new AFNodeAction<Object>("catalog") {
+                @Override
+                public void onNode(Object cookie) {
+                    ++mCatalogCount;
+                }
+            });
+
+            addNodeAction(new AFNodeAction<Object>("product") {
+                @Override
+                public void onNode(Object cookie) {
+                    Product product = new Product();
+                    product.mId = getIntAttribute("id");
+                    read_children(product);
+                    setResultData(product);
+                }
+            });
+
+            addNodeAction(new AFNodeActionSonOf<Product>("name", "product") {
+                @Override
+                public void onNode(Product product) {
+                    product.mName = read_content();
+                }
+            });
+        }
+    }
+
+    private static byte[] buildCatalog() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<?xml version=\"1.0\"?><catalog><info><name>catalog</name></info><products>");
+        for (int i = 0; i < STREAM_ITEMS; ++i)
+            sb.append("<product id=\"").append(i).append("\"><name>p").append(i).append("</name><price>1</price></product>");
+        sb.append("</products></catalog>");
+        return sb.toString().getBytes("UTF-8");
+    }
+
+    private static class CountingInputStream extends ByteArrayInputStream {
+        CountingInputStream(byte[] data) {
+            super(data);
+        }
+
+        int getReadCount() {
+            return pos;
+        }
+    }
+
+    private void checkStream() throws IOException {
+        final byte[] data = buildCatalog();
+        CountingInputStream in = new CountingInputStream(data);
+
+        ProductParser parser = new ProductParser();
+        AFXmlCursor<Product> products = parser.stream(in, "product");
+
+        assertTrue("First product", products.hasNext());
+        Product first = products.next();
+        assertEquals("First product id", 0, first.mId);
+        assertEquals("First product name", "p0", first.mName);
+        assertTrue("Data are read while streaming", in.getReadCount() < data.length / 2);
+
+        int count = 1;
+        while (products.hasNext()) {
+            Product p = products.next();
+            assertEquals("Product id", count, p.mId);
+            assertEquals("Product name", "p" + count, p.mName);
+            ++count;
+        }
+
+        assertEquals("Product count", STREAM_ITEMS, count);
+        assertTrue("Stream status", products.getResult().status());
+        assertEquals("Actions outside streamed nodes are not called", 0, parser.mCatalogCount);
+    }
+
+    private void checkStreamClose() throws IOException {
+        ProductParser parser = new ProductParser();
+        AFXmlCursor<Product> products = parser.stream(new ByteArrayInputStream(buildCatalog()), "product");
+
+        assertEquals("First product id", 0, products.next().mId);
+        products.close();
+        assertFalse("No product after close", products.hasNext());
+    }
+
+    public void testStreamDefaultParser() throws IOException {
+        checkStream();
+        checkStreamClose();
+    }
+
+    public void testStreamFastParser() throws IOException {
+        AFCuteXmlParser.parser = new AFFastLowXmlParser();
+        checkStream();
+        checkStreamClose();
+    }
+
+    private static class RecordParser extends AFCuteXmlParser {
+        RecordParser() {
+            // Records are children of <catalog>
+            addNodeAction(new AFNodeActionSonOf<List<Product>>("product", "catalog") {
+                @Override
+                public void onNode(List<Product> products) {
+                    Product product = new Product();
+                    product.mId = getIntAttribute("id");
+                    read_children(product);
+                    products.add(product);
+                }
+            });
+
+            addNodeAction(new AFNodeActionAtDepth<Product>("name", 3) {
+                @Override
+                public void onNode(Product product) {
+                    product.mName = read_content();
+                }
+            });
+        }
+    }
+
+    private void checkParallel() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<!-- products --><catalog version=\"2\">");
+        for (int i = 0; i < STREAM_ITEMS; ++i) {
+            sb.append("\n<product id=\"").append(i).append("\" note='a > b'><name>p\u00e9").append(i).append("</name>");
+            if (i % 100 == 0)
+                sb.append("<!-- comment --><![CDATA[ <x> ]]>");
+            sb.append("</product>");
+        }
+        sb.append("\n</catalog>");
+        byte[] data = sb.toString().getBytes("UTF-8");
+
+        AFCuteXmlParserResult result = new RecordParser().parseParallel(data, "product", 4,
+            new AFCuteXmlParser.ChunkCookieFactory<List<Product>>() {
+                @Override
+                public List<Product> createCookie(int chunk) {
+                    return new ArrayList<Product>();
+                }
+            },
+            new AFCuteXmlParser.ChunkCombiner<List<Product>, List<Product>>() {
+                @Override
+                public List<Product> combine(List<List<Product>> cookies) {
+                    List<Product> products = new ArrayList<Product>();
+                    for (List<Product> chunk : cookies)
+                        products.addAll(chunk);
+                    return products;
+                }
+            });
+
+        assertTrue("Parallel parsing status", result.status());
+
+        @SuppressWarnings("unchecked")
+        List<Product> products = (List<Product>) result.getData();
+        assertEquals("Product count", STREAM_ITEMS, products.size());
+        for (int i = 0; i < STREAM_ITEMS; ++i) {
+            assertEquals("Product id in document order", i, products.get(i).mId);
+            assertEquals("Product name", "p\u00e9" + i, products.get(i).mName);
+        }
+    }
+
+    public void testParallelDefaultParser() throws IOException {
+        checkParallel();
+    }
+
+    public void testParallelFastParser() throws IOException {
+        AFCuteXmlParser.parser = new AFFastLowXmlParser();
+        checkParallel();
+    }
+
+    //
+    // Content accessors
+    //
+
+    private static class Values {
+        int mInt;
+        long mLong;
+        double mDouble;
+        double mExp;
+        boolean mBoolean;
+        boolean mMissing = true;
+        int mBadInt;
+        String mText;
+        String mView;
+        String mEmpty;
+        int mEmptyInt;
+    }
+
+    private static class ValuesParser extends AFCuteXmlParser {
+        final Values mValues = new Values();
+
+        ValuesParser() {
+            addNodeAction(new AFNodeAction<Object>("int") {
+                @Override
+                public void onNode(Object cookie) {
+                    mValues.mInt = readIntContent();
+                }
+            });
+            addNodeAction(new AFNodeAction<Object>("long") {
+                @Override
+                public void onNode(Object cookie) {
+                    mValues.mLong = readLongContent();
+                }
+            });
+            addNodeAction(new AFNodeAction<Object>("double") {
+                @Override
+                public void onNode(Object cookie) {
+                    mValues.mDouble = readDoubleContent();
+                }
+            });
+            addNodeAction(new AFNodeAction<Object>("exp") {
+                @Override
+                public void onNode(Object cookie) {
+                    mValues.mExp = readDoubleContent();
+                }
+            });
+            addNodeAction(new AFNodeAction<Object>("bool") {
+                @Override
+                public void onNode(Object cookie) {
+                    mValues.mBoolean = readBooleanContent();
+                }
+            });
+            addNodeAction(new AFNodeAction<Object>("missing") {
+                @Override
+                public void onNode(Object cookie) {
+                    mValues.mMissing = readBooleanContent(true);
+                }
+            });
+            addNodeAction(new AFNodeAction<Object>("bad") {
+                @Override
+                public void onNode(Object cookie) {
+                    mValues.mBadInt = readIntContent(7);
+                }
+            });
+            addNodeAction(new AFNodeAction<Object>("text") {
+                @Override
+                public void onNode(Object cookie) {
+                    mValues.mText = read_content();
+                }
+            });
+            addNodeAction(new AFNodeAction<Object>("view") {
+                @Override
+                public void onNode(Object cookie) {
+                    mValues.mView = read_content_view().toString();
+                }
+            });
+            addNodeAction(new AFNodeAction<Object>("empty") {
+                @Override
+                public void onNode(Object cookie) {
+                    mValues.mEmpty = read_content();
+                }
+            });
+            addNodeAction(new AFNodeAction<Object>("emptyint") {
+                @Override
+                public void onNode(Object cookie) {
+                    mValues.mEmptyInt = readIntContent(3);
+                }
+            });
+        }
+    }
+
+    private static final String CONTENT_XML =
+        "<values>" +
+        "<int> -2147483648 </int>" +
+        "<long>9223372036854775807</long>" +
+        "<double>\n  -12.50\n</double>" +
+        "<exp>1.25e-3</exp>" +
+        "<bool>yes</bool>" +
+        "<missing></missing>" +
+        "<bad>12a</bad>" +
+        "<text>a b</text>" +
+        "<view>x y</view>" +
+        "<empty/>tail" +
+        "<emptyint />5" +
+        "</values>";
+
+    // Text split by an entity, a comment and a CDATA section
+    private static final String CONTENT_MARKUP_XML =
+        "<values>" +
+        "<text>a &amp; b<!-- c --><![CDATA[ <d> ]]></text>" +
+        "<view>x &lt; y<![CDATA[!]]></view>" +
+        "</values>";
+
+    // Char references out of range, the decimal one overflows an int to 'A'
+    private static final String CONTENT_CHAR_REF_XML =
+        "<values><text>&#x80000000;&#4294967361;&#x41;</text></values>";
+
+    private void checkContent() {
+        ValuesParser parser = new ValuesParser();
+        AFCuteXmlParserResult result = parse(parser, CONTENT_XML);
+        assertTrue("Parsing status", result.status());
+
+        Values values = parser.mValues;
+        assertEquals("Int content", Integer.MIN_VALUE, values.mInt);
+        assertEquals("Long content", Long.MAX_VALUE, values.mLong);
+        assertEquals("Double content", -12.5, values.mDouble);
+        assertEquals("Double content with exponent", 1.25e-3, values.mExp);
+        assertTrue("Boolean content", values.mBoolean);
+        assertTrue("Empty boolean content", values.mMissing);
+        assertEquals("Invalid int content", 7, values.mBadInt);
+        assertEquals("Text content", "a b", values.mText);
+        assertEquals("Content view", "x y", values.mView);
+        assertEquals("No content in self-closing tag", "", values.mEmpty);
+        assertEquals("No int content in self-closing tag", 3, values.mEmptyInt);
+    }
+
+    private void checkContentMarkup() {
+        ValuesParser parser = new ValuesParser();
+        AFCuteXmlParserResult result = parse(parser, CONTENT_MARKUP_XML);
+        assertTrue("Parsing status", result.status());
+
+        assertEquals("Text content", "a & b <d> ", parser.mValues.mText);
+        assertEquals("Content view", "x < y!", parser.mValues.mView);
+
+        parser = new ValuesParser();
+        result = parse(parser, CONTENT_CHAR_REF_XML);
+        assertTrue("Parsing status", result.status());
+        assertEquals("Invalid char references", "&#x80000000;&#4294967361;A", parser.mValues.mText);
+    }
+
+    public void testContentDefaultParser() {
+        checkContent();
+    }
+
+    public void testContentFastParser() {
+        AFCuteXmlParser.parser = new AFFastLowXmlParser();
+        checkContent();
+        checkContentMarkup();
+    }
+
+    //
+    // Generated binding
+    //
+
+    // Parsed by the CatalogXmlParser generated by the binding processor
+    @AFXmlNode("catalog")
+    public static class Catalog {
+        @AFXmlAttribute("name")
+        public String name;
+        @AFXmlAttribute("count")
+        public int count = -1;
+        @AFXmlElement("title")
+        public String title;
+        @AFXmlElement
+        public List<Item> items = new ArrayList<Item>();
+
+        // Only the labels of bundles are kept
+        @AFXmlElement(value = "bundle", adder = "addBundle")
+        public List<Item> bundles;
+        public final List<String> bundleLabels = new ArrayList<String>();
+
+        public void addBundle(Item bundle) {
+            bundleLabels.add(bundle.label);
+        }
+    }
+
+    @AFXmlNode("item")
+    public static class Item {
+        @AFXmlAttribute("id")
+        public long id;
+        @AFXmlAttribute("price")
+        public double price;
+        @AFXmlAttribute("available")
+        public boolean available;
+        @AFXmlContent
+        public String label;
+    }
+
+    private static final String CATALOG_XML =
+        "<catalog name=\"shop\" count=\"2\">" +
+        "<title>Lamps</title>" +
+        "<item id=\"12345678901\" price=\"19.5\" available=\"true\">lamp</item>" +
+        "<other><item id=\"3\">skipped</item></other>" +
+        "<item id=\"2\" price=\"x\">bulb</item>" +
+        "<bundle id=\"4\">pack</bundle>" +
+        "</catalog>";
+
+    private void checkBinding() {
+        AFCuteXmlParserResult result = parse(new CatalogXmlParser(), CATALOG_XML);
+        assertTrue("Parsing status", result.status());
+
+        Catalog catalog = (Catalog) result.getData();
+        assertEquals("String attribute", "shop", catalog.name);
+        assertEquals("Int attribute", 2, catalog.count);
+        assertEquals("Value element", "Lamps", catalog.title);
+        assertEquals("Collection element", 2, catalog.items.size());
+
+        Item item = catalog.items.get(0);
+        assertEquals("Long attribute", 12345678901L, item.id);
+        assertEquals("Double attribute", 19.5, item.price);
+        assertTrue("Boolean attribute", item.available);
+        assertEquals("Content", "lamp", item.label);
+
+        item = catalog.items.get(1);
+        assertEquals("Content of second item", "bulb", item.label);
+        assertEquals("Default kept on invalid number", 0.0, item.price);
+        assertFalse("Default kept on missing attribute", item.available);
+
+        assertEquals("Adder", "[pack]", catalog.bundleLabels.toString());
+        assertNull("Field of adder not set", catalog.bundles);
+    }
+
+    public void testBindingDefaultParser() {
+        checkBinding();
+    }
+
+    public void testBindingFastParser() {
+        AFCuteXmlParser.parser = new AFFastLowXmlParser();
+        checkBinding();
+    }
+
+    //
+    // Push parsing
+    //
+
+    private static class PushParser extends AFCuteXmlParser {
+        final List<Product> mProducts = new ArrayList<Product>();
+
+        PushParser() {
+            addNodeAction(new AFNodeAction<Object>("product") {
+                @Override
+                public void onNode(Object cookie) {
+                    Product product = new Product();
+                    product.mId = getIntAttribute("id");
+                    read_children(product);
+                    mProducts.add(product);
+                }
+            });
+
+            addNodeAction(new AFNodeActionSonOf<Product>("name", "product") {
+                @Override
+                public void onNode(Product product) {
+                    product.mName = read_content();
+                }
+            });
+        }
+    }
+
+    // Multi bytes chars, markup in comments, CDATA and attribute values
+    private static final String PUSH_NAME = "n\u00e9\u20ac\ud83d\ude00";
+
+    private static String buildPushXml(String encoding, int count) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<?xml version=\"1.0\" encoding=\"").append(encoding).append("\"?>\n");
+        sb.append("<!DOCTYPE catalog [ <!ENTITY x \"<product>\"> ]><catalog>");
+        for (int i = 0; i < count; ++i) {
+            sb.append("<product id=\"").append(i).append("\" note='a > b'><!-- <product id=\"-1\"> -->");
+            sb.append("<name>").append(PUSH_NAME).append(i).append("</name>");
+            sb.append("<![CDATA[ </product> ]]><other/></product>\n");
+        }
+        sb.append("</catalog>");
+        return sb.toString();
+    }
+
+    private void checkPush(byte[] data, int chunkSize, String name, int count) {
+        PushParser parser = new PushParser();
+        AFXmlPushSession session = parser.push();
+
+        for (int off = 0; off < data.length; off += chunkSize) {
+            assertTrue("Feed status", session.feed(data, off, Math.min(chunkSize, data.length - off)));
+
+            // Actions are called as soon as their node is received
+            if (off > data.length / 2 && off + chunkSize < data.length)
+                assertTrue("Products parsed before the end of data", parser.mProducts.size() > count / 4);
+        }
+
+        AFCuteXmlParserResult result = session.finish();
+        assertTrue("Push parsing status", result.status());
+        assertEquals("Product count", count, parser.mProducts.size());
+        for (int i = 0; i < count; ++i) {
+            assertEquals("Product id", i, parser.mProducts.get(i).mId);
+            assertEquals("Product name", name + i, parser.mProducts.get(i).mName);
+        }
+    }
+
+    public void testPush() throws IOException {
+        final int count = 200;
+        final byte[] utf8 = buildPushXml("UTF-8", count).getBytes("UTF-8");
+        for (int chunkSize : new int[] { 1, 2, 3, 7, 100, 4096, utf8.length })
+            checkPush(utf8, chunkSize, PUSH_NAME, count);
+
+        // One byte charset
+        final byte[] latin1 = buildPushXml("ISO-8859-1", count).getBytes("ISO-8859-1");
+        checkPush(latin1, 5, "n\u00e9??", count);
+    }
+
+    public void testPushError() throws IOException {
+        PushParser parser = new PushParser();
+        AFXmlPushSession session = parser.push();
+        session.feed("<catalog><product id=\"1\"".getBytes("UTF-8"));
+        assertFalse("Truncated tag", session.finish().status());
+    }
+
+    // Action on the start tag of the root node, each item is read as soon as it is received
+    private static class PushItemParser extends AFCuteXmlParser {
+        final List<String> mItems = new ArrayList<String>();
+        String mName;
+
+        PushItemParser() {
+            addNodeAction(new AFNodeAction<Object>("list") {
+                @Override
+                public boolean isStartTagAction() {
+                    return true;
+                }
+
+                @Override
+                public void onNode(Object cookie) {
+                    mName = getStringAttribute("name");
+                    getContext().setCookie(mItems);
+                }
+            });
+            addNodeAction(new AFNodeAction<List<String>>("item") {
+                @Override
+                public void onNode(List<String> items) {
+                    // Children are skipped
+                    items.add(mName + getStringAttribute("id"));
+                }
+            });
+        }
+    }
+
+    public void testPushActionBeforeFinish() throws IOException {
+        final int count = 200;
+        StringBuilder sb = new StringBuilder("<list name=\"l\">");
+        for (int i = 0; i < count; ++i)
+            sb.append("<item id=\"").append(i).append("\"><a><b>skipped</b><c/></a>text</item>\n");
+        sb.append("</list>");
+        final String xml = sb.toString();
+        final byte[] data = xml.getBytes("UTF-8");
+
+        for (int chunkSize : new int[] { 1, 7, 100, 4096 }) {
+            PushItemParser parser = new PushItemParser();
+            AFXmlPushSession session = parser.push();
+
+            for (int off = 0; off < data.length; off += chunkSize) {
+                final int end = Math.min(off + chunkSize, data.length);
+                assertTrue("Feed status", session.feed(data, off, end - off));
+                assertEquals("Root action on its start tag", end >= xml.indexOf('>') + 1 ? "l" : null, parser.mName);
+
+                // Each item is read once its end tag is received
+                int received = 0;
+                for (int i = xml.indexOf("</item>"); i != -1 && i + 7 <= end; i = xml.indexOf("</item>", i + 1))
+                    ++received;
+                assertEquals("Items read before finish", received, parser.mItems.size());
+            }
+
+            AFCuteXmlParserResult result = session.finish();
+            assertTrue("Push parsing status", result.status());
+            assertEquals("Item count", count, parser.mItems.size());
+            for (int i = 0; i < count; ++i)
+                assertEquals("Item", "l" + i, parser.mItems.get(i));
+        }
+
+        // Same actions without push
+        PushItemParser parser = new PushItemParser();
+        assertTrue("Parsing status", parse(parser, xml).status());
+        assertEquals("Item count", count, parser.mItems.size());
+        assertEquals("Last item", "l" + (count - 1), parser.mItems.get(count - 1));
+    }
+
+    //
+    // Low level parser selection
+    //
+
+    private static class SumParser extends AFCuteXmlParser {
+        SumParser() {
+            // Sum is in the result of each parsing
+            addNodeAction(new AFNodeAction<Object>("v") {
+                @Override
+                public void onNode(Object cookie) {
+                    Integer sum = (Integer) getContext().getResult().getData();
+                    setResultData((sum == null ? 0 : sum) + readIntContent());
+                }
+            });
+        }
+    }
+
+    private static String buildSumXml(int count) {
+        StringBuilder sb = new StringBuilder("<values>");
+        for (int i = 1; i <= count; ++i)
+            sb.append("<v>").append(i).append("</v>");
+        sb.append("</values>");
+        return sb.toString();
+    }
+
+    public void testLowParserSelection() throws Exception {
+        final AFLowXmlParser fast = AFLowXmlParsers.get(AFLowXmlParsers.FAST);
+        final AFLowXmlParser homeMade = AFLowXmlParsers.get(AFLowXmlParsers.HOME_MADE);
+
+        final SumParser shared = new SumParser();
+        shared.setLowParser(AFLowXmlParsers.FAST);
+        assertSame("Parser engine", fast, shared.getLowParser());
+        assertSame("Default engine unchanged", mDefaultParser, AFCuteXmlParser.parser);
+
+        final SumParser other = new SumParser();
+        assertSame("Default engine of a parser", mDefaultParser, other.getLowParser());
+
+        try {
+            other.setLowParser("unknown");
+            fail("Unknown engine name must be refused");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+
+        // Parsers with different engines, shared by several threads
+        final int count = 500;
+        final String xml = buildSumXml(count);
+        final Integer expected = count * (count + 1) / 2;
+        final List<Throwable> errors = new ArrayList<Throwable>();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; ++t) {
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < 50; ++i) {
+                            assertEquals("Shared parser sum", expected, shared.parse(xml).getData());
+                            assertEquals("Parsing engine sum", expected, shared.parse(xml, homeMade).getData());
+                            assertEquals("Other parser sum", expected, other.parse(xml, fast).getData());
+                        }
+                    } catch (Throwable e) {
+                        synchronized (errors) {
+                            errors.add(e);
+                        }
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+
+        assertTrue("Concurrent parsings: " + errors, errors.isEmpty());
+    }
+
+    //
+    // Path selectors
+    //
+
+    private static final String PATH_XML =
+        "<catalog>" +
+        "<product type=\"book\"><price>1</price><info><price>9</price></info></product>" +
+        "<product type=\"cd\"><price>2</price></product>" +
+        "<list><item type=\"x\">3</item><item type=\"y\">5</item></list>" +
+        "<other><note lang=\"fr\">n</note><deep><item type=\"x\" flag=\"1\">4</item></deep></other>" +
+        "</catalog>";
+
+    private static class PathAction extends AFNodeActionPath<Object> {
+        final String mPrefix;
+        final StringBuilder mCalls;
+
+        PathAction(String path, String prefix, StringBuilder calls) {
+            super(path);
+            mPrefix = prefix;
+            mCalls = calls;
+        }
+
+        @Override
+        public void onNode(Object cookie) {
+            // Stack walk check must agree with the compiled path
+            assertTrue("Path " + getPath(), isCorrectNode(getContext()));
+            mCalls.append(mPrefix).append(read_content()).append(' ');
+        }
+    }
+
+    private void checkPath() {
+        final StringBuilder calls = new StringBuilder();
+
+        AFCuteXmlParser parser = new AFCuteXmlParser();
+        parser.addNodeAction(new PathAction("/catalog/product[@type='cd']/price", "cd:", calls));
+        parser.addNodeAction(new PathAction("/catalog/product/price", "price:", calls));
+        parser.addNodeAction(new PathAction("//price", "deep:", calls));
+        parser.addNodeAction(new PathAction("//item[@type=\"x\"]", "x:", calls));
+        parser.addNodeAction(new PathAction("/catalog/other/*[@lang]", "any:", calls));
+
+        // Parse twice with the same parser
+        for (int i = 0; i < 2; ++i) {
+            calls.setLength(0);
+            AFCuteXmlParserResult result = parse(parser, PATH_XML);
+            assertTrue("Parsing status", result.status());
+            assertEquals("Called actions", "price:1 deep:9 cd:2 x:3 any:n x:4 ", calls.toString());
+        }
+    }
+
+    public void testPathDefaultParser() {
+        checkPath();
+    }
+
+    public void testPathFastParser() {
+        AFCuteXmlParser.parser = new AFFastLowXmlParser();
+        checkPath();
+    }
+
+    public void testPathSyntax() {
+        final String[] invalids = { "", "catalog", "//", "/a/", "/a[b]", "/a[@b", "/a[@b=c]", "/a[@b='c]", "/a*" };
+        for (String path : invalids) {
+            try {
+                new PathAction(path, "", null);
+                fail("Invalid path accepted: " + path);
+            } catch (IllegalArgumentException e) {
+                // Expected
+            }
+        }
+
+        assertEquals("Valid path", "//a/*[@b][@c='d']", new PathAction("//a/*[@b][@c='d']", "", null).getPath());
+    }
+
+    //
+    // Attribute slots
+    //
+
+    private void checkAttributSlot() {
+        final String[] names = { "mode", "name", "signed" };
+        final StringBuilder slots = new StringBuilder();
+
+        AFCuteXmlParser parser = new AFCuteXmlParser();
+        parser.addNodeAction(new AFNodeAction<Object>("delivery") {
+            @Override
+            public void onNode(Object cookie) {
+                AFXmlTag tag = getContext().getCurrent();
+                for (int i = 0; i < tag.getAttributCount(); ++i)
+                    slots.append(tag.getAttributSlot(i, names)).append(' ');
+            }
+        });
+
+        AFCuteXmlParserResult result = parse(parser, "<delivery name=\"a\" other=\"b\" signed=\"true\" mode=\"c\" names=\"d\"/>");
+        assertTrue("Parsing status", result.status());
+        assertEquals("Attribute slots", "1 -1 2 0 -1 ", slots.toString());
+    }
+
+    public void testAttributSlotDefaultParser() {
+        checkAttributSlot();
+    }
+
+    public void testAttributSlotFastParser() {
+        AFCuteXmlParser.parser = new AFFastLowXmlParser();
+        checkAttributSlot();
+    }
+
+    public void testDeepNestingDefaultParser() throws Throwable {
+        checkDeepNesting();
+        checkDeepNestingUnderAction();
+        checkDeepNestingRecursingActions();
+    }
+
+    public void testDeepNestingFastParser() throws Throwable {
+        AFCuteXmlParser.parser = new AFFastLowXmlParser();
+        checkDeepNesting();
+        checkDeepNestingUnderAction();
+        checkDeepNestingRecursingActions();
+    }
+
+    //
+    // Binary cache
+    //
+
+    public void testSkipBinaryCache() {
+        mBinaryCache = true;
+        checkSkipUnmatchedChildren();
+        checkConsumeChildren();
+    }
+
+    public void testActionDispatchBinaryCache() {
+        mBinaryCache = true;
+        checkActionDispatch();
+        checkActionAddedDuringParsing();
+    }
+
+    public void testEncodingsBinaryCache() throws Exception {
+        mBinaryCache = true;
+        checkEncodings();
+    }
+
+    public void testContentBinaryCache() {
+        mBinaryCache = true;
+        checkContent();
+        checkContentMarkup();
+    }
+
+    public void testBindingBinaryCache() {
+        mBinaryCache = true;
+        checkBinding();
+    }
+
+    public void testPathBinaryCache() {
+        mBinaryCache = true;
+        checkPath();
+    }
+
+    public void testAttributSlotBinaryCache() {
+        mBinaryCache = true;
+        checkAttributSlot();
+    }
+
+    public void testDeepNestingBinaryCache() throws Throwable {
+        mBinaryCache = true;
+        checkDeepNesting();
+        checkDeepNestingUnderAction();
+        checkDeepNestingRecursingActions();
+    }
+
+    public void testBinaryCacheFile() throws Exception {
+        File file = File.createTempFile("cache", ".xml.bin");
+        try {
+            FileOutputStream out = new FileOutputStream(file);
+            try {
+                AFXmlBinaryCache.write(new ByteArrayInputStream(DISPATCH_XML.getBytes("UTF-8")), out);
+            } finally {
+                out.close();
+            }
+
+            // A mapped buffer is parsed several times
+            ByteBuffer data = AFXmlBinaryCache.map(file);
+            for (int i = 0; i < 2; ++i) {
+                CountAction v = new CountAction("v");
+                AFCuteXmlParser parser = new AFCuteXmlParser();
+                parser.addNodeAction(v);
+                assertTrue("Parsing of mapped file", parser.parse(data).status());
+                assertEquals("Nodes of mapped file", 5, v.mCount);
+            }
+
+            // Raw xml is not a cache
+            out = new FileOutputStream(file);
+            try {
+                out.write(DISPATCH_XML.getBytes("UTF-8"));
+            } finally {
+                out.close();
+            }
+            try {
+                AFXmlBinaryCache.map(file);
+                fail("Map of xml text");
+            } catch (IOException e) {
+                // Expected
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    public void testBinaryCacheErrors() throws Exception {
+        try {
+            binary(new ByteArrayInputStream("<root><a x=\"1></root>".getBytes("UTF-8")));
+            fail("Write of invalid xml");
+        } catch (IOException e) {
+            // Expected
+        }
+
+        ByteBuffer data = binary(new ByteArrayInputStream(SKIP_XML.getBytes("UTF-8")));
+        data.limit(data.limit() - 4);
+        assertTrue("Truncated data", !new AFCuteXmlParser().parse(data).status());
+
+        data = ByteBuffer.wrap(SKIP_XML.getBytes("UTF-8"));
+        assertTrue("Xml text", !new AFCuteXmlParser().parse(data).status());
+
+        // Binary data are only read by parse(ByteBuffer)
+        try {
+            new AFCuteXmlParser().setLowParser("binary");
+            fail("Binary low level parser selected by name");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+}
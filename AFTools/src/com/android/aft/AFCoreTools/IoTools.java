@@ -130,4 +130,47 @@ public class IoTools {
         return byteBuffer.toByteArray();
     }
 
+    /**
+     * Write a positive number by groups of 7 bits, low bits first, the high
+     * bit of each byte is set when another byte follows
+     */
+    public static void writeVarLong(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    /**
+     * Write the length in bytes of a text then its chars, each one in 1 to 3
+     * bytes like the modified UTF-8 of DataOutput, so that any string is read
+     * back unchanged
+     */
+    public static void writeBinaryText(OutputStream out, CharSequence text) throws IOException {
+        final int length = text.length();
+
+        int size = 0;
+        for (int i = 0; i < length; ++i) {
+            final char c = text.charAt(i);
+            size += c < 0x80 ? 1 : c < 0x800 ? 2 : 3;
+        }
+        writeVarLong(out, size);
+
+        for (int i = 0; i < length; ++i) {
+            final char c = text.charAt(i);
+            if (c < 0x80)
+                out.write(c);
+            else if (c < 0x800) {
+                out.write(0xC0 | (c >> 6));
+                out.write(0x80 | (c & 0x3F));
+            }
+            else {
+                out.write(0xE0 | (c >> 12));
+                out.write(0x80 | ((c >> 6) & 0x3F));
+                out.write(0x80 | (c & 0x3F));
+            }
+        }
+    }
+
 }
@@ -54,7 +54,7 @@ public abstract class AFArrayJsonAction<CookieType> extends AFJsonAction<CookieT
      * @return number of entries
      */
     public int getNumberOfEntry() {
-        return mContext.getCurrent().getChildren().size();
+        return mContext.getCurrent().getNumberOfChildren();
     }
 
     /**
@@ -19,7 +19,10 @@
 
 package com.android.aft.AFCuteJsonParser;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Collection;
 import java.util.Hashtable;
 import java.util.Vector;
 
@@ -27,10 +30,8 @@ import org.json.JSONException;
 import org.json.JSONTokener;
 
 import android.content.Context;
-import android.text.TextUtils;
 
 import com.android.aft.AFCoreTools.DebugTools;
-import com.android.aft.AFCoreTools.StringTools;
 
 /**
  * NFCuteJsonParser
@@ -40,26 +41,261 @@ public class AFCuteJsonParser {
     // List of action
     protected Hashtable<String, Vector<AFJsonAction<?>>> mActions;
 
+    // Dispatch table of actions, created again when an action is added
+    private volatile AFJsonActionTable mActionTable;
+
+    // Keep the text of decimal numbers of a streaming parsing
+    private boolean mExactNumbers;
+
     // dbg
     public final static DebugTools.Logger dbg = new DebugTools.Logger("NFCuteJsonParser");
-    public static boolean hasDebug = true;
+    public static boolean hasDebug = false;
+
+    // Debug of this parser, null to use the default one
+    private volatile Boolean mDebug;
+
+    // Receiver of the parsing events of this parser, null to log them
+    private volatile Tracer mTracer;
+
+    /**
+     * Receiver of the parsing events of a parser with debug enabled
+     *
+     * Events give the values and not messages: nothing is formatted while
+     * parsing unless the tracer does it. Without debug, no value is created
+     * for the events and no tracer is called.
+     */
+    public interface Tracer {
+        /**
+         * Called with each value read
+         *
+         * @param depth Depth of the value, 1 for the root value
+         * @param value The value, a streamed object or array has no children yet
+         */
+        void onValue(int depth, AFJsonValue value);
+
+        /**
+         * Called with the array whose elements are given to the consumer of parseArray
+         */
+        void onArrayHandOff(int depth, AFJsonValue array);
+
+        /**
+         * Called before an action is called on the current value
+         */
+        void onAction(int depth, AFJsonAction<?> action);
+    }
+
+    // Tracer of the parsers without their own, logs the events with dbg
+    private final static Tracer LOG_TRACER = new Tracer() {
+        @Override
+        public void onValue(int depth, AFJsonValue value) {
+            if (value.getIndex() == -1)
+                dbg.v(indent(depth) + "- Value '" + value.getName() + "': " + value);
+            else
+                dbg.v(indent(depth) + "- Value [" + value.getIndex() + "]: " + value);
+        }
+
+        @Override
+        public void onArrayHandOff(int depth, AFJsonValue array) {
+            dbg.v(indent(depth) + "- Stream array '" + array.getName() + "'");
+        }
+
+        @Override
+        public void onAction(int depth, AFJsonAction<?> action) {
+            dbg.v(indent(depth) + "  > Action " + action.getClass().getName());
+        }
+    };
 
     public AFCuteJsonParser() {
         mActions = new Hashtable<String, Vector<AFJsonAction<?>>>();
+        mActionTable = new AFJsonActionTable(mActions);
     }
 
     /**
-     * Parser entry point to launch parsing of xml data
+     * Enable debug of this parser
      *
-     * @param xml data
-     * @return true if parsing success
+     * @param debug Debug state, null to use hasDebug
+     */
+    public final void setDebug(Boolean debug) {
+        mDebug = debug;
+    }
+
+    /**
+     * @return true if debug of this parser is enabled
+     */
+    public final boolean hasDebug() {
+        Boolean debug = mDebug;
+        return debug != null ? debug : hasDebug;
+    }
+
+    /**
+     * Set the receiver of the parsing events of this parser. Events are only
+     * sent when debug is enabled.
+     *
+     * @param tracer The tracer, null to log the events with dbg
+     */
+    public final void setTracer(Tracer tracer) {
+        mTracer = tracer;
+    }
+
+    /**
+     * @return The tracer of a parsing, null if debug is disabled
+     */
+    private Tracer getParsingTracer() {
+        if (!hasDebug())
+            return null;
+
+        Tracer tracer = mTracer;
+        return tracer != null ? tracer : LOG_TRACER;
+    }
+
+    /**
+     * Read the numbers of a streaming parsing which are not integers exactly
+     *
+     * Numbers are decoded as a long or a double when they are read, without
+     * creating objects. With exact numbers, the text of the decimal numbers
+     * is kept and AFJsonValue.getValueAsBigDecimal returns it.
+     *
+     * @param exact true to keep the text of decimal numbers, false by default
+     */
+    public void setExactNumbers(boolean exact) {
+        mExactNumbers = exact;
+    }
+
+    /**
+     * Parser entry point to launch parsing of json data
+     *
+     * The data is read as a stream of tokens: actions are called while the
+     * data is read and the values are only built when an action asks for
+     * the children of an object or an array. The stream is closed at the end.
+     *
+     * @param json UTF-8 data
+     * @return The parsing result
      */
     public AFCuteJsonParserResult parse(InputStream json) {
-        return parse(StringTools.getFullInputStreamData(json));
+        return parse(null, json);
     }
 
     public AFCuteJsonParserResult parse(Context ctx, InputStream json) {
-        return parse(ctx, StringTools.getFullInputStreamData(json));
+        return parse_stream(ctx, json == null ? null : new AFJsonTokenizer(json), null);
+    }
+
+    /**
+     * Parser entry point to launch parsing of the binary form of json data
+     *
+     * The data is read like a stream of json text, without tokenizing any
+     * text. The position of the buffer is not changed, so a buffer mapped
+     * once can be parsed several times.
+     *
+     * @param json Data written by AFJsonBinaryCache
+     * @return The parsing result
+     */
+    public AFCuteJsonParserResult parse(ByteBuffer json) {
+        return parse(null, json);
+    }
+
+    public AFCuteJsonParserResult parse(Context ctx, ByteBuffer json) {
+        return parse_stream(ctx, json == null ? null : new AFJsonTokenizer(json.duplicate()), null);
+    }
+
+    /**
+     * Consumer of the elements of a json array streamed by parseArray
+     */
+    public interface ArrayElementConsumer {
+
+        /**
+         * Called on the consumer thread for each element, in array order
+         *
+         * @param element The element with all its children
+         */
+        void onElement(AFJsonValue element) throws Exception;
+
+        /**
+         * Called on the consumer thread after the last element
+         *
+         * @param success false if the data could not be read until the end of the array
+         */
+        void onEnd(boolean success) throws Exception;
+
+    }
+
+    /**
+     * Parser entry point to stream the elements of an array to a consumer
+     *
+     * The elements of the first array with the given name are read one by
+     * one and given to the consumer on its own thread through a queue of
+     * at most capacity elements. The parsing waits while the queue is full,
+     * so the elements are never all in memory. Actions are called as usual
+     * for the other values, not for the array and its elements. An action
+     * reading the values of a parent of the array makes it read at once.
+     *
+     * @param json UTF-8 data
+     * @param arrayName Name of the array, AFJsonValue.ROOT_VALUE_NAME for a root array
+     * @param capacity Number of elements waiting for the consumer
+     * @param consumer Consumer of the elements
+     * @return The parsing result, it fails if the consumer fails
+     */
+    public AFCuteJsonParserResult parseArray(InputStream json, String arrayName, int capacity, ArrayElementConsumer consumer) {
+        AFJsonArrayHandOff handOff = new AFJsonArrayHandOff(arrayName, capacity, consumer);
+        handOff.start();
+
+        AFCuteJsonParserResult result;
+        Throwable error;
+        boolean success = false;
+        try {
+            result = parse_stream(null, json == null ? null : new AFJsonTokenizer(json), handOff);
+            success = result.status();
+        } finally {
+            // The consumer thread is ended even if an action throws
+            error = handOff.finish(success);
+        }
+
+        if (error != null)
+            return new AFCuteJsonParserResult(1, "Array consumer failed: " + error.getMessage());
+
+        return result;
+    }
+
+    private AFCuteJsonParserResult parse_stream(Context ctx, AFJsonTokenizer tokenizer, AFJsonArrayHandOff handOff) {
+        final Tracer tracer = getParsingTracer();
+        if (tracer != null)
+            dbg.d("Launch parsing");
+
+        if (tokenizer == null)
+            return new AFCuteJsonParserResult(1, "Json parsing failed: input data is 'null'");
+
+        tokenizer.setKeepNumberText(mExactNumbers);
+        try {
+            // Read the root token
+            AFJsonValue root = AFJsonValue.create(AFJsonValue.ROOT_VALUE_NAME, -1, tokenizer.next(), tokenizer);
+
+            // Create the context
+            AFCuteJsonParserContext context = new AFCuteJsonParserContext();
+            context.setApplicationContext(ctx);
+            context.setArrayHandOff(handOff);
+            context.setTracer(tracer);
+            context.setCurrent(root);
+
+            // Read root element (and recursively all values)
+            read_root(context);
+
+            if (tokenizer.getError() != null) {
+                dbg.e("Json parsing failed", tokenizer.getError());
+                return new AFCuteJsonParserResult(1, "Json parsing failed");
+            }
+
+            // Return parsing result
+            return context.getResult();
+        } catch (IOException e) {
+            dbg.e("Json parsing failed", e);
+        } catch (JSONException e) {
+            dbg.e("Json parsing failed", e);
+        } catch (IllegalArgumentException e) {
+            dbg.e("Json parsing failed: no root value", e);
+        } finally {
+            tokenizer.close();
+        }
+
+        return new AFCuteJsonParserResult(1, "Json parsing failed");
     }
 
     /**
@@ -73,7 +309,9 @@ public class AFCuteJsonParser {
     }
 
     public AFCuteJsonParserResult parse(Context ctx, String json_str) {
-        dbg.d("Launch parsing");
+        final Tracer tracer = getParsingTracer();
+        if (tracer != null)
+            dbg.d("Launch parsing");
 
         if (json_str == null)
             return new AFCuteJsonParserResult(1, "Json parsing failed: input data is 'null'");
@@ -87,12 +325,10 @@ public class AFCuteJsonParser {
             return new AFCuteJsonParserResult(1, "Json parsing failed");
         }
 
-        if(hasDebug)
-            dbg.d("Json result object: " + json);
-
         // Create the context
         AFCuteJsonParserContext context = new AFCuteJsonParserContext();
         context.setApplicationContext(ctx);
+        context.setTracer(tracer);
         context.setCurrent(new AFJsonValue(AFJsonValue.ROOT_VALUE_NAME, json));
 
         // Read root element (and recursively all values)
@@ -106,6 +342,12 @@ public class AFCuteJsonParser {
      * Read values from root point
      */
     private boolean read_root(AFCuteJsonParserContext ctx) {
+        if (read_handed_off_array(ctx, ctx.getCurrent()))
+            return true;
+
+        if (ctx.getTracer() != null)
+            ctx.getTracer().onValue(1, ctx.getCurrent());
+
         boolean hasReadChildren = tryToCallActionNode(ctx);
 
         // Read children (to eat token) if was not done by action node
@@ -125,24 +367,31 @@ public class AFCuteJsonParser {
     public boolean read_values(AFCuteJsonParserContext ctx) {
         ctx.hasReadChildren(true);
 
+        if (ctx.getCurrent().isStreamed())
+            return read_streamed_values(ctx);
+
         // Direct return if there is no children from here
         if (!ctx.getCurrent().hasChildren())
             return true;
 
         boolean status = true;
 
+        // Only objects and arrays can have actions, simple values are only built for debug
+        final AFJsonValue current = ctx.getCurrent();
+        final Tracer tracer = ctx.getTracer();
+        final Collection<AFJsonValue> children = tracer != null ? current.getChildren() : current.getContainerChildren();
+
         // Loop on each child
-        for (AFJsonValue value: ctx.getCurrent().getChildren()) {
+        for (AFJsonValue value: children) {
+
+            if (read_handed_off_array(ctx, value))
+                continue;
 
             // Push current tag
             ctx.pushValue(value);
 
-            if (hasDebug) {
-                if (!TextUtils.isEmpty(value.getName()))
-                    dbg.v(indent(ctx.getValues().size()) + "- Value '" + value.getName() + "': " + value);
-                else
-                    dbg.v(indent(ctx.getValues().size()) + "- Value: " + value);
-            }
+            if (tracer != null)
+                tracer.onValue(ctx.getValues().size(), value);
 
             boolean hasReadChildren = tryToCallActionNode(ctx);
 
@@ -160,6 +409,132 @@ public class AFCuteJsonParser {
         return status;
     }
 
+    /**
+     * Read children of a streamed value from the tokenizer
+     *
+     * @param ctx Parsing context
+     * @return true if parsing success
+     */
+    private boolean read_streamed_values(AFCuteJsonParserContext ctx) {
+        final AFJsonValue current = ctx.getCurrent();
+        final boolean object = current.getType() == AFJsonValue.JsonValueType.JsonObject;
+        final AFJsonTokenizer tokenizer = current.detachTokenizer();
+        final Tracer tracer = ctx.getTracer();
+
+        if (tokenizer.getError() != null)
+            return false;
+
+        try {
+            for (int i = 0; ; ++i) {
+                int token = tokenizer.next();
+                if (token == AFJsonTokenizer.END_OBJECT || token == AFJsonTokenizer.END_ARRAY)
+                    return true;
+
+                // Array entries are named from their index on demand
+                String name = null;
+                if (object) {
+                    name = tokenizer.getString();
+                    token = tokenizer.next();
+                }
+
+                // No action on simple values
+                if (token != AFJsonTokenizer.START_OBJECT && token != AFJsonTokenizer.START_ARRAY) {
+                    if (tracer != null)
+                        tracer.onValue(ctx.getValues().size() + 1, AFJsonValue.create(name, i, token, tokenizer));
+                    continue;
+                }
+
+                AFJsonValue value = AFJsonValue.create(name, i, token, tokenizer);
+
+                if (read_handed_off_array(ctx, value)) {
+                    if (tokenizer.getError() != null)
+                        return false;
+                    continue;
+                }
+
+                // Push current value
+                ctx.pushValue(value);
+
+                if (tracer != null)
+                    tracer.onValue(ctx.getValues().size(), value);
+
+                boolean hasReadChildren = tryToCallActionNode(ctx);
+
+                // Read children (to eat token) if was not done by action node
+                boolean status = true;
+                if (!hasReadChildren || value.isStreamed())
+                    status = read_values(ctx);
+
+                // Reset current value to parent
+                ctx.popValue();
+
+                if (!status || tokenizer.getError() != null)
+                    return false;
+            }
+        } catch (IOException e) {
+            tokenizer.setError(e);
+        } catch (JSONException e) {
+            tokenizer.setError(e);
+        }
+
+        return false;
+    }
+
+    /**
+     * Give the elements of the streamed array to the consumer
+     *
+     * @param ctx Parsing context
+     * @param value Value just read
+     * @return true if the value is the streamed array and has been read
+     */
+    private boolean read_handed_off_array(AFCuteJsonParserContext ctx, AFJsonValue value) {
+        final AFJsonArrayHandOff handOff = ctx.getArrayHandOff();
+        if (handOff == null || !handOff.accept(value))
+            return false;
+
+        if (ctx.getTracer() != null)
+            ctx.getTracer().onArrayHandOff(ctx.getValues().size(), value);
+
+        // Array already read by an action on a parent value
+        if (!value.isStreamed()) {
+            try {
+                for (AFJsonValue element: value.getChildren())
+                    if (!handOff.put(element))
+                        break;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return true;
+        }
+
+        final AFJsonTokenizer tokenizer = value.detachTokenizer();
+        try {
+            for (int i = 0; ; ++i) {
+                final int token = tokenizer.next();
+                if (token == AFJsonTokenizer.END_ARRAY)
+                    return true;
+
+                AFJsonValue element = AFJsonValue.read(null, i, token, tokenizer);
+                if (tokenizer.getError() != null)
+                    return true;
+
+                if (!handOff.put(element)) {
+                    tokenizer.setError(new IOException("Array consumer failed"));
+                    return true;
+                }
+            }
+        } catch (IOException e) {
+            tokenizer.setError(e);
+        } catch (JSONException e) {
+            tokenizer.setError(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            tokenizer.setError(e);
+        }
+
+        return true;
+    }
+
     /**
      * Try to call a defined action node on current xml parsing node
      *
@@ -172,8 +547,11 @@ public class AFCuteJsonParser {
             && ctx.getCurrent().getType() != AFJsonValue.JsonValueType.JsonObject)
             return false ;
 
-        for (AFJsonAction<?> action: getActionsPossibleAtValue(ctx, ctx.getCurrent().getName())) {
+        for (AFJsonAction<?> action: mActionTable.get(ctx.getCurrent())) {
             if (action.isCorrectNode(ctx)) {
+                if (ctx.getTracer() != null)
+                    ctx.getTracer().onAction(ctx.getValues().size(), action);
+
                 // Set current context
                 action.setContext(ctx);
 
@@ -199,30 +577,6 @@ public class AFCuteJsonParser {
         return false;
     }
 
-    private Vector<AFJsonAction<?>> getActionsPossibleAtValue(AFCuteJsonParserContext ctx, String name) {
-        Vector<AFJsonAction<?>> actions = new Vector<AFJsonAction<?>>();
-
-        // Get action for current value name
-        Vector<AFJsonAction<?>> v;
-
-        String curName = ctx.getCurrent().getName();
-        if (curName == null)
-            curName = "";
-
-        v = mActions.get(ctx.getCurrent().getName());
-        if (v != null)
-            actions.addAll(v);
-
-        // Get anonymous action
-        if (!curName.equals("")) {
-            v = mActions.get("");
-            if (v != null)
-                actions.addAll(v);
-        }
-
-        return actions;
-    }
-
     /**
      * Add an action node
      *
@@ -231,7 +585,7 @@ public class AFCuteJsonParser {
      */
     public boolean addAction(AFJsonAction<?> action) {
         String valueName = action.getValueName();
-        if (hasDebug)
+        if (hasDebug())
             dbg.d("Add action for node name '" + valueName + "'");
         action.setParser(this);
 
@@ -239,11 +593,12 @@ public class AFCuteJsonParser {
             mActions.put(valueName, new Vector<AFJsonAction<?>>());
 
         mActions.get(valueName).addElement(action);
+        mActionTable = new AFJsonActionTable(mActions);
 
         return true;
     }
 
-    private String indent(int depth) {
+    private static String indent(int depth) {
         StringBuffer str = new StringBuffer();
 
         for (; depth != 0; --depth)
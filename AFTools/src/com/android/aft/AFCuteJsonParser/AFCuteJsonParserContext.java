@@ -41,6 +41,12 @@ public class AFCuteJsonParserContext {
 	// Stack of values from the root to the current position
     private Stack<AFJsonValue> mValues = new Stack<AFJsonValue>();
 
+	// Hand-off of the streamed array elements or null
+	private AFJsonArrayHandOff mArrayHandOff;
+
+	// Receiver of the parsing events, null without debug
+	private AFCuteJsonParser.Tracer mTracer;
+
 	// Result parsing object to store code / error msg or data at parsing time and get it at the and of parsing
 	private AFCuteJsonParserResult mResult;
 
@@ -92,6 +98,25 @@ public class AFCuteJsonParserContext {
 	    return mResult;
 	}
 
+    void setArrayHandOff(AFJsonArrayHandOff handOff) {
+        mArrayHandOff = handOff;
+    }
+
+    AFJsonArrayHandOff getArrayHandOff() {
+        return mArrayHandOff;
+    }
+
+    void setTracer(AFCuteJsonParser.Tracer tracer) {
+        mTracer = tracer;
+    }
+
+    /**
+     * @return The receiver of the parsing events, null if debug is disabled
+     */
+    public AFCuteJsonParser.Tracer getTracer() {
+        return mTracer;
+    }
+
     public void setApplicationContext(Context ctx) {
         mContext = ctx;
     }
@@ -0,0 +1,98 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ */
+
+package com.android.aft.AFCuteJsonParser;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+
+/**
+ * Actions of a parser indexed by value name.
+ *
+ * The anonymous actions, registered with the name "", are merged after the
+ * actions of each name when the table is created, so the actions possible
+ * at a value are found by one lookup. A table is never modified after
+ * creation: it is read without lock and the parser creates a new one when
+ * an action is added.
+ */
+final class AFJsonActionTable {
+
+    private static final AFJsonAction<?>[] NO_ACTION = new AFJsonAction<?>[0];
+
+    // Named actions followed by the anonymous ones, by value name
+    private final HashMap<String, AFJsonAction<?>[]> mActions;
+
+    // Anonymous actions, for the values of other names
+    private final AFJsonAction<?>[] mAnonymous;
+
+    // A name is an array index, array entries must then be looked up by name
+    private final boolean mHasIndexNames;
+
+    AFJsonActionTable(Hashtable<String, Vector<AFJsonAction<?>>> actions) {
+        final Vector<AFJsonAction<?>> anonymous = actions.get("");
+        mAnonymous = anonymous != null ? anonymous.toArray(new AFJsonAction<?>[anonymous.size()]) : NO_ACTION;
+
+        mActions = new HashMap<String, AFJsonAction<?>[]>();
+        boolean hasIndexNames = false;
+        for (Map.Entry<String, Vector<AFJsonAction<?>>> entry : actions.entrySet()) {
+            final String name = entry.getKey();
+            if (name.equals(""))
+                continue;
+
+            List<AFJsonAction<?>> merged = new ArrayList<AFJsonAction<?>>(entry.getValue());
+            if (anonymous != null)
+                merged.addAll(anonymous);
+            mActions.put(name, merged.toArray(new AFJsonAction<?>[merged.size()]));
+            hasIndexNames |= isIndex(name);
+        }
+        mHasIndexNames = hasIndexNames;
+    }
+
+    /**
+     * Get the actions possible at a value, in order of registration with
+     * the actions of the value name first
+     *
+     * @param value The value
+     * @return The actions, never null
+     */
+    AFJsonAction<?>[] get(AFJsonValue value) {
+        // Avoid building the name of an array entry
+        if (value.getIndex() != -1 && !mHasIndexNames)
+            return mAnonymous;
+
+        final AFJsonAction<?>[] actions = mActions.get(value.getName());
+        return actions != null ? actions : mAnonymous;
+    }
+
+    private static boolean isIndex(String name) {
+        if (name == null || name.length() == 0)
+            return false;
+
+        for (int i = 0; i < name.length(); ++i)
+            if (name.charAt(i) < '0' || name.charAt(i) > '9')
+                return false;
+
+        return true;
+    }
+
+}
@@ -0,0 +1,163 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ */
+
+package com.android.aft.AFCuteJsonParser;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hand-off of the elements of a streamed array to a consumer thread.
+ *
+ * The reader puts each element in a bounded queue and is blocked while the
+ * queue is full, so a slow consumer slows down the reading instead of the
+ * elements being buffered. After a consumer error, the remaining elements
+ * are dropped and the reader is stopped at its next element. The reader
+ * never waits for a consumer thread which is not running anymore.
+ */
+final class AFJsonArrayHandOff implements Runnable {
+
+    // End markers
+    private static final Object END_SUCCESS = new Object();
+    private static final Object END_FAILURE = new Object();
+
+    // Delay between two checks of the consumer thread while the queue is full
+    private static final long OFFER_TIMEOUT_MS = 100;
+
+    // Name of the streamed array
+    private final String mArrayName;
+
+    private final AFCuteJsonParser.ArrayElementConsumer mConsumer;
+    private final BlockingQueue<Object> mQueue;
+    private final Thread mThread;
+
+    // The array has been found, only the first one is streamed
+    private boolean mFound;
+
+    private volatile Throwable mConsumerError;
+
+    AFJsonArrayHandOff(String arrayName, int capacity, AFCuteJsonParser.ArrayElementConsumer consumer) {
+        mArrayName = arrayName;
+        mConsumer = consumer;
+        mQueue = new ArrayBlockingQueue<Object>(Math.max(1, capacity));
+        mThread = new Thread(this, "AFJsonArrayConsumer");
+    }
+
+    void start() {
+        mThread.start();
+    }
+
+    /**
+     * @return true if the value is the streamed array
+     */
+    boolean accept(AFJsonValue value) {
+        if (mFound
+            || value.getType() != AFJsonValue.JsonValueType.JsonArray
+            || !mArrayName.equals(value.getName()))
+            return false;
+
+        mFound = true;
+        return true;
+    }
+
+    /**
+     * Give an element to the consumer, wait while the queue is full
+     *
+     * @return false if the consumer failed
+     */
+    boolean put(AFJsonValue element) throws InterruptedException {
+        while (!mQueue.offer(element, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS))
+            if (mConsumerError != null || !mThread.isAlive())
+                return false;
+
+        return mConsumerError == null;
+    }
+
+    /**
+     * Wait for the consumer to handle all the elements
+     *
+     * @param success Status of the reading given to the consumer
+     * @return The consumer error or null
+     */
+    Throwable finish(boolean success) {
+        boolean interrupted = false;
+
+        // The end marker is put once, an interrupted offer has not added it
+        final Object end = success ? END_SUCCESS : END_FAILURE;
+        while (mThread.isAlive()) {
+            try {
+                if (mQueue.offer(end, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS))
+                    break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+
+        while (true) {
+            try {
+                mThread.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted)
+            Thread.currentThread().interrupt();
+
+        return mConsumerError;
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            Object item;
+            try {
+                item = mQueue.take();
+            } catch (InterruptedException e) {
+                continue;
+            }
+
+            if (item == END_SUCCESS || item == END_FAILURE) {
+                if (mConsumerError == null) {
+                    try {
+                        mConsumer.onEnd(item == END_SUCCESS);
+                    } catch (Throwable e) {
+                        mConsumerError = e;
+                    }
+                }
+                return;
+            }
+
+            // Drop elements after an error until the end
+            if (mConsumerError != null)
+                continue;
+
+            try {
+                mConsumer.onElement((AFJsonValue) item);
+            } catch (Throwable e) {
+                // Errors too, the elements are drained until the end
+                AFCuteJsonParser.dbg.e("Array consumer failed", e);
+                mConsumerError = e;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,179 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ */
+
+package com.android.aft.AFCuteJsonParser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.json.JSONException;
+
+import com.android.aft.AFCoreTools.IoTools;
+
+/**
+ * Binary form of json data, to cache a response next to its raw data.
+ *
+ * The json text is tokenized once when the cache is written: each token is
+ * stored as a tag byte followed by its text, integers as varints, and each
+ * container with its length so that a skipped value is skipped at once. The
+ * cache is read back by AFCuteJsonParser.parse(ByteBuffer) with the same
+ * actions, values and mappers as the text, usually from a file mapped in
+ * memory: reading it is a bounded scan without tokenizing any text.
+ *
+ * The binary data is built in memory before it is written, to set the
+ * container lengths.
+ *
+ * Usage:
+ *  AFJsonBinaryCache.write(response, new FileOutputStream(cacheFile));
+ *  ...
+ *  parser.parse(AFJsonBinaryCache.map(cacheFile));
+ */
+public final class AFJsonBinaryCache {
+
+    private AFJsonBinaryCache() {
+    }
+
+    /**
+     * Write the binary form of json data
+     *
+     * @param json UTF-8 data, closed at the end
+     * @param out Output of the binary data, flushed but not closed
+     * @throws JSONException on invalid json data, the output is then incomplete
+     */
+    public static void write(InputStream json, OutputStream out) throws IOException, JSONException {
+        final AFJsonTokenizer tokenizer = new AFJsonTokenizer(json);
+        final Output buf = new Output();
+        try {
+            buf.write(AFJsonTokenizer.BINARY_MAGIC >>> 24);
+            buf.write(AFJsonTokenizer.BINARY_MAGIC >>> 16);
+            buf.write(AFJsonTokenizer.BINARY_MAGIC >>> 8);
+            buf.write(AFJsonTokenizer.BINARY_MAGIC);
+            buf.write(AFJsonTokenizer.BINARY_VERSION);
+
+            int token;
+            while ((token = tokenizer.next()) != AFJsonTokenizer.END_DOCUMENT) {
+                switch (token) {
+                case AFJsonTokenizer.NAME:
+                case AFJsonTokenizer.STRING:
+                    buf.write(token);
+                    IoTools.writeBinaryText(buf, tokenizer.getString());
+                    break;
+
+                case AFJsonTokenizer.NUMBER:
+                    if (tokenizer.isLong()) {
+                        final long value = tokenizer.getLong();
+                        buf.write(AFJsonTokenizer.BINARY_LONG);
+                        IoTools.writeVarLong(buf, (value << 1) ^ (value >> 63));
+                    }
+                    else {
+                        buf.write(token);
+                        IoTools.writeBinaryText(buf, tokenizer.getString());
+                    }
+                    break;
+
+                case AFJsonTokenizer.START_OBJECT:
+                case AFJsonTokenizer.START_ARRAY:
+                    buf.write(token);
+                    buf.beginContainer();
+                    break;
+
+                case AFJsonTokenizer.END_OBJECT:
+                case AFJsonTokenizer.END_ARRAY:
+                    buf.write(token);
+                    buf.endContainer();
+                    break;
+
+                default:
+                    buf.write(token);
+                    break;
+                }
+            }
+
+            buf.writeTo(out);
+            out.flush();
+        } finally {
+            tokenizer.close();
+        }
+    }
+
+    /**
+     * Map a binary cache file in memory
+     *
+     * @param cache File written with write
+     * @return The read only data
+     * @throws IOException if the file cannot be read or is not a binary cache
+     */
+    public static MappedByteBuffer map(File cache) throws IOException {
+        final RandomAccessFile file = new RandomAccessFile(cache, "r");
+        try {
+            final MappedByteBuffer data = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+            if (data.remaining() < 5 || data.getInt(0) != AFJsonTokenizer.BINARY_MAGIC || data.get(4) != AFJsonTokenizer.BINARY_VERSION)
+                throw new IOException("Not a binary json cache: " + cache);
+
+            return data;
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Binary data in memory, the length of a container is set at its end
+     */
+    private static class Output extends ByteArrayOutputStream {
+
+        // Offsets of the lengths of the open containers
+        private int[] mStarts = new int[32];
+        private int mDepth;
+
+        Output() {
+            super(8192);
+        }
+
+        void beginContainer() {
+            if (mDepth == mStarts.length) {
+                int[] starts = new int[mDepth * 2];
+                System.arraycopy(mStarts, 0, starts, 0, mDepth);
+                mStarts = starts;
+            }
+            mStarts[mDepth++] = count;
+
+            write(0);
+            write(0);
+            write(0);
+            write(0);
+        }
+
+        void endContainer() {
+            final int start = mStarts[--mDepth];
+            final int length = count - start - 4;
+            buf[start] = (byte) (length >>> 24);
+            buf[start + 1] = (byte) (length >>> 16);
+            buf[start + 2] = (byte) (length >>> 8);
+            buf[start + 3] = (byte) length;
+        }
+
+    }
+
+}
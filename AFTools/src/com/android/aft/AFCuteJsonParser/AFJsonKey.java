@@ -0,0 +1,58 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ */
+
+package com.android.aft.AFCuteJsonParser;
+
+/**
+ * Precomputed key to look up an entry of json objects.
+ *
+ * A key keeps the hash of its name and the position where the entry was
+ * last found, so objects of the same shape are read without hashing. Create
+ * the keys once, for example as static fields of an action.
+ *
+ * A lookup is not free of allocations: the first lookup in a large object
+ * builds its name index, and an entry of an object read from a JSONObject is
+ * built as an AFJsonValue on its first read.
+ */
+public final class AFJsonKey {
+
+    final String mName;
+    final int mHash;
+
+    // Position of the entry in the last object, a hint only
+    int mPosition;
+
+    public AFJsonKey(String name) {
+        mName = name;
+        mHash = name.hashCode();
+    }
+
+    /**
+     * @return Name of the entry
+     */
+    public String getName() {
+        return mName;
+    }
+
+    @Override
+    public String toString() {
+        return mName;
+    }
+
+}
@@ -0,0 +1,117 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ */
+
+package com.android.aft.AFCuteJsonParser;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Stack;
+
+import org.json.JSONException;
+
+/**
+ * Action mapping json objects to model objects, and serializer of the
+ * model objects.
+ *
+ * Subclasses are generated by the binding processor for the classes
+ * annotated with AFJsonObject. The children of a mapped object are read by
+ * the mapper, actions are not called under it. The model object is added to
+ * the cookie if it is a collection, otherwise it is set as result data.
+ * Override onMapped to use it otherwise.
+ *
+ * @param <T> Type of the model objects
+ */
+public abstract class AFJsonObjectMapper<T> extends AFObjectJsonAction<Object> implements AFJsonSerializer<T> {
+
+    // Name of the array of mapped objects or null
+    private final String mArrayName;
+
+    /**
+     * Constructor
+     *
+     * @param name Name of the mapped objects, ignored if arrayName is not null
+     * @param arrayName Name of the array whose objects are mapped, null to map objects by name
+     */
+    protected AFJsonObjectMapper(String name, String arrayName) {
+        super(arrayName != null ? "" : name);
+        mArrayName = arrayName;
+    }
+
+    /**
+     * Map the object of the reader
+     *
+     * @param reader Reader on the entries of the object
+     * @return The model object
+     */
+    public abstract T map(AFJsonReader reader) throws IOException, JSONException;
+
+    /**
+     * Write a model object as a json object with the bound fields
+     */
+    @Override
+    public abstract void write(AFJsonWriter writer, T object) throws IOException, JSONException;
+
+    /**
+     * Called with each model object
+     *
+     * @param object The model object
+     * @param cookie The cookie of the parsing
+     */
+    @SuppressWarnings("unchecked")
+    protected void onMapped(T object, Object cookie) {
+        if (cookie instanceof Collection)
+            ((Collection<Object>) cookie).add(object);
+        else
+            setResultData(object);
+    }
+
+    @Override
+    public boolean isCorrectNode(AFCuteJsonParserContext ctx) {
+        if (mArrayName == null)
+            return super.isCorrectNode(ctx);
+
+        final Stack<AFJsonValue> values = ctx.getValues();
+        final int size = values.size();
+        if (size < 2 || values.peek().getType() != AFJsonValue.JsonValueType.JsonObject)
+            return false;
+
+        final AFJsonValue parent = values.elementAt(size - 2);
+        return parent.getType() == AFJsonValue.JsonValueType.JsonArray && mArrayName.equals(parent.getName());
+    }
+
+    @Override
+    public void onObject(Object cookie) {
+        AFJsonReader reader = new AFJsonReader(getJsonObject());
+        mContext.hasReadChildren(true);
+
+        T object;
+        try {
+            object = map(reader);
+        } catch (IOException e) {
+            reader.setError(e);
+            return;
+        } catch (JSONException e) {
+            reader.setError(e);
+            return;
+        }
+
+        onMapped(object, cookie);
+    }
+
+}
@@ -0,0 +1,336 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ */
+
+package com.android.aft.AFCuteJsonParser;
+
+import java.io.IOException;
+
+import org.json.JSONException;
+
+/**
+ * Cursor on the entries of a json object, used by object mappers.
+ *
+ * On a streamed value the entries are read from the data as tokens, names
+ * are compared and numbers and booleans are read without creating objects.
+ * On other values the entries of the value are walked. A value not read
+ * after nextName or nextElement is skipped by the next call.
+ *
+ * Usage:
+ *  while (reader.nextName()) {
+ *      if (reader.isName("id"))
+ *          id = reader.readInt(id);
+ *      else if (reader.isName("items") && reader.beginArray())
+ *          while (reader.nextElement())
+ *              ...
+ *  }
+ */
+public final class AFJsonReader {
+
+    //
+    // Streamed value
+    //
+
+    private AFJsonTokenizer mTokenizer;
+
+    // A value follows the current name or element and is not read
+    private boolean mPending;
+
+    // Token of the current element, already read
+    private int mElementToken = -1;
+
+    //
+    // Other values
+    //
+
+    // Open containers and the position of their current entry
+    private AFJsonValue[] mContainers;
+    private int[] mPositions;
+    private int mDepth;
+
+    // Current entry
+    private AFJsonValue mEntry;
+
+    /**
+     * Create a reader on the entries of an object
+     *
+     * @param value The object, its children are read from the data if it is streamed
+     */
+    AFJsonReader(AFJsonValue value) {
+        if (value.isStreamed()) {
+            mTokenizer = value.detachTokenizer();
+            return;
+        }
+
+        mContainers = new AFJsonValue[8];
+        mPositions = new int[8];
+        push(value);
+    }
+
+    /**
+     * Record an error of a streamed value to stop the parsing
+     */
+    void setError(Exception e) {
+        if (mTokenizer != null)
+            mTokenizer.setError(e);
+    }
+
+    /**
+     * Move to the next entry of the current object
+     *
+     * @return false at the end of the object, the reader is then in the parent container
+     */
+    public boolean nextName() throws IOException, JSONException {
+        if (mTokenizer == null)
+            return nextEntry();
+
+        skipValue();
+        if (mTokenizer.next() != AFJsonTokenizer.NAME)
+            return false;
+
+        mPending = true;
+        return true;
+    }
+
+    /**
+     * Move to the next element of the current array
+     *
+     * @return false at the end of the array, the reader is then in the parent container
+     */
+    public boolean nextElement() throws IOException, JSONException {
+        if (mTokenizer == null)
+            return nextEntry();
+
+        skipValue();
+        final int token = mTokenizer.next();
+        if (token == AFJsonTokenizer.END_ARRAY)
+            return false;
+
+        mElementToken = token;
+        mPending = true;
+        return true;
+    }
+
+    /**
+     * @return Hash of the current name, as String.hashCode
+     */
+    public int getNameHash() {
+        if (mTokenizer == null)
+            return mEntry.getName().hashCode();
+
+        return mTokenizer.getTextHash();
+    }
+
+    /**
+     * Compare the current name, it must be called before reading the value
+     *
+     * @return true if the current name is name
+     */
+    public boolean isName(String name) {
+        if (mTokenizer == null)
+            return mEntry.getName().equals(name);
+
+        return mTokenizer.isText(name);
+    }
+
+    /**
+     * @return The current name
+     */
+    public String getName() {
+        if (mTokenizer == null)
+            return mEntry.getName();
+
+        return mTokenizer.getString();
+    }
+
+    /**
+     * Enter the current value if it is an object, skip it otherwise
+     *
+     * @return true if the value is an object, its entries are read by nextName
+     */
+    public boolean beginObject() throws IOException, JSONException {
+        return beginContainer(AFJsonTokenizer.START_OBJECT, AFJsonValue.JsonValueType.JsonObject);
+    }
+
+    /**
+     * Enter the current value if it is an array, skip it otherwise
+     *
+     * @return true if the value is an array, its elements are read by nextElement
+     */
+    public boolean beginArray() throws IOException, JSONException {
+        return beginContainer(AFJsonTokenizer.START_ARRAY, AFJsonValue.JsonValueType.JsonArray);
+    }
+
+    private boolean beginContainer(int startToken, AFJsonValue.JsonValueType type) throws IOException, JSONException {
+        if (mTokenizer == null) {
+            if (mEntry.getType() != type)
+                return false;
+            push(mEntry);
+            return true;
+        }
+
+        final int token = valueToken();
+        if (token == startToken)
+            return true;
+
+        mTokenizer.skipValue(token);
+        return false;
+    }
+
+    /**
+     * Skip the current value
+     */
+    public void skipValue() throws IOException, JSONException {
+        if (mTokenizer != null && mPending)
+            mTokenizer.skipValue(valueToken());
+    }
+
+    //
+    // Values, a value of another type is skipped and the default value is returned
+    //
+
+    public String readString(String def) throws IOException, JSONException {
+        if (mTokenizer == null) {
+            switch (mEntry.getType()) {
+            case JsonString:
+                return mEntry.getValueAsString();
+            case JsonNull:
+                return null;
+            default:
+                return def;
+            }
+        }
+
+        final int token = valueToken();
+        if (token == AFJsonTokenizer.STRING)
+            return mTokenizer.getString();
+        if (token == AFJsonTokenizer.NULL)
+            return null;
+
+        mTokenizer.skipValue(token);
+        return def;
+    }
+
+    public int readInt(int def) throws IOException, JSONException {
+        if (mTokenizer == null)
+            return mEntry.getType() == AFJsonValue.JsonValueType.JsonNumber ? mEntry.getValueAsInt() : def;
+
+        return readNumber() ? mTokenizer.getInt() : def;
+    }
+
+    public long readLong(long def) throws IOException, JSONException {
+        if (mTokenizer == null)
+            return mEntry.getType() == AFJsonValue.JsonValueType.JsonNumber ? mEntry.getValueAsLong() : def;
+
+        return readNumber() ? mTokenizer.getLong() : def;
+    }
+
+    public double readDouble(double def) throws IOException, JSONException {
+        if (mTokenizer == null)
+            return mEntry.getType() == AFJsonValue.JsonValueType.JsonNumber ? mEntry.getValueAsDouble() : def;
+
+        return readNumber() ? mTokenizer.getDouble() : def;
+    }
+
+    public boolean readBoolean(boolean def) throws IOException, JSONException {
+        if (mTokenizer == null)
+            return mEntry.getType() == AFJsonValue.JsonValueType.JsonBoolean ? mEntry.getValueAsBoolean().booleanValue() : def;
+
+        final int token = valueToken();
+        if (token == AFJsonTokenizer.TRUE)
+            return true;
+        if (token == AFJsonTokenizer.FALSE)
+            return false;
+
+        mTokenizer.skipValue(token);
+        return def;
+    }
+
+    /**
+     * @return The current value with its children
+     */
+    public AFJsonValue readValue() throws IOException, JSONException {
+        if (mTokenizer == null)
+            return mEntry;
+
+        final String name = mElementToken == -1 ? mTokenizer.getString() : null;
+        final int token = valueToken();
+        return AFJsonValue.read(name, -1, token, mTokenizer);
+    }
+
+    private boolean readNumber() throws IOException, JSONException {
+        final int token = valueToken();
+        if (token == AFJsonTokenizer.NUMBER)
+            return true;
+
+        mTokenizer.skipValue(token);
+        return false;
+    }
+
+    /**
+     * @return Token of the current value, which is then read
+     */
+    private int valueToken() throws IOException, JSONException {
+        mPending = false;
+
+        final int token = mElementToken;
+        if (token != -1) {
+            mElementToken = -1;
+            return token;
+        }
+
+        return mTokenizer.next();
+    }
+
+    //
+    // Entries of values
+    //
+
+    private void push(AFJsonValue container) {
+        if (mDepth == mContainers.length) {
+            AFJsonValue[] containers = new AFJsonValue[mDepth * 2];
+            System.arraycopy(mContainers, 0, containers, 0, mDepth);
+            mContainers = containers;
+
+            int[] positions = new int[mDepth * 2];
+            System.arraycopy(mPositions, 0, positions, 0, mDepth);
+            mPositions = positions;
+        }
+
+        mContainers[mDepth] = container;
+        mPositions[mDepth] = -1;
+        ++mDepth;
+    }
+
+    private boolean nextEntry() {
+        if (mDepth == 0)
+            return false;
+
+        final AFJsonValue container = mContainers[mDepth - 1];
+        final int position = ++mPositions[mDepth - 1];
+        if (position >= container.getNumberOfChildren()) {
+            mContainers[--mDepth] = null;
+            mEntry = null;
+            return false;
+        }
+
+        mEntry = container.getEntry(position);
+        return true;
+    }
+
+}
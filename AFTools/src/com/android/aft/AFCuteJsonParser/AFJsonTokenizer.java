@@ -0,0 +1,971 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ */
+
+package com.android.aft.AFCuteJsonParser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+import org.json.JSONException;
+
+/**
+ * Pull tokenizer of UTF-8 json bytes.
+ *
+ * Bytes are read by bulk from the stream and the structure is checked with
+ * a stack of the open containers. Only the text of names and strings is
+ * decoded, in a reusable char buffer. The first error is kept so that the
+ * parser can stop at any level and report it.
+ *
+ * The tokenizer also reads the binary form of AFJsonBinaryCache: each token
+ * is a tag byte followed by its text or its integer, so nothing is scanned.
+ */
+final class AFJsonTokenizer {
+
+    public final static int END_DOCUMENT = 0;
+    public final static int START_OBJECT = 1;
+    public final static int END_OBJECT = 2;
+    public final static int START_ARRAY = 3;
+    public final static int END_ARRAY = 4;
+    public final static int NAME = 5;
+    public final static int STRING = 6;
+    public final static int NUMBER = 7;
+    public final static int TRUE = 8;
+    public final static int FALSE = 9;
+    public final static int NULL = 10;
+
+    // Binary data: header then the tokens as tags. A container start is
+    // followed by the length of its content with its end tag, an integral
+    // number in the long range has its own tag followed by its zigzag varint
+    final static int BINARY_MAGIC = 0x41464A42;
+    final static int BINARY_VERSION = 1;
+    final static int BINARY_LONG = 11;
+
+    // State in the current container
+    private final static int STATE_FIRST = 0;
+    private final static int STATE_NEXT = 1;
+    private final static int STATE_VALUE = 2;
+
+    private final static char REPLACEMENT_CHAR = '\uFFFD';
+
+    // Digits of the bounds of long
+    private final static String LONG_MAX_DIGITS = "9223372036854775807";
+    private final static String LONG_MIN_DIGITS = "9223372036854775808";
+
+    // Powers of ten represented exactly by a double
+    private final static double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private InputStream mIn;
+
+    // Binary data, null for text data
+    private ByteBuffer mData;
+
+    // End position of the open containers of binary data
+    private int[] mEnds;
+
+    // Read buffer, or the bytes of the last text of binary data
+    private byte[] mBuf = new byte[8192];
+    private int mPos;
+    private int mLimit;
+
+    // Offset in data of the buffer start, for error messages
+    private long mOffset;
+
+    // Open containers, true for an object
+    private boolean[] mStack = new boolean[32];
+    private int mDepth;
+    private int mState;
+    private boolean mHasRoot;
+
+    // Text of the last name, string or number
+    private char[] mText = new char[64];
+    private int mTextLength;
+
+    // First error
+    private Exception mError;
+
+    // Values keep the text of numbers which are not integers
+    private boolean mKeepNumberText;
+
+    // Last number read from binary data as a long
+    private boolean mHasLong;
+    private long mLong;
+
+    // Last text of binary data, only decoded when it is used
+    private int mTextStart = -1;
+    private int mTextSize;
+
+    AFJsonTokenizer(InputStream in) {
+        mIn = in;
+    }
+
+    /**
+     * Tokenizer of binary data written by AFJsonBinaryCache, read from
+     * its current position
+     */
+    AFJsonTokenizer(ByteBuffer data) {
+        mData = data;
+        mEnds = new int[mStack.length];
+    }
+
+    void setKeepNumberText(boolean keep) {
+        mKeepNumberText = keep;
+    }
+
+    boolean isKeepingNumberText() {
+        return mKeepNumberText;
+    }
+
+    /**
+     * Read the next token
+     *
+     * @return The token type, END_DOCUMENT after the root value
+     */
+    int next() throws IOException, JSONException {
+        if (mData != null)
+            return nextBinary();
+
+        int c = skipWhitespace();
+
+        if (mDepth == 0) {
+            if (mHasRoot)
+                return END_DOCUMENT;
+            mHasRoot = true;
+
+            // UTF-8 byte order mark
+            if (c == 0xEF) {
+                readLiteral("\u00EF\u00BB\u00BF");
+                c = skipWhitespace();
+            }
+            return readValue(c);
+        }
+
+        final boolean object = mStack[mDepth - 1];
+        switch (mState) {
+        case STATE_VALUE:
+            mState = STATE_NEXT;
+            return readValue(c);
+
+        case STATE_NEXT:
+            if (c == (object ? '}' : ']'))
+                return closeContainer();
+            if (c != ',')
+                throw error("Expected ',' or '" + (object ? '}' : ']') + "'");
+            ++mPos;
+            c = skipWhitespace();
+            break;
+
+        default:
+            if (c == (object ? '}' : ']'))
+                return closeContainer();
+            break;
+        }
+
+        if (!object) {
+            mState = STATE_NEXT;
+            return readValue(c);
+        }
+
+        if (c != '"')
+            throw error("Expected name");
+        ++mPos;
+        readString();
+
+        if (skipWhitespace() != ':')
+            throw error("Expected ':'");
+        ++mPos;
+
+        mState = STATE_VALUE;
+        return NAME;
+    }
+
+    /**
+     * Skip the value of a token read by next, containers are skipped until their end
+     */
+    void skipValue(int token) throws IOException, JSONException {
+        if (token != START_OBJECT && token != START_ARRAY)
+            return;
+
+        // Binary containers are skipped at once
+        if (mData != null) {
+            mData.position(mEnds[--mDepth]);
+            mState = STATE_NEXT;
+            return;
+        }
+
+        final int depth = mDepth;
+        while (mDepth >= depth) {
+            if (next() == END_DOCUMENT)
+                throw error("Unexpected end of data");
+        }
+    }
+
+    /**
+     * @return Text of the last name or string
+     */
+    String getString() {
+        if (mHasLong)
+            return Long.toString(mLong);
+        decodeBinaryText();
+
+        return new String(mText, 0, mTextLength);
+    }
+
+    /**
+     * @return true if the last number is an integer read by getLong without loss
+     */
+    boolean isLong() {
+        if (mHasLong)
+            return true;
+        decodeBinaryText();
+
+        return isIntegral() && (isSmallIntegral() || isLongRange());
+    }
+
+    /**
+     * @return Value of the last number as an int, without creating objects for most numbers
+     */
+    int getInt() {
+        if (mHasLong)
+            return (int) mLong;
+        decodeBinaryText();
+        if (isLong())
+            return (int) parseIntegral();
+        if (isIntegral())
+            return toInt(getString());
+
+        return (int) getDouble();
+    }
+
+    /**
+     * @return Value of the last number as a long, without creating objects for most numbers
+     */
+    long getLong() {
+        if (mHasLong)
+            return mLong;
+        decodeBinaryText();
+        if (isLong())
+            return parseIntegral();
+        if (isIntegral())
+            return toLong(getString());
+
+        return (long) getDouble();
+    }
+
+    /**
+     * @return Value of the last number as a double, without creating objects for most numbers
+     */
+    double getDouble() {
+        if (mHasLong)
+            return mLong;
+        decodeBinaryText();
+        if (isLong())
+            return parseIntegral();
+
+        final double value = parseShortDecimal();
+        if (!Double.isNaN(value))
+            return value;
+
+        return Double.parseDouble(getString());
+    }
+
+    /**
+     * @return Hash of the text of the last name or string, as String.hashCode
+     */
+    int getTextHash() {
+        decodeBinaryText();
+
+        int h = 0;
+        for (int i = 0; i < mTextLength; ++i)
+            h = 31 * h + mText[i];
+
+        return h;
+    }
+
+    /**
+     * @return true if the text of the last name or string is equal to str
+     */
+    boolean isText(String str) {
+        decodeBinaryText();
+
+        if (str.length() != mTextLength)
+            return false;
+
+        for (int i = 0; i < mTextLength; ++i)
+            if (mText[i] != str.charAt(i))
+                return false;
+
+        return true;
+    }
+
+    private boolean isIntegral() {
+        for (int i = 0; i < mTextLength; ++i) {
+            final char c = mText[i];
+            if (c == '.' || c == 'e' || c == 'E')
+                return false;
+        }
+
+        return true;
+    }
+
+    // At most 18 digits cannot overflow
+    private boolean isSmallIntegral() {
+        return mTextLength <= 18;
+    }
+
+    /**
+     * @return true if the last integral number is in the range of long,
+     *         its digits are compared to the bounds without parsing it
+     */
+    private boolean isLongRange() {
+        final boolean negative = mText[0] == '-';
+        final int start = negative ? 1 : 0;
+        final String bound = negative ? LONG_MIN_DIGITS : LONG_MAX_DIGITS;
+
+        final int digits = mTextLength - start;
+        if (digits != bound.length())
+            return digits < bound.length();
+
+        for (int i = 0; i < digits; ++i) {
+            final char c = mText[start + i];
+            if (c != bound.charAt(i))
+                return c < bound.charAt(i);
+        }
+
+        return true;
+    }
+
+    /**
+     * Parse the last integral number in the range of long. The value is
+     * accumulated as a negative number so that Long.MIN_VALUE is read too.
+     */
+    private long parseIntegral() {
+        final boolean negative = mText[0] == '-';
+        long value = 0;
+        for (int i = negative ? 1 : 0; i < mTextLength; ++i)
+            value = value * 10 - (mText[i] - '0');
+
+        return negative ? value : -value;
+    }
+
+    /**
+     * Decode the last number when it has at most 15 significant digits and a
+     * power of ten up to 22: both are exact doubles, so the single
+     * multiplication or division is correctly rounded.
+     *
+     * @return The value, NaN if the number must be decoded by Double.parseDouble
+     */
+    private double parseShortDecimal() {
+        final boolean negative = mText[0] == '-';
+        int i = negative ? 1 : 0;
+
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean fraction = false;
+        for (; i < mTextLength; ++i) {
+            final char c = mText[i];
+            if (c == '.') {
+                fraction = true;
+                continue;
+            }
+            if (c == 'e' || c == 'E')
+                break;
+
+            // Leading zeros are not significant
+            if (mantissa != 0 || c != '0') {
+                if (++digits > 15)
+                    return Double.NaN;
+                mantissa = mantissa * 10 + (c - '0');
+            }
+            if (fraction)
+                --scale;
+        }
+
+        if (i < mTextLength) {
+            ++i;
+            final boolean negativeExponent = mText[i] == '-';
+            if (mText[i] == '-' || mText[i] == '+')
+                ++i;
+
+            int exponent = 0;
+            for (; i < mTextLength; ++i) {
+                exponent = exponent * 10 + (mText[i] - '0');
+                if (exponent > POWERS_OF_TEN.length * 2)
+                    return Double.NaN;
+            }
+            scale += negativeExponent ? -exponent : exponent;
+        }
+
+        if (scale <= -POWERS_OF_TEN.length || scale >= POWERS_OF_TEN.length)
+            return Double.NaN;
+
+        final double value = scale < 0 ? mantissa / POWERS_OF_TEN[-scale] : mantissa * POWERS_OF_TEN[scale];
+        return negative ? -value : value;
+    }
+
+    //
+    // Decoding of number texts, same results as the accessors of the org.json numbers
+    //
+
+    /**
+     * @return A Long for integral numbers in the long range, a Double otherwise
+     */
+    static Number toNumber(String text) {
+        if (isIntegral(text)) {
+            try {
+                return Long.valueOf(text);
+            } catch (NumberFormatException e) {
+                // Out of long range
+            }
+        }
+
+        return Double.valueOf(text);
+    }
+
+    static int toInt(String text) {
+        if (isIntegral(text)) {
+            try {
+                return (int) Long.parseLong(text);
+            } catch (NumberFormatException e) {
+                // Out of long range
+            }
+        }
+
+        return (int) Double.parseDouble(text);
+    }
+
+    static long toLong(String text) {
+        if (isIntegral(text)) {
+            try {
+                return Long.parseLong(text);
+            } catch (NumberFormatException e) {
+                // Out of long range
+            }
+        }
+
+        return (long) Double.parseDouble(text);
+    }
+
+    private static boolean isIntegral(String text) {
+        return text.indexOf('.') < 0 && text.indexOf('e') < 0 && text.indexOf('E') < 0;
+    }
+
+    /**
+     * @return Depth of open containers
+     */
+    int getDepth() {
+        return mDepth;
+    }
+
+    void setError(Exception e) {
+        if (mError == null)
+            mError = e;
+    }
+
+    /**
+     * @return First error of the parsing or null
+     */
+    Exception getError() {
+        return mError;
+    }
+
+    void close() {
+        if (mIn == null)
+            return;
+
+        try {
+            mIn.close();
+        } catch (IOException e) {
+            AFCuteJsonParser.dbg.e("Cannot close data", e);
+        }
+        mIn = null;
+    }
+
+    //
+    // Values
+    //
+
+    private int readValue(int c) throws IOException, JSONException {
+        switch (c) {
+        case '{':
+            ++mPos;
+            return open(true);
+
+        case '[':
+            ++mPos;
+            return open(false);
+
+        case '"':
+            ++mPos;
+            readString();
+            return STRING;
+
+        case 't':
+            readLiteral("true");
+            return TRUE;
+
+        case 'f':
+            readLiteral("false");
+            return FALSE;
+
+        case 'n':
+            readLiteral("null");
+            return NULL;
+
+        case -1:
+            throw error("Unexpected end of data");
+
+        default:
+            if (c == '-' || (c >= '0' && c <= '9')) {
+                readNumber();
+                return NUMBER;
+            }
+            throw error("Unexpected character '" + (char) c + "'");
+        }
+    }
+
+    private int open(boolean object) {
+        if (mDepth == mStack.length) {
+            boolean[] stack = new boolean[mDepth * 2];
+            System.arraycopy(mStack, 0, stack, 0, mDepth);
+            mStack = stack;
+        }
+
+        mStack[mDepth++] = object;
+        mState = STATE_FIRST;
+        return object ? START_OBJECT : START_ARRAY;
+    }
+
+    private int closeContainer() {
+        ++mPos;
+        mState = STATE_NEXT;
+        return mStack[--mDepth] ? END_OBJECT : END_ARRAY;
+    }
+
+    private void readLiteral(String literal) throws IOException, JSONException {
+        for (int i = 0; i < literal.length(); ++i) {
+            if (peek() != literal.charAt(i))
+                throw error("Expected '" + literal + "'");
+            ++mPos;
+        }
+    }
+
+    private void readNumber() throws IOException, JSONException {
+        mTextLength = 0;
+
+        int c = peek();
+        if (c == '-') {
+            append('-');
+            c = advance();
+        }
+        if (c < '0' || c > '9')
+            throw error("Invalid number");
+        c = readDigits(c);
+
+        if (c == '.') {
+            append('.');
+            c = advance();
+            if (c < '0' || c > '9')
+                throw error("Invalid number");
+            c = readDigits(c);
+        }
+
+        if (c == 'e' || c == 'E') {
+            append((char) c);
+            c = advance();
+            if (c == '-' || c == '+') {
+                append((char) c);
+                c = advance();
+            }
+            if (c < '0' || c > '9')
+                throw error("Invalid number");
+            readDigits(c);
+        }
+    }
+
+    /**
+     * @return The char after the digits
+     */
+    private int readDigits(int c) throws IOException {
+        while (c >= '0' && c <= '9') {
+            append((char) c);
+            c = advance();
+        }
+
+        return c;
+    }
+
+    /**
+     * Read the text of a string whose '"' is read
+     */
+    private void readString() throws IOException, JSONException {
+        mTextLength = 0;
+
+        while (true) {
+            if (mPos == mLimit && !fill())
+                throw error("Unterminated string");
+
+            // ASCII run
+            final byte[] buf = mBuf;
+            int p = mPos;
+            final int limit = mLimit;
+            while (p < limit && buf[p] >= 0x20 && buf[p] != '"' && buf[p] != '\\') {
+                if (mTextLength == mText.length)
+                    growText();
+                mText[mTextLength++] = (char) buf[p++];
+            }
+            mPos = p;
+            if (p == limit)
+                continue;
+
+            final int b = buf[p] & 0xFF;
+            if (b == '"') {
+                ++mPos;
+                return;
+            }
+
+            if (b == '\\') {
+                ++mPos;
+                readEscape();
+            }
+            else if (b < 0x20) {
+                // Control chars are accepted like JSONTokener does
+                append((char) b);
+                ++mPos;
+            }
+            else
+                readUtf8(b);
+        }
+    }
+
+    private void readEscape() throws IOException, JSONException {
+        final int c = peek();
+        ++mPos;
+        switch (c) {
+        case '"':
+        case '\\':
+        case '/':
+            append((char) c);
+            break;
+        case 'b':
+            append('\b');
+            break;
+        case 'f':
+            append('\f');
+            break;
+        case 'n':
+            append('\n');
+            break;
+        case 'r':
+            append('\r');
+            break;
+        case 't':
+            append('\t');
+            break;
+        case 'u':
+            int value = 0;
+            for (int i = 0; i < 4; ++i) {
+                final int h = Character.digit(peek(), 16);
+                if (h == -1)
+                    throw error("Invalid unicode escape");
+                value = (value << 4) | h;
+                ++mPos;
+            }
+            append((char) value);
+            break;
+        default:
+            throw error("Invalid escape");
+        }
+    }
+
+    /**
+     * Decode a UTF-8 sequence starting by byte b0 at current position,
+     * invalid sequences are replaced by U+FFFD
+     */
+    private void readUtf8(int b0) throws IOException {
+        int count;
+        int cp;
+        if (b0 >= 0xF0 && b0 < 0xF8) {
+            count = 4;
+            cp = b0 & 0x07;
+        }
+        else if (b0 >= 0xE0) {
+            count = b0 < 0xF0 ? 3 : 0;
+            cp = b0 & 0x0F;
+        }
+        else if (b0 >= 0xC0) {
+            count = 2;
+            cp = b0 & 0x1F;
+        }
+        else
+            count = cp = 0;
+
+        ++mPos;
+        if (count == 0) {
+            append(REPLACEMENT_CHAR);
+            return;
+        }
+
+        for (int i = 1; i < count; ++i) {
+            final int b = peek();
+            if ((b & 0xC0) != 0x80 || b == -1) {
+                append(REPLACEMENT_CHAR);
+                return;
+            }
+            cp = (cp << 6) | (b & 0x3F);
+            ++mPos;
+        }
+
+        if (cp < 0x10000)
+            append((char) cp);
+        else {
+            cp -= 0x10000;
+            append((char) (0xD800 | (cp >> 10)));
+            append((char) (0xDC00 | (cp & 0x3FF)));
+        }
+    }
+
+    private void append(char c) {
+        if (mTextLength == mText.length)
+            growText();
+        mText[mTextLength++] = c;
+    }
+
+    private void growText() {
+        char[] text = new char[mText.length * 2];
+        System.arraycopy(mText, 0, text, 0, mTextLength);
+        mText = text;
+    }
+
+    //
+    // Binary data
+    //
+
+    private int nextBinary() throws JSONException {
+        mHasLong = false;
+        try {
+            if (mDepth == 0) {
+                if (mHasRoot)
+                    return END_DOCUMENT;
+                mHasRoot = true;
+
+                if (mData.getInt() != BINARY_MAGIC || mData.get() != BINARY_VERSION)
+                    throw error("Not a binary json cache");
+                return readBinaryValue(mData.get());
+            }
+
+            final boolean object = mStack[mDepth - 1];
+            final int tag = mData.get();
+            if (tag == END_OBJECT || tag == END_ARRAY) {
+                if (mState == STATE_VALUE || object != (tag == END_OBJECT))
+                    throw error("Unexpected end of container");
+                if (mData.position() != mEnds[mDepth - 1])
+                    throw error("Invalid container length");
+                mState = STATE_NEXT;
+                --mDepth;
+                return tag;
+            }
+
+            if (object && mState != STATE_VALUE) {
+                if (tag != NAME)
+                    throw error("Expected name");
+                readBinaryText();
+                mState = STATE_VALUE;
+                return NAME;
+            }
+
+            mState = STATE_NEXT;
+            return readBinaryValue(tag);
+        } catch (BufferUnderflowException e) {
+            throw error("Unexpected end of data");
+        }
+    }
+
+    private int readBinaryValue(int tag) throws JSONException {
+        switch (tag) {
+        case START_OBJECT:
+        case START_ARRAY:
+            final int length = mData.getInt();
+            if (length <= 0 || length > mData.remaining())
+                throw error("Invalid container length");
+
+            open(tag == START_OBJECT);
+            if (mEnds.length < mDepth) {
+                int[] ends = new int[mStack.length];
+                System.arraycopy(mEnds, 0, ends, 0, mDepth - 1);
+                mEnds = ends;
+            }
+            mEnds[mDepth - 1] = mData.position() + length;
+            return tag;
+
+        case STRING:
+        case NUMBER:
+            readBinaryText();
+            return tag;
+
+        case BINARY_LONG:
+            final long zigzag = readVarLong();
+            mLong = (zigzag >>> 1) ^ -(zigzag & 1);
+            mHasLong = true;
+            return NUMBER;
+
+        case TRUE:
+        case FALSE:
+        case NULL:
+            return tag;
+
+        default:
+            throw error("Invalid tag " + tag);
+        }
+    }
+
+    /**
+     * Go after a text: its length in bytes then its chars, each one encoded
+     * in 1 to 3 bytes like the modified UTF-8 of DataOutput. The text is only
+     * decoded when it is used, so skipped values are not decoded.
+     */
+    private void readBinaryText() throws JSONException {
+        final long length = readVarLong();
+        if (length < 0)
+            throw error("Invalid text length");
+        if (length > mData.remaining())
+            throw error("Unexpected end of data");
+
+        mTextStart = mData.position();
+        mTextSize = (int) length;
+        mData.position(mTextStart + mTextSize);
+    }
+
+    private void decodeBinaryText() {
+        if (mTextStart < 0)
+            return;
+
+        // Bytes are copied by bulk, a mapped buffer is slow to read by byte
+        final int size = mTextSize;
+        if (size > mBuf.length)
+            mBuf = new byte[size];
+        final int position = mData.position();
+        mData.position(mTextStart);
+        mData.get(mBuf, 0, size);
+        mData.position(position);
+        mTextStart = -1;
+
+        if (mText.length < size)
+            mText = new char[Math.max(size, mText.length * 2)];
+
+        // Invalid bytes are replaced by U+FFFD, they are not written by AFJsonBinaryCache
+        final byte[] buf = mBuf;
+        final char[] text = mText;
+        int count = 0;
+        int i = 0;
+        while (i < size) {
+            final int b = buf[i++];
+            if (b >= 0)
+                text[count++] = (char) b;
+            else if ((b & 0xE0) == 0xC0 && i < size)
+                text[count++] = (char) (((b & 0x1F) << 6) | (buf[i++] & 0x3F));
+            else if ((b & 0xF0) == 0xE0 && i + 1 < size) {
+                text[count++] = (char) (((b & 0x0F) << 12) | ((buf[i] & 0x3F) << 6) | (buf[i + 1] & 0x3F));
+                i += 2;
+            }
+            else
+                text[count++] = REPLACEMENT_CHAR;
+        }
+        mTextLength = count;
+    }
+
+    private long readVarLong() throws JSONException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final int b = mData.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0)
+                return value;
+        }
+
+        throw error("Invalid varint");
+    }
+
+    //
+    // Bytes
+    //
+
+    /**
+     * @return The current byte or -1 at end of data
+     */
+    private int peek() throws IOException {
+        if (mPos == mLimit && !fill())
+            return -1;
+
+        return mBuf[mPos] & 0xFF;
+    }
+
+    /**
+     * @return The byte after the current one or -1 at end of data
+     */
+    private int advance() throws IOException {
+        ++mPos;
+        return peek();
+    }
+
+    private int skipWhitespace() throws IOException {
+        while (true) {
+            final int c = peek();
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t')
+                return c;
+            ++mPos;
+        }
+    }
+
+    /**
+     * Read more bytes when the buffer is consumed
+     *
+     * @return false at end of data
+     */
+    private boolean fill() throws IOException {
+        if (mIn == null)
+            return false;
+
+        mOffset += mLimit;
+        mPos = mLimit = 0;
+        while (mLimit == 0) {
+            final int s = mIn.read(mBuf, 0, mBuf.length);
+            if (s < 0) {
+                close();
+                return false;
+            }
+            mLimit = s;
+        }
+
+        return true;
+    }
+
+    private JSONException error(String msg) {
+        if (mData != null)
+            return new JSONException(msg + " at offset " + mData.position());
+
+        return new JSONException(msg + " at offset " + (mOffset + mPos));
+    }
+
+}
@@ -19,6 +19,9 @@
 
 package com.android.aft.AFCuteJsonParser;
 
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
@@ -27,6 +30,24 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+/**
+ * Json value given to actions.
+ *
+ * Values of a streaming parsing are created when their first token is read.
+ * An object or an array is then a shell whose children are read from the
+ * data only if an action asks for them before they are parsed, otherwise the
+ * parser reads them as a stream. Children of a streamed container are not
+ * kept, it has no children after the parser has read them.
+ *
+ * Values of a json object or array only build their children when they are
+ * asked for, an entry can be read or the entries counted without building
+ * the others. Each entry read is still built once, and the first lookup by
+ * name in a large object builds an index of its names.
+ *
+ * Numbers of a streaming parsing are kept as a long or a double, or as their
+ * text with exact numbers, and not as a Number. Use the primitive accessors
+ * to read them without creating objects.
+ */
 public class AFJsonValue {
 
     // Enum for type of value
@@ -46,18 +67,43 @@ public class AFJsonValue {
     // Type of current value
     private JsonValueType mType;
 
-    // Name of the values
+    // Name of the values, built from the index for an array entry
     private String mName;
 
+    // Index in the parent array, -1 for an object entry
+    private int mIndex = -1;
+
     // List of possible value
     private JSONObject mJsonObject;
     private JSONArray mJsonArray;
     private String mJsonString;
     private Number mJsonNumber;
+
+    // Number of a streaming parsing: an integer, or a decimal number kept as a double or as its text
+    private long mJsonLong;
+    private double mJsonDouble;
+    private boolean mJsonDecimal;
+    private String mJsonNumberText;
     private boolean mJsonBoolean;
 
+    // Children, built on demand
     private ArrayList<AFJsonValue> mChildren;
 
+    // Entries already built while the children are not
+    private AFJsonValue[] mItems;
+
+    // Names of the object entries in json object order
+    private String[] mKeys;
+
+    // Open addressing table of entry positions + 1 by name, built on first lookup
+    private int[] mNameIndex;
+
+    // Max number of entries of an object searched without index
+    private static final int MAX_LINEAR_LOOKUP = 8;
+
+    // Tokenizer positioned after the start of a container whose children are not read yet
+    private AFJsonTokenizer mTokenizer;
+
     /**
      * Constructor
      */
@@ -66,29 +112,19 @@ public class AFJsonValue {
     }
 
     public AFJsonValue(String name, Object json) {
+        this(name, -1, json);
+    }
+
+    private AFJsonValue(String name, int index, Object json) {
         mName = name;
+        mIndex = name == null ? index : -1;
 
         if (json instanceof JSONObject) {
             mType = JsonValueType.JsonObject;
             mJsonObject = (JSONObject) json;
-            mChildren = new ArrayList<AFJsonValue>();
-            try {
-                Iterator<?> keys = mJsonObject.keys();
-                while (keys.hasNext()) {
-                    String key = (String) keys.next();
-                    mChildren.add(new AFJsonValue(key, mJsonObject.get(key)));
-                }
-            } catch (JSONException e) {
-            }
         } else if (json instanceof JSONArray) {
             mType = JsonValueType.JsonArray;
             mJsonArray = (JSONArray) json;
-            mChildren = new ArrayList<AFJsonValue>();
-            try {
-                for (int i = 0; i < mJsonArray.length(); ++i)
-                    mChildren.add(new AFJsonValue("" + i, mJsonArray.get(i)));
-            } catch (JSONException e) {
-            }
         } else if (json instanceof String) {
             mType = JsonValueType.JsonString;
             mJsonString = (String) json;
@@ -98,12 +134,253 @@ public class AFJsonValue {
         } else if (json instanceof Boolean) {
             mType = JsonValueType.JsonBoolean;
             mJsonBoolean = ((Boolean) json).booleanValue();
-        } else if (json.equals(JSONObject.NULL)) {
+        } else if (json == null || json.equals(JSONObject.NULL)) {
             mType = JsonValueType.JsonNull;
         } else
             mType = JsonValueType.None;
     }
 
+    /**
+     * Create the value of a token read by a streaming parsing
+     *
+     * @param name Name of the value, null for an array entry
+     * @param index Index of an array entry
+     * @param token Current token of tokenizer
+     * @param tokenizer The tokenizer
+     * @return The value, a shell for an object or an array
+     */
+    static AFJsonValue create(String name, int index, int token, AFJsonTokenizer tokenizer) {
+        switch (token) {
+        case AFJsonTokenizer.START_OBJECT:
+            return new AFJsonValue(name, index, JsonValueType.JsonObject, tokenizer);
+        case AFJsonTokenizer.START_ARRAY:
+            return new AFJsonValue(name, index, JsonValueType.JsonArray, tokenizer);
+        case AFJsonTokenizer.STRING:
+            return new AFJsonValue(name, index, tokenizer.getString());
+        case AFJsonTokenizer.NUMBER:
+            return new AFJsonValue(name, index, tokenizer);
+        case AFJsonTokenizer.TRUE:
+            return new AFJsonValue(name, index, Boolean.TRUE);
+        case AFJsonTokenizer.FALSE:
+            return new AFJsonValue(name, index, Boolean.FALSE);
+        case AFJsonTokenizer.NULL:
+            return new AFJsonValue(name, index, JSONObject.NULL);
+        default:
+            throw new IllegalArgumentException("Not a value token: " + token);
+        }
+    }
+
+    /**
+     * Read a whole value from a streaming parsing
+     *
+     * @see #create(String, int, int, AFJsonTokenizer)
+     * @return The value with all its children, errors are set in the tokenizer
+     */
+    static AFJsonValue read(String name, int index, int token, AFJsonTokenizer tokenizer) {
+        AFJsonValue value = create(name, index, token, tokenizer);
+        if (value.mTokenizer != null)
+            value.materialize();
+
+        return value;
+    }
+
+    // Number of a streaming parsing
+    private AFJsonValue(String name, int index, AFJsonTokenizer tokenizer) {
+        mName = name;
+        mIndex = name == null ? index : -1;
+        mType = JsonValueType.JsonNumber;
+
+        if (tokenizer.isLong()) {
+            mJsonLong = tokenizer.getLong();
+            return;
+        }
+
+        mJsonDecimal = true;
+        if (tokenizer.isKeepingNumberText())
+            mJsonNumberText = tokenizer.getString();
+        else
+            mJsonDouble = tokenizer.getDouble();
+    }
+
+    private AFJsonValue(String name, int index, JsonValueType type, AFJsonTokenizer tokenizer) {
+        mName = name;
+        mIndex = name == null ? index : -1;
+        mType = type;
+        mTokenizer = tokenizer;
+    }
+
+    /**
+     * @return true if the children of this container have not been read from the data yet
+     */
+    boolean isStreamed() {
+        return mTokenizer != null;
+    }
+
+    /**
+     * Give the tokenizer to the parser which reads the children as a stream
+     *
+     * @return The tokenizer positioned on the children
+     */
+    AFJsonTokenizer detachTokenizer() {
+        final AFJsonTokenizer tokenizer = mTokenizer;
+        mTokenizer = null;
+        mChildren = new ArrayList<AFJsonValue>(0);
+        return tokenizer;
+    }
+
+    /**
+     * Read the children of a shell from the data
+     */
+    private void materialize() {
+        final AFJsonTokenizer tokenizer = detachTokenizer();
+        if (tokenizer.getError() != null)
+            return;
+
+        try {
+            readChildren(tokenizer);
+        } catch (IOException e) {
+            tokenizer.setError(e);
+        } catch (JSONException e) {
+            tokenizer.setError(e);
+        }
+    }
+
+    private void readChildren(AFJsonTokenizer tokenizer) throws IOException, JSONException {
+        final boolean object = mType == JsonValueType.JsonObject;
+        for (int i = 0; ; ++i) {
+            int token = tokenizer.next();
+            if (token == AFJsonTokenizer.END_OBJECT || token == AFJsonTokenizer.END_ARRAY)
+                return;
+
+            String name = null;
+            if (object) {
+                name = tokenizer.getString();
+                token = tokenizer.next();
+            }
+
+            AFJsonValue child;
+            if (token == AFJsonTokenizer.START_OBJECT || token == AFJsonTokenizer.START_ARRAY) {
+                child = new AFJsonValue(name, i, token == AFJsonTokenizer.START_OBJECT ? JsonValueType.JsonObject : JsonValueType.JsonArray, null);
+                child.mChildren = new ArrayList<AFJsonValue>();
+                child.readChildren(tokenizer);
+            }
+            else
+                child = create(name, i, token, tokenizer);
+
+            mChildren.add(child);
+        }
+    }
+
+    /**
+     * Build the children from the json object or array
+     */
+    private void buildChildren() {
+        if (mJsonArray == null && mJsonObject == null)
+            return;
+
+        final int length = getNumberOfChildren();
+        ArrayList<AFJsonValue> children = new ArrayList<AFJsonValue>(length);
+        for (int i = 0; i < length; ++i)
+            children.add(getEntry(i));
+
+        mChildren = children;
+        mItems = null;
+        mKeys = null;
+    }
+
+    /**
+     * Get the entry at a position of an object or an array, it is built on first call
+     */
+    AFJsonValue getEntry(int position) {
+        if (mChildren != null)
+            return mChildren.get(position);
+
+        if (mItems == null)
+            mItems = new AFJsonValue[getNumberOfChildren()];
+
+        AFJsonValue value = mItems[position];
+        if (value == null) {
+            if (mJsonArray != null)
+                value = new AFJsonValue(null, position, mJsonArray.opt(position));
+            else {
+                final String key = getKeys()[position];
+                value = new AFJsonValue(key, -1, mJsonObject.opt(key));
+            }
+            mItems[position] = value;
+        }
+
+        return value;
+    }
+
+    /**
+     * @return Name of the object entry at a position
+     */
+    private String getEntryName(int position) {
+        if (mChildren != null)
+            return mChildren.get(position).mName;
+
+        return getKeys()[position];
+    }
+
+    private String[] getKeys() {
+        if (mKeys == null) {
+            String[] keys = new String[mJsonObject.length()];
+            Iterator<?> it = mJsonObject.keys();
+            for (int i = 0; i < keys.length && it.hasNext(); ++i)
+                keys[i] = (String) it.next();
+            mKeys = keys;
+        }
+
+        return mKeys;
+    }
+
+    /**
+     * Find the position of an object entry, the first one for a duplicated name
+     *
+     * @return The position or -1
+     */
+    private int findEntry(String name, int hash) {
+        final int length = getNumberOfChildren();
+        if (length <= MAX_LINEAR_LOOKUP) {
+            for (int i = 0; i < length; ++i)
+                if (name.equals(getEntryName(i)))
+                    return i;
+            return -1;
+        }
+
+        if (mNameIndex == null)
+            mNameIndex = buildNameIndex(length);
+
+        final int[] index = mNameIndex;
+        final int mask = index.length - 1;
+        for (int h = mix(hash) & mask; index[h] != 0; h = (h + 1) & mask)
+            if (name.equals(getEntryName(index[h] - 1)))
+                return index[h] - 1;
+
+        return -1;
+    }
+
+    private int[] buildNameIndex(int length) {
+        // Table at most half full
+        int[] index = new int[Integer.highestOneBit(length) << 2];
+        final int mask = index.length - 1;
+
+        for (int i = 0; i < length; ++i) {
+            final String name = getEntryName(i);
+            int h = mix(name.hashCode()) & mask;
+            while (index[h] != 0 && !name.equals(getEntryName(index[h] - 1)))
+                h = (h + 1) & mask;
+            if (index[h] == 0)
+                index[h] = i + 1;
+        }
+
+        return index;
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
     /**
      * @return Type of value
      */
@@ -115,15 +392,106 @@ public class AFJsonValue {
      * @return Name of the value
      */
     public String getName() {
+        if (mName == null)
+            mName = Integer.toString(mIndex);
+
         return mName;
     }
 
+    /**
+     * @return Index of the value in its parent array, -1 if the parent is not an array
+     */
+    public int getIndex() {
+        return mIndex;
+    }
+
     //
     // Value accessor
     //
 
+    /**
+     * Create a Number for a value of a streaming parsing, prefer the primitive accessors
+     *
+     * @return An Integer or a Long for integers, a Double otherwise, null if the value is not a number
+     */
     public Number getValueAsNumber() {
-        return mJsonNumber;
+        if (mType != JsonValueType.JsonNumber || mJsonNumber != null)
+            return mJsonNumber;
+
+        if (mJsonNumberText != null)
+            return AFJsonTokenizer.toNumber(mJsonNumberText);
+        if (mJsonDecimal)
+            return Double.valueOf(mJsonDouble);
+        if (mJsonLong >= Integer.MIN_VALUE && mJsonLong <= Integer.MAX_VALUE)
+            return Integer.valueOf((int) mJsonLong);
+        return Long.valueOf(mJsonLong);
+    }
+
+    /**
+     * @return The number as an int, 0 if the value is not a number
+     */
+    public int getValueAsInt() {
+        if (mJsonNumber != null)
+            return mJsonNumber.intValue();
+        if (mJsonNumberText != null)
+            return AFJsonTokenizer.toInt(mJsonNumberText);
+        if (mJsonDecimal)
+            return (int) mJsonDouble;
+        return (int) mJsonLong;
+    }
+
+    /**
+     * @return The number as a long, 0 if the value is not a number
+     */
+    public long getValueAsLong() {
+        if (mJsonNumber != null)
+            return mJsonNumber.longValue();
+        if (mJsonNumberText != null)
+            return AFJsonTokenizer.toLong(mJsonNumberText);
+        if (mJsonDecimal)
+            return (long) mJsonDouble;
+        return mJsonLong;
+    }
+
+    /**
+     * @return The number as a double, 0 if the value is not a number
+     */
+    public double getValueAsDouble() {
+        if (mJsonNumber != null)
+            return mJsonNumber.doubleValue();
+        if (mJsonNumberText != null)
+            return Double.parseDouble(mJsonNumberText);
+        if (mJsonDecimal)
+            return mJsonDouble;
+        return mJsonLong;
+    }
+
+    /**
+     * Value of the number as written in the data for integers and for the
+     * numbers of a streaming parsing with exact numbers, see
+     * AFCuteJsonParser.setExactNumbers. Other numbers have been read as a
+     * double.
+     *
+     * @return The number as a BigDecimal, null if the value is not a number
+     */
+    public BigDecimal getValueAsBigDecimal() {
+        if (mType != JsonValueType.JsonNumber)
+            return null;
+
+        if (mJsonNumberText != null)
+            return new BigDecimal(mJsonNumberText);
+        if (mJsonDecimal)
+            return BigDecimal.valueOf(mJsonDouble);
+        if (mJsonNumber == null)
+            return BigDecimal.valueOf(mJsonLong);
+
+        if (mJsonNumber instanceof BigDecimal)
+            return (BigDecimal) mJsonNumber;
+        if (mJsonNumber instanceof BigInteger)
+            return new BigDecimal((BigInteger) mJsonNumber);
+        if (mJsonNumber instanceof Double || mJsonNumber instanceof Float)
+            return new BigDecimal(mJsonNumber.toString());
+        return BigDecimal.valueOf(mJsonNumber.longValue());
     }
 
     public String getValueAsString() {
@@ -138,39 +506,125 @@ public class AFJsonValue {
      * @return true if the value as some children values
      */
     public boolean hasChildren() {
-        if (mChildren == null)
-            return false;
+        return getNumberOfChildren() != 0;
+    }
 
-        return mChildren.size() != 0;
+    /**
+     * Get the number of children without building them
+     *
+     * @return Number of entries of an object or an array, 0 for other values
+     */
+    public int getNumberOfChildren() {
+        if (mTokenizer != null)
+            materialize();
+
+        if (mChildren != null)
+            return mChildren.size();
+        if (mJsonArray != null)
+            return mJsonArray.length();
+        if (mJsonObject != null)
+            return mJsonObject.length();
+
+        return 0;
     }
 
     public Collection<AFJsonValue> getChildren() {
+        if (mTokenizer != null)
+            materialize();
+
         if (mChildren == null)
-            return null;
+            buildChildren();
 
         return mChildren;
     }
 
-    private AFJsonValue getJsonChild(String name) {
-        if (mChildren == null)
-            return null;
-
-        if (mChildren.size() < 1)
-            return null;
+    /**
+     * Get the children which are objects or arrays, simple values are not built
+     *
+     * @return The children objects and arrays
+     */
+    Collection<AFJsonValue> getContainerChildren() {
+        if (mTokenizer != null)
+            materialize();
+
+        ArrayList<AFJsonValue> containers = new ArrayList<AFJsonValue>();
+        if (mChildren != null) {
+            for (AFJsonValue c: mChildren)
+                if (c.mType == JsonValueType.JsonObject || c.mType == JsonValueType.JsonArray)
+                    containers.add(c);
+        }
+        else if (mJsonArray != null) {
+            final int length = mJsonArray.length();
+            for (int i = 0; i < length; ++i)
+                if (isContainer(mJsonArray.opt(i)))
+                    containers.add(getEntry(i));
+        }
+        else if (mJsonObject != null) {
+            final String[] keys = getKeys();
+            for (int i = 0; i < keys.length; ++i)
+                if (isContainer(mJsonObject.opt(keys[i])))
+                    containers.add(getEntry(i));
+        }
 
-        for (AFJsonValue c: mChildren)
-            if (c.getName().equals(name))
-                return c;
+        return containers;
+    }
 
-        return null;
+    private static boolean isContainer(Object json) {
+        return json instanceof JSONObject || json instanceof JSONArray;
     }
 
+    /**
+     * Get an entry of an array, other entries are not built
+     *
+     * @param index Index of the entry
+     * @return The entry or null if it does not exist
+     */
     public AFJsonValue getJsonArrayEntry(int index) {
-        return getJsonChild(Integer.toString(index));
+        if (mType != JsonValueType.JsonArray)
+            return null;
+
+        if (index < 0 || index >= getNumberOfChildren())
+            return null;
+
+        return getEntry(index);
     }
 
+    /**
+     * Get an entry of an object by its name, other entries are not built
+     *
+     * @param name Name of the entry
+     * @return The entry or null if it does not exist
+     */
     public AFJsonValue getJsonObjectEntry(String name) {
-        return getJsonChild(name);
+        if (mType != JsonValueType.JsonObject)
+            return null;
+
+        final int position = findEntry(name, name.hashCode());
+        return position != -1 ? getEntry(position) : null;
+    }
+
+    /**
+     * Get an entry of an object by a key, a lookup of the key at the same
+     * position in objects of the same shape does not hash the name
+     *
+     * @param key Key of the entry
+     * @return The entry or null if it does not exist
+     */
+    public AFJsonValue getJsonObjectEntry(AFJsonKey key) {
+        if (mType != JsonValueType.JsonObject)
+            return null;
+
+        final int length = getNumberOfChildren();
+        final int hint = key.mPosition;
+        if (hint < length && key.mName.equals(getEntryName(hint)))
+            return getEntry(hint);
+
+        final int position = findEntry(key.mName, key.mHash);
+        if (position == -1)
+            return null;
+
+        key.mPosition = position;
+        return getEntry(position);
     }
 
     // Convert to String
@@ -181,10 +635,18 @@ public class AFJsonValue {
                 return mJsonBoolean ? "true" : "false";
 
             case JsonNumber:
-                return mJsonNumber.toString();
+                if (mJsonNumber != null)
+                    return mJsonNumber.toString();
+                if (mJsonNumberText != null)
+                    return AFJsonTokenizer.toNumber(mJsonNumberText).toString();
+                if (mJsonDecimal)
+                    return Double.toString(mJsonDouble);
+                return Long.toString(mJsonLong);
 
             case JsonArray:
-                return "array[" + mJsonArray.length() + "]";
+                if (mTokenizer != null)
+                    return "array[...]";
+                return "array[" + getNumberOfChildren() + "]";
 
             case JsonNull:
                 return "null";
@@ -193,16 +655,20 @@ public class AFJsonValue {
                 return '"' + mJsonString + '"';
 
             case JsonObject:
+                if (mTokenizer != null)
+                    return "{...}";
+
                 StringBuilder str = new StringBuilder();
 
                 str.append("{");
-                Iterator<?> keys = mJsonObject.keys();
-                while (keys.hasNext()) {
-                    if (str.length() > 1)
-                        str.append(" ,");
-                    str.append('"');
-                    str.append(keys.next());
-                    str.append('"');
+                if (mJsonObject != null) {
+                    Iterator<?> keys = mJsonObject.keys();
+                    while (keys.hasNext())
+                        appendKey(str, keys.next());
+                }
+                else {
+                    for (AFJsonValue child : mChildren)
+                        appendKey(str, child.getName());
                 }
                 str.append("}");
 
@@ -212,4 +678,12 @@ public class AFJsonValue {
         return "<undifined>";
     }
 
+    private static void appendKey(StringBuilder str, Object key) {
+        if (str.length() > 1)
+            str.append(" ,");
+        str.append('"');
+        str.append(key);
+        str.append('"');
+    }
+
 }
@@ -0,0 +1,503 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ */
+
+package com.android.aft.AFCuteJsonParser;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Streaming writer of UTF-8 json bytes, counterpart of the streaming parser.
+ *
+ * Strings are encoded and escaped straight into a byte buffer reused for the
+ * whole document, integers are written without creating objects. The
+ * structure is checked with a stack of the open containers, a misplaced call
+ * throws a JSONException.
+ *
+ * Usage:
+ *  writer.beginObject();
+ *  writer.name("id").value(id);
+ *  writer.name("items").beginArray();
+ *  for (Item item: items)
+ *      writer.value(item, mapper);
+ *  writer.endArray();
+ *  writer.endObject();
+ *  writer.flush();
+ */
+public final class AFJsonWriter {
+
+    // State in the current container
+    private final static int STATE_FIRST = 0;
+    private final static int STATE_NEXT = 1;
+    private final static int STATE_NAME = 2;
+
+    private final static byte[] HEX = {
+        '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'
+    };
+
+    private final static byte[] NULL = { 'n', 'u', 'l', 'l' };
+    private final static byte[] TRUE = { 't', 'r', 'u', 'e' };
+    private final static byte[] FALSE = { 'f', 'a', 'l', 's', 'e' };
+    private final static byte[] MIN_LONG = { '-', '9', '2', '2', '3', '3', '7', '2', '0', '3', '6', '8', '5', '4', '7', '7', '5', '8', '0', '8' };
+
+    // Longest encoding of a char, the escape of a control char
+    private final static int MAX_CHAR_BYTES = 6;
+
+    private OutputStream mOut;
+
+    private final byte[] mBuf;
+    private int mPos;
+
+    // Open containers, true for an object
+    private boolean[] mStack = new boolean[32];
+    private int mDepth;
+    private int mState;
+    private boolean mHasRoot;
+
+    public AFJsonWriter(OutputStream out) {
+        this(out, 8192);
+    }
+
+    /**
+     * @param out Stream receiving the data
+     * @param bufferSize Size of the byte buffer, data is written to out when it is full
+     */
+    public AFJsonWriter(OutputStream out, int bufferSize) {
+        mOut = out;
+        mBuf = new byte[Math.max(bufferSize, 64)];
+    }
+
+    /**
+     * Reuse the writer and its buffer for a new document
+     *
+     * @param out Stream receiving the data
+     */
+    public void reset(OutputStream out) {
+        mOut = out;
+        mPos = 0;
+        mDepth = 0;
+        mState = STATE_FIRST;
+        mHasRoot = false;
+    }
+
+    /**
+     * @return true if a whole document has been written
+     */
+    public boolean isComplete() {
+        return mHasRoot && mDepth == 0;
+    }
+
+    //
+    // Structure
+    //
+
+    public AFJsonWriter beginObject() throws IOException, JSONException {
+        beforeValue();
+        push(true);
+        writeByte('{');
+        return this;
+    }
+
+    public AFJsonWriter endObject() throws IOException, JSONException {
+        if (mDepth == 0 || !mStack[mDepth - 1])
+            throw new JSONException("No object to end");
+        if (mState == STATE_NAME)
+            throw new JSONException("Value expected after name");
+
+        --mDepth;
+        mState = STATE_NEXT;
+        writeByte('}');
+        return this;
+    }
+
+    public AFJsonWriter beginArray() throws IOException, JSONException {
+        beforeValue();
+        push(false);
+        writeByte('[');
+        return this;
+    }
+
+    public AFJsonWriter endArray() throws IOException, JSONException {
+        if (mDepth == 0 || mStack[mDepth - 1])
+            throw new JSONException("No array to end");
+
+        --mDepth;
+        mState = STATE_NEXT;
+        writeByte(']');
+        return this;
+    }
+
+    /**
+     * Write the name of the next entry of the current object
+     */
+    public AFJsonWriter name(String name) throws IOException, JSONException {
+        if (name == null)
+            throw new JSONException("Name is null");
+        if (mDepth == 0 || !mStack[mDepth - 1])
+            throw new JSONException("Name outside an object");
+        if (mState == STATE_NAME)
+            throw new JSONException("Value expected after name");
+
+        if (mState == STATE_NEXT)
+            writeByte(',');
+        writeString(name);
+        writeByte(':');
+        mState = STATE_NAME;
+        return this;
+    }
+
+    //
+    // Values
+    //
+
+    /**
+     * Write a string, null for a null value
+     */
+    public AFJsonWriter value(String value) throws IOException, JSONException {
+        if (value == null)
+            return nullValue();
+
+        beforeValue();
+        writeString(value);
+        return this;
+    }
+
+    public AFJsonWriter value(long value) throws IOException, JSONException {
+        beforeValue();
+        writeLong(value);
+        return this;
+    }
+
+    /**
+     * Write a number, integral values without fraction
+     *
+     * @throws JSONException for NaN and infinite values
+     */
+    public AFJsonWriter value(double value) throws IOException, JSONException {
+        if (Double.isNaN(value) || Double.isInfinite(value))
+            throw new JSONException("Number must be finite: " + value);
+
+        beforeValue();
+        if (value == (long) value && Math.abs(value) < 1e15)
+            writeLong((long) value);
+        else
+            writeAscii(Double.toString(value));
+        return this;
+    }
+
+    public AFJsonWriter value(boolean value) throws IOException, JSONException {
+        beforeValue();
+        writeBytes(value ? TRUE : FALSE);
+        return this;
+    }
+
+    public AFJsonWriter nullValue() throws IOException, JSONException {
+        beforeValue();
+        writeBytes(NULL);
+        return this;
+    }
+
+    /**
+     * Write an object with a serializer
+     *
+     * @param object The object, null for a null value
+     * @param serializer Serializer of the object, an object mapper for annotated models
+     */
+    public <T> AFJsonWriter value(T object, AFJsonSerializer<? super T> serializer) throws IOException, JSONException {
+        if (object == null)
+            return nullValue();
+
+        serializer.write(this, object);
+        return this;
+    }
+
+    /**
+     * Write a value of org.json or a java value: null, String, Number,
+     * Boolean, JSONObject, JSONArray, Map, Collection or Object[]
+     *
+     * @throws JSONException for other types of values
+     */
+    public AFJsonWriter value(Object value) throws IOException, JSONException {
+        if (value == null || value == JSONObject.NULL)
+            return nullValue();
+        if (value instanceof String)
+            return value((String) value);
+        if (value instanceof Boolean)
+            return value(((Boolean) value).booleanValue());
+        if (value instanceof Number)
+            return value((Number) value);
+
+        if (value instanceof JSONObject) {
+            final JSONObject object = (JSONObject) value;
+            beginObject();
+            for (Iterator<?> it = object.keys(); it.hasNext();) {
+                final String name = String.valueOf(it.next());
+                name(name).value(object.opt(name));
+            }
+            return endObject();
+        }
+
+        if (value instanceof JSONArray) {
+            final JSONArray array = (JSONArray) value;
+            beginArray();
+            for (int i = 0; i < array.length(); ++i)
+                value(array.opt(i));
+            return endArray();
+        }
+
+        if (value instanceof Map) {
+            beginObject();
+            for (Map.Entry<?, ?> entry: ((Map<?, ?>) value).entrySet())
+                name(String.valueOf(entry.getKey())).value(entry.getValue());
+            return endObject();
+        }
+
+        if (value instanceof Collection) {
+            beginArray();
+            for (Object item: (Collection<?>) value)
+                value(item);
+            return endArray();
+        }
+
+        if (value instanceof Object[]) {
+            beginArray();
+            for (Object item: (Object[]) value)
+                value(item);
+            return endArray();
+        }
+
+        throw new JSONException("Cannot write a value of type " + value.getClass().getName());
+    }
+
+    private AFJsonWriter value(Number value) throws IOException, JSONException {
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte)
+            return value(value.longValue());
+        if (value instanceof Double || value instanceof Float)
+            return value(value.doubleValue());
+
+        if (value instanceof BigInteger || value instanceof BigDecimal) {
+            beforeValue();
+            writeAscii(value.toString());
+            return this;
+        }
+
+        return value(value.doubleValue());
+    }
+
+    //
+    // Output
+    //
+
+    /**
+     * Write the buffered data to the stream and flush it
+     */
+    public void flush() throws IOException {
+        flushBuffer();
+        mOut.flush();
+    }
+
+    /**
+     * Flush and close the stream
+     *
+     * @throws JSONException if the document is not complete, the stream is closed anyway
+     */
+    public void close() throws IOException, JSONException {
+        try {
+            flush();
+        } finally {
+            mOut.close();
+        }
+
+        if (!isComplete())
+            throw new JSONException("Incomplete document");
+    }
+
+    private void beforeValue() throws IOException, JSONException {
+        if (mDepth == 0) {
+            if (mHasRoot)
+                throw new JSONException("Multiple root values");
+            mHasRoot = true;
+            return;
+        }
+
+        if (mStack[mDepth - 1]) {
+            if (mState != STATE_NAME)
+                throw new JSONException("Name expected before value");
+        }
+        else if (mState == STATE_NEXT)
+            writeByte(',');
+
+        mState = STATE_NEXT;
+    }
+
+    private void push(boolean object) {
+        if (mDepth == mStack.length) {
+            boolean[] stack = new boolean[mDepth * 2];
+            System.arraycopy(mStack, 0, stack, 0, mDepth);
+            mStack = stack;
+        }
+
+        mStack[mDepth++] = object;
+        mState = STATE_FIRST;
+    }
+
+    private void flushBuffer() throws IOException {
+        if (mPos != 0) {
+            mOut.write(mBuf, 0, mPos);
+            mPos = 0;
+        }
+    }
+
+    private void writeByte(int b) throws IOException {
+        if (mPos == mBuf.length)
+            flushBuffer();
+
+        mBuf[mPos++] = (byte) b;
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException {
+        if (mPos + bytes.length > mBuf.length)
+            flushBuffer();
+
+        System.arraycopy(bytes, 0, mBuf, mPos, bytes.length);
+        mPos += bytes.length;
+    }
+
+    private void writeAscii(String str) throws IOException {
+        final int length = str.length();
+        for (int i = 0; i < length; ++i)
+            writeByte(str.charAt(i));
+    }
+
+    private void writeLong(long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            writeBytes(MIN_LONG);
+            return;
+        }
+
+        if (mPos + 20 > mBuf.length)
+            flushBuffer();
+
+        if (value < 0) {
+            mBuf[mPos++] = '-';
+            value = -value;
+        }
+
+        // Digits are written from the end
+        int digits = 1;
+        for (long v = value / 10; v != 0; v /= 10)
+            ++digits;
+
+        int pos = mPos + digits;
+        mPos = pos;
+        do {
+            mBuf[--pos] = (byte) ('0' + (int) (value % 10));
+            value /= 10;
+        } while (value != 0);
+    }
+
+    /**
+     * Write a quoted string in UTF-8, a lone surrogate is replaced by U+FFFD
+     */
+    private void writeString(String str) throws IOException {
+        writeByte('"');
+
+        final int length = str.length();
+        for (int i = 0; i < length; ++i) {
+            if (mPos + MAX_CHAR_BYTES > mBuf.length)
+                flushBuffer();
+
+            final byte[] buf = mBuf;
+            int c = str.charAt(i);
+            if (c < 0x80) {
+                if (c >= 0x20 && c != '"' && c != '\\') {
+                    buf[mPos++] = (byte) c;
+                    continue;
+                }
+
+                buf[mPos++] = '\\';
+                switch (c) {
+                case '"':
+                case '\\':
+                    buf[mPos++] = (byte) c;
+                    break;
+                case '\n':
+                    buf[mPos++] = 'n';
+                    break;
+                case '\r':
+                    buf[mPos++] = 'r';
+                    break;
+                case '\t':
+                    buf[mPos++] = 't';
+                    break;
+                case '\b':
+                    buf[mPos++] = 'b';
+                    break;
+                case '\f':
+                    buf[mPos++] = 'f';
+                    break;
+                default:
+                    buf[mPos++] = 'u';
+                    buf[mPos++] = '0';
+                    buf[mPos++] = '0';
+                    buf[mPos++] = HEX[c >> 4];
+                    buf[mPos++] = HEX[c & 0xf];
+                    break;
+                }
+            }
+            else if (c < 0x800) {
+                buf[mPos++] = (byte) (0xc0 | (c >> 6));
+                buf[mPos++] = (byte) (0x80 | (c & 0x3f));
+            }
+            else if (c >= 0xd800 && c <= 0xdfff) {
+                // Surrogate pair
+                if (c <= 0xdbff && i + 1 < length && Character.isLowSurrogate(str.charAt(i + 1))) {
+                    final int cp = Character.toCodePoint((char) c, str.charAt(++i));
+                    buf[mPos++] = (byte) (0xf0 | (cp >> 18));
+                    buf[mPos++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+                    buf[mPos++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+                    buf[mPos++] = (byte) (0x80 | (cp & 0x3f));
+                    continue;
+                }
+
+                c = 0xfffd;
+                buf[mPos++] = (byte) (0xe0 | (c >> 12));
+                buf[mPos++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                buf[mPos++] = (byte) (0x80 | (c & 0x3f));
+            }
+            else {
+                buf[mPos++] = (byte) (0xe0 | (c >> 12));
+                buf[mPos++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                buf[mPos++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+
+        writeByte('"');
+    }
+
+}
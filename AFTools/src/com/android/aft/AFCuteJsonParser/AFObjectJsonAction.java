@@ -19,6 +19,8 @@
 
 package com.android.aft.AFCuteJsonParser;
 
+import java.math.BigDecimal;
+
 public abstract class AFObjectJsonAction<CookieType> extends AFJsonAction<CookieType> {
 
     // Ctr
@@ -73,11 +75,17 @@ public abstract class AFObjectJsonAction<CookieType> extends AFJsonAction<Cookie
      * @return value
      */
     public AFJsonValue getValueOf(String name) {
-        for (AFJsonValue value : mContext.getCurrent().getChildren())
-            if (value.getName().equals(name))
-                return value;
+        return mContext.getCurrent().getJsonObjectEntry(name);
+    }
 
-        return null;
+    /**
+     * Return one value of the json object
+     *
+     * @param key of the value
+     * @return value
+     */
+    public AFJsonValue getValueOf(AFJsonKey key) {
+        return mContext.getCurrent().getJsonObjectEntry(key);
     }
 
     /**
@@ -87,10 +95,17 @@ public abstract class AFObjectJsonAction<CookieType> extends AFJsonAction<Cookie
      * @return true if the value is present in the object
      */
     public boolean hasValueOf(String name) {
-        for (AFJsonValue value : mContext.getCurrent().getChildren())
-            if (value.getName().equals(name))
-                return true;
-        return false;
+        return getValueOf(name) != null;
+    }
+
+    /**
+     * Return if the value is present
+     *
+     * @param key of the value
+     * @return true if the value is present in the object
+     */
+    public boolean hasValueOf(AFJsonKey key) {
+        return getValueOf(key) != null;
     }
 
     /**
@@ -100,15 +115,11 @@ public abstract class AFObjectJsonAction<CookieType> extends AFJsonAction<Cookie
      * @return value
      */
     public int getIntValueOf(String name) {
-        AFJsonValue value = getValueOf(name);
-        if (value == null) {
-            AFCuteJsonParser.dbg.e("Cannot find property named '" + name + "' in Json Object named '" + mName + "'");
-            return -1;
-        }
-        if (value.getType() == AFJsonValue.JsonValueType.JsonNumber)
-            return value.getValueAsNumber().intValue();
+        return toInt(getValueOf(name), name);
+    }
 
-        return -1;
+    public int getIntValueOf(AFJsonKey key) {
+        return toInt(getValueOf(key), key.getName());
     }
 
     /**
@@ -118,15 +129,39 @@ public abstract class AFObjectJsonAction<CookieType> extends AFJsonAction<Cookie
      * @return value
      */
     public long getLongValueOf(String name) {
-        AFJsonValue value = getValueOf(name);
-        if (value == null) {
-            AFCuteJsonParser.dbg.e("Cannot find property named '" + name + "' in Json Object named '" + mName + "'");
-            return -1;
-        }
-        if (value.getType() == AFJsonValue.JsonValueType.JsonNumber)
-            return value.getValueAsNumber().longValue();
+        return toLong(getValueOf(name), name);
+    }
 
-        return -1;
+    public long getLongValueOf(AFJsonKey key) {
+        return toLong(getValueOf(key), key.getName());
+    }
+
+    /**
+     * Return one value of the json object as a double
+     *
+     * @param name of the value
+     * @return value
+     */
+    public double getDoubleValueOf(String name) {
+        return toDouble(getValueOf(name), name);
+    }
+
+    public double getDoubleValueOf(AFJsonKey key) {
+        return toDouble(getValueOf(key), key.getName());
+    }
+
+    /**
+     * Return one value of the json object as an exact decimal number
+     *
+     * @param name of the value
+     * @return value
+     */
+    public BigDecimal getBigDecimalValueOf(String name) {
+        return toBigDecimal(getValueOf(name), name);
+    }
+
+    public BigDecimal getBigDecimalValueOf(AFJsonKey key) {
+        return toBigDecimal(getValueOf(key), key.getName());
     }
 
     /**
@@ -136,15 +171,11 @@ public abstract class AFObjectJsonAction<CookieType> extends AFJsonAction<Cookie
      * @return value
      */
     public String getStringValueOf(String name) {
-        AFJsonValue value = getValueOf(name);
-        if (value == null) {
-            AFCuteJsonParser.dbg.e("Cannot find property named '" + name + "' in Json Object named '" + mName + "'");
-            return null;
-        }
+        return toString(getValueOf(name), name);
+    }
 
-        if (value.getType() == AFJsonValue.JsonValueType.JsonString)
-            return value.getValueAsString();
-        return null;
+    public String getStringValueOf(AFJsonKey key) {
+        return toString(getValueOf(key), key.getName());
     }
 
     /**
@@ -154,7 +185,71 @@ public abstract class AFObjectJsonAction<CookieType> extends AFJsonAction<Cookie
      * @return value
      */
     public Boolean getBooleanValueOf(String name) {
-        AFJsonValue value = getValueOf(name);
+        return toBoolean(getValueOf(name), name);
+    }
+
+    public Boolean getBooleanValueOf(AFJsonKey key) {
+        return toBoolean(getValueOf(key), key.getName());
+    }
+
+    //
+    // Conversion of values
+    //
+
+    private int toInt(AFJsonValue value, String name) {
+        if (value == null) {
+            AFCuteJsonParser.dbg.e("Cannot find property named '" + name + "' in Json Object named '" + mName + "'");
+            return -1;
+        }
+        if (value.getType() == AFJsonValue.JsonValueType.JsonNumber)
+            return value.getValueAsInt();
+
+        return -1;
+    }
+
+    private long toLong(AFJsonValue value, String name) {
+        if (value == null) {
+            AFCuteJsonParser.dbg.e("Cannot find property named '" + name + "' in Json Object named '" + mName + "'");
+            return -1;
+        }
+        if (value.getType() == AFJsonValue.JsonValueType.JsonNumber)
+            return value.getValueAsLong();
+
+        return -1;
+    }
+
+    private double toDouble(AFJsonValue value, String name) {
+        if (value == null) {
+            AFCuteJsonParser.dbg.e("Cannot find property named '" + name + "' in Json Object named '" + mName + "'");
+            return -1;
+        }
+        if (value.getType() == AFJsonValue.JsonValueType.JsonNumber)
+            return value.getValueAsDouble();
+
+        return -1;
+    }
+
+    private BigDecimal toBigDecimal(AFJsonValue value, String name) {
+        if (value == null) {
+            AFCuteJsonParser.dbg.e("Cannot find property named '" + name + "' in Json Object named '" + mName + "'");
+            return null;
+        }
+
+        return value.getValueAsBigDecimal();
+    }
+
+    private String toString(AFJsonValue value, String name) {
+        if (value == null) {
+            AFCuteJsonParser.dbg.e("Cannot find property named '" + name + "' in Json Object named '" + mName + "'");
+            return null;
+        }
+
+        if (value.getType() == AFJsonValue.JsonValueType.JsonString)
+            return value.getValueAsString();
+        return null;
+    }
+
+    private Boolean toBoolean(AFJsonValue value, String name) {
         if (value == null) {
             AFCuteJsonParser.dbg.e("Cannot find property named '" + name + "' in Json Object named '" + mName + "'");
             return null;
@@ -20,15 +20,30 @@
 package com.android.aft.AFCuteXmlParser;
 
 import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.io.SequenceInputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
 import java.util.Hashtable;
+import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import android.text.TextUtils;
 
 import com.android.aft.AFCoreTools.DebugTools;
-import com.android.aft.AFCuteXmlParser.LowParser.PullXmlParser.AFPullXmlLowXmlParser;
+import com.android.aft.AFCuteXmlParser.LowParser.Binary.AFBinaryLowXmlParser;
 
 /**
  * CuteXmlParser
@@ -44,20 +59,135 @@ import com.android.aft.AFCuteXmlParser.LowParser.PullXmlParser.AFPullXmlLowXmlPa
  */
 public class AFCuteXmlParser {
 
-    // Low level parser
-    public static AFLowXmlParser parser = new AFPullXmlLowXmlParser();
+    // Default low level parser of parsers without their own: AFPullXmlLowXmlParser,
+    // AFHomeMadeLowXmlParser or AFFastLowXmlParser
+    public static volatile AFLowXmlParser parser = AFLowXmlParsers.get(AFLowXmlParsers.PULL);
 
     // Debug
     public final static DebugTools.Logger dbg = new DebugTools.Logger("NFCuteXmlParser");
     public static boolean hasDebug = false;
 
+    // Low level parser of binary data, whatever the low level parser of the parser
+    private final static AFBinaryLowXmlParser sBinaryParser = new AFBinaryLowXmlParser();
+
+    // Low level parser of this parser, null to use the default one
+    private volatile AFLowXmlParser mLowParser;
+
+    // Debug of this parser, null to use the default one
+    private volatile Boolean mDebug;
+
     // List of action
     protected Hashtable<String, Vector<AFNodeAction<?>>> mActions;
 
+    // Names of action nodes, each parsing use a child of the snapshot of the action plan
+    private final AFXmlSymbolTable mSymbols = new AFXmlSymbolTable();
+
+    // Dispatch table compiled from actions at first parsing, reset when an action is added
+    private volatile AFNodeActionPlan mActionPlan;
+
+    // Number of chunks by thread in parallel parsing
+    private final static int CHUNKS_BY_THREAD = 4;
+
+    /**
+     * Create the cookie given to the actions of each chunk in parallel parsing
+     */
+    public interface ChunkCookieFactory<CookieType> {
+        CookieType createCookie(int chunk);
+    }
+
+    /**
+     * Merge the cookies of all chunks, in document order, in the parsing result
+     */
+    public interface ChunkCombiner<CookieType, ResultType> {
+        ResultType combine(List<CookieType> cookies);
+    }
+
     public AFCuteXmlParser() {
         mActions = new Hashtable<String, Vector<AFNodeAction<?>>>();
     }
 
+    /**
+     * Set the low level parser of this parser. Low level parsers are
+     * stateless, so parsers with different ones can run at the same time.
+     *
+     * @param lowParser The low level parser, null to use the default one
+     */
+    public final void setLowParser(AFLowXmlParser lowParser) {
+        mLowParser = lowParser;
+    }
+
+    /**
+     * Set the low level parser of this parser by its registered name
+     *
+     * @param name Name in AFLowXmlParsers
+     * @throws IllegalArgumentException if no parser is registered with this name
+     */
+    public final void setLowParser(String name) {
+        AFLowXmlParser lowParser = AFLowXmlParsers.get(name);
+        if (lowParser == null)
+            throw new IllegalArgumentException("Unknown low level parser: " + name);
+
+        mLowParser = lowParser;
+    }
+
+    /**
+     * @return The low level parser used by this parser
+     */
+    public final AFLowXmlParser getLowParser() {
+        AFLowXmlParser lowParser = mLowParser;
+        return lowParser != null ? lowParser : parser;
+    }
+
+    /**
+     * Enable debug logs of this parser
+     *
+     * @param debug Debug state, null to use hasDebug
+     */
+    public final void setDebug(Boolean debug) {
+        mDebug = debug;
+    }
+
+    /**
+     * @return true if debug logs of this parser are enabled
+     */
+    public final boolean hasDebug() {
+        Boolean debug = mDebug;
+        return debug != null ? debug : hasDebug;
+    }
+
+    /**
+     * @return The symbol table with the node names of actions
+     */
+    public final AFXmlSymbolTable getSymbolTable() {
+        return mSymbols;
+    }
+
+    /**
+     * Get the dispatch table of actions, it is compiled at first call after
+     * an action is added. Actions added during a parsing are used by the next
+     * parsing.
+     *
+     * The plan has its own snapshot of the symbol table, names interned later
+     * by new actions can not get the ids of the names of a running parsing.
+     *
+     * @return The action dispatch table
+     */
+    private final AFNodeActionPlan getActionPlan() {
+        AFNodeActionPlan plan = mActionPlan;
+        if (plan != null)
+            return plan;
+
+        synchronized (mSymbols) {
+            plan = mActionPlan;
+            if (plan == null) {
+                plan = new AFNodeActionPlan(mSymbols.snapshot(), mActions);
+                mActionPlan = plan;
+            }
+        }
+
+        return plan;
+    }
+
     /**
      * Parser entry point to launch parsing of xml data
      *
@@ -65,28 +195,43 @@ public class AFCuteXmlParser {
      * @return parsing result object
      */
     public final AFCuteXmlParserResult parse(String xml) {
-        return parse(new ByteArrayInputStream(xml.getBytes()));
+        return parse(xml, getLowParser());
     }
 
     /**
-     * Parser entry point to launch parsing of xml data
+     * Parser entry point to launch parsing of xml data with a low level parser
+     *
+     * @param xml data
+     * @param lowParser Low level parser of this parsing
+     * @return parsing result object
+     */
+    public final AFCuteXmlParserResult parse(String xml, AFLowXmlParser lowParser) {
+        AFCuteXmlParserContext context = initContext(lowParser);
+        return parse(context, lowParser.init(context, xml));
+    }
+
+    /**
+     * Parser entry point to launch parsing of xml data.
+     * The encoding is detected from the byte order mark or the xml prolog,
+     * UTF-8 is used by default.
      *
      * @param xml data
      * @return parsing result object
      */
     public final AFCuteXmlParserResult parse(InputStream xml) {
-        InputStreamReader xml_reader = null;
-        try {
-            xml_reader = new InputStreamReader(xml);
-        } catch (Exception e) {
-            DebugTools.e("Encoding error", e);
-            AFCuteXmlParserResult result = new AFCuteXmlParserResult();
-            result.setErrorCode(-1);
-            result.setErrorMsg("Encoding error: " + e.getMessage());
-            return result;
-        }
+        return parse(xml, getLowParser());
+    }
 
-        return parse(xml_reader);
+    /**
+     * Parser entry point to launch parsing of xml data with a low level parser
+     *
+     * @param xml data
+     * @param lowParser Low level parser of this parsing
+     * @return parsing result object
+     */
+    public final AFCuteXmlParserResult parse(InputStream xml, AFLowXmlParser lowParser) {
+        AFCuteXmlParserContext context = initContext(lowParser);
+        return parse(context, lowParser.init(context, xml));
     }
 
     /**
@@ -96,12 +241,319 @@ public class AFCuteXmlParser {
      * @return parsing result object
      */
     public final AFCuteXmlParserResult parse(InputStreamReader xml) {
+        return parse(xml, getLowParser());
+    }
+
+    /**
+     * Parser entry point to launch parsing of xml data with a low level parser
+     *
+     * @param xml data
+     * @param lowParser Low level parser of this parsing
+     * @return parsing result object
+     */
+    public final AFCuteXmlParserResult parse(InputStreamReader xml, AFLowXmlParser lowParser) {
+        AFCuteXmlParserContext context = initContext(lowParser);
+        return parse(context, lowParser.init(context, xml));
+    }
+
+    /**
+     * Parser entry point to launch parsing of the binary form of xml data.
+     * Tags and texts are read without scanning any text, the buffer is not
+     * modified so a buffer mapped once can be parsed several times.
+     *
+     * @param xml Data written by AFXmlBinaryCache
+     * @return parsing result object
+     */
+    public final AFCuteXmlParserResult parse(ByteBuffer xml) {
+        AFCuteXmlParserContext context = initContext(sBinaryParser);
+        return parse(context, sBinaryParser.init(context, xml));
+    }
+
+    /**
+     * Parser entry point to read the items of xml data one by one.
+     * The action of the node nodeName gives its item with setResultData.
+     *
+     * @param xml data
+     * @param nodeName Name of the nodes to stream
+     * @return Iterator on items
+     */
+    public final <T> AFXmlCursor<T> stream(InputStream xml, String nodeName) {
+        AFCuteXmlParserContext context = initContext(getLowParser());
+        return stream(context, context.getLowParser().init(context, xml), nodeName, xml);
+    }
+
+    /**
+     * Parser entry point to read the items of xml data one by one.
+     * The action of the node nodeName gives its item with setResultData.
+     *
+     * @param xml data
+     * @param nodeName Name of the nodes to stream
+     * @return Iterator on items
+     */
+    public final <T> AFXmlCursor<T> stream(String xml, String nodeName) {
+        AFCuteXmlParserContext context = initContext(getLowParser());
+        return stream(context, context.getLowParser().init(context, xml), nodeName, null);
+    }
+
+    /**
+     * Parser entry point to parse xml data pushed by chunks, for example
+     * as they are received from network. Actions are called during the
+     * feed calls, once their node is complete.
+     *
+     * @return Session to push data
+     */
+    public final AFXmlPushSession push() {
+        AFXmlPushSession session = new AFXmlPushSession(this);
+        AFCuteXmlParserContext context = initContext(session.getLowParser());
+        session.setContext(context);
+
+        start(context);
+        session.setStarted();
+
+        // Create a marker root node, its children are at depth 1
+        context.pushNode(new AFXmlTag(AFXmlSymbolTable.ROOT_NAME, AFXmlSymbolTable.ROOT_ID));
+        context.increase_depth();
+
+        return session;
+    }
+
+    private final <T> AFXmlCursor<T> stream(AFCuteXmlParserContext context, boolean initStatus, String nodeName, Closeable input) {
+        AFXmlCursor<T> cursor = new AFXmlCursor<T>(this, context, nodeName, input);
+        if (!initStatus) {
+            context.getResult().setErrorCode(1);
+            cursor.close();
+            return cursor;
+        }
+
+        start(context);
+        cursor.setStarted();
+
+        // Create a marker root node, its children are at depth 1
+        context.pushNode(new AFXmlTag(AFXmlSymbolTable.ROOT_NAME, AFXmlSymbolTable.ROOT_ID));
+        context.increase_depth();
+
+        return cursor;
+    }
+
+    /**
+     * Parser entry point to parse in parallel a document made of records
+     * under its root node.
+     *
+     * Data are split at the start tags of records and each chunk is parsed
+     * in its own context on a pool of threads. Actions are called as in a
+     * whole parsing, with the same node stack and depth, except the action
+     * of the root node which is not called. The children of the root node
+     * get the cookie of their chunk. The start and finish methods are not
+     * called.
+     *
+     * Data must use an ASCII compatible encoding, and the record name must
+     * not be used in comments, CDATA sections or nested nodes.
+     *
+     * @param xml data
+     * @param recordName Name of the record nodes
+     * @param threadCount Number of threads
+     * @param factory Create the cookie of each chunk
+     * @param combiner Merge the cookies of chunks in result data
+     * @return parsing result object
+     */
+    public final <C, R> AFCuteXmlParserResult parseParallel(byte[] xml, String recordName, int threadCount,
+                                                           ChunkCookieFactory<C> factory, ChunkCombiner<C, R> combiner) {
+        return parseParallel(ByteBuffer.wrap(xml), recordName, threadCount, factory, combiner);
+    }
+
+    /**
+     * Parser entry point to parse in parallel a file made of records under
+     * its root node, the file is mapped in memory.
+     *
+     * @see #parseParallel(byte[], String, int, ChunkCookieFactory, ChunkCombiner)
+     */
+    public final <C, R> AFCuteXmlParserResult parseParallel(File xml, String recordName, int threadCount,
+                                                           ChunkCookieFactory<C> factory, ChunkCombiner<C, R> combiner) {
+        ByteBuffer data;
+        RandomAccessFile file = null;
+        try {
+            file = new RandomAccessFile(xml, "r");
+            data = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+        } catch (IOException e) {
+            dbg.e("Cannot read file " + xml, e);
+            return new AFCuteXmlParserResult(-1, "Cannot read file: " + e.getMessage());
+        } finally {
+            if (file != null) {
+                try {
+                    file.close();
+                } catch (IOException e) {
+                    // Nothing to do
+                }
+            }
+        }
+
+        return parseParallel(data, recordName, threadCount, factory, combiner);
+    }
+
+    private final <C, R> AFCuteXmlParserResult parseParallel(ByteBuffer data, String recordName, int threadCount,
+                                                            final ChunkCookieFactory<C> factory, ChunkCombiner<C, R> combiner) {
+        dbg.d("Launch parallel parsing");
+
+        // Root node and encoding from the start of data
+        final AFXmlRecordSplitter splitter = new AFXmlRecordSplitter(data, recordName);
+        final int rootEnd = splitter.findRootEnd();
+        if (rootEnd == -1)
+            return new AFCuteXmlParserResult(1, "No root node");
+
+        final String charset;
+        try {
+            charset = new AFXmlEncoding(splitter.getStream(0, rootEnd)).getCharset();
+        } catch (IOException e) {
+            return new AFCuteXmlParserResult(1, "Cannot read prolog: " + e.getMessage());
+        }
+        if (!AFXmlEncoding.UTF_8.equals(charset)
+            && !AFXmlEncoding.US_ASCII.equals(charset)
+            && !AFXmlEncoding.ISO_8859_1.equals(charset))
+            return new AFCuteXmlParserResult(1, "Encoding not supported by parallel parsing: " + charset);
+
+        final AFLowXmlParser lowParser = getLowParser();
+        final AFXmlTag root = read_root_tag(splitter.getStream(0, rootEnd), lowParser);
+        if (root == null)
+            return new AFCuteXmlParserResult(1, "Cannot read root node");
+
+        // Chunks are opened by the prolog and the root start tag, inner ones
+        // are closed by a root end tag as the last one
+        final byte[] rootEndTag;
+        try {
+            rootEndTag = ("</" + root.getName() + ">").getBytes(charset);
+        } catch (UnsupportedEncodingException e) {
+            return new AFCuteXmlParserResult(1, "Encoding not supported: " + charset);
+        }
+
+        // Parse chunks
+        threadCount = Math.max(1, threadCount);
+        final int[] bounds = splitter.split(rootEnd, threadCount * CHUNKS_BY_THREAD);
+
+        AFCuteXmlParserResult result = new AFCuteXmlParserResult();
+        ExecutorService pool = Executors.newFixedThreadPool(threadCount);
+        try {
+            List<Future<C>> chunks = new ArrayList<Future<C>>(bounds.length - 1);
+            for (int i = 0; i + 1 < bounds.length; ++i) {
+                final int chunk = i;
+                InputStream in = new SequenceInputStream(splitter.getStream(0, rootEnd), splitter.getStream(bounds[i], bounds[i + 1]));
+                if (i + 2 < bounds.length)
+                    in = new SequenceInputStream(in, new ByteArrayInputStream(rootEndTag));
+                final InputStream chunkData = in;
+                chunks.add(pool.submit(new Callable<C>() {
+                    @Override
+                    public C call() throws Exception {
+                        return parse_chunk(lowParser, chunkData, charset, root, chunk, factory.createCookie(chunk));
+                    }
+                }));
+            }
+
+            // Merge in document order
+            List<C> cookies = new ArrayList<C>(chunks.size());
+            for (Future<C> chunk : chunks)
+                cookies.add(chunk.get());
+
+            result.setData(combiner.combine(cookies));
+        } catch (ExecutionException e) {
+            dbg.e("Cannot parse chunk", e.getCause());
+            result.setErrorCode(1);
+            result.setErrorMsg(e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            result.setErrorCode(1);
+            result.setErrorMsg("Parsing interrupted");
+        } finally {
+            pool.shutdownNow();
+        }
+
+        dbg.d("Parallel parsing finish: " + result.status());
+        return result;
+    }
+
+    /**
+     * Read the root node start tag
+     *
+     * @param xml Data until the end of root start tag
+     * @return A copy of the root tag or null
+     */
+    private final AFXmlTag read_root_tag(InputStream xml, AFLowXmlParser lowParser) {
+        AFCuteXmlParserContext ctx = initContext(lowParser);
+        if (!lowParser.init(ctx, xml))
+            return null;
+
+        AFXmlTag tag = read_tag(ctx);
+        if (tag == null || TextUtils.isEmpty(tag.getName()) || tag.getType() == AFXmlTag.TAG_TYPE_END)
+            return null;
+
+        AFXmlTag root = new AFXmlTag(tag.getName());
+        for (int i = 0; i < tag.getAttributCount(); ++i)
+            root.setAttribut(tag.getAttributName(i), tag.getAttributValue(i));
+
+        return root;
+    }
+
+    /**
+     * Parse a chunk of records in a new context
+     *
+     * @param xml Prolog and root start tag followed by the records of the chunk
+     * @return The chunk cookie
+     */
+    private final <C> C parse_chunk(AFLowXmlParser lowParser, InputStream xml, String charset, AFXmlTag root, int chunk, C cookie) throws Exception {
+        AFCuteXmlParserContext ctx = initContext(lowParser);
+
+        boolean initStatus;
+        if (AFXmlEncoding.ISO_8859_1.equals(charset))
+            initStatus = lowParser.init(ctx, new InputStreamReader(xml, charset));
+        else
+            initStatus = lowParser.init(ctx, xml);
+        if (!initStatus)
+            throw new Exception("Cannot initialize parsing of chunk " + chunk);
+
+        // Skip the root start tag, the low parser sees a whole document
+        AFXmlTag tag = read_tag(ctx);
+        if (tag == null || tag.getType() != AFXmlTag.TAG_TYPE_START)
+            throw new Exception("Cannot read root node of chunk " + chunk);
+
+        // Stack of a whole parsing: marker root node and root node
+        ctx.pushNode(new AFXmlTag(AFXmlSymbolTable.ROOT_NAME, AFXmlSymbolTable.ROOT_ID));
+        AFXmlTag node = new AFXmlTag(root.getName(), ctx.getSymbolTable().intern(root.getName()));
+        for (int i = 0; i < root.getAttributCount(); ++i)
+            node.setAttribut(root.getAttributName(i), root.getAttributValue(i));
+        ctx.pushNode(node);
+        ctx.setDepth(1);
+        ctx.setCookie(cookie);
+
+        if (!read_children(ctx)) {
+            final String msg = ctx.getResult().getErrorMsg();
+            throw new Exception("Cannot parse chunk " + chunk + (msg == null ? "" : ": " + msg));
+        }
+
+        return cookie;
+    }
+
+    /**
+     * @param lowParser Low level parser of the parsing
+     * @return A new parsing context ready to initialize the low level parser
+     */
+    private final AFCuteXmlParserContext initContext(AFLowXmlParser lowParser) {
         dbg.d("Launch parsing");
 
-        // Initialize context
         AFCuteXmlParserContext context = createContext();
+        context.setLowParser(lowParser);
+        final AFNodeActionPlan plan = getActionPlan();
+        context.setSymbolTable(new AFXmlSymbolTable(plan.getSymbolTable()));
+        context.setActionPlan(plan);
+
+        return context;
+    }
 
-        if (!parser.init(context, xml)) {
+    /**
+     * Parse data once the low level parser is initialized
+     *
+     * @param context Parsing context
+     * @param initStatus Status of low level parser initialization
+     * @return parsing result object
+     */
+    private final AFCuteXmlParserResult parse(AFCuteXmlParserContext context, boolean initStatus) {
+        if (!initStatus) {
             AFCuteXmlParserResult result = context.getResult();
             result.setErrorCode(1);
             return result;
@@ -110,7 +562,7 @@ public class AFCuteXmlParser {
         start(context);
 
         // Create a marker root node
-        context.pushNode(new AFXmlTag("<root>"));
+        context.pushNode(new AFXmlTag(AFXmlSymbolTable.ROOT_NAME, AFXmlSymbolTable.ROOT_ID));
 
         // Call parsing from root node
         boolean parseStatus = read_children(context);
@@ -163,15 +615,20 @@ public class AFCuteXmlParser {
      */
     public final boolean addNodeAction(AFNodeAction<?> action) {
         String nodeName = action.getNodeName();
-        if (hasDebug)
+        if (hasDebug())
             dbg.d("Add action for node name " + nodeName);
 
-        action.setParser(this);
+        // Names are interned in the parser table, never used by a parsing
+        synchronized (mSymbols) {
+            action.setParser(this);
 
-        if (!mActions.containsKey(nodeName))
-            mActions.put(nodeName, new Vector<AFNodeAction<?>>());
+            if (!mActions.containsKey(nodeName))
+                mActions.put(nodeName, new Vector<AFNodeAction<?>>());
 
-        mActions.get(nodeName).addElement(action);
+            mActions.get(nodeName).addElement(action);
+
+            mActionPlan = null;
+        }
 
         return true;
     }
@@ -189,6 +646,13 @@ public class AFCuteXmlParser {
     /**
      * Read children node from current position
      *
+     * Nodes without action are walked with the context node stack, only
+     * actions calling read_children use the java stack. An action reading
+     * its children runs until they are read, so each level of nested
+     * actions calling read_children takes a few java frames: the depth of
+     * such nested actions is bounded by the stack of the parsing thread,
+     * parse deep documents of this kind on a thread with a larger stack.
+     *
      * @param ctx Parsing context
      * @param check_action Test action
      * @return true if parsing success
@@ -200,8 +664,17 @@ public class AFCuteXmlParser {
         if (ctx.getCurrent().getType() != AFXmlTag.TAG_TYPE_START)
             return true;
 
+        // Nothing to call under current node
+        if (canSkipChildren(ctx, check_action))
+            return ctx.getLowParser().skipChildren(ctx);
+
         boolean status = true;
 
+        // Descendants opened without action are kept on the node stack
+        // instead of a recursive call, so depth is only bounded by heap
+        final int level = ctx.getNodes().size();
+        int opened = 0;
+
         // Loop on each child
         ctx.increase_depth();
         while (true) {
@@ -215,52 +688,239 @@ public class AFCuteXmlParser {
                 break;
             }
 
-            // If tag is closing of current => finish to read children
-            if (tag.isFinalOf(ctx.getCurrent()))
-                break;
+            // If tag is closing of current
+            if (tag.isFinalOf(ctx.getCurrent())) {
+                // Finish to read children
+                if (opened == 0)
+                    break;
 
-            if (hasDebug) {
-                dbg.v(indent(ctx.getDepth()) + "- Node[" + tag.getType() + "]: " + tag.getName());
-                Hashtable<String, String> attributs = tag.getAttributs();
-                if (attributs != null)
-                    for (String key : attributs.keySet())
-                        dbg.v(indent(ctx.getDepth()) + "  _ attribut: " + key + ": " + attributs.get(key));
+                // Go back to parent of an opened descendant
+                --opened;
+                ctx.decrease_depth();
+                ctx.popNode();
             }
+            else {
+                if (hasDebug()) {
+                    dbg.v(indent(ctx.getDepth()) + "- Node[" + tag.getType() + "]: " + tag.getName());
+                    for (int i = 0; i < tag.getAttributCount(); ++i)
+                        dbg.v(indent(ctx.getDepth()) + "  _ attribut: " + tag.getAttributName(i) + ": " + tag.getAttributValue(i));
+                }
 
-            // Push current tag
-            ctx.pushNode(tag);
+                // Push current tag
+                ctx.pushNode(tag);
 
-            boolean hasReadChildren = false;
-            if (check_action) {
-                hasReadChildren = tryToCallActionNode(ctx);
-                if (ctx.requestStopParser()) {
-                    status = false;
-                    break ;
+                boolean hasReadChildren = false;
+                if (check_action) {
+                    hasReadChildren = tryToCallActionNode(ctx);
+                    if (ctx.requestStopParser()) {
+                        status = false;
+                        break ;
+                    }
                 }
-            }
 
-            // Read children (to eat token) if was not done by action node
-            if (!hasReadChildren)
-                if (tag.getType() == AFXmlTag.TAG_TYPE_START) {
-                    status = read_children(ctx, check_action);
-                    if (!status)
+                // Open tag to read its children (to eat token) if was not done by action node
+                if (!hasReadChildren && tag.getType() == AFXmlTag.TAG_TYPE_START) {
+                    if (!canSkipChildren(ctx, check_action)) {
+                        ++opened;
+                        ctx.increase_depth();
+                        continue;
+                    }
+
+                    if (!ctx.getLowParser().skipChildren(ctx)) {
+                        status = false;
                         break;
+                    }
                 }
 
-            // Reset current tag to parent
-            ctx.popNode();
+                // Reset current tag to parent
+                ctx.popNode();
+            }
 
             // End of parsing if return on <root>
             if (!ctx.acceptSeveralNodeOnRoot()) {
-                if (ctx.getCurrent().getName().equals("<root>"))
+                if (ctx.getCurrent().getId() == AFXmlSymbolTable.ROOT_ID)
                     break;
             }
         }
-        ctx.decrease_depth();
+
+        // Restore node stack and depth on error
+        while (ctx.getNodes().size() > level)
+            ctx.popNode();
+        ctx.setDepth(ctx.getDepth() - opened - 1);
 
         return status;
     }
 
+    /**
+     * Read nodes until the end of the next streamed node. Only the actions
+     * of streamed nodes and of the nodes under them are called.
+     *
+     * @param cursor Stream state
+     * @return The item set by the action of the streamed node, null at end of data
+     */
+    @SuppressWarnings("unchecked")
+    final <T> T read_next_item(AFXmlCursor<T> cursor) {
+        final AFCuteXmlParserContext ctx = cursor.getContext();
+        final AFCuteXmlParserResult result = ctx.getResult();
+
+        while (!cursor.mEnd) {
+            // Read next tag
+            AFXmlTag tag = read_tag(ctx);
+            if (tag == null) {
+                if (result.getErrorCode() == 0)
+                    result.setErrorCode(1);
+                return null;
+            }
+            else if (TextUtils.isEmpty(tag.getName())) {
+                return null;
+            }
+
+            Object item = null;
+            if (tag.isFinalOf(ctx.getCurrent())) {
+                // Go back to parent
+                ctx.decrease_depth();
+                ctx.popNode();
+            }
+            else {
+                // Push current tag
+                ctx.pushNode(tag);
+
+                if (tag.is(cursor.mNodeId, cursor.mNodeName)) {
+                    result.setData(null);
+
+                    // Build the item
+                    boolean status = true;
+                    if (!tryToCallActionNode(ctx) && !ctx.requestStopParser())
+                        status = read_children(ctx, true);
+
+                    if (!status || ctx.requestStopParser()) {
+                        if (result.getErrorCode() == 0)
+                            result.setErrorCode(1);
+                        return null;
+                    }
+
+                    item = result.getData();
+                    result.setData(null);
+                }
+                else if (tag.getType() == AFXmlTag.TAG_TYPE_START) {
+                    // Look for items in children
+                    ctx.increase_depth();
+                    continue;
+                }
+
+                // Reset current tag to parent
+                ctx.popNode();
+            }
+
+            // End of parsing if return on <root>
+            if (!ctx.acceptSeveralNodeOnRoot()) {
+                if (ctx.getCurrent().getId() == AFXmlSymbolTable.ROOT_ID)
+                    cursor.mEnd = true;
+            }
+
+            if (item != null)
+                return (T) item;
+        }
+
+        return null;
+    }
+
+    /**
+     * Read the tags pushed in a session until data are missing. The action
+     * of a node is called once the node is complete, other nodes are walked
+     * as they arrive.
+     *
+     * @param session Push state
+     * @return false on error
+     */
+    final boolean read_pushed_tags(AFXmlPushSession session) {
+        final AFCuteXmlParserContext ctx = session.getContext();
+
+        while (!session.mEnd) {
+            if (session.mPendingTag != -1) {
+                // Wait for the end of the node of the action
+                if (!session.isPendingComplete())
+                    return true;
+                session.mPendingTag = -1;
+
+                final boolean hasReadChildren = tryToCallActionNode(ctx);
+                if (ctx.requestStopParser())
+                    return false;
+
+                if (!hasReadChildren && !read_children(ctx, true))
+                    return false;
+
+                ctx.popNode();
+            }
+            else {
+                // Wait for the next tag
+                if (!session.hasTag())
+                    return true;
+
+                AFXmlTag tag = read_tag(ctx);
+                if (tag == null)
+                    return false;
+                else if (TextUtils.isEmpty(tag.getName())) {
+                    session.mEnd = true;
+                    break;
+                }
+
+                if (tag.isFinalOf(ctx.getCurrent())) {
+                    // Go back to parent
+                    ctx.decrease_depth();
+                    ctx.popNode();
+                }
+                else {
+                    ctx.pushNode(tag);
+
+                    final AFNodeAction<?> action = ctx.getActionPlan().resolve(ctx);
+                    if (action != null && !action.isStartTagAction()) {
+                        session.setPendingTag(tag.getType() == AFXmlTag.TAG_TYPE_START);
+                        continue;
+                    }
+
+                    // Action of the start tag, its children are read as they arrive
+                    if (action != null) {
+                        tryToCallActionNode(ctx);
+                        if (ctx.requestStopParser())
+                            return false;
+                    }
+
+                    // Look for actions in children
+                    if (tag.getType() == AFXmlTag.TAG_TYPE_START) {
+                        ctx.increase_depth();
+                        continue;
+                    }
+
+                    ctx.popNode();
+                }
+            }
+
+            // End of parsing if return on <root>
+            if (!ctx.acceptSeveralNodeOnRoot()) {
+                if (ctx.getCurrent().getId() == AFXmlSymbolTable.ROOT_ID)
+                    session.mEnd = true;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Check if no action can be called under the current node
+     *
+     * @param ctx Parsing context
+     * @param check_action Test action
+     * @return true if children can be skipped without reading them
+     */
+    private final boolean canSkipChildren(AFCuteXmlParserContext ctx, boolean check_action) {
+        // Children of <root> are read until end of data
+        if (ctx.getCurrent().getId() == AFXmlSymbolTable.ROOT_ID)
+            return false;
+
+        return !check_action || ctx.getDepth() + 1 > ctx.getActionPlan().getMaxDepth();
+    }
+
     /**
      * Try to call a defined action node on current xml parsing node
      *
@@ -269,34 +929,29 @@ public class AFCuteXmlParser {
      * @return true if the children has been read
      */
     private final boolean tryToCallActionNode(AFCuteXmlParserContext ctx) {
-        if (!mActions.containsKey(ctx.getCurrent().getName()))
+        final AFNodeAction<?> action = ctx.getActionPlan().resolve(ctx);
+        if (action == null)
             return false;
 
-        for (AFNodeAction<?> action : mActions.get(ctx.getCurrent().getName())) {
-            if (action.isCorrectNode(ctx)) {
-                // Set current context
-                action.setContext(ctx);
-
-                // Store old read children status to reset it after
-                boolean oldReadChildrenStatus = ctx.hasReadChildren();
+        // Set current context
+        action.setContext(ctx);
 
-                // Tag to know if children are read or not when call action
-                ctx.hasReadChildren(false);
+        // Store old read children status to reset it after
+        boolean oldReadChildrenStatus = ctx.hasReadChildren();
 
-                action.onNodeBridge(ctx.getCookie());
+        // Tag to know if children are read or not when call action
+        ctx.hasReadChildren(false);
 
-                // ctx.hasReadChildren() pass to true imply children was read
-                // during ActionNode::onNode processing
-                boolean hasReadChildren = ctx.hasReadChildren();
+        action.onNodeBridge(ctx.getCookie());
 
-                // Restore read children status
-                ctx.hasReadChildren(oldReadChildrenStatus);
+        // ctx.hasReadChildren() pass to true imply children was read
+        // during ActionNode::onNode processing
+        boolean hasReadChildren = ctx.hasReadChildren();
 
-                return hasReadChildren;
-            }
-        }
+        // Restore read children status
+        ctx.hasReadChildren(oldReadChildrenStatus);
 
-        return false;
+        return hasReadChildren;
     }
 
     /**
@@ -306,7 +961,7 @@ public class AFCuteXmlParser {
      * @return xml tag
      */
     private final AFXmlTag read_tag(AFCuteXmlParserContext ctx) {
-        return parser.readTag(ctx);
+        return ctx.getLowParser().readTag(ctx);
     }
 
     /**
@@ -318,7 +973,86 @@ public class AFCuteXmlParser {
      * @return content
      */
     public final String read_content(AFCuteXmlParserContext ctx) {
-        return parser.readContent(ctx);
+        if (isEmptyNode(ctx))
+            return "";
+
+        return ctx.getLowParser().readContent(ctx);
+    }
+
+    /**
+     * Read the text content of current node without creating a String
+     *
+     * @param ctx Parsing context
+     * @return content, only valid until the next read
+     */
+    public final CharSequence read_content_view(AFCuteXmlParserContext ctx) {
+        if (isEmptyNode(ctx))
+            return "";
+
+        return ctx.getLowParser().readContentView(ctx);
+    }
+
+    /**
+     * @return true if the current node is a tag like <a/>, the text after it is not its content
+     */
+    private static boolean isEmptyNode(AFCuteXmlParserContext ctx) {
+        return ctx.getCurrent().getType() == AFXmlTag.TAG_TYPE_START_END;
+    }
+
+    /**
+     * Read the text content of current node as an int, spaces around are ignored
+     *
+     * @param ctx Parsing context
+     * @param def Value to return if content is not a valid int
+     * @return content value
+     */
+    public final int read_int_content(AFCuteXmlParserContext ctx, int def) {
+        final CharSequence content = read_content_view(ctx);
+        final int start = AFXmlValues.trimStart(content);
+        return AFXmlValues.parseInt(content, start, AFXmlValues.trimEnd(content, start), def);
+    }
+
+    /**
+     * Read the text content of current node as a long, spaces around are ignored
+     *
+     * @param ctx Parsing context
+     * @param def Value to return if content is not a valid long
+     * @return content value
+     */
+    public final long read_long_content(AFCuteXmlParserContext ctx, long def) {
+        final CharSequence content = read_content_view(ctx);
+        final int start = AFXmlValues.trimStart(content);
+        return AFXmlValues.parseLong(content, start, AFXmlValues.trimEnd(content, start), def);
+    }
+
+    /**
+     * Read the text content of current node as a double, spaces around are ignored
+     *
+     * @param ctx Parsing context
+     * @param def Value to return if content is not a valid double
+     * @return content value
+     */
+    public final double read_double_content(AFCuteXmlParserContext ctx, double def) {
+        final CharSequence content = read_content_view(ctx);
+        final int start = AFXmlValues.trimStart(content);
+        return AFXmlValues.parseDouble(content, start, AFXmlValues.trimEnd(content, start), def);
+    }
+
+    /**
+     * Read the text content of current node as a boolean, spaces around are ignored
+     *
+     * @param ctx Parsing context
+     * @param def Value to return if there is no content
+     * @return true for "true", "yes" and "1"
+     */
+    public final boolean read_boolean_content(AFCuteXmlParserContext ctx, boolean def) {
+        final CharSequence content = read_content_view(ctx);
+        final int start = AFXmlValues.trimStart(content);
+        final int end = AFXmlValues.trimEnd(content, start);
+        if (start == end)
+            return def;
+
+        return AFXmlValues.parseBoolean(content, start, end);
     }
 
     private final String indent(int depth) {
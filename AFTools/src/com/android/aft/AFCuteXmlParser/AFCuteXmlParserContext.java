@@ -25,6 +25,9 @@ import java.util.Stack;
 
 import org.xmlpull.v1.XmlPullParser;
 
+import com.android.aft.AFCuteXmlParser.LowParser.Binary.AFXmlBinaryStream;
+import com.android.aft.AFCuteXmlParser.LowParser.Fast.AFXmlCharWindow;
+import com.android.aft.AFCuteXmlParser.LowParser.Fast.AFXmlTextView;
 import com.android.aft.AFCuteXmlParser.LowParser.HomeMade.AFBufferedInputStream;
 import com.android.aft.AFCuteXmlParser.LowParser.HomeMade.AFXmlToken;
 
@@ -44,6 +47,9 @@ public class AFCuteXmlParserContext {
     // Stack of node from the root to the current position
     private Stack<AFXmlTag> mNodes = new Stack<AFXmlTag>();
 
+    // Reusable tags indexed by level in node stack
+    private AFXmlTag[] mTagPool = new AFXmlTag[16];
+
 	// Current depth of parsing
 	private int mDepth = 0;
 
@@ -59,6 +65,19 @@ public class AFCuteXmlParserContext {
 	// Config accept several node on root
 	private boolean mAcceptSeveralNodeOnRoot = false;
 
+	// Tag names read during this parsing
+	private AFXmlSymbolTable mSymbols;
+
+	// Actions of the parser for this parsing
+	private AFNodeActionPlan mActionPlan;
+
+	// Low level parser of this parsing
+	private AFLowXmlParser mLowXmlParser;
+
+	// Path matcher of the action plan and its state for each level of the node stack
+	private AFXmlPathMatcher mPathMatcher;
+	private int[] mPathStates;
+
 	//
 	// Special attribute for HomeMade parser
 	//
@@ -83,6 +102,24 @@ public class AFCuteXmlParserContext {
     // True if the current token is read
     private boolean mHasReadCurrentXmlPullParserToken;
 
+    //
+    // Special attribute for Fast parser
+    //
+
+    // Char window on input data
+    private AFXmlCharWindow mCharWindow;
+
+    // Reusable content view and content builder
+    private AFXmlTextView mContentView;
+    private StringBuilder mContentBuilder;
+
+    //
+    // Special attribute for Binary parser
+    //
+
+    // Events of binary data
+    private AFXmlBinaryStream mBinaryStream;
+
 	public AFCuteXmlParserContext() {
 	    mResult = new AFCuteXmlParserResult();
 	}
@@ -112,9 +149,37 @@ public class AFCuteXmlParserContext {
 	}
 
 	public void pushNode(AFXmlTag tag) {
+	    if (mPathMatcher != null)
+	        pushPathState(tag);
+
 	    mNodes.push(tag);
 	}
 
+	/**
+	 * Move the path matcher on a node pushed at the next level
+	 */
+	private void pushPathState(AFXmlTag tag) {
+	    final int level = mNodes.size();
+	    if (level >= mPathStates.length) {
+	        int[] states = new int[mPathStates.length * 2];
+	        System.arraycopy(mPathStates, 0, states, 0, mPathStates.length);
+	        mPathStates = states;
+	    }
+
+	    // Marker root node starts the paths
+	    if (level == 0)
+	        mPathStates[0] = mPathMatcher.getStartState();
+	    else
+	        mPathStates[level] = mPathMatcher.next(mPathStates[level - 1], tag);
+	}
+
+	/**
+	 * @return true if the path at index selector of the path matcher matches the current node
+	 */
+	boolean isPathMatched(int selector) {
+	    return mPathMatcher.isMatched(mPathStates[mNodes.size() - 1], selector);
+	}
+
 	public void popNode() {
 	    mNodes.pop();
 	}
@@ -123,6 +188,51 @@ public class AFCuteXmlParserContext {
 	    return mNodes;
 	}
 
+	/**
+	 * Get the reusable tag for the next level of the node stack.
+	 * Low level parsers fill this tag instead of creating a new one.
+	 *
+	 * @return The tag or null if there is no tag for this level yet
+	 */
+	public AFXmlTag getPoolTag() {
+	    final int level = mNodes.size();
+	    if (level >= mTagPool.length)
+	        return null;
+
+	    return mTagPool[level];
+	}
+
+	/**
+	 * Set the reusable tag for the next level of the node stack
+	 */
+	public void setPoolTag(AFXmlTag tag) {
+	    final int level = mNodes.size();
+	    if (level >= mTagPool.length) {
+	        AFXmlTag[] pool = new AFXmlTag[Math.max(level + 1, mTagPool.length * 2)];
+	        System.arraycopy(mTagPool, 0, pool, 0, mTagPool.length);
+	        mTagPool = pool;
+	    }
+
+	    mTagPool[level] = tag;
+	}
+
+	/**
+	 * Get the reusable tag for the next level of the node stack, reset
+	 * with given values. A new tag is added in pool if needed.
+	 *
+	 * @return The tag
+	 */
+	public AFXmlTag obtainTag(String name, int id, int type) {
+	    AFXmlTag tag = getPoolTag();
+	    if (tag == null) {
+	        tag = new AFXmlTag(null);
+	        setPoolTag(tag);
+	    }
+
+	    tag.reset(name, id, type);
+	    return tag;
+	}
+
 	public AFXmlTag getParent() {
 	    final int size = mNodes.size();
 	    if (size < 2)
@@ -215,6 +325,74 @@ public class AFCuteXmlParserContext {
         mHasReadCurrentXmlPullParserToken = hasRead;
     }
 
+    public void setCharWindow(AFXmlCharWindow window) {
+        mCharWindow = window;
+    }
+
+    public AFXmlCharWindow getCharWindow() {
+        return mCharWindow;
+    }
+
+    /**
+     * @return The reusable content view of this parsing
+     */
+    public AFXmlTextView obtainContentView() {
+        if (mContentView == null)
+            mContentView = new AFXmlTextView();
+
+        return mContentView;
+    }
+
+    /**
+     * @return The reusable content builder of this parsing, empty
+     */
+    public StringBuilder obtainContentBuilder() {
+        if (mContentBuilder == null)
+            mContentBuilder = new StringBuilder();
+
+        mContentBuilder.setLength(0);
+        return mContentBuilder;
+    }
+
+    public void setBinaryStream(AFXmlBinaryStream stream) {
+        mBinaryStream = stream;
+    }
+
+    public AFXmlBinaryStream getBinaryStream() {
+        return mBinaryStream;
+    }
+
+    public void setSymbolTable(AFXmlSymbolTable symbols) {
+        mSymbols = symbols;
+    }
+
+    public AFXmlSymbolTable getSymbolTable() {
+        return mSymbols;
+    }
+
+    void setLowParser(AFLowXmlParser lowParser) {
+        mLowXmlParser = lowParser;
+    }
+
+    /**
+     * @return The low level parser of this parsing
+     */
+    public AFLowXmlParser getLowParser() {
+        return mLowXmlParser;
+    }
+
+    void setActionPlan(AFNodeActionPlan plan) {
+        mActionPlan = plan;
+
+        mPathMatcher = plan.getPathMatcher();
+        if (mPathMatcher != null && mPathStates == null)
+            mPathStates = new int[16];
+    }
+
+    AFNodeActionPlan getActionPlan() {
+        return mActionPlan;
+    }
+
     public void setAcceptSeveralNodeOnRoot(boolean accept) {
         mAcceptSeveralNodeOnRoot = accept;
     }
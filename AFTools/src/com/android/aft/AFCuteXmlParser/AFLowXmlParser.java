@@ -1,13 +1,98 @@
 package com.android.aft.AFCuteXmlParser;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
 
+import android.text.TextUtils;
+
+/**
+ * Low level parser reading tags and text for AFCuteXmlParser.
+ *
+ * Implementations must be stateless: all the state of a parsing is kept in
+ * the parsing context, so one instance is shared by all parsings, including
+ * parsings running at the same time on several threads.
+ */
 public abstract class AFLowXmlParser {
 
     public abstract boolean init(AFCuteXmlParserContext context, InputStreamReader xml);
 
+    /**
+     * Initialize parsing of xml bytes, the encoding is detected from the byte
+     * order mark or the xml prolog
+     *
+     * @param context Parsing context
+     * @param xml Xml data
+     * @return false if data cannot be read
+     */
+    public boolean init(AFCuteXmlParserContext context, InputStream xml) {
+        try {
+            return init(context, new AFXmlEncoding(xml).getReader());
+        } catch (IOException e) {
+            AFCuteXmlParser.dbg.e("Cannot read stream", e);
+            return false;
+        }
+    }
+
+    /**
+     * Initialize parsing of a xml string. This default implementation reads
+     * the UTF-8 bytes of the string, a low level parser should override it to
+     * read the string chars.
+     *
+     * @param context Parsing context
+     * @param xml Xml data
+     * @return false if data cannot be read
+     */
+    public boolean init(AFCuteXmlParserContext context, String xml) {
+        try {
+            return init(context, new InputStreamReader(new ByteArrayInputStream(xml.getBytes(AFXmlEncoding.UTF_8)), AFXmlEncoding.UTF_8));
+        } catch (UnsupportedEncodingException e) {
+            AFCuteXmlParser.dbg.e("Encoding error", e);
+            return false;
+        }
+    }
+
     public abstract AFXmlTag readTag(AFCuteXmlParserContext ctx);
 
     public abstract String readContent(AFCuteXmlParserContext ctx);
 
+    /**
+     * Read the text content of current node as a view which is only valid
+     * until the next read. This default implementation returns readContent,
+     * a low level parser should override it to avoid the String creation.
+     *
+     * @param ctx Parsing context
+     * @return content
+     */
+    public CharSequence readContentView(AFCuteXmlParserContext ctx) {
+        return readContent(ctx);
+    }
+
+    /**
+     * Go after the end tag of the current node without returning its children.
+     * This default implementation reads each tag, a low level parser should
+     * override it to only count depth on raw data.
+     *
+     * @param ctx Parsing context
+     * @return false on invalid data
+     */
+    public boolean skipChildren(AFCuteXmlParserContext ctx) {
+        int depth = 1;
+
+        while (true) {
+            AFXmlTag tag = readTag(ctx);
+            if (tag == null)
+                return false;
+            if (TextUtils.isEmpty(tag.getName()))
+                return true;
+
+            if (tag.getType() == AFXmlTag.TAG_TYPE_START)
+                ++depth;
+            else if (tag.getType() == AFXmlTag.TAG_TYPE_END && --depth == 0)
+                return true;
+        }
+    }
+
 }
@@ -0,0 +1,71 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ */
+
+package com.android.aft.AFCuteXmlParser;
+
+import java.util.Hashtable;
+
+import com.android.aft.AFCuteXmlParser.LowParser.Fast.AFFastLowXmlParser;
+import com.android.aft.AFCuteXmlParser.LowParser.HomeMade.AFHomeMadeLowXmlParser;
+import com.android.aft.AFCuteXmlParser.LowParser.PullXmlParser.AFPullXmlLowXmlParser;
+
+/**
+ * Registry of low level parsers by name.
+ *
+ * Low level parsers keep all parsing state in the parsing context, so a
+ * single instance of each is registered and shared by all parsings. Only
+ * text parsers are registered, binary data are read by
+ * AFCuteXmlParser.parse(ByteBuffer).
+ */
+public final class AFLowXmlParsers {
+
+    public final static String PULL = "pull";
+    public final static String HOME_MADE = "homemade";
+    public final static String FAST = "fast";
+
+    private final static Hashtable<String, AFLowXmlParser> sParsers = new Hashtable<String, AFLowXmlParser>();
+
+    static {
+        sParsers.put(PULL, new AFPullXmlLowXmlParser());
+        sParsers.put(HOME_MADE, new AFHomeMadeLowXmlParser());
+        sParsers.put(FAST, new AFFastLowXmlParser());
+    }
+
+    private AFLowXmlParsers() {
+    }
+
+    /**
+     * Register a low level parser, it must be stateless
+     *
+     * @param name Name of the parser
+     * @param parser The parser, replace a parser of the same name
+     */
+    public static void register(String name, AFLowXmlParser parser) {
+        sParsers.put(name, parser);
+    }
+
+    /**
+     * @param name Name of the parser
+     * @return The registered parser or null
+     */
+    public static AFLowXmlParser get(String name) {
+        return sParsers.get(name);
+    }
+
+}
@@ -30,8 +30,10 @@ public abstract class AFNodeAction<CookieType> {
     public abstract void onNode(CookieType cookie);
 
 	private AFCuteXmlParser mParser = null;
-	private AFCuteXmlParserContext mContext = null;
+	// Parsing context of each thread, a parser can parse chunks in parallel
+	private final ThreadLocal<AFCuteXmlParserContext> mContext = new ThreadLocal<AFCuteXmlParserContext>();
 	private String mNodeName;
+	private int mNodeId = AFXmlSymbolTable.UNKNOWN_ID;
 
 	/**
 	 * Create an ActionNode to correspond to a specific tag name
@@ -47,7 +49,7 @@ public abstract class AFNodeAction<CookieType> {
 	 * Re launch parser to read children node
 	 */
 	public void read_children() {
-		mParser.read_children(mContext, true);
+		mParser.read_children(getContext(), true);
 	}
 
 	/**
@@ -58,24 +60,26 @@ public abstract class AFNodeAction<CookieType> {
 	 */
 	public void read_children(Object cookie)
 	{
+		AFCuteXmlParserContext context = getContext();
+
 		// Save old cookie
-		Object old_cookie = mContext.getCookie();
+		Object old_cookie = context.getCookie();
 
 		// Set cookie
-		mContext.setCookie(cookie);
+		context.setCookie(cookie);
 
 		// Relaunch parsing
-		mParser.read_children(mContext, true);
+		mParser.read_children(context, true);
 
 		// Reset old cookie
-		mContext.setCookie(old_cookie);
+		context.setCookie(old_cookie);
 	}
 
 	/**
      * Re launch parser to read children node without treat potential action
      */
     public void consume_children() {
-        mParser.read_children(mContext, false);
+        mParser.read_children(getContext(), false);
     }
 
 	/**
@@ -84,7 +88,109 @@ public abstract class AFNodeAction<CookieType> {
 	 * @return text content
 	 */
 	public String read_content() {
-		return mParser.read_content(mContext);
+		return mParser.read_content(getContext());
+	}
+
+	/**
+	 * Read the text content of this tag without creating a String.
+	 * The view is reused by the parser, it is only valid until the next read.
+	 *
+	 * @return text content
+	 */
+	public CharSequence read_content_view() {
+		return mParser.read_content_view(getContext());
+	}
+
+	/**
+	 * Read the text content of this tag as an int
+	 *
+	 * @return content value (-1 if not an int)
+	 */
+	public int readIntContent() {
+		return readIntContent(-1);
+	}
+
+	/**
+	 * Read the text content of this tag as an int
+	 *
+	 * @param def
+	 *         Value to return if content is not an int
+	 * @return content value
+	 */
+	public int readIntContent(int def) {
+		return mParser.read_int_content(getContext(), def);
+	}
+
+	/**
+	 * Read the text content of this tag as a long
+	 *
+	 * @return content value (-1 if not a long)
+	 */
+	public long readLongContent() {
+		return readLongContent(-1);
+	}
+
+	/**
+	 * Read the text content of this tag as a long
+	 *
+	 * @param def
+	 *         Value to return if content is not a long
+	 * @return content value
+	 */
+	public long readLongContent(long def) {
+		return mParser.read_long_content(getContext(), def);
+	}
+
+	/**
+	 * Read the text content of this tag as a double
+	 *
+	 * @return content value (NaN if not a double)
+	 */
+	public double readDoubleContent() {
+		return readDoubleContent(Double.NaN);
+	}
+
+	/**
+	 * Read the text content of this tag as a double
+	 *
+	 * @param def
+	 *         Value to return if content is not a double
+	 * @return content value
+	 */
+	public double readDoubleContent(double def) {
+		return mParser.read_double_content(getContext(), def);
+	}
+
+	/**
+	 * Read the text content of this tag as a boolean
+	 *
+	 * @return true for "true", "yes" and "1" (false if there is no content)
+	 */
+	public boolean readBooleanContent() {
+		return readBooleanContent(false);
+	}
+
+	/**
+	 * Read the text content of this tag as a boolean
+	 *
+	 * @param def
+	 *         Value to return if there is no content
+	 * @return true for "true", "yes" and "1"
+	 */
+	public boolean readBooleanContent(boolean def) {
+		return mParser.read_boolean_content(getContext(), def);
+	}
+
+	/**
+	 * Override to return true for an action which only reads the attributes
+	 * of its node, not its content nor its children. In push parsing such an
+	 * action is called as soon as its start tag is received, and the
+	 * actions of its children are called as their nodes arrive.
+	 *
+	 * @return true if the action only reads the start tag of its node
+	 */
+	public boolean isStartTagAction() {
+	    return false;
 	}
 
 	/**
@@ -92,7 +198,7 @@ public abstract class AFNodeAction<CookieType> {
 	 * This method should be called after a detected error in given data
 	 */
 	public void stop() {
-	    mContext.setStopParser();
+	    getContext().setStopParser();
 	}
 
     /**
@@ -114,14 +220,14 @@ public abstract class AFNodeAction<CookieType> {
 	 * Set the parsing context
 	 */
 	public void setContext(AFCuteXmlParserContext context) {
-		mContext = context;
+		mContext.set(context);
 	}
 
 	/**
 	 * @return The parsing context
 	 */
 	public AFCuteXmlParserContext getContext() {
-		return mContext;
+		return mContext.get();
 	}
 
 	/**
@@ -129,6 +235,7 @@ public abstract class AFNodeAction<CookieType> {
 	 */
 	public void setParser(AFCuteXmlParser parser) {
 		mParser = parser;
+		mNodeId = parser.getSymbolTable().intern(mNodeName);
 	}
 
 	/**
@@ -145,14 +252,18 @@ public abstract class AFNodeAction<CookieType> {
 		return mNodeName;
 	}
 
+	/**
+	 * @return The symbol id of the tag name to apply this action
+	 */
+	public int getNodeId() {
+	    return mNodeId;
+	}
+
 	/**
 	 * @return True if the attribute is in node
 	 */
 	public boolean hasAttribute(String name) {
-	    if (getContext().getCurrentNodeAttributes() == null)
-	        return false;
-
-	    return getContext().getCurrentNodeAttributes().containsKey(name);
+	    return getContext().getCurrent().hasAttribute(name);
 	}
 
 	/**
@@ -181,7 +292,7 @@ public abstract class AFNodeAction<CookieType> {
         if (!hasAttribute(name))
             return def;
 
-        return getContext().getCurrentNodeAttributes().get(name);
+        return getContext().getCurrent().getAttribut(name);
     }
 
 	/**
@@ -207,16 +318,7 @@ public abstract class AFNodeAction<CookieType> {
      *         The attribute value (-1 if not exist)
      */
 	public int getIntAttribute(String name, int def) {
-	    if (!hasAttribute(name))
-	        return def;
-
-	    String value = getContext().getCurrentNodeAttributes().get(name);
-
-	    try {
-	        return Integer.valueOf(value);
-	    } catch (Throwable e) {
-	        return def;
-	    }
+	    return getContext().getCurrent().getIntAttribut(name, def);
 	}
 
     /**
@@ -242,16 +344,7 @@ public abstract class AFNodeAction<CookieType> {
      *         The attribute value
      */
     public boolean getBooleanAttribute(String name, boolean def) {
-        if (!hasAttribute(name))
-            return def;
-
-        String value = getContext().getCurrentNodeAttributes().get(name);
-        if (value.equals("true")
-            || value.equals("yes")
-            || value.equals("1"))
-            return true;
-
-        return false;
+        return getContext().getCurrent().getBooleanAttribut(name, def);
     }
 
     /**
@@ -281,6 +374,17 @@ public abstract class AFNodeAction<CookieType> {
         getContext().getResult().setData(data);
     }
 
+	/**
+	 * Return the deepest depth where this action can match, the parser skips
+	 * the nodes under it when no action can match. An action overriding
+	 * isCorrectNode with a less restrictive depth check must override it too.
+	 *
+	 * @return max depth or Integer.MAX_VALUE if there is no depth limit
+	 */
+	public int getMaxDepth() {
+	    return Integer.MAX_VALUE;
+	}
+
 	/**
 	 * Return true if the current tag correspond to this ActionNode
 	 *
@@ -288,7 +392,7 @@ public abstract class AFNodeAction<CookieType> {
 	 *             Current context
 	 */
 	public boolean isCorrectNode(AFCuteXmlParserContext context) {
-		return mNodeName.equals(context.getCurrent().getName());
+		return context.getCurrent().is(mNodeId, mNodeName);
 	}
 
 }
@@ -50,4 +50,9 @@ public abstract class AFNodeActionAtDepth<CookieType> extends AFNodeAction<Cooki
 		return super.isCorrectNode(context)
 		    && context.getDepth() == mDepth;
 	}
-}
\ No newline at end of file
+
+	@Override
+	public int getMaxDepth() {
+	    return mDepth;
+	}
+}
@@ -0,0 +1,89 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ */
+
+package com.android.aft.AFCuteXmlParser;
+
+/**
+ * Action on the nodes selected by a path like "/catalog/product/price" or
+ * "//item[@type='x']".
+ *
+ * Steps are separated by '/' for a child or '//' for a descendant, a step
+ * is a node name or '*' and can be followed by predicates on attributes:
+ * [@name] or [@name='value']. The paths of a parser are compiled in one
+ * automaton moved at each node push, so the check costs the same whatever
+ * the length of the path. A node name can be tested by at most
+ * 8 attribute conditions in all the paths of a parser.
+ *
+ * Actions on '*' are checked after the actions on a node name.
+ */
+public abstract class AFNodeActionPath<CookieType> extends AFNodeAction<CookieType> {
+
+	private final AFXmlPath mPath;
+
+	/**
+	 * Ctr
+	 *
+	 * @param path
+	 *         Path of the nodes
+	 * @throws IllegalArgumentException if the path syntax is not valid
+	 */
+	public AFNodeActionPath(String path) {
+		this(new AFXmlPath(path));
+	}
+
+	private AFNodeActionPath(AFXmlPath path) {
+		super(path.getNodeName());
+		mPath = path;
+	}
+
+	/**
+	 * @return The path of the nodes
+	 */
+	public String getPath() {
+		return mPath.getPath();
+	}
+
+	AFXmlPath getXmlPath() {
+		return mPath;
+	}
+
+	@Override
+	public void setParser(AFCuteXmlParser parser) {
+		super.setParser(parser);
+		for (AFXmlPath.Step step : mPath.getSteps())
+			if (!step.isAny())
+				parser.getSymbolTable().intern(step.name);
+	}
+
+	/**
+	 * Check if this action is for the current node by walking the node
+	 * stack. The parser uses the compiled path instead.
+	 *
+	 * @return true if this action is for current node
+	 */
+	@Override
+	public boolean isCorrectNode(AFCuteXmlParserContext context) {
+		return mPath.matches(context.getNodes());
+	}
+
+	@Override
+	public int getMaxDepth() {
+		return mPath.getDepth();
+	}
+}
@@ -0,0 +1,260 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ */
+
+package com.android.aft.AFCuteXmlParser;
+
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.Stack;
+import java.util.Vector;
+
+/**
+ * Action dispatch table compiled from the actions of a parser.
+ *
+ * Rules are indexed by node name id, and the checks of the standard action
+ * classes (parent node, depth, node at relative depth) are compiled into int
+ * compares on symbol ids. Actions overriding isCorrectNode are still checked
+ * by calling it. Paths of AFNodeActionPath are compiled in one automaton
+ * moved by the context at each node push. A plan is never modified after
+ * creation.
+ */
+final class AFNodeActionPlan {
+
+    private final static int ANY = -1;
+
+    private final static class Rule {
+        final AFNodeAction<?> action;
+
+        // Call isCorrectNode instead of compiled checks
+        final boolean custom;
+
+        // Needed depth or ANY
+        final int depth;
+
+        // Needed node id at relative level from current node or ANY
+        final int ancestorId;
+        final int ancestorLevel;
+
+        // Selector of the path in the path matcher or ANY
+        final int path;
+
+        Rule(AFNodeAction<?> action, boolean custom, int depth, int ancestorId, int ancestorLevel) {
+            this(action, custom, depth, ancestorId, ancestorLevel, ANY);
+        }
+
+        Rule(AFNodeAction<?> action, boolean custom, int depth, int ancestorId, int ancestorLevel, int path) {
+            this.action = action;
+            this.custom = custom;
+            this.depth = depth;
+            this.ancestorId = ancestorId;
+            this.ancestorLevel = ancestorLevel;
+            this.path = path;
+        }
+    }
+
+    // Snapshot of the parser symbol table, ids of the rules are from this table
+    private final AFXmlSymbolTable mSymbols;
+
+    // Rules indexed by node name id, in order of action registration
+    private final Rule[][] mRules;
+
+    // Rules of paths ending by any node, checked after the rules of the node name
+    private final Rule[] mAnyRules;
+
+    // Matcher of the paths, null if there is no path
+    private final AFXmlPathMatcher mPathMatcher;
+
+    // Deepest depth where an action can match
+    private final int mMaxDepth;
+
+    AFNodeActionPlan(AFXmlSymbolTable symbols, Hashtable<String, Vector<AFNodeAction<?>>> actions) {
+        mSymbols = symbols;
+        mRules = new Rule[symbols.size()][];
+
+        int maxDepth = 0;
+        List<AFXmlPath> paths = new ArrayList<AFXmlPath>();
+        Rule[] anyRules = null;
+        for (Map.Entry<String, Vector<AFNodeAction<?>>> entry : actions.entrySet()) {
+            final Vector<AFNodeAction<?>> nodeActions = entry.getValue();
+            if (nodeActions.isEmpty())
+                continue;
+
+            List<Rule> rules = new ArrayList<Rule>();
+            List<Rule> pathAnyRules = new ArrayList<Rule>();
+            for (AFNodeAction<?> action : nodeActions) {
+                final Rule rule = compile(action, paths);
+                maxDepth = Math.max(maxDepth, action.getMaxDepth());
+
+                // Paths ending by '*' match any node name
+                if (rule.path != ANY && AFXmlPath.ANY_NODE.equals(action.getNodeName()))
+                    pathAnyRules.add(rule);
+                else
+                    rules.add(rule);
+            }
+
+            if (!rules.isEmpty())
+                mRules[symbols.getId(entry.getKey())] = rules.toArray(new Rule[rules.size()]);
+            if (!pathAnyRules.isEmpty())
+                anyRules = pathAnyRules.toArray(new Rule[pathAnyRules.size()]);
+        }
+        mMaxDepth = maxDepth;
+        mAnyRules = anyRules;
+        mPathMatcher = paths.isEmpty() ? null : new AFXmlPathMatcher(symbols, paths);
+    }
+
+    private static Rule compile(AFNodeAction<?> action, List<AFXmlPath> paths) {
+        if (hasCustomCheck(action))
+            return new Rule(action, true, ANY, ANY, ANY);
+
+        if (action instanceof AFNodeActionAtDepth)
+            return new Rule(action, false, action.getMaxDepth(), ANY, ANY);
+
+        if (action instanceof AFNodeActionSonOf)
+            return new Rule(action, false, ANY, ((AFNodeActionSonOf<?>) action).getParentNodeId(), 1);
+
+        if (action instanceof AFNodeActionSonOfAtDepth)
+            return new Rule(action, false, action.getMaxDepth(), ((AFNodeActionSonOfAtDepth<?>) action).getParentNodeId(), 1);
+
+        if (action instanceof AFNodeActionUnderNodeAtRelativeDepth) {
+            AFNodeActionUnderNodeAtRelativeDepth<?> under = (AFNodeActionUnderNodeAtRelativeDepth<?>) action;
+            return new Rule(action, false, ANY, under.getParentNodeId(), under.getRelativeDepth());
+        }
+
+        if (action instanceof AFNodeActionPath) {
+            final AFXmlPath path = ((AFNodeActionPath<?>) action).getXmlPath();
+            final int depth = path.getDepth();
+            paths.add(path);
+            return new Rule(action, false, depth == Integer.MAX_VALUE ? ANY : depth, ANY, ANY, paths.size() - 1);
+        }
+
+        return new Rule(action, false, ANY, ANY, ANY);
+    }
+
+    /**
+     * @return true if the check of the action is not the one of a standard action class
+     */
+    private static boolean hasCustomCheck(AFNodeAction<?> action) {
+        Class<?> c;
+        try {
+            c = action.getClass().getMethod("isCorrectNode", AFCuteXmlParserContext.class).getDeclaringClass();
+        } catch (NoSuchMethodException e) {
+            return true;
+        }
+
+        return c != AFNodeAction.class
+            && c != AFNodeActionAtDepth.class
+            && c != AFNodeActionSonOf.class
+            && c != AFNodeActionSonOfAtDepth.class
+            && c != AFNodeActionUnderNodeAtRelativeDepth.class
+            && c != AFNodeActionPath.class;
+    }
+
+    /**
+     * @return Deepest depth where an action can match
+     */
+    int getMaxDepth() {
+        return mMaxDepth;
+    }
+
+    /**
+     * @return Symbol table of the plan, parent of the table of each parsing
+     */
+    AFXmlSymbolTable getSymbolTable() {
+        return mSymbols;
+    }
+
+    /**
+     * @return Matcher of the paths of the actions, null if there is no path
+     */
+    AFXmlPathMatcher getPathMatcher() {
+        return mPathMatcher;
+    }
+
+    /**
+     * Find the action to call on current node
+     *
+     * @param ctx Parsing context
+     * @return The first registered action matching current node or null
+     */
+    AFNodeAction<?> resolve(AFCuteXmlParserContext ctx) {
+        final Stack<AFXmlTag> nodes = ctx.getNodes();
+        final int size = nodes.size();
+
+        final int id = idOf(nodes.elementAt(size - 1));
+        if (id != AFXmlSymbolTable.UNKNOWN_ID && id < mRules.length && mRules[id] != null) {
+            final AFNodeAction<?> action = resolve(ctx, mRules[id]);
+            if (action != null)
+                return action;
+        }
+
+        if (mAnyRules != null)
+            return resolve(ctx, mAnyRules);
+
+        return null;
+    }
+
+    /**
+     * @return The first action of rules matching current node or null
+     */
+    private AFNodeAction<?> resolve(AFCuteXmlParserContext ctx, Rule[] rules) {
+        final Stack<AFXmlTag> nodes = ctx.getNodes();
+        final int size = nodes.size();
+
+        for (Rule rule : rules) {
+            if (rule.custom) {
+                if (rule.action.isCorrectNode(ctx))
+                    return rule.action;
+                continue;
+            }
+
+            if (rule.depth != ANY && rule.depth != ctx.getDepth())
+                continue;
+
+            if (rule.ancestorLevel != ANY) {
+                if (size < rule.ancestorLevel + 1)
+                    continue;
+                if (idOf(nodes.elementAt(size - rule.ancestorLevel - 1)) != rule.ancestorId)
+                    continue;
+            }
+
+            if (rule.path != ANY && !ctx.isPathMatched(rule.path))
+                continue;
+
+            return rule.action;
+        }
+
+        return null;
+    }
+
+    /**
+     * @return Id of the tag name in parser symbol table
+     */
+    private int idOf(AFXmlTag tag) {
+        final int id = tag.getId();
+
+        // Low level parser without symbol table support
+        if (id == AFXmlSymbolTable.UNKNOWN_ID)
+            return mSymbols.getId(tag.getName());
+
+        return id;
+    }
+
+}
@@ -25,6 +25,7 @@ package com.android.aft.AFCuteXmlParser;
 public abstract class AFNodeActionSonOf<CookieType> extends AFNodeAction<CookieType> {
 
 	private String mParentNodeName;
+	private int mParentNodeId = AFXmlSymbolTable.UNKNOWN_ID;
 
 	/**
 	 * Ctr
@@ -39,6 +40,16 @@ public abstract class AFNodeActionSonOf<CookieType> extends AFNodeAction<CookieT
 		mParentNodeName = parentNodeName;
 	}
 
+	@Override
+	public void setParser(AFCuteXmlParser parser) {
+	    super.setParser(parser);
+	    mParentNodeId = parser.getSymbolTable().intern(mParentNodeName);
+	}
+
+	int getParentNodeId() {
+	    return mParentNodeId;
+	}
+
 	/**
 	 * Check if this action is for the current node.
 	 * Add a test to check the name of the parent
@@ -47,6 +58,6 @@ public abstract class AFNodeActionSonOf<CookieType> extends AFNodeAction<CookieT
 	 */
 	public boolean isCorrectNode(AFCuteXmlParserContext context) {
 		return super.isCorrectNode(context)
-		    && context.getParent().getName().equals(mParentNodeName);
+		    && context.getParent().is(mParentNodeId, mParentNodeName);
 	}
 }
\ No newline at end of file
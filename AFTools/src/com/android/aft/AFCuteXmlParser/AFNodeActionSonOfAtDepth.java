@@ -27,6 +27,7 @@ package com.android.aft.AFCuteXmlParser;
 public abstract class AFNodeActionSonOfAtDepth<CookieType> extends AFNodeAction<CookieType> {
 
 	private String mParentNodeName;
+	private int mParentNodeId = AFXmlSymbolTable.UNKNOWN_ID;
 	private int mDepth;
 
 	/**
@@ -44,6 +45,16 @@ public abstract class AFNodeActionSonOfAtDepth<CookieType> extends AFNodeAction<
 		mDepth = depth;
 	}
 
+	@Override
+	public void setParser(AFCuteXmlParser parser) {
+	    super.setParser(parser);
+	    mParentNodeId = parser.getSymbolTable().intern(mParentNodeName);
+	}
+
+	int getParentNodeId() {
+	    return mParentNodeId;
+	}
+
 	/**
      * Check if this action is for the current node.
      * Add a test to check:
@@ -54,8 +65,12 @@ public abstract class AFNodeActionSonOfAtDepth<CookieType> extends AFNodeAction<
      */
 	public boolean isCorrectNode(AFCuteXmlParserContext context){
 		return super.isCorrectNode(context)
-		    && context.getParent().getName().equals(mParentNodeName)
+		    && context.getParent().is(mParentNodeId, mParentNodeName)
 		    && context.getDepth() == mDepth;
 	}
 
-}
\ No newline at end of file
+	@Override
+	public int getMaxDepth() {
+	    return mDepth;
+	}
+}
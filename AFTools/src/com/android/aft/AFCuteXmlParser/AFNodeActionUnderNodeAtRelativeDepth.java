@@ -29,6 +29,7 @@ import java.util.Stack;
 public abstract class AFNodeActionUnderNodeAtRelativeDepth<CookieType> extends AFNodeAction<CookieType> {
 
     private String mParentNodeName;
+    private int mParentNodeId = AFXmlSymbolTable.UNKNOWN_ID;
     private int mRelativeDepth;
 
     /**
@@ -46,6 +47,20 @@ public abstract class AFNodeActionUnderNodeAtRelativeDepth<CookieType> extends A
         mRelativeDepth = depth;
     }
 
+    @Override
+    public void setParser(AFCuteXmlParser parser) {
+        super.setParser(parser);
+        mParentNodeId = parser.getSymbolTable().intern(mParentNodeName);
+    }
+
+    int getParentNodeId() {
+        return mParentNodeId;
+    }
+
+    int getRelativeDepth() {
+        return mRelativeDepth;
+    }
+
     @Override
     public boolean isCorrectNode(AFCuteXmlParserContext ctx) {
         if (!super.isCorrectNode(ctx))
@@ -56,7 +71,7 @@ public abstract class AFNodeActionUnderNodeAtRelativeDepth<CookieType> extends A
             return false;
 
         AFXmlTag parent = tags.elementAt(tags.size() - mRelativeDepth - 1);
-        return parent.getName().equals(mParentNodeName);
+        return parent.is(mParentNodeId, mParentNodeName);
     }
 
 }
@@ -0,0 +1,133 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ */
+
+package com.android.aft.AFCuteXmlParser;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterator on the items of a xml document, created by AFCuteXmlParser.stream.
+ *
+ * Data are parsed when the next item is asked, until the end of the next
+ * streamed node. The action of a streamed node builds its item and gives it
+ * with setResultData, actions under the streamed node are called as usual
+ * but actions on other nodes are not called. Nodes whose action gives no item
+ * are not returned.
+ *
+ * @param <T> Type of items
+ */
+public class AFXmlCursor<T> implements Iterator<T> {
+
+    private final AFCuteXmlParser mParser;
+    private final AFCuteXmlParserContext mContext;
+
+    // Streamed node
+    final int mNodeId;
+    final String mNodeName;
+
+    // Data source, closed at end
+    private Closeable mInput;
+
+    // Set by the parser when all data are read
+    boolean mEnd;
+
+    private boolean mStarted;
+
+    // Item read by hasNext and not returned yet
+    private T mNext;
+
+    AFXmlCursor(AFCuteXmlParser parser, AFCuteXmlParserContext context, String nodeName, Closeable input) {
+        mParser = parser;
+        mContext = context;
+        mNodeName = nodeName;
+        mNodeId = context.getSymbolTable().intern(nodeName);
+        mInput = input;
+    }
+
+    AFCuteXmlParserContext getContext() {
+        return mContext;
+    }
+
+    void setStarted() {
+        mStarted = true;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (mNext != null)
+            return true;
+
+        if (!mEnd)
+            mNext = mParser.read_next_item(this);
+        if (mNext == null)
+            close();
+
+        return mNext != null;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+
+        T item = mNext;
+        mNext = null;
+        return item;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Result of the parsing, its status is known when hasNext return false
+     *
+     * @return parsing result object
+     */
+    public AFCuteXmlParserResult getResult() {
+        return mContext.getResult();
+    }
+
+    /**
+     * Stop the parsing and close data, can be called before the end of data
+     */
+    public void close() {
+        mNext = null;
+        mEnd = true;
+
+        if (mStarted) {
+            mStarted = false;
+            mParser.finish(mContext, getResult().status());
+        }
+
+        if (mInput != null) {
+            try {
+                mInput.close();
+            } catch (IOException e) {
+                AFCuteXmlParser.dbg.e("Cannot close data", e);
+            }
+            mInput = null;
+        }
+    }
+
+}
@@ -0,0 +1,195 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ */
+
+package com.android.aft.AFCuteXmlParser;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.SequenceInputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Encoding of xml bytes, detected from the byte order mark or the encoding
+ * declared in the xml prolog. Data without indication are UTF-8.
+ *
+ * The first bytes are read to detect the encoding, getStream return them
+ * again followed by the rest of the data, without the byte order mark.
+ * The data are not closed at their end, whoever opened them closes them.
+ */
+public class AFXmlEncoding {
+
+    public final static String UTF_8 = "UTF-8";
+    public final static String UTF_16BE = "UTF-16BE";
+    public final static String UTF_16LE = "UTF-16LE";
+    public final static String ISO_8859_1 = "ISO-8859-1";
+    public final static String US_ASCII = "US-ASCII";
+
+    // Number of bytes read to find the prolog
+    private final static int HEAD_SIZE = 256;
+
+    private final InputStream mIn;
+
+    private final byte[] mHead = new byte[HEAD_SIZE];
+    private int mHeadLength;
+    private int mBomLength;
+
+    private String mCharset;
+
+    /**
+     * Read the first bytes of in to detect encoding
+     *
+     * @param in xml data
+     * @throws IOException if data cannot be read
+     */
+    public AFXmlEncoding(InputStream in) throws IOException {
+        mIn = in;
+
+        while (mHeadLength < HEAD_SIZE) {
+            final int s = in.read(mHead, mHeadLength, HEAD_SIZE - mHeadLength);
+            if (s < 0)
+                break;
+            mHeadLength += s;
+
+            // Whole prolog is read
+            if (indexOf("?>") != -1)
+                break;
+        }
+
+        mCharset = detect();
+    }
+
+    /**
+     * @return Canonical name of the charset
+     */
+    public String getCharset() {
+        return mCharset;
+    }
+
+    /**
+     * @return The data after the byte order mark
+     */
+    public InputStream getStream() {
+        // SequenceInputStream closes each stream at its end
+        final InputStream rest = new FilterInputStream(mIn) {
+            @Override
+            public void close() {
+            }
+        };
+
+        return new SequenceInputStream(new ByteArrayInputStream(mHead, mBomLength, mHeadLength - mBomLength), rest);
+    }
+
+    /**
+     * @return A reader decoding the data with the detected charset
+     */
+    public InputStreamReader getReader() {
+        return new InputStreamReader(getStream(), Charset.forName(mCharset));
+    }
+
+    private String detect() {
+        final byte[] b = mHead;
+
+        // Byte order mark
+        if (startWith(0xEF, 0xBB, 0xBF)) {
+            mBomLength = 3;
+            return UTF_8;
+        }
+        if (startWith(0xFE, 0xFF)) {
+            mBomLength = 2;
+            return UTF_16BE;
+        }
+        if (startWith(0xFF, 0xFE)) {
+            mBomLength = 2;
+            return UTF_16LE;
+        }
+
+        // "<?" in UTF-16 without byte order mark
+        if (startWith(0x00, 0x3C, 0x00, 0x3F))
+            return UTF_16BE;
+        if (startWith(0x3C, 0x00, 0x3F, 0x00))
+            return UTF_16LE;
+
+        // Encoding declared in prolog
+        if (mHeadLength < 5 || b[0] != '<' || b[1] != '?' || b[2] != 'x' || b[3] != 'm' || b[4] != 'l')
+            return UTF_8;
+
+        int end = indexOf("?>");
+        if (end == -1)
+            end = mHeadLength;
+
+        // Prolog is ASCII
+        final char[] chars = new char[end];
+        for (int i = 0; i < end; ++i)
+            chars[i] = (char) (mHead[i] & 0xFF);
+        final String prolog = new String(chars);
+        final int idx = prolog.indexOf("encoding");
+        if (idx == -1)
+            return UTF_8;
+
+        int i = prolog.indexOf('=', idx);
+        if (i == -1)
+            return UTF_8;
+        ++i;
+        while (i < prolog.length() && prolog.charAt(i) == ' ')
+            ++i;
+        if (i == prolog.length())
+            return UTF_8;
+
+        final char quote = prolog.charAt(i);
+        final int last = prolog.indexOf(quote, i + 1);
+        if ((quote != '"' && quote != '\'') || last == -1)
+            return UTF_8;
+
+        final String name = prolog.substring(i + 1, last);
+        try {
+            return Charset.forName(name).name();
+        } catch (Exception e) {
+            AFCuteXmlParser.dbg.w("Unsupported encoding " + name + ", use " + UTF_8);
+            return UTF_8;
+        }
+    }
+
+    private boolean startWith(int... bytes) {
+        if (mHeadLength < bytes.length)
+            return false;
+
+        for (int i = 0; i < bytes.length; ++i)
+            if ((mHead[i] & 0xFF) != bytes[i])
+                return false;
+
+        return true;
+    }
+
+    private int indexOf(String str) {
+        final int length = str.length();
+        for (int i = 0; i + length <= mHeadLength; ++i) {
+            int j = 0;
+            while (j < length && mHead[i + j] == str.charAt(j))
+                ++j;
+            if (j == length)
+                return i;
+        }
+
+        return -1;
+    }
+
+}
@@ -0,0 +1,237 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ */
+
+package com.android.aft.AFCuteXmlParser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Stack;
+
+/**
+ * Path of nodes like "/catalog/product/price" or "//item[@type='x']".
+ *
+ * Supported syntax: steps separated by '/' for a child or '//' for a
+ * descendant, a step is a node name or '*' followed by predicates on
+ * attributes: [@name] or [@name='value'].
+ */
+final class AFXmlPath {
+
+    public final static String ANY_NODE = "*";
+
+    /**
+     * A step of the path
+     */
+    final static class Step {
+        // Node name or ANY_NODE
+        final String name;
+
+        // Preceded by '//'
+        final boolean descendant;
+
+        // Attribute predicates, value is null to only test the presence
+        final String[] attributeNames;
+        final String[] attributeValues;
+
+        Step(String name, boolean descendant, String[] attributeNames, String[] attributeValues) {
+            this.name = name;
+            this.descendant = descendant;
+            this.attributeNames = attributeNames;
+            this.attributeValues = attributeValues;
+        }
+
+        boolean isAny() {
+            return name.equals(ANY_NODE);
+        }
+
+        boolean hasPredicates() {
+            return attributeNames.length != 0;
+        }
+
+        /**
+         * @return true if the attributes of tag match the predicates
+         */
+        boolean matchAttributes(AFXmlTag tag) {
+            for (int i = 0; i < attributeNames.length; ++i) {
+                if (attributeValues[i] == null) {
+                    if (!tag.hasAttribute(attributeNames[i]))
+                        return false;
+                }
+                else if (!tag.hasAttributValue(attributeNames[i], attributeValues[i]))
+                    return false;
+            }
+
+            return true;
+        }
+
+        boolean matches(AFXmlTag tag) {
+            return (isAny() || name.equals(tag.getName())) && matchAttributes(tag);
+        }
+    }
+
+    private final String mPath;
+    private final Step[] mSteps;
+
+    /**
+     * @param path Path to parse
+     * @throws IllegalArgumentException if the path syntax is not valid
+     */
+    AFXmlPath(String path) {
+        mPath = path;
+        mSteps = parse(path);
+    }
+
+    String getPath() {
+        return mPath;
+    }
+
+    Step[] getSteps() {
+        return mSteps;
+    }
+
+    /**
+     * @return Name of the last step, ANY_NODE for any node
+     */
+    String getNodeName() {
+        return mSteps[mSteps.length - 1].name;
+    }
+
+    /**
+     * @return Depth of matching nodes, Integer.MAX_VALUE if the path has a descendant step
+     */
+    int getDepth() {
+        for (Step step : mSteps)
+            if (step.descendant)
+                return Integer.MAX_VALUE;
+
+        return mSteps.length;
+    }
+
+    /**
+     * Test the path on a node stack by walking it, the parser uses the
+     * compiled automaton instead
+     *
+     * @param nodes Node stack with the marker root node at bottom
+     * @return true if the top node matches the path
+     */
+    boolean matches(Stack<AFXmlTag> nodes) {
+        return matches(nodes, mSteps.length - 1, nodes.size() - 1);
+    }
+
+    private boolean matches(Stack<AFXmlTag> nodes, int step, int level) {
+        // Marker root node is not a node of the path
+        if (level < 1 || !mSteps[step].matches(nodes.elementAt(level)))
+            return false;
+
+        if (step == 0)
+            return !mSteps[0].descendant ? level == 1 : true;
+
+        if (!mSteps[step].descendant)
+            return matches(nodes, step - 1, level - 1);
+
+        for (int l = level - 1; l >= 1; --l)
+            if (matches(nodes, step - 1, l))
+                return true;
+
+        return false;
+    }
+
+    //
+    // Syntax
+    //
+
+    private static Step[] parse(String path) {
+        if (path == null || !path.startsWith("/"))
+            throw error(path, "must start with '/' or '//'");
+
+        List<Step> steps = new ArrayList<Step>();
+        final int length = path.length();
+        int i = 0;
+        while (i < length) {
+            // Separator
+            if (path.charAt(i) != '/')
+                throw error(path, "expected '/' at " + i);
+            ++i;
+            boolean descendant = false;
+            if (i < length && path.charAt(i) == '/') {
+                descendant = true;
+                ++i;
+            }
+
+            // Name
+            final int start = i;
+            while (i < length && path.charAt(i) != '/' && path.charAt(i) != '[') {
+                final char c = path.charAt(i);
+                if (c == ' ' || c == '@' || c == '=' || c == ']' || c == '\'' || c == '"')
+                    throw error(path, "unexpected '" + c + "' in node name at " + i);
+                ++i;
+            }
+            if (i == start)
+                throw error(path, "expected node name at " + i);
+            final String name = path.substring(start, i);
+            if (name.indexOf('*') != -1 && !name.equals(ANY_NODE))
+                throw error(path, "'*' must be a whole step at " + start);
+
+            // Predicates
+            List<String> names = new ArrayList<String>();
+            List<String> values = new ArrayList<String>();
+            while (i < length && path.charAt(i) == '[') {
+                ++i;
+                if (i == length || path.charAt(i) != '@')
+                    throw error(path, "expected '@' at " + i);
+                ++i;
+
+                final int nameStart = i;
+                while (i < length && path.charAt(i) != '=' && path.charAt(i) != ']')
+                    ++i;
+                if (i == nameStart || i == length)
+                    throw error(path, "expected attribute name at " + nameStart);
+                names.add(path.substring(nameStart, i));
+
+                String value = null;
+                if (path.charAt(i) == '=') {
+                    ++i;
+                    if (i == length || (path.charAt(i) != '\'' && path.charAt(i) != '"'))
+                        throw error(path, "expected quoted value at " + i);
+                    final char quote = path.charAt(i);
+                    final int end = path.indexOf(quote, i + 1);
+                    if (end == -1)
+                        throw error(path, "unterminated value at " + i);
+                    value = path.substring(i + 1, end);
+                    i = end + 1;
+                }
+                values.add(value);
+
+                if (i == length || path.charAt(i) != ']')
+                    throw error(path, "expected ']' at " + i);
+                ++i;
+            }
+
+            steps.add(new Step(name, descendant,
+                               names.toArray(new String[names.size()]),
+                               values.toArray(new String[values.size()])));
+        }
+
+        return steps.toArray(new Step[steps.size()]);
+    }
+
+    private static IllegalArgumentException error(String path, String msg) {
+        return new IllegalArgumentException("Invalid path \"" + path + "\": " + msg);
+    }
+
+}
@@ -0,0 +1,279 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ */
+
+package com.android.aft.AFCuteXmlParser;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Automaton matching all the paths of a parser at once.
+ *
+ * The paths are compiled in one NFA whose states are the steps of each path.
+ * The DFA is built lazily from it: a DFA state is the set of reached steps
+ * and its transitions are indexed by name class and by the mask of the
+ * attribute conditions met by the tag, so a push of node costs a table
+ * lookup once the transition has been computed. Name classes are the names
+ * used in paths, all other names share class 0.
+ *
+ * The matcher is shared by the parsings of a parser, new DFA states are
+ * created under lock and published by copy of the state array.
+ */
+final class AFXmlPathMatcher {
+
+    // Max number of attribute conditions testing a node name
+    final static int MAX_CONDITIONS = 8;
+
+    private final static class State {
+        // Reached NFA states
+        final BitSet nfa;
+
+        // Matched paths
+        final boolean[] matched;
+
+        // Next DFA state by class and condition mask, -1 if not computed
+        final int[] next;
+
+        State(BitSet nfa, boolean[] matched, int rowSize) {
+            this.nfa = nfa;
+            this.matched = matched;
+            this.next = new int[rowSize];
+            Arrays.fill(next, -1);
+        }
+    }
+
+    // Parser symbol table, class of tag names are indexed by its ids
+    private final AFXmlSymbolTable mSymbols;
+
+    // NFA: step leaving a state, null for final states of paths
+    private final AFXmlPath.Step[] mStepOf;
+
+    // NFA: class of the name of step leaving a state, -1 for any name
+    private final int[] mClassOfStep;
+
+    // NFA: path matched by final states, -1 for other states
+    private final int[] mPathOf;
+
+    private final int mPathCount;
+
+    // Class of symbol ids, 0 for names not used in paths
+    private final int[] mClassOfId;
+
+    // Steps with attribute predicates applying to each class, bit i of the mask is for step i
+    private final AFXmlPath.Step[][] mConditions;
+
+    // Offset of each class in the transition row
+    private final int[] mRowOffset;
+    private final int mRowSize;
+
+    // DFA states
+    private volatile State[] mStates;
+    private int mStateCount;
+    private final HashMap<BitSet, Integer> mStateIds = new HashMap<BitSet, Integer>();
+
+    private final int mStartState;
+
+    /**
+     * @param symbols Parser symbol table, names of path steps must be interned
+     * @param paths Paths to match, their index is used as selector
+     * @throws IllegalArgumentException if a node name is tested by too many attribute conditions
+     */
+    AFXmlPathMatcher(AFXmlSymbolTable symbols, List<AFXmlPath> paths) {
+        mSymbols = symbols;
+        mPathCount = paths.size();
+
+        // Name classes
+        HashMap<String, Integer> classes = new HashMap<String, Integer>();
+        int nfaSize = 0;
+        for (AFXmlPath path : paths) {
+            for (AFXmlPath.Step step : path.getSteps())
+                if (!step.isAny() && !classes.containsKey(step.name))
+                    classes.put(step.name, classes.size() + 1);
+            nfaSize += path.getSteps().length + 1;
+        }
+        final int classCount = classes.size() + 1;
+
+        mClassOfId = new int[symbols.size()];
+        for (String name : classes.keySet()) {
+            final int id = symbols.getId(name);
+            if (id >= 0 && id < mClassOfId.length)
+                mClassOfId[id] = classes.get(name);
+        }
+
+        // NFA
+        mStepOf = new AFXmlPath.Step[nfaSize];
+        mClassOfStep = new int[nfaSize];
+        mPathOf = new int[nfaSize];
+        BitSet start = new BitSet(nfaSize);
+        int q = 0;
+        for (int p = 0; p < paths.size(); ++p) {
+            start.set(q);
+            for (AFXmlPath.Step step : paths.get(p).getSteps()) {
+                mStepOf[q] = step;
+                mClassOfStep[q] = step.isAny() ? -1 : classes.get(step.name);
+                mPathOf[q] = -1;
+                ++q;
+            }
+            mPathOf[q] = p;
+            ++q;
+        }
+
+        // Attribute conditions of each class
+        mConditions = new AFXmlPath.Step[classCount][];
+        mRowOffset = new int[classCount];
+        int rowSize = 0;
+        for (int c = 0; c < classCount; ++c) {
+            int count = 0;
+            AFXmlPath.Step[] conditions = new AFXmlPath.Step[nfaSize];
+            for (int s = 0; s < nfaSize; ++s)
+                if (mStepOf[s] != null && mStepOf[s].hasPredicates() && applies(s, c))
+                    conditions[count++] = mStepOf[s];
+            if (count > MAX_CONDITIONS)
+                throw new IllegalArgumentException("Too many attribute conditions on a node name in paths (" + count + " > " + MAX_CONDITIONS + ")");
+
+            mConditions[c] = new AFXmlPath.Step[count];
+            System.arraycopy(conditions, 0, mConditions[c], 0, count);
+            mRowOffset[c] = rowSize;
+            rowSize += 1 << count;
+        }
+        mRowSize = rowSize;
+
+        mStates = new State[8];
+        mStartState = stateOf(start);
+    }
+
+    /**
+     * @return DFA state of the marker root node
+     */
+    int getStartState() {
+        return mStartState;
+    }
+
+    /**
+     * @return true if the path at index selector matches the node in given state
+     */
+    boolean isMatched(int state, int selector) {
+        return mStates[state].matched[selector];
+    }
+
+    /**
+     * Move the automaton on a pushed node
+     *
+     * @param state DFA state of the parent node
+     * @param tag The pushed tag
+     * @return DFA state of the pushed node
+     */
+    int next(int state, AFXmlTag tag) {
+        final int c = classOf(tag);
+
+        int mask = 0;
+        final AFXmlPath.Step[] conditions = mConditions[c];
+        for (int i = 0; i < conditions.length; ++i)
+            if (conditions[i].matchAttributes(tag))
+                mask |= 1 << i;
+
+        final int idx = mRowOffset[c] + mask;
+        final State[] states = mStates;
+        final int next = states[state].next[idx];
+        if (next >= 0 && next < states.length && states[next] != null)
+            return next;
+
+        return computeNext(state, c, mask, idx);
+    }
+
+    private int classOf(AFXmlTag tag) {
+        int id = tag.getId();
+
+        // Low level parser without symbol table support
+        if (id == AFXmlSymbolTable.UNKNOWN_ID)
+            id = mSymbols.getId(tag.getName());
+
+        // Names added after compilation are not used in paths
+        if (id < 0 || id >= mClassOfId.length)
+            return 0;
+
+        return mClassOfId[id];
+    }
+
+    /**
+     * @return true if the step leaving NFA state q can match a name of class c
+     */
+    private boolean applies(int q, int c) {
+        return mClassOfStep[q] == -1 || mClassOfStep[q] == c;
+    }
+
+    private synchronized int computeNext(int state, int c, int mask, int idx) {
+        final State from = mStates[state];
+        if (from.next[idx] >= 0)
+            return from.next[idx];
+
+        final BitSet to = new BitSet(mStepOf.length);
+        final BitSet set = from.nfa;
+        for (int q = set.nextSetBit(0); q >= 0; q = set.nextSetBit(q + 1)) {
+            final AFXmlPath.Step step = mStepOf[q];
+            if (step == null)
+                continue;
+
+            // Any number of nodes before a descendant step
+            if (step.descendant)
+                to.set(q);
+
+            if (applies(q, c) && (!step.hasPredicates() || (mask & (1 << indexOf(mConditions[c], step))) != 0))
+                to.set(q + 1);
+        }
+
+        final int next = stateOf(to);
+        from.next[idx] = next;
+        return next;
+    }
+
+    private static int indexOf(AFXmlPath.Step[] conditions, AFXmlPath.Step step) {
+        for (int i = 0; i < conditions.length; ++i)
+            if (conditions[i] == step)
+                return i;
+
+        return -1;
+    }
+
+    /**
+     * @return DFA state of a set of NFA states, created if needed
+     */
+    private synchronized int stateOf(BitSet nfa) {
+        final Integer id = mStateIds.get(nfa);
+        if (id != null)
+            return id;
+
+        final boolean[] matched = new boolean[mPathCount];
+        for (int q = nfa.nextSetBit(0); q >= 0; q = nfa.nextSetBit(q + 1))
+            if (mPathOf[q] != -1)
+                matched[mPathOf[q]] = true;
+
+        // Publish a new array so that readers see the complete state
+        final State[] states = new State[mStateCount == mStates.length ? mStates.length * 2 : mStates.length];
+        System.arraycopy(mStates, 0, states, 0, mStateCount);
+        states[mStateCount] = new State(nfa, matched, mRowSize);
+        mStates = states;
+
+        mStateIds.put(nfa, mStateCount);
+        return mStateCount++;
+    }
+
+}
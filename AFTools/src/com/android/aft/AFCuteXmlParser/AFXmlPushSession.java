@@ -0,0 +1,397 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ */
+
+package com.android.aft.AFCuteXmlParser;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+import android.text.TextUtils;
+
+import com.android.aft.AFCuteXmlParser.LowParser.Fast.AFFastLowXmlParser;
+import com.android.aft.AFCuteXmlParser.LowParser.Fast.AFXmlCharWindow;
+
+/**
+ * Push parsing session, created by AFCuteXmlParser.push.
+ *
+ * Xml bytes are given by chunks as they arrive, a chunk can end anywhere,
+ * even in the middle of a char or a tag. Bytes are decoded and appended to
+ * the char window of the fast low level parser, and tags are read as soon
+ * as they are complete. The action of a node is called once the whole node
+ * is received, so read_children and read_content in actions never wait
+ * for data. The actions under a node with an action are called from it, so
+ * only once it is complete: to read a document as it arrives, actions are
+ * put on the repeated nodes, and an action on the root node only reads its
+ * start tag, see AFNodeAction.isStartTagAction.
+ *
+ * A session is used by one thread at a time.
+ */
+public class AFXmlPushSession {
+
+    // Number of bytes read to detect encoding
+    private final static int HEAD_SIZE = 256;
+
+    // Size of decoding buffers
+    private final static int BUFFER_SIZE = 8192;
+
+    private final static AFFastLowXmlParser sFastParser = new AFFastLowXmlParser();
+
+    private final AFCuteXmlParser mParser;
+    private AFCuteXmlParserContext mContext;
+
+    private final AFXmlCharWindow mWindow = new AFXmlCharWindow(BUFFER_SIZE);
+    private final AFXmlTagScanner mScanner = new AFXmlTagScanner();
+
+    // First bytes until the encoding is known
+    private byte[] mHead = new byte[HEAD_SIZE];
+    private int mHeadLength;
+
+    // Decoding of pushed bytes, undecoded bytes of a split char stay in mBytes
+    private CharsetDecoder mDecoder;
+    private final ByteBuffer mBytes = ByteBuffer.allocate(BUFFER_SIZE);
+    private final CharBuffer mChars = CharBuffer.allocate(BUFFER_SIZE);
+
+    // Number of element tags read by the low level parser
+    private int mReadCount;
+
+    // Index of the tag whose action waits for the end of its node, -1 if none
+    int mPendingTag = -1;
+    private int mPendingDepth;
+    private boolean mPendingComplete;
+    private int mSearchFrom;
+
+    // All data are pushed
+    private boolean mFinished;
+
+    // Set by the parser at end of root node or on error
+    boolean mEnd;
+
+    private boolean mStarted;
+
+    AFXmlPushSession(AFCuteXmlParser parser) {
+        mParser = parser;
+    }
+
+    /**
+     * @return The low level parser reading the pushed data
+     */
+    AFLowXmlParser getLowParser() {
+        return mLowParser;
+    }
+
+    void setContext(AFCuteXmlParserContext context) {
+        mContext = context;
+        sFastParser.init(context, mWindow);
+    }
+
+    AFCuteXmlParserContext getContext() {
+        return mContext;
+    }
+
+    void setStarted() {
+        mStarted = true;
+    }
+
+    /**
+     * Push xml bytes
+     *
+     * @param data Bytes
+     * @param off Offset of the bytes in data
+     * @param len Number of bytes
+     * @return false if parsing failed or was stopped
+     */
+    public boolean feed(byte[] data, int off, int len) {
+        if (mEnd)
+            return getResult().status();
+
+        if (mDecoder == null) {
+            if (mHeadLength + len > mHead.length) {
+                byte[] head = new byte[Math.max(mHeadLength + len, mHead.length * 2)];
+                System.arraycopy(mHead, 0, head, 0, mHeadLength);
+                mHead = head;
+            }
+            System.arraycopy(data, off, mHead, mHeadLength, len);
+            mHeadLength += len;
+
+            if (!canDetectEncoding())
+                return true;
+            if (!startDecoding())
+                return end(false);
+        }
+        else
+            decode(data, off, len);
+
+        return parse();
+    }
+
+    /**
+     * Push xml bytes
+     *
+     * @see #feed(byte[], int, int)
+     */
+    public boolean feed(byte[] data) {
+        return feed(data, 0, data.length);
+    }
+
+    /**
+     * Tell that all data are pushed, actions waiting for the end of their
+     * node are called with the received data.
+     *
+     * @return parsing result object
+     */
+    public AFCuteXmlParserResult finish() {
+        if (mEnd)
+            return getResult();
+
+        mFinished = true;
+        if (mDecoder == null && !startDecoding()) {
+            end(false);
+            return getResult();
+        }
+
+        // Last chars of data
+        mBytes.flip();
+        decode(true);
+        mBytes.clear();
+        mDecoder.flush(mChars);
+        flushChars();
+
+        if (parse())
+            end(true);
+
+        return getResult();
+    }
+
+    /**
+     * @return parsing result object, its status is known after finish
+     */
+    public AFCuteXmlParserResult getResult() {
+        return mContext.getResult();
+    }
+
+    //
+    // Parser state
+    //
+
+    /**
+     * @return true if the next element tag can be read
+     */
+    boolean hasTag() {
+        return mFinished || mScanner.getTagCount() > mReadCount;
+    }
+
+    /**
+     * Keep the last read tag to call its action once its node is complete
+     *
+     * @param start true if the tag is a start tag with children
+     */
+    void setPendingTag(boolean start) {
+        mPendingTag = mReadCount - 1;
+        mPendingComplete = !start;
+        mPendingDepth = mScanner.getDepthAfter(mPendingTag) - 1;
+        mSearchFrom = mPendingTag;
+    }
+
+    /**
+     * @return true if the node of the pending tag is complete
+     */
+    boolean isPendingComplete() {
+        if (mPendingComplete || mFinished)
+            return true;
+
+        if (mScanner.findDepth(mSearchFrom, mPendingDepth) != -1)
+            return true;
+
+        mSearchFrom = Math.max(mPendingTag, mScanner.getTagCount() - 1);
+        return false;
+    }
+
+    private boolean parse() {
+        final boolean status = mParser.read_pushed_tags(this);
+        if (!status)
+            return end(false);
+
+        mScanner.release(mPendingTag != -1 ? mPendingTag : mReadCount);
+        if (mEnd)
+            return end(true);
+
+        return true;
+    }
+
+    private boolean end(boolean status) {
+        mEnd = true;
+
+        final AFCuteXmlParserResult result = getResult();
+        if (!status && result.getErrorCode() == 0)
+            result.setErrorCode(1);
+
+        if (mStarted) {
+            mStarted = false;
+            mParser.finish(mContext, result.status());
+            AFCuteXmlParser.dbg.d("Push parsing finish: " + result.status());
+        }
+
+        return result.status();
+    }
+
+    //
+    // Decoding
+    //
+
+    /**
+     * @return true if the first bytes are enough to know the encoding
+     */
+    private boolean canDetectEncoding() {
+        if (mHeadLength >= HEAD_SIZE)
+            return true;
+
+        // No prolog
+        if (mHeadLength >= 2 && mHead[0] == '<' && mHead[1] != '?')
+            return true;
+
+        // End of prolog
+        for (int i = 0; i + 1 < mHeadLength; ++i)
+            if (mHead[i] == '?' && mHead[i + 1] == '>')
+                return true;
+
+        return false;
+    }
+
+    private boolean startDecoding() {
+        InputStream head;
+        try {
+            AFXmlEncoding encoding = new AFXmlEncoding(new ByteArrayInputStream(mHead, 0, mHeadLength));
+            mDecoder = Charset.forName(encoding.getCharset()).newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            head = encoding.getStream();
+        } catch (IOException e) {
+            AFCuteXmlParser.dbg.e("Cannot detect encoding", e);
+            return false;
+        }
+
+        // Bytes after the byte order mark
+        final byte[] bytes = new byte[mHeadLength];
+        int length = 0;
+        try {
+            int s;
+            while ((s = head.read(bytes, length, bytes.length - length)) > 0)
+                length += s;
+        } catch (IOException e) {
+            AFCuteXmlParser.dbg.e("Cannot read data", e);
+            return false;
+        }
+        mHead = null;
+
+        decode(bytes, 0, length);
+        return true;
+    }
+
+    private void decode(byte[] data, int off, int len) {
+        while (len > 0) {
+            final int n = Math.min(len, mBytes.remaining());
+            mBytes.put(data, off, n);
+            off += n;
+            len -= n;
+
+            mBytes.flip();
+            decode(false);
+            mBytes.compact();
+        }
+    }
+
+    private void decode(boolean endOfInput) {
+        while (true) {
+            final CoderResult result = mDecoder.decode(mBytes, mChars, endOfInput);
+            flushChars();
+            if (!result.isOverflow())
+                break;
+        }
+    }
+
+    /**
+     * Give decoded chars to the scanner and the parser window
+     */
+    private void flushChars() {
+        final int length = mChars.position();
+        if (length == 0)
+            return;
+
+        mScanner.scan(mChars.array(), 0, length);
+        mWindow.append(mChars.array(), 0, length);
+        mChars.clear();
+    }
+
+    /**
+     * Fast low level parser counting the element tags read
+     */
+    private final AFLowXmlParser mLowParser = new AFLowXmlParser() {
+
+        @Override
+        public boolean init(AFCuteXmlParserContext context, InputStreamReader xml) {
+            // Data are pushed to the session
+            return false;
+        }
+
+        @Override
+        public AFXmlTag readTag(AFCuteXmlParserContext ctx) {
+            final AFXmlTag tag = sFastParser.readTag(ctx);
+            if (tag != null && !TextUtils.isEmpty(tag.getName()))
+                ++mReadCount;
+
+            return tag;
+        }
+
+        @Override
+        public String readContent(AFCuteXmlParserContext ctx) {
+            return sFastParser.readContent(ctx);
+        }
+
+        @Override
+        public CharSequence readContentView(AFCuteXmlParserContext ctx) {
+            return sFastParser.readContentView(ctx);
+        }
+
+        @Override
+        public boolean skipChildren(AFCuteXmlParserContext ctx) {
+            // The end of the current node is known from the scan, the
+            // skipped tags are counted without reading them
+            final int tag = mReadCount - 1;
+            final int end = mScanner.findDepth(tag, mScanner.getDepthAfter(tag) - 1);
+            if (end == -1)
+                return super.skipChildren(ctx);
+
+            if (!sFastParser.skipChildren(ctx))
+                return false;
+
+            mReadCount = end + 1;
+            return true;
+        }
+
+    };
+
+}
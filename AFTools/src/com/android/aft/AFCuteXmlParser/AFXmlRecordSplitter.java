@@ -0,0 +1,267 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ */
+
+package com.android.aft.AFCuteXmlParser;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Split xml bytes of a document made of records under the root node.
+ *
+ * Boundaries are found by a byte scan for the start tag of a record, so
+ * the data must use an ASCII compatible encoding and the record name must
+ * not be used in comments, CDATA sections or nested nodes.
+ */
+final class AFXmlRecordSplitter {
+
+    private final ByteBuffer mData;
+    private final int mLimit;
+
+    // "<" + record name
+    private final byte[] mRecordTag;
+
+    AFXmlRecordSplitter(ByteBuffer data, String recordName) {
+        mData = data;
+        mLimit = data.limit();
+
+        mRecordTag = new byte[recordName.length() + 1];
+        mRecordTag[0] = '<';
+        for (int i = 0; i < recordName.length(); ++i)
+            mRecordTag[i + 1] = (byte) recordName.charAt(i);
+    }
+
+    /**
+     * Find the end of the start tag of the root node
+     *
+     * @return index after the '>' of the root start tag, -1 if not found
+     */
+    int findRootEnd() {
+        int i = 0;
+        while (true) {
+            i = indexOf('<', i);
+            if (i == -1 || i + 1 >= mLimit)
+                return -1;
+
+            final byte c = mData.get(i + 1);
+            if (c == '?')
+                i = indexOf("?>", i);
+            else if (c == '!' && startWith("<!--", i))
+                i = indexOf("-->", i);
+            else if (c == '!')
+                i = skipDeclaration(i);
+            else
+                return skipTag(i);
+
+            if (i == -1)
+                return -1;
+        }
+    }
+
+    /**
+     * Split data from start to end of data in about count chunks
+     *
+     * @param start Index of the first chunk
+     * @param count Wanted number of chunks
+     * @return Start index of each chunk followed by the end of data
+     */
+    int[] split(int start, int count) {
+        int[] bounds = new int[count + 1];
+        int n = 0;
+        bounds[n++] = start;
+
+        final long length = mLimit - start;
+        for (int k = 1; k < count; ++k) {
+            final int from = Math.max(start + (int) (length * k / count), bounds[n - 1] + 1);
+            final int record = findRecord(from);
+            if (record == -1)
+                break;
+            if (record > bounds[n - 1])
+                bounds[n++] = record;
+        }
+        bounds[n++] = mLimit;
+
+        if (n == bounds.length)
+            return bounds;
+
+        int[] b = new int[n];
+        System.arraycopy(bounds, 0, b, 0, n);
+        return b;
+    }
+
+    /**
+     * @return A stream on data from start to end
+     */
+    InputStream getStream(int start, int end) {
+        ByteBuffer buffer = mData.duplicate();
+        buffer.limit(end);
+        buffer.position(start);
+        return new ByteBufferInputStream(buffer);
+    }
+
+    /**
+     * @return Index of the next record start tag from index from, -1 if none
+     */
+    private int findRecord(int from) {
+        int i = from;
+        while (true) {
+            i = indexOf('<', i);
+            if (i == -1)
+                return -1;
+
+            if (startWith(mRecordTag, i)) {
+                final int next = i + mRecordTag.length;
+                if (next >= mLimit)
+                    return -1;
+
+                final byte c = mData.get(next);
+                if (c == '>' || c == '/' || c == ' ' || c == '\t' || c == '\n' || c == '\r')
+                    return i;
+            }
+
+            ++i;
+        }
+    }
+
+    //
+    // Scanning tools
+    //
+
+    private int indexOf(char c, int from) {
+        for (int i = from; i < mLimit; ++i)
+            if (mData.get(i) == c)
+                return i;
+
+        return -1;
+    }
+
+    /**
+     * @return Index after str or -1
+     */
+    private int indexOf(String str, int from) {
+        for (int i = from; i + str.length() <= mLimit; ++i)
+            if (startWith(str, i))
+                return i + str.length();
+
+        return -1;
+    }
+
+    private boolean startWith(String str, int at) {
+        if (at + str.length() > mLimit)
+            return false;
+
+        for (int i = 0; i < str.length(); ++i)
+            if (mData.get(at + i) != str.charAt(i))
+                return false;
+
+        return true;
+    }
+
+    private boolean startWith(byte[] str, int at) {
+        if (at + str.length > mLimit)
+            return false;
+
+        for (int i = 0; i < str.length; ++i)
+            if (mData.get(at + i) != str[i])
+                return false;
+
+        return true;
+    }
+
+    /**
+     * @return Index after the '>' of the tag at index at, quoted values can contain '>'
+     */
+    private int skipTag(int at) {
+        byte quote = 0;
+        for (int i = at + 1; i < mLimit; ++i) {
+            final byte c = mData.get(i);
+            if (quote != 0) {
+                if (c == quote)
+                    quote = 0;
+            }
+            else if (c == '"' || c == '\'')
+                quote = c;
+            else if (c == '>')
+                return i + 1;
+        }
+
+        return -1;
+    }
+
+    /**
+     * @return Index after a declaration like <!DOCTYPE ...> with its potential internal subset
+     */
+    private int skipDeclaration(int at) {
+        int depth = 0;
+        byte quote = 0;
+        for (int i = at + 2; i < mLimit; ++i) {
+            final byte c = mData.get(i);
+            if (quote != 0) {
+                if (c == quote)
+                    quote = 0;
+            }
+            else if (c == '"' || c == '\'')
+                quote = c;
+            else if (c == '[')
+                ++depth;
+            else if (c == ']')
+                --depth;
+            else if (c == '>' && depth == 0)
+                return i + 1;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Stream on the remaining bytes of a buffer
+     */
+    private static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer mBuffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            mBuffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return mBuffer.hasRemaining() ? mBuffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0)
+                return 0;
+            if (!mBuffer.hasRemaining())
+                return -1;
+
+            final int n = Math.min(len, mBuffer.remaining());
+            mBuffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return mBuffer.remaining();
+        }
+
+    }
+
+}
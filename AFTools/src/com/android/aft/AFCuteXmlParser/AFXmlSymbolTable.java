@@ -0,0 +1,272 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ */
+
+package com.android.aft.AFCuteXmlParser;
+
+/**
+ * Table of interned tag names.
+ *
+ * Each name gets an integer id, and the String of a name is created only the
+ * first time it is seen. Lookup can be done directly on a char slice so low
+ * level parsers do not have to create a String for each tag.
+ *
+ * A table can have a parent table: ids of the parent are shared and the new
+ * names are added in the child table only, so a parent must not be modified
+ * while it has children. The parser owns a table with the names of its
+ * actions, each parsing use a child of a snapshot of this table taken when
+ * the actions are compiled, so actions can be added at parsing time.
+ */
+public class AFXmlSymbolTable {
+
+    // Id of the marker root node
+    public final static int ROOT_ID = 0;
+    public final static String ROOT_NAME = "<root>";
+
+    // Id of a name not in table
+    public final static int UNKNOWN_ID = -1;
+
+    private final AFXmlSymbolTable mParent;
+
+    // First id of this table
+    private final int mBaseId;
+
+    // Names and hashes indexed by (id - base id)
+    private String[] mNames;
+    private int[] mHashes;
+    private int mSize;
+
+    // Open addressing index: (id - base id + 1) or 0 for an empty slot
+    private int[] mSlots;
+
+    public AFXmlSymbolTable() {
+        this(null);
+    }
+
+    public AFXmlSymbolTable(AFXmlSymbolTable parent) {
+        mParent = parent;
+        mBaseId = parent == null ? 0 : parent.size();
+
+        mNames = new String[32];
+        mHashes = new int[32];
+        mSlots = new int[64];
+
+        if (parent == null)
+            intern(ROOT_NAME);
+    }
+
+    /**
+     * Copy the names of this table and its parents in a new table, the ids
+     * are the same
+     *
+     * @return A table without parent
+     */
+    public AFXmlSymbolTable snapshot() {
+        AFXmlSymbolTable copy = new AFXmlSymbolTable();
+        final int size = size();
+        for (int id = ROOT_ID + 1; id < size; ++id)
+            copy.intern(getName(id));
+
+        return copy;
+    }
+
+    /**
+     * @return Number of ids used by this table and its parents
+     */
+    public int size() {
+        return mBaseId + mSize;
+    }
+
+    /**
+     * @return The name associated to id
+     */
+    public String getName(int id) {
+        if (id < mBaseId)
+            return mParent.getName(id);
+
+        return mNames[id - mBaseId];
+    }
+
+    /**
+     * @return Id of name or UNKNOWN_ID
+     */
+    public int getId(String name) {
+        final int hash = name.hashCode();
+
+        if (mParent != null) {
+            final int id = mParent.getId(name);
+            if (id != UNKNOWN_ID)
+                return id;
+        }
+
+        int slot = hash & (mSlots.length - 1);
+        while (mSlots[slot] != 0) {
+            final int idx = mSlots[slot] - 1;
+            if (mHashes[idx] == hash && mNames[idx].equals(name))
+                return mBaseId + idx;
+            slot = (slot + 1) & (mSlots.length - 1);
+        }
+
+        return UNKNOWN_ID;
+    }
+
+    /**
+     * Get the id of a name, the name is added if needed
+     *
+     * @return Id of name
+     */
+    public int intern(String name) {
+        final int id = getId(name);
+        if (id != UNKNOWN_ID)
+            return id;
+
+        return add(name, name.hashCode());
+    }
+
+    /**
+     * Get the id of the name in buf, the name is added if needed
+     *
+     * @return Id of name
+     */
+    public int intern(char[] buf, int off, int len) {
+        int hash = 0;
+        for (int i = off; i < off + len; ++i)
+            hash = 31 * hash + buf[i];
+
+        final int id = find(buf, off, len, hash);
+        if (id != UNKNOWN_ID)
+            return id;
+
+        return add(new String(buf, off, len), hash);
+    }
+
+    /**
+     * Get the id of the name "prefix:name" without concatenate strings if
+     * the name is known. The name is added if needed.
+     *
+     * @return Id of name
+     */
+    public int intern(String prefix, String name) {
+        if (prefix == null || prefix.length() == 0)
+            return intern(name);
+
+        int hash = prefix.hashCode();
+        hash = 31 * hash + ':';
+        final int length = name.length();
+        for (int i = 0; i < length; ++i)
+            hash = 31 * hash + name.charAt(i);
+
+        final int id = find(prefix, name, hash);
+        if (id != UNKNOWN_ID)
+            return id;
+
+        return add(prefix + ":" + name, hash);
+    }
+
+    private int find(char[] buf, int off, int len, int hash) {
+        if (mParent != null) {
+            final int id = mParent.find(buf, off, len, hash);
+            if (id != UNKNOWN_ID)
+                return id;
+        }
+
+        int slot = hash & (mSlots.length - 1);
+        while (mSlots[slot] != 0) {
+            final int idx = mSlots[slot] - 1;
+            if (mHashes[idx] == hash && equals(mNames[idx], buf, off, len))
+                return mBaseId + idx;
+            slot = (slot + 1) & (mSlots.length - 1);
+        }
+
+        return UNKNOWN_ID;
+    }
+
+    private int find(String prefix, String name, int hash) {
+        if (mParent != null) {
+            final int id = mParent.find(prefix, name, hash);
+            if (id != UNKNOWN_ID)
+                return id;
+        }
+
+        final int prefixLength = prefix.length();
+        int slot = hash & (mSlots.length - 1);
+        while (mSlots[slot] != 0) {
+            final int idx = mSlots[slot] - 1;
+            final String n = mNames[idx];
+            if (mHashes[idx] == hash
+                && n.length() == prefixLength + 1 + name.length()
+                && n.startsWith(prefix)
+                && n.charAt(prefixLength) == ':'
+                && n.endsWith(name))
+                return mBaseId + idx;
+            slot = (slot + 1) & (mSlots.length - 1);
+        }
+
+        return UNKNOWN_ID;
+    }
+
+    private static boolean equals(String name, char[] buf, int off, int len) {
+        if (name.length() != len)
+            return false;
+
+        for (int i = 0; i < len; ++i)
+            if (name.charAt(i) != buf[off + i])
+                return false;
+
+        return true;
+    }
+
+    private int add(String name, int hash) {
+        // Grow arrays
+        if (mSize == mNames.length) {
+            String[] names = new String[mSize * 2];
+            System.arraycopy(mNames, 0, names, 0, mSize);
+            mNames = names;
+
+            int[] hashes = new int[mSize * 2];
+            System.arraycopy(mHashes, 0, hashes, 0, mSize);
+            mHashes = hashes;
+        }
+
+        final int idx = mSize++;
+        mNames[idx] = name;
+        mHashes[idx] = hash;
+
+        // Keep load factor under 1/2
+        if (mSize * 2 > mSlots.length)
+            rehash(mSlots.length * 2);
+        else
+            insertSlot(idx);
+
+        return mBaseId + idx;
+    }
+
+    private void insertSlot(int idx) {
+        int slot = mHashes[idx] & (mSlots.length - 1);
+        while (mSlots[slot] != 0)
+            slot = (slot + 1) & (mSlots.length - 1);
+        mSlots[slot] = idx + 1;
+    }
+
+    private void rehash(int capacity) {
+        mSlots = new int[capacity];
+        for (int i = 0; i < mSize; ++i)
+            insertSlot(i);
+    }
+
+}
@@ -21,6 +21,13 @@ package com.android.aft.AFCuteXmlParser;
 
 import java.util.Hashtable;
 
+/**
+ * Xml tag read by a low level parser
+ *
+ * Attributes are stored in two parallel arrays. Tag objects are reused by
+ * the parsing context for each level of the node stack, so a tag must not be
+ * kept after it has been popped from the stack.
+ */
 public class AFXmlTag {
 
     public final static int TAG_TYPE_START = 1;
@@ -28,13 +35,41 @@ public class AFXmlTag {
     public final static int TAG_TYPE_START_END = 3;
 
     private String name_;
-    private Hashtable<String, String> attributs_ = null;
+    private int id_ = AFXmlSymbolTable.UNKNOWN_ID;
     private int type_ = TAG_TYPE_START;
 
+    // Attributes
+    private String[] attributNames_ = null;
+    private String[] attributValues_ = null;
+    private int attributCount_ = 0;
+
+    // Hashtable view of attributes, built on demand
+    private Hashtable<String, String> attributs_ = null;
+
     public AFXmlTag(String name) {
         setName(name);
     }
 
+    public AFXmlTag(String name, int id) {
+        setName(name);
+        setId(id);
+    }
+
+    /**
+     * Reset the tag to reuse it for a new xml tag
+     *
+     * @param name Name of the tag
+     * @param id Symbol id of the name
+     * @param type Type of tag
+     */
+    public void reset(String name, int id, int type) {
+        name_ = name;
+        id_ = id;
+        type_ = type;
+        attributCount_ = 0;
+        attributs_ = null;
+    }
+
     public String getName() {
         return name_;
     }
@@ -43,6 +78,31 @@ public class AFXmlTag {
         name_ = name;
     }
 
+    /**
+     * @return Symbol id of the name or AFXmlSymbolTable.UNKNOWN_ID
+     */
+    public int getId() {
+        return id_;
+    }
+
+    public void setId(int id) {
+        id_ = id;
+    }
+
+    /**
+     * Test if this tag has the given name, using the symbol id if known
+     *
+     * @param id Symbol id of the name
+     * @param name The name
+     * @return true if the tag has this name
+     */
+    public boolean is(int id, String name) {
+        if (id_ != AFXmlSymbolTable.UNKNOWN_ID && id != AFXmlSymbolTable.UNKNOWN_ID)
+            return id_ == id;
+
+        return name.equals(name_);
+    }
+
     public int getType() {
         return type_;
     }
@@ -52,35 +112,158 @@ public class AFXmlTag {
     }
 
     public void setAttribut(String key, String value) {
-        if (attributs_ == null)
-            attributs_ = new Hashtable<String, String>();
+        if (attributs_ != null)
+            attributs_.put(key, value);
+
+        final int idx = indexOfAttribut(key);
+        if (idx != -1) {
+            attributValues_[idx] = value;
+            return;
+        }
+
+        if (attributNames_ == null) {
+            attributNames_ = new String[4];
+            attributValues_ = new String[4];
+        }
+        else if (attributCount_ == attributNames_.length) {
+            String[] names = new String[attributCount_ * 2];
+            System.arraycopy(attributNames_, 0, names, 0, attributCount_);
+            attributNames_ = names;
 
-        attributs_.put(key, value);
+            String[] values = new String[attributCount_ * 2];
+            System.arraycopy(attributValues_, 0, values, 0, attributCount_);
+            attributValues_ = values;
+        }
+
+        attributNames_[attributCount_] = key;
+        attributValues_[attributCount_] = value;
+        ++attributCount_;
+    }
+
+    private int indexOfAttribut(String key) {
+        for (int i = 0; i < attributCount_; ++i)
+            if (attributNames_[i].equals(key))
+                return i;
+
+        return -1;
+    }
+
+    /**
+     * @return The number of attributes
+     */
+    public int getAttributCount() {
+        return attributCount_;
+    }
+
+    /**
+     * @return The name of the attribute at index
+     */
+    public String getAttributName(int index) {
+        return attributNames_[index];
+    }
+
+    /**
+     * @return The value of the attribute at index
+     */
+    public String getAttributValue(int index) {
+        return attributValues_[index];
+    }
+
+    /**
+     * Find the name of the attribute at index in a list of names, used by
+     * generated parsers to read all attributes in one pass
+     *
+     * @param index Index of the attribute
+     * @param names Names of the wanted attributes
+     * @return Index of the name in names or -1
+     */
+    public int getAttributSlot(int index, String[] names) {
+        final String name = attributNames_[index];
+        for (int i = 0; i < names.length; ++i)
+            if (names[i].equals(name))
+                return i;
+
+        return -1;
     }
 
     public String getAttribut(String key) {
-        if (attributs_ == null)
+        if (getAttributCount() == 0)
             return "";
 
-        return attributs_.get(key);
+        final int idx = indexOfAttribut(key);
+        if (idx == -1)
+            return null;
+
+        return attributValues_[idx];
     }
 
     public boolean hasAttribute(String key) {
-        if (attributs_ == null)
+        return indexOfAttribut(key) != -1;
+    }
+
+    /**
+     * Test the value of an attribute without creating the value String if possible
+     *
+     * @param key Name of the attribute
+     * @param value Wanted value
+     * @return true if the attribute exists with this value
+     */
+    public boolean hasAttributValue(String key, String value) {
+        final int idx = indexOfAttribut(key);
+        if (idx == -1)
             return false;
 
-        return attributs_.containsKey(key);
+        return value.equals(attributValues_[idx]);
+    }
+
+    /**
+     * Get an attribute as int
+     *
+     * @param key Name of the attribute
+     * @param def Value to return if there is no valid int attribute
+     * @return The attribute value
+     */
+    public int getIntAttribut(String key, int def) {
+        final int idx = indexOfAttribut(key);
+        if (idx == -1)
+            return def;
+
+        return AFXmlValues.parseInt(attributValues_[idx], def);
+    }
+
+    /**
+     * Get an attribute as boolean: "true", "yes" and "1" are true values
+     *
+     * @param key Name of the attribute
+     * @param def Value to return if there is no attribute
+     * @return The attribute value
+     */
+    public boolean getBooleanAttribut(String key, boolean def) {
+        final int idx = indexOfAttribut(key);
+        if (idx == -1)
+            return def;
+
+        return AFXmlValues.parseBoolean(attributValues_[idx]);
     }
 
+    /**
+     * Hashtable view of the attributes, it is built at first call.
+     * Prefer getAttribut or getAttributCount / getAttributName / getAttributValue.
+     *
+     * @return attributes
+     */
     public Hashtable<String, String> getAttributs() {
-        if (attributs_ == null)
+        if (attributs_ == null) {
             attributs_ = new Hashtable<String, String>();
+            for (int i = 0; i < getAttributCount(); ++i)
+                attributs_.put(getAttributName(i), getAttributValue(i));
+        }
 
         return attributs_;
     }
 
     public boolean isFinalOf(AFXmlTag tag) {
-        return type_ == AFXmlTag.TAG_TYPE_END && name_.equals(tag.getName());
+        return type_ == AFXmlTag.TAG_TYPE_END && is(tag.getId(), tag.getName());
     }
 
 }
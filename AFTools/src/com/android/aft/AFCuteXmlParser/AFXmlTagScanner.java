@@ -0,0 +1,229 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ */
+
+package com.android.aft.AFCuteXmlParser;
+
+/**
+ * Find the end of element tags in xml chars given by chunks.
+ *
+ * The state of the scan is kept between chunks, so a tag, a comment or a
+ * CDATA section can be split anywhere. For each complete element tag, the
+ * depth after the tag is recorded: a node is complete when a later tag
+ * goes back to the depth before it.
+ */
+final class AFXmlTagScanner {
+
+    // Scan states
+    private final static int TEXT = 0;
+    private final static int MARKUP = 1;
+    private final static int START_TAG = 2;
+    private final static int END_TAG = 3;
+    private final static int BANG = 4;
+    private final static int PI = 5;
+    private final static int COMMENT = 6;
+    private final static int CDATA = 7;
+    private final static int DECLARATION = 8;
+
+    private final static String CDATA_START = "[CDATA[";
+
+    private int mState = TEXT;
+
+    // Quote of the current attribute value or declaration literal, 0 if none
+    private char mQuote;
+
+    // Two previous chars in the current markup
+    private char mPrev1;
+    private char mPrev2;
+
+    // Chars read after "<!"
+    private int mBangLength;
+
+    // Bracket depth of a declaration internal subset
+    private int mBrackets;
+
+    private int mDepth;
+
+    // Depth after each complete element tag, from tag index mBase
+    private int[] mDepths = new int[64];
+    private int mBase;
+    private int mCount;
+
+    /**
+     * Scan chars following the previous ones
+     */
+    void scan(char[] buf, int off, int len) {
+        final int end = off + len;
+        for (int i = off; i < end; ++i) {
+            final char c = buf[i];
+            switch (mState) {
+                case TEXT:
+                    if (c == '<')
+                        mState = MARKUP;
+                    break;
+
+                case MARKUP:
+                    mQuote = 0;
+                    mPrev1 = mPrev2 = 0;
+                    if (c == '/')
+                        mState = END_TAG;
+                    else if (c == '?')
+                        mState = PI;
+                    else if (c == '!') {
+                        mState = BANG;
+                        mBangLength = 0;
+                    }
+                    else
+                        mState = START_TAG;
+                    break;
+
+                case START_TAG:
+                case END_TAG:
+                    if (mQuote != 0) {
+                        if (c == mQuote)
+                            mQuote = 0;
+                    }
+                    else if (c == '"' || c == '\'')
+                        mQuote = c;
+                    else if (c == '>') {
+                        if (mState == END_TAG)
+                            --mDepth;
+                        else if (mPrev1 != '/')
+                            ++mDepth;
+                        addTag();
+                        mState = TEXT;
+                    }
+                    mPrev1 = c;
+                    break;
+
+                case BANG:
+                    // "<!--", "<![CDATA[" or a declaration
+                    if (mBangLength < 2 && c == '-' && (mBangLength == 0 || mPrev1 == '-')) {
+                        if (++mBangLength == 2) {
+                            mState = COMMENT;
+                            mPrev1 = mPrev2 = 0;
+                        }
+                        else
+                            mPrev1 = c;
+                    }
+                    else if (mBangLength < CDATA_START.length() && c == CDATA_START.charAt(mBangLength)
+                             && (mBangLength == 0 || mPrev1 != '-')) {
+                        if (++mBangLength == CDATA_START.length()) {
+                            mState = CDATA;
+                            mPrev1 = mPrev2 = 0;
+                        }
+                        else
+                            mPrev1 = c;
+                    }
+                    else {
+                        mState = DECLARATION;
+                        mBrackets = 0;
+                        declaration(c);
+                    }
+                    break;
+
+                case PI:
+                    if (c == '>' && mPrev1 == '?')
+                        mState = TEXT;
+                    mPrev1 = c;
+                    break;
+
+                case COMMENT:
+                case CDATA:
+                    final char close = mState == COMMENT ? '-' : ']';
+                    if (c == '>' && mPrev1 == close && mPrev2 == close)
+                        mState = TEXT;
+                    mPrev2 = mPrev1;
+                    mPrev1 = c;
+                    break;
+
+                case DECLARATION:
+                    declaration(c);
+                    break;
+            }
+        }
+    }
+
+    private void declaration(char c) {
+        if (mQuote != 0) {
+            if (c == mQuote)
+                mQuote = 0;
+        }
+        else if (c == '"' || c == '\'')
+            mQuote = c;
+        else if (c == '[')
+            ++mBrackets;
+        else if (c == ']')
+            --mBrackets;
+        else if (c == '>' && mBrackets <= 0)
+            mState = TEXT;
+    }
+
+    private void addTag() {
+        int size = mCount - mBase;
+        if (size == mDepths.length) {
+            int[] depths = new int[size * 2];
+            System.arraycopy(mDepths, 0, depths, 0, size);
+            mDepths = depths;
+        }
+
+        mDepths[size] = mDepth;
+        ++mCount;
+    }
+
+    /**
+     * @return Number of complete element tags scanned
+     */
+    int getTagCount() {
+        return mCount;
+    }
+
+    /**
+     * @return Depth after the tag of index tag
+     */
+    int getDepthAfter(int tag) {
+        return mDepths[tag - mBase];
+    }
+
+    /**
+     * Find the first tag after the tag of index from which goes back to depth
+     *
+     * @return Index of the tag or -1 if it is not scanned yet
+     */
+    int findDepth(int from, int depth) {
+        for (int i = from + 1; i < mCount; ++i)
+            if (mDepths[i - mBase] <= depth)
+                return i;
+
+        return -1;
+    }
+
+    /**
+     * Forget depths of tags before index tag
+     */
+    void release(int tag) {
+        final int first = Math.min(tag, mCount);
+        final int drop = first - mBase;
+        if (drop < mDepths.length / 2)
+            return;
+
+        System.arraycopy(mDepths, drop, mDepths, 0, mCount - first);
+        mBase = first;
+    }
+
+}
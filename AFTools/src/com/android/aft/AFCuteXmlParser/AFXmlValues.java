@@ -0,0 +1,354 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ */
+
+package com.android.aft.AFCuteXmlParser;
+
+/**
+ * Conversion of xml values into primitive types without creating objects
+ */
+public class AFXmlValues {
+
+    /**
+     * Parse an int value like Integer.valueOf
+     *
+     * @param buf Data
+     * @param off Offset of the value
+     * @param len Length of the value
+     * @param def Value to return if it is not a valid int
+     * @return The int value
+     */
+    public static int parseInt(char[] buf, int off, int len, int def) {
+        if (len == 0)
+            return def;
+
+        final int end = off + len;
+        boolean negative = false;
+        int i = off;
+        if (buf[i] == '-' || buf[i] == '+') {
+            negative = buf[i] == '-';
+            if (++i == end)
+                return def;
+        }
+
+        // Accumulate in negative to reach Integer.MIN_VALUE
+        final int limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+        int result = 0;
+        for (; i < end; ++i) {
+            final int d = buf[i] - '0';
+            if (d < 0 || d > 9)
+                return def;
+            if (result < (limit + d) / 10)
+                return def;
+            result = result * 10 - d;
+        }
+
+        return negative ? result : -result;
+    }
+
+    // Powers of ten exactly represented by a double
+    private final static double[] POW10 = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    // Max number of significant digits of an exact double mantissa
+    private final static int MAX_EXACT_DIGITS = 15;
+
+    /**
+     * Parse an int value like Integer.valueOf
+     *
+     * @param value String value
+     * @param def Value to return if it is not a valid int
+     * @return The int value
+     */
+    public static int parseInt(CharSequence value, int def) {
+        if (value == null)
+            return def;
+
+        return parseInt(value, 0, value.length(), def);
+    }
+
+    /**
+     * Parse an int value like Integer.valueOf
+     *
+     * @param value Data
+     * @param start Index of the value
+     * @param end Index after the value
+     * @param def Value to return if it is not a valid int
+     * @return The int value
+     */
+    public static int parseInt(CharSequence value, int start, int end, int def) {
+        if (start == end)
+            return def;
+
+        boolean negative = false;
+        int i = start;
+        if (value.charAt(i) == '-' || value.charAt(i) == '+') {
+            negative = value.charAt(i) == '-';
+            if (++i == end)
+                return def;
+        }
+
+        final int limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+        int result = 0;
+        for (; i < end; ++i) {
+            final int d = value.charAt(i) - '0';
+            if (d < 0 || d > 9)
+                return def;
+            if (result < (limit + d) / 10)
+                return def;
+            result = result * 10 - d;
+        }
+
+        return negative ? result : -result;
+    }
+
+    /**
+     * Parse a long value like Long.valueOf
+     *
+     * @param value String value
+     * @param def Value to return if it is not a valid long
+     * @return The long value
+     */
+    public static long parseLong(CharSequence value, long def) {
+        if (value == null)
+            return def;
+
+        return parseLong(value, 0, value.length(), def);
+    }
+
+    /**
+     * Parse a long value like Long.valueOf
+     *
+     * @param value Data
+     * @param start Index of the value
+     * @param end Index after the value
+     * @param def Value to return if it is not a valid long
+     * @return The long value
+     */
+    public static long parseLong(CharSequence value, int start, int end, long def) {
+        if (start == end)
+            return def;
+
+        boolean negative = false;
+        int i = start;
+        if (value.charAt(i) == '-' || value.charAt(i) == '+') {
+            negative = value.charAt(i) == '-';
+            if (++i == end)
+                return def;
+        }
+
+        final long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long result = 0;
+        for (; i < end; ++i) {
+            final int d = value.charAt(i) - '0';
+            if (d < 0 || d > 9)
+                return def;
+            if (result < (limit + d) / 10)
+                return def;
+            result = result * 10 - d;
+        }
+
+        return negative ? result : -result;
+    }
+
+    /**
+     * Parse a double value like Double.valueOf
+     *
+     * @param value String value
+     * @param def Value to return if it is not a valid double
+     * @return The double value
+     */
+    public static double parseDouble(CharSequence value, double def) {
+        if (value == null)
+            return def;
+
+        return parseDouble(value, 0, value.length(), def);
+    }
+
+    /**
+     * Parse a double value like Double.valueOf
+     *
+     * Decimal values with at most 15 significant digits and a small exponent
+     * are computed from their digits, which is exact. Other values are given
+     * to Double.parseDouble.
+     *
+     * @param value Data
+     * @param start Index of the value
+     * @param end Index after the value
+     * @param def Value to return if it is not a valid double
+     * @return The double value
+     */
+    public static double parseDouble(CharSequence value, int start, int end, double def) {
+        if (start == end)
+            return def;
+
+        boolean negative = false;
+        int i = start;
+        if (value.charAt(i) == '-' || value.charAt(i) == '+') {
+            negative = value.charAt(i) == '-';
+            ++i;
+        }
+
+        // Mantissa digits
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean hasDigit = false;
+        boolean dot = false;
+        for (; i < end; ++i) {
+            final char c = value.charAt(i);
+            if (c == '.' && !dot) {
+                dot = true;
+                continue;
+            }
+
+            final int d = c - '0';
+            if (d < 0 || d > 9)
+                break;
+
+            hasDigit = true;
+            if (mantissa != 0 || d != 0) {
+                if (++digits > MAX_EXACT_DIGITS)
+                    return parseDoubleSlow(value, start, end, def);
+                mantissa = mantissa * 10 + d;
+            }
+            if (dot)
+                --exponent;
+        }
+
+        // Exponent
+        if (hasDigit && i < end && (value.charAt(i) == 'e' || value.charAt(i) == 'E')) {
+            ++i;
+            final int expStart = i;
+            if (i < end && (value.charAt(i) == '-' || value.charAt(i) == '+'))
+                ++i;
+            if (i == end || end - i > 3)
+                return parseDoubleSlow(value, start, end, def);
+            exponent += parseInt(value, expStart, end, Integer.MIN_VALUE / 2);
+            i = end;
+        }
+
+        if (!hasDigit || i != end)
+            return parseDoubleSlow(value, start, end, def);
+
+        double result;
+        if (mantissa == 0)
+            result = 0;
+        else if (exponent >= 0 && exponent < POW10.length)
+            result = mantissa * POW10[exponent];
+        else if (exponent < 0 && -exponent < POW10.length)
+            result = mantissa / POW10[-exponent];
+        else
+            return parseDoubleSlow(value, start, end, def);
+
+        return negative ? -result : result;
+    }
+
+    private static double parseDoubleSlow(CharSequence value, int start, int end, double def) {
+        try {
+            return Double.parseDouble(value.subSequence(start, end).toString());
+        } catch (NumberFormatException e) {
+            return def;
+        }
+    }
+
+    /**
+     * @return Index of the first char which is not a xml space
+     */
+    public static int trimStart(CharSequence value) {
+        final int length = value.length();
+        int i = 0;
+        while (i < length && isSpace(value.charAt(i)))
+            ++i;
+
+        return i;
+    }
+
+    /**
+     * @return Index after the last char which is not a xml space, start at least
+     */
+    public static int trimEnd(CharSequence value, int start) {
+        int i = value.length();
+        while (i > start && isSpace(value.charAt(i - 1)))
+            --i;
+
+        return i;
+    }
+
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+    }
+
+    /**
+     * Test if the value is a true boolean value: "true", "yes" or "1"
+     *
+     * @param buf Data
+     * @param off Offset of the value
+     * @param len Length of the value
+     * @return true for a true value
+     */
+    public static boolean parseBoolean(char[] buf, int off, int len) {
+        switch (len) {
+            case 1:
+                return buf[off] == '1';
+            case 3:
+                return buf[off] == 'y' && buf[off + 1] == 'e' && buf[off + 2] == 's';
+            case 4:
+                return buf[off] == 't' && buf[off + 1] == 'r' && buf[off + 2] == 'u' && buf[off + 3] == 'e';
+        }
+
+        return false;
+    }
+
+    /**
+     * Test if the value is a true boolean value: "true", "yes" or "1"
+     *
+     * @param value String value
+     * @return true for a true value
+     */
+    public static boolean parseBoolean(String value) {
+        return value.equals("true")
+            || value.equals("yes")
+            || value.equals("1");
+    }
+
+    /**
+     * Test if the value is a true boolean value: "true", "yes" or "1"
+     *
+     * @param value Data
+     * @param start Index of the value
+     * @param end Index after the value
+     * @return true for a true value
+     */
+    public static boolean parseBoolean(CharSequence value, int start, int end) {
+        switch (end - start) {
+            case 1:
+                return value.charAt(start) == '1';
+            case 3:
+                return value.charAt(start) == 'y' && value.charAt(start + 1) == 'e' && value.charAt(start + 2) == 's';
+            case 4:
+                return value.charAt(start) == 't' && value.charAt(start + 1) == 'r'
+                    && value.charAt(start + 2) == 'u' && value.charAt(start + 3) == 'e';
+        }
+
+        return false;
+    }
+
+}
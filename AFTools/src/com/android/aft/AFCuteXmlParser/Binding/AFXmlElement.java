@@ -0,0 +1,48 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ */
+package com.android.aft.AFCuteXmlParser.Binding;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Field bound to a child node of the node of its model class.
+ *
+ * The field can be:
+ * _ a String, int, long, double or boolean set with the content of the child
+ * _ a model class annotated with AFXmlNode
+ * _ a collection of a model class, each child is added to it
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.FIELD)
+public @interface AFXmlElement {
+
+    /**
+     * @return Name of the child node, default is the node name of the model class
+     */
+    String value() default "";
+
+    /**
+     * @return Name of a method of the model taking a child model, used instead of adding the child to the field
+     */
+    String adder() default "";
+
+}
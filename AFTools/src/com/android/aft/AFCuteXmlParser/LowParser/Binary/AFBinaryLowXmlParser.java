@@ -0,0 +1,240 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ */
+
+package com.android.aft.AFCuteXmlParser.LowParser.Binary;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+import com.android.aft.AFCoreTools.IoTools;
+import com.android.aft.AFCuteXmlParser.AFCuteXmlParser;
+import com.android.aft.AFCuteXmlParser.AFCuteXmlParserContext;
+import com.android.aft.AFCuteXmlParser.AFLowXmlParser;
+import com.android.aft.AFCuteXmlParser.AFXmlSymbolTable;
+import com.android.aft.AFCuteXmlParser.AFXmlTag;
+
+/**
+ * Low level parser of the binary xml data written by AFXmlBinaryCache.
+ *
+ * Tags and texts are read from their events without scanning any text:
+ * names are resolved by their index, texts which are not read by an action
+ * are skipped by their length, and content views are given on the decoded
+ * chars without creating a String.
+ *
+ * Stateless: the binary stream is in the parsing context.
+ */
+public class AFBinaryLowXmlParser extends AFLowXmlParser {
+
+    @Override
+    public boolean init(AFCuteXmlParserContext context, InputStreamReader xml) {
+        AFCuteXmlParser.dbg.e("Binary data expected, not chars");
+        return false;
+    }
+
+    @Override
+    public boolean init(AFCuteXmlParserContext context, String xml) {
+        AFCuteXmlParser.dbg.e("Binary data expected, not chars");
+        return false;
+    }
+
+    @Override
+    public boolean init(AFCuteXmlParserContext context, InputStream xml) {
+        try {
+            return init(context, ByteBuffer.wrap(IoTools.getBytesFromStream(xml)));
+        } catch (IOException e) {
+            AFCuteXmlParser.dbg.e("Cannot read stream", e);
+            return false;
+        }
+    }
+
+    /**
+     * Initialize parsing of binary data, the buffer is not modified
+     *
+     * @param context Parsing context
+     * @param xml Data written by AFXmlBinaryCache, from its current position
+     * @return false if data is not binary xml data
+     */
+    public boolean init(AFCuteXmlParserContext context, ByteBuffer xml) {
+        if (xml == null) {
+            AFCuteXmlParser.dbg.e("Input data is null");
+            return false;
+        }
+
+        final AFXmlBinaryStream stream = new AFXmlBinaryStream(xml);
+        if (!stream.readHeader()) {
+            AFCuteXmlParser.dbg.e("Not a binary xml cache");
+            return false;
+        }
+
+        context.setBinaryStream(stream);
+        return true;
+    }
+
+    @Override
+    public AFXmlTag readTag(AFCuteXmlParserContext ctx) {
+        final AFXmlBinaryStream s = ctx.getBinaryStream();
+
+        try {
+            // Go to the next tag
+            int event = s.readEvent();
+            while (event == AFXmlBinaryStream.EVENT_TEXT) {
+                if (!s.skipText()) {
+                    invalid();
+                    return null;
+                }
+                event = s.readEvent();
+            }
+
+            if (event == AFXmlBinaryStream.EVENT_END_DOCUMENT)
+                return new AFXmlTag(null);
+            if (event < AFXmlTag.TAG_TYPE_START || event > AFXmlTag.TAG_TYPE_START_END) {
+                invalid();
+                return null;
+            }
+
+            final AFXmlSymbolTable symbols = ctx.getSymbolTable();
+            final int id = s.readName(symbols);
+            if (id == AFXmlSymbolTable.UNKNOWN_ID) {
+                invalid();
+                return null;
+            }
+            final AFXmlTag tag = ctx.obtainTag(symbols.getName(id), id, event);
+
+            if (event == AFXmlTag.TAG_TYPE_END)
+                return tag;
+
+            // Attributes
+            final int count = s.readCount();
+            if (count < 0) {
+                invalid();
+                return null;
+            }
+            for (int i = 0; i < count; ++i) {
+                final int nameId = s.readName(symbols);
+                if (nameId == AFXmlSymbolTable.UNKNOWN_ID || !s.readText()) {
+                    invalid();
+                    return null;
+                }
+                tag.setAttribut(symbols.getName(nameId), new String(s.getText(), 0, s.getTextLength()));
+            }
+
+            return tag;
+        } catch (BufferUnderflowException e) {
+            AFCuteXmlParser.dbg.e("Unexpected end of binary data");
+            return null;
+        }
+    }
+
+    @Override
+    public String readContent(AFCuteXmlParserContext ctx) {
+        return readContentView(ctx).toString();
+    }
+
+    @Override
+    public CharSequence readContentView(AFCuteXmlParserContext ctx) {
+        final AFXmlBinaryStream s = ctx.getBinaryStream();
+
+        // A text event is only written for a content which is not empty
+        try {
+            if (s.peekEvent() != AFXmlBinaryStream.EVENT_TEXT)
+                return "";
+
+            s.readEvent();
+            if (!s.readText()) {
+                AFCuteXmlParser.dbg.e("Invalid binary text");
+                return "";
+            }
+        } catch (BufferUnderflowException e) {
+            AFCuteXmlParser.dbg.e("Unexpected end of binary data");
+            return "";
+        }
+
+        return ctx.obtainContentView().set(s.getText(), 0, s.getTextLength());
+    }
+
+    @Override
+    public boolean skipChildren(AFCuteXmlParserContext ctx) {
+        final AFXmlBinaryStream s = ctx.getBinaryStream();
+        final AFXmlSymbolTable symbols = ctx.getSymbolTable();
+
+        // Names are still read: a new name can be used after the skipped children
+        int depth = 1;
+        try {
+            while (true) {
+                final int event = s.readEvent();
+                switch (event) {
+                case AFXmlBinaryStream.EVENT_END_DOCUMENT:
+                    return true;
+
+                case AFXmlBinaryStream.EVENT_TEXT:
+                    if (!s.skipText()) {
+                        invalid();
+                        return false;
+                    }
+                    break;
+
+                case AFXmlTag.TAG_TYPE_END:
+                    if (s.readName(symbols) == AFXmlSymbolTable.UNKNOWN_ID) {
+                        invalid();
+                        return false;
+                    }
+                    if (--depth == 0)
+                        return true;
+                    break;
+
+                case AFXmlTag.TAG_TYPE_START:
+                case AFXmlTag.TAG_TYPE_START_END:
+                    if (s.readName(symbols) == AFXmlSymbolTable.UNKNOWN_ID) {
+                        invalid();
+                        return false;
+                    }
+                    final int count = s.readCount();
+                    if (count < 0) {
+                        invalid();
+                        return false;
+                    }
+                    for (int i = 0; i < count; ++i) {
+                        if (s.readName(symbols) == AFXmlSymbolTable.UNKNOWN_ID || !s.skipText()) {
+                            invalid();
+                            return false;
+                        }
+                    }
+                    if (event == AFXmlTag.TAG_TYPE_START)
+                        ++depth;
+                    break;
+
+                default:
+                    invalid();
+                    return false;
+                }
+            }
+        } catch (BufferUnderflowException e) {
+            AFCuteXmlParser.dbg.e("Unexpected end of binary data");
+            return false;
+        }
+    }
+
+    private static void invalid() {
+        AFCuteXmlParser.dbg.e("Invalid binary xml data");
+    }
+
+}
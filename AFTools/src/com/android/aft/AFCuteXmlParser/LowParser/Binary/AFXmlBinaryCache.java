@@ -0,0 +1,151 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ */
+
+package com.android.aft.AFCuteXmlParser.LowParser.Binary;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+
+import com.android.aft.AFCoreTools.IoTools;
+import com.android.aft.AFCuteXmlParser.AFCuteXmlParserContext;
+import com.android.aft.AFCuteXmlParser.AFXmlSymbolTable;
+import com.android.aft.AFCuteXmlParser.AFXmlTag;
+import com.android.aft.AFCuteXmlParser.LowParser.Fast.AFFastLowXmlParser;
+
+/**
+ * Binary form of xml data, to cache a response next to its raw data.
+ *
+ * The xml text is read once by AFFastLowXmlParser when the cache is
+ * written: each tag is stored with its attributes and each text content with
+ * its entities decoded, see AFXmlBinaryStream. The cache is read back by
+ * AFCuteXmlParser.parse(ByteBuffer) with the same actions as the text,
+ * usually from a file mapped in memory.
+ *
+ * Usage:
+ *  AFXmlBinaryCache.write(response, new FileOutputStream(cacheFile));
+ *  ...
+ *  parser.parse(AFXmlBinaryCache.map(cacheFile));
+ */
+public final class AFXmlBinaryCache {
+
+    private AFXmlBinaryCache() {
+    }
+
+    /**
+     * Write the binary form of xml data
+     *
+     * @param xml Xml data, its encoding is detected like a parsing; closed at the end
+     * @param out Output of the binary data, flushed but not closed
+     * @throws IOException on invalid xml data, the output is then incomplete
+     */
+    public static void write(InputStream xml, OutputStream out) throws IOException {
+        final AFCuteXmlParserContext context = new AFCuteXmlParserContext();
+        context.setSymbolTable(new AFXmlSymbolTable());
+
+        final AFFastLowXmlParser lowParser = new AFFastLowXmlParser();
+        final BufferedOutputStream buf = new BufferedOutputStream(out, 8192);
+        try {
+            if (!lowParser.init(context, xml))
+                throw new IOException("Cannot read xml data");
+
+            buf.write(AFXmlBinaryStream.MAGIC >>> 24);
+            buf.write(AFXmlBinaryStream.MAGIC >>> 16);
+            buf.write(AFXmlBinaryStream.MAGIC >>> 8);
+            buf.write(AFXmlBinaryStream.MAGIC);
+            buf.write(AFXmlBinaryStream.VERSION);
+
+            final HashMap<String, Integer> names = new HashMap<String, Integer>();
+            while (true) {
+                final AFXmlTag tag = lowParser.readTag(context);
+                if (tag == null)
+                    throw new IOException("Invalid xml data");
+                if (tag.getName() == null)
+                    break;
+
+                buf.write(tag.getType());
+                writeName(buf, names, tag.getName());
+                if (tag.getType() != AFXmlTag.TAG_TYPE_END) {
+                    final int count = tag.getAttributCount();
+                    IoTools.writeVarLong(buf, count);
+                    for (int i = 0; i < count; ++i) {
+                        writeName(buf, names, tag.getAttributName(i));
+                        IoTools.writeBinaryText(buf, tag.getAttributValue(i));
+                    }
+                }
+
+                // Content until the next tag, as read by an action on a start tag
+                if (tag.getType() != AFXmlTag.TAG_TYPE_START)
+                    continue;
+                final CharSequence content = lowParser.readContentView(context);
+                if (content.length() > 0) {
+                    buf.write(AFXmlBinaryStream.EVENT_TEXT);
+                    IoTools.writeBinaryText(buf, content);
+                }
+            }
+
+            buf.write(AFXmlBinaryStream.EVENT_END_DOCUMENT);
+            buf.flush();
+        } finally {
+            xml.close();
+        }
+    }
+
+    /**
+     * Map a binary cache file in memory
+     *
+     * @param cache File written with write
+     * @return The read only data
+     * @throws IOException if the file cannot be read or is not a binary cache
+     */
+    public static MappedByteBuffer map(File cache) throws IOException {
+        final RandomAccessFile file = new RandomAccessFile(cache, "r");
+        try {
+            final MappedByteBuffer data = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+            if (!new AFXmlBinaryStream(data).readHeader())
+                throw new IOException("Not a binary xml cache: " + cache);
+
+            return data;
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Write the index of a name already written, or 0 then its text
+     */
+    private static void writeName(OutputStream out, HashMap<String, Integer> names, String name) throws IOException {
+        final Integer index = names.get(name);
+        if (index != null) {
+            IoTools.writeVarLong(out, index.intValue());
+            return;
+        }
+
+        names.put(name, Integer.valueOf(names.size() + 1));
+        IoTools.writeVarLong(out, 0);
+        IoTools.writeBinaryText(out, name);
+    }
+
+}
@@ -0,0 +1,199 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ */
+
+package com.android.aft.AFCuteXmlParser.LowParser.Binary;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+import com.android.aft.AFCuteXmlParser.AFXmlSymbolTable;
+
+/**
+ * Reader of the events of binary xml data.
+ *
+ * Data is a header then a list of events, each one is a byte followed by
+ * its data:
+ *  - a tag: its name then, for a start tag, the number of attributes and
+ *    the name and value of each one
+ *  - a text: the text content after the previous tag
+ *  - the end of document
+ *
+ * A name is written once with its text, then by its index in the names of
+ * the data. A text is its length in bytes then its chars, each one encoded
+ * in 1 to 3 bytes like the modified UTF-8 of DataOutput.
+ *
+ * Reading is done on a duplicate of the buffer, so the buffer given by the
+ * user is not modified. BufferUnderflowException is thrown on truncated data.
+ */
+public class AFXmlBinaryStream {
+
+    public final static int MAGIC = 0x41465842;
+    public final static int VERSION = 1;
+
+    // Events, the tags have the type of AFXmlTag
+    public final static int EVENT_END_DOCUMENT = 0;
+    public final static int EVENT_TEXT = 4;
+
+    private final ByteBuffer mData;
+
+    // Symbol ids of the names of the data by index
+    private int[] mNames = new int[32];
+    private int mNameCount;
+
+    // Last text read and its bytes
+    private byte[] mBytes = new byte[64];
+    private char[] mText = new char[64];
+    private int mTextLength;
+
+    /**
+     * @param data Data read from its current position, on the header
+     */
+    public AFXmlBinaryStream(ByteBuffer data) {
+        mData = data.duplicate();
+    }
+
+    /**
+     * @return true if the header is valid, the position is then after it
+     */
+    boolean readHeader() {
+        if (mData.remaining() < 5 || mData.getInt() != MAGIC)
+            return false;
+
+        return mData.get() == VERSION;
+    }
+
+    int readEvent() {
+        return mData.get();
+    }
+
+    /**
+     * @return The next event without reading it
+     */
+    int peekEvent() {
+        if (!mData.hasRemaining())
+            throw new BufferUnderflowException();
+
+        return mData.get(mData.position());
+    }
+
+    int readCount() {
+        return (int) readVarLong();
+    }
+
+    /**
+     * Read a name
+     *
+     * @param symbols Symbol table of the parsing
+     * @return Symbol id of the name, UNKNOWN_ID on invalid data
+     */
+    int readName(AFXmlSymbolTable symbols) {
+        final long index = readVarLong();
+        if (index != 0)
+            return index > 0 && index <= mNameCount ? mNames[(int) (index - 1)] : AFXmlSymbolTable.UNKNOWN_ID;
+
+        if (!readText())
+            return AFXmlSymbolTable.UNKNOWN_ID;
+
+        if (mNameCount == mNames.length) {
+            int[] names = new int[mNameCount * 2];
+            System.arraycopy(mNames, 0, names, 0, mNameCount);
+            mNames = names;
+        }
+
+        final int id = symbols.intern(mText, 0, mTextLength);
+        mNames[mNameCount++] = id;
+        return id;
+    }
+
+    /**
+     * Read a text, its chars are then given by getText and getTextLength
+     *
+     * @return false on invalid data
+     */
+    boolean readText() {
+        final long length = readVarLong();
+        if (length < 0 || length > mData.remaining())
+            return false;
+
+        // Bytes are copied by bulk, a mapped buffer is slow to read by byte
+        final int size = (int) length;
+        if (mBytes.length < size)
+            mBytes = new byte[Math.max(size, mBytes.length * 2)];
+        mData.get(mBytes, 0, size);
+
+        if (mText.length < size)
+            mText = new char[Math.max(size, mText.length * 2)];
+
+        final byte[] buf = mBytes;
+        final char[] text = mText;
+        int count = 0;
+        int i = 0;
+        while (i < size) {
+            final int b = buf[i++];
+            if (b >= 0)
+                text[count++] = (char) b;
+            else if ((b & 0xE0) == 0xC0 && i < size)
+                text[count++] = (char) (((b & 0x1F) << 6) | (buf[i++] & 0x3F));
+            else if ((b & 0xF0) == 0xE0 && i + 1 < size) {
+                text[count++] = (char) (((b & 0x0F) << 12) | ((buf[i] & 0x3F) << 6) | (buf[i + 1] & 0x3F));
+                i += 2;
+            }
+            else
+                return false;
+        }
+        mTextLength = count;
+
+        return true;
+    }
+
+    /**
+     * Go after a text without decoding it
+     *
+     * @return false on invalid data
+     */
+    boolean skipText() {
+        final long length = readVarLong();
+        if (length < 0 || length > mData.remaining())
+            return false;
+
+        mData.position(mData.position() + (int) length);
+        return true;
+    }
+
+    char[] getText() {
+        return mText;
+    }
+
+    int getTextLength() {
+        return mTextLength;
+    }
+
+    private long readVarLong() {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final int b = mData.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0)
+                return value;
+        }
+
+        return Long.MAX_VALUE;
+    }
+
+}
@@ -0,0 +1,546 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ */
+
+package com.android.aft.AFCuteXmlParser.LowParser.Fast;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.Stack;
+
+import com.android.aft.AFCuteXmlParser.AFCuteXmlParser;
+import com.android.aft.AFCuteXmlParser.AFCuteXmlParserContext;
+import com.android.aft.AFCuteXmlParser.AFLowXmlParser;
+import com.android.aft.AFCuteXmlParser.AFXmlEncoding;
+import com.android.aft.AFCuteXmlParser.AFXmlSymbolTable;
+import com.android.aft.AFCuteXmlParser.AFXmlTag;
+
+/**
+ * Low level parser working on a linear char window.
+ *
+ * The window is filled by bulk reads and tags are returned as slices of the
+ * window: names are looked up in the symbol table directly from the window,
+ * attributes and text content are only converted in String when they are
+ * asked by an action. Text between tags which is not read by an action is
+ * skipped without any copy.
+ *
+ * UTF-8 and ISO-8859-1 bytes are read without InputStreamReader, and a String
+ * is read by chunks without InputStreamReader nor a copy of the whole string.
+ *
+ * Stateless: the window and reusable objects are in the parsing context.
+ */
+public class AFFastLowXmlParser extends AFLowXmlParser {
+
+    @Override
+    public boolean init(AFCuteXmlParserContext context, InputStreamReader xml) {
+        return init(context, new AFXmlCharWindow(xml));
+    }
+
+    @Override
+    public boolean init(AFCuteXmlParserContext context, InputStream xml) {
+        AFXmlEncoding encoding;
+        try {
+            encoding = new AFXmlEncoding(xml);
+        } catch (IOException e) {
+            AFCuteXmlParser.dbg.e("Cannot read stream", e);
+            return false;
+        }
+
+        // Bytes are read directly for UTF-8 and one byte charsets
+        final String charset = encoding.getCharset();
+        Reader reader;
+        if (AFXmlEncoding.UTF_8.equals(charset) || AFXmlEncoding.US_ASCII.equals(charset))
+            reader = new AFXmlByteReader(encoding.getStream(), false);
+        else if (AFXmlEncoding.ISO_8859_1.equals(charset))
+            reader = new AFXmlByteReader(encoding.getStream(), true);
+        else
+            reader = encoding.getReader();
+
+        return init(context, new AFXmlCharWindow(reader));
+    }
+
+    @Override
+    public boolean init(AFCuteXmlParserContext context, String xml) {
+        return init(context, new AFXmlCharWindow(xml));
+    }
+
+    /**
+     * Initialize parsing of the chars of a window
+     *
+     * @param context Parsing context
+     * @param window Xml data
+     * @return true
+     */
+    public boolean init(final AFCuteXmlParserContext context, AFXmlCharWindow window) {
+        // Copy tags still on the node stack before their data are moved.
+        // Tags below the last detached one have been detached by a previous
+        // call, so only the top of a deep stack is visited.
+        window.setOnCompactListener(new AFXmlCharWindow.OnCompactListener() {
+            @Override
+            public void onCompact(AFXmlCharWindow window) {
+                final Stack<AFXmlTag> nodes = context.getNodes();
+                for (int i = nodes.size() - 1; i >= 0; --i) {
+                    final AFXmlTag tag = nodes.get(i);
+                    if (!(tag instanceof AFFastXmlTag) || !((AFFastXmlTag) tag).isAttached())
+                        break;
+                    ((AFFastXmlTag) tag).detach();
+                }
+            }
+        });
+
+        context.setCharWindow(window);
+        return true;
+    }
+
+    @Override
+    public AFXmlTag readTag(AFCuteXmlParserContext ctx) {
+        final AFXmlCharWindow w = ctx.getCharWindow();
+
+        // Go to the next element tag
+        while (true) {
+            if (!skipText(w))
+                return new AFXmlTag(null);
+
+            if (!w.require(2)) {
+                AFCuteXmlParser.dbg.e("Unexpected end of data after '<'");
+                return null;
+            }
+
+            final char c = w.buf[w.pos + 1];
+            if (c == '?') {
+                skipUntil(w, "?>");
+            }
+            else if (c == '!') {
+                if (w.startWith("<!--"))
+                    skipUntil(w, "-->");
+                else if (w.startWith("<![CDATA["))
+                    skipUntil(w, "]]>");
+                else
+                    skipDeclaration(w);
+            }
+            else
+                break;
+        }
+
+        return readElementTag(ctx, w);
+    }
+
+    /**
+     * Read the tag at the current position, the position is on '<'
+     */
+    private AFXmlTag readElementTag(AFCuteXmlParserContext ctx, AFXmlCharWindow w) {
+        // Keep the whole tag in window
+        w.mark = w.pos;
+        ++w.pos;
+
+        int type = AFXmlTag.TAG_TYPE_START;
+        if (current(w) == '/') {
+            type = AFXmlTag.TAG_TYPE_END;
+            ++w.pos;
+        }
+
+        // Read name
+        final int nameOffset = w.pos - w.mark;
+        skipName(w);
+        final int nameLength = w.pos - w.mark - nameOffset;
+        if (nameLength == 0) {
+            AFCuteXmlParser.dbg.e("Unexpected char '" + (char) current(w) + "' expected tag name");
+            return null;
+        }
+
+        final AFXmlSymbolTable symbols = ctx.getSymbolTable();
+        final int id = symbols.intern(w.buf, w.mark + nameOffset, nameLength);
+        AFFastXmlTag tag;
+        AFXmlTag poolTag = ctx.getPoolTag();
+        if (poolTag instanceof AFFastXmlTag)
+            tag = (AFFastXmlTag) poolTag;
+        else {
+            tag = new AFFastXmlTag();
+            ctx.setPoolTag(tag);
+        }
+        tag.reset(symbols.getName(id), id, type);
+
+        // Read attributes until end of tag
+        while (true) {
+            skipSpaces(w);
+
+            int c = current(w);
+            if (c == -1) {
+                AFCuteXmlParser.dbg.e("Unexpected end of data in tag");
+                return null;
+            }
+
+            if (c == '>') {
+                ++w.pos;
+                break;
+            }
+
+            if (c == '/') {
+                ++w.pos;
+                if (current(w) != '>') {
+                    AFCuteXmlParser.dbg.e("Unexpected char after '/' expected '>'");
+                    return null;
+                }
+                ++w.pos;
+                tag.setType(AFXmlTag.TAG_TYPE_START_END);
+                break;
+            }
+
+            // Attribute name
+            final int attrNameOffset = w.pos - w.mark;
+            skipName(w);
+            final int attrNameLength = w.pos - w.mark - attrNameOffset;
+            if (attrNameLength == 0) {
+                AFCuteXmlParser.dbg.e("Unexpected char '" + (char) c + "' expected '>' or '/>' or attribute name");
+                return null;
+            }
+
+            // Attribute value
+            skipSpaces(w);
+            if (current(w) != '=') {
+                tag.addAttribute(attrNameOffset, attrNameLength, attrNameOffset, 0);
+                continue;
+            }
+            ++w.pos;
+            skipSpaces(w);
+
+            final int quote = current(w);
+            int valueOffset;
+            if (quote == '"' || quote == '\'') {
+                ++w.pos;
+                valueOffset = w.pos - w.mark;
+                while (true) {
+                    while (w.pos < w.limit && w.buf[w.pos] != quote)
+                        ++w.pos;
+                    if (w.pos < w.limit)
+                        break;
+                    if (!w.fill()) {
+                        AFCuteXmlParser.dbg.e("Unexpected end of data in attribute value");
+                        return null;
+                    }
+                }
+                tag.addAttribute(attrNameOffset, attrNameLength, valueOffset, w.pos - w.mark - valueOffset);
+                ++w.pos;
+            }
+            else {
+                valueOffset = w.pos - w.mark;
+                skipName(w);
+                tag.addAttribute(attrNameOffset, attrNameLength, valueOffset, w.pos - w.mark - valueOffset);
+            }
+        }
+
+        tag.attach(w, w.mark, w.pos - w.mark);
+
+        return tag;
+    }
+
+    @Override
+    public String readContent(AFCuteXmlParserContext ctx) {
+        return readText(ctx, false).toString();
+    }
+
+    @Override
+    public CharSequence readContentView(AFCuteXmlParserContext ctx) {
+        return readText(ctx, true);
+    }
+
+    /**
+     * Read text until the next element tag
+     *
+     * @param view Return a reusable view instead of a String
+     * @return The text content
+     */
+    private static CharSequence readText(AFCuteXmlParserContext ctx, boolean view) {
+        final AFXmlCharWindow w = ctx.getCharWindow();
+
+        StringBuilder sb = null;
+
+        while (true) {
+            // Text until next markup, kept in window from mark
+            w.mark = w.pos;
+            boolean eof = false;
+            while (true) {
+                while (w.pos < w.limit && w.buf[w.pos] != '<')
+                    ++w.pos;
+                if (w.pos < w.limit)
+                    break;
+                if (!w.fill()) {
+                    eof = true;
+                    break;
+                }
+            }
+
+            final int length = w.pos - w.mark;
+
+            // Content continue after CDATA section and comment
+            final boolean cdata = !eof && w.startWith("<![CDATA[");
+            if (!cdata && (eof || !w.startWith("<!--"))) {
+                // Text is a single slice
+                if (sb == null)
+                    return slice(ctx, w.buf, w.mark, length, view);
+
+                AFXmlText.appendDecoded(sb, w.buf, w.mark, length);
+                break;
+            }
+
+            if (sb == null)
+                sb = view ? ctx.obtainContentBuilder() : new StringBuilder();
+            AFXmlText.appendDecoded(sb, w.buf, w.mark, length);
+
+            if (cdata) {
+                w.pos += 9;
+                w.mark = w.pos;
+                while (true) {
+                    if (w.pos + 2 < w.limit) {
+                        if (w.buf[w.pos] == ']' && w.buf[w.pos + 1] == ']' && w.buf[w.pos + 2] == '>')
+                            break;
+                        ++w.pos;
+                    }
+                    else if (!w.fill()) {
+                        w.pos = w.limit;
+                        break;
+                    }
+                }
+
+                sb.append(w.buf, w.mark, w.pos - w.mark);
+
+                w.pos = Math.min(w.pos + 3, w.limit);
+            }
+            else
+                skipUntil(w, "-->");
+        }
+
+        return view ? sb : sb.toString();
+    }
+
+    /**
+     * @return The text of a slice, entities are decoded in the content builder for a view
+     */
+    private static CharSequence slice(AFCuteXmlParserContext ctx, char[] buf, int off, int len, boolean view) {
+        if (len == 0)
+            return "";
+
+        if (!view)
+            return AFXmlText.decode(buf, off, len);
+
+        if (!AFXmlText.hasEntity(buf, off, len))
+            return ctx.obtainContentView().set(buf, off, len);
+
+        final StringBuilder sb = ctx.obtainContentBuilder();
+        AFXmlText.appendDecoded(sb, buf, off, len);
+        return sb;
+    }
+
+    @Override
+    public boolean skipChildren(AFCuteXmlParserContext ctx) {
+        final AFXmlCharWindow w = ctx.getCharWindow();
+
+        // Only count depth, nothing is read from tags
+        int depth = 1;
+        while (true) {
+            if (!skipText(w))
+                return true;
+
+            if (!w.require(2)) {
+                AFCuteXmlParser.dbg.e("Unexpected end of data after '<'");
+                return false;
+            }
+
+            final char c = w.buf[w.pos + 1];
+            if (c == '?') {
+                skipUntil(w, "?>");
+            }
+            else if (c == '!') {
+                if (w.startWith("<!--"))
+                    skipUntil(w, "-->");
+                else if (w.startWith("<![CDATA["))
+                    skipUntil(w, "]]>");
+                else
+                    skipDeclaration(w);
+            }
+            else {
+                final int type = skipTag(w);
+                if (type == -1) {
+                    AFCuteXmlParser.dbg.e("Unexpected end of data in tag");
+                    return false;
+                }
+
+                if (c == '/') {
+                    if (--depth == 0)
+                        return true;
+                }
+                else if (type == AFXmlTag.TAG_TYPE_START)
+                    ++depth;
+            }
+        }
+    }
+
+    //
+    // Scanning tools
+    //
+
+    /**
+     * @return char at current position or -1 at end of data
+     */
+    private static int current(AFXmlCharWindow w) {
+        if (w.pos < w.limit || w.fill())
+            return w.buf[w.pos];
+
+        return -1;
+    }
+
+    private static boolean isSpace(int c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+    }
+
+    private static void skipSpaces(AFXmlCharWindow w) {
+        while (isSpace(current(w)))
+            ++w.pos;
+    }
+
+    /**
+     * Skip chars of a name: everything until a space, '=', '/', '>' or '<'
+     */
+    private static void skipName(AFXmlCharWindow w) {
+        while (true) {
+            while (w.pos < w.limit) {
+                final char c = w.buf[w.pos];
+                if (isSpace(c) || c == '=' || c == '/' || c == '>' || c == '<')
+                    return;
+                ++w.pos;
+            }
+
+            if (!w.fill())
+                return;
+        }
+    }
+
+    /**
+     * Go to the next '<'
+     *
+     * @return false at end of data
+     */
+    private static boolean skipText(AFXmlCharWindow w) {
+        while (true) {
+            while (w.pos < w.limit && w.buf[w.pos] != '<')
+                ++w.pos;
+
+            // Nothing to keep before current position
+            w.mark = w.pos;
+
+            if (w.pos < w.limit)
+                return true;
+
+            if (!w.fill())
+                return false;
+        }
+    }
+
+    /**
+     * Go after the next occurrence of str
+     *
+     * @return false at end of data
+     */
+    private static boolean skipUntil(AFXmlCharWindow w, String str) {
+        final char first = str.charAt(0);
+
+        while (true) {
+            while (w.pos < w.limit && w.buf[w.pos] != first)
+                ++w.pos;
+
+            w.mark = w.pos;
+
+            if (w.pos >= w.limit) {
+                if (!w.fill())
+                    return false;
+                continue;
+            }
+
+            if (w.startWith(str)) {
+                w.pos += str.length();
+                return true;
+            }
+
+            ++w.pos;
+        }
+    }
+
+    /**
+     * Go after the '>' of the tag at current position, quoted values can
+     * contain '>'
+     *
+     * @return TAG_TYPE_START_END for a tag ending by "/>", TAG_TYPE_START
+     *         otherwise, -1 at end of data
+     */
+    private static int skipTag(AFXmlCharWindow w) {
+        char quote = 0;
+        char last = 0;
+
+        while (true) {
+            while (w.pos < w.limit) {
+                final char c = w.buf[w.pos++];
+                if (quote != 0) {
+                    if (c == quote)
+                        quote = 0;
+                }
+                else if (c == '"' || c == '\'')
+                    quote = c;
+                else if (c == '>')
+                    return last == '/' ? AFXmlTag.TAG_TYPE_START_END : AFXmlTag.TAG_TYPE_START;
+                last = c;
+            }
+
+            w.mark = w.pos;
+            if (!w.fill())
+                return -1;
+        }
+    }
+
+    /**
+     * Skip a declaration like <!DOCTYPE ...> with its potential internal subset
+     */
+    private static void skipDeclaration(AFXmlCharWindow w) {
+        int depth = 0;
+        int quote = 0;
+
+        while (true) {
+            final int c = current(w);
+            if (c == -1)
+                return;
+
+            ++w.pos;
+            w.mark = w.pos;
+
+            if (quote != 0) {
+                if (c == quote)
+                    quote = 0;
+            }
+            else if (c == '"' || c == '\'')
+                quote = c;
+            else if (c == '[')
+                ++depth;
+            else if (c == ']')
+                --depth;
+            else if (c == '>' && depth == 0)
+                return;
+        }
+    }
+
+}
@@ -0,0 +1,298 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ */
+
+package com.android.aft.AFCuteXmlParser.LowParser.Fast;
+
+import com.android.aft.AFCuteXmlParser.AFXmlTag;
+import com.android.aft.AFCuteXmlParser.AFXmlValues;
+
+/**
+ * Xml tag whose attributes are slices of the parser char window.
+ *
+ * The name comes from the symbol table and attribute Strings are only created
+ * when asked. The slices stay valid while the tag is on the context node
+ * stack: the parser copies the raw tag text before the window data are moved.
+ */
+public class AFFastXmlTag extends AFXmlTag {
+
+    // Raw tag text
+    private char[] mRaw;
+    private int mRawOffset;
+    private int mRawLength;
+
+    // Buffer reused to copy the raw tag text
+    private char[] mDetachBuffer;
+
+    // Window state when slices was taken
+    private AFXmlCharWindow mWindow;
+    private int mGeneration;
+
+    // Attributes slices, relative to raw offset: name offset, name length, value offset, value length
+    private int[] mAttributes = new int[16];
+    private int mAttributeCount;
+
+    // True when attributes has been copied in the parent arrays
+    private boolean mHasMaterializedAttributes;
+
+    public AFFastXmlTag() {
+        super(null);
+    }
+
+    @Override
+    public void reset(String name, int id, int type) {
+        super.reset(name, id, type);
+
+        mWindow = null;
+        mRaw = null;
+        mAttributeCount = 0;
+        mHasMaterializedAttributes = false;
+    }
+
+    /**
+     * Bind the slices to the window data, called when the whole tag is read
+     *
+     * @param window Char window
+     * @param rawOffset Index of the tag in window
+     * @param rawLength Length of the tag text
+     */
+    void attach(AFXmlCharWindow window, int rawOffset, int rawLength) {
+        mWindow = window;
+        mGeneration = window.getGeneration();
+        mRaw = window.buf;
+        mRawOffset = rawOffset;
+        mRawLength = rawLength;
+    }
+
+    void addAttribute(int nameOffset, int nameLength, int valueOffset, int valueLength) {
+        if (mAttributeCount * 4 == mAttributes.length) {
+            int[] a = new int[mAttributes.length * 2];
+            System.arraycopy(mAttributes, 0, a, 0, mAttributes.length);
+            mAttributes = a;
+        }
+
+        final int i = mAttributeCount * 4;
+        mAttributes[i] = nameOffset;
+        mAttributes[i + 1] = nameLength;
+        mAttributes[i + 2] = valueOffset;
+        mAttributes[i + 3] = valueLength;
+        ++mAttributeCount;
+    }
+
+    /**
+     * Copy the raw tag text out of the window
+     */
+    void detach() {
+        if (mWindow == null)
+            return;
+
+        if (mDetachBuffer == null || mDetachBuffer.length < mRawLength)
+            mDetachBuffer = new char[Math.max(mRawLength, 64)];
+
+        System.arraycopy(mRaw, mRawOffset, mDetachBuffer, 0, mRawLength);
+        mRaw = mDetachBuffer;
+        mRawOffset = 0;
+        mWindow = null;
+    }
+
+    boolean isAttached() {
+        return mWindow != null;
+    }
+
+    private void checkSlices() {
+        if (mWindow != null && mGeneration != mWindow.getGeneration())
+            throw new IllegalStateException("Tag data are not available anymore, tag has left the node stack");
+    }
+
+    /**
+     * @return the index of the attribute named key or -1
+     */
+    private int indexOfAttribute(String key) {
+        if (mAttributeCount == 0)
+            return -1;
+
+        checkSlices();
+
+        final int length = key.length();
+        for (int i = 0; i < mAttributeCount; ++i) {
+            final int off = mRawOffset + mAttributes[i * 4];
+            if (mAttributes[i * 4 + 1] != length)
+                continue;
+
+            int j = 0;
+            while (j < length && mRaw[off + j] == key.charAt(j))
+                ++j;
+            if (j == length)
+                return i;
+        }
+
+        return -1;
+    }
+
+    /**
+     * @return true if the value of attribute at idx needs entity decoding
+     */
+    private boolean hasEntity(int idx) {
+        final int off = mRawOffset + mAttributes[idx * 4 + 2];
+        final int end = off + mAttributes[idx * 4 + 3];
+        for (int i = off; i < end; ++i)
+            if (mRaw[i] == '&')
+                return true;
+
+        return false;
+    }
+
+    @Override
+    public int getAttributCount() {
+        if (mHasMaterializedAttributes)
+            return super.getAttributCount();
+
+        return mAttributeCount;
+    }
+
+    @Override
+    public String getAttributName(int index) {
+        if (mHasMaterializedAttributes)
+            return super.getAttributName(index);
+
+        checkSlices();
+        return new String(mRaw, mRawOffset + mAttributes[index * 4], mAttributes[index * 4 + 1]);
+    }
+
+    @Override
+    public String getAttributValue(int index) {
+        if (mHasMaterializedAttributes)
+            return super.getAttributValue(index);
+
+        checkSlices();
+        return AFXmlText.decode(mRaw, mRawOffset + mAttributes[index * 4 + 2], mAttributes[index * 4 + 3]);
+    }
+
+    @Override
+    public int getAttributSlot(int index, String[] names) {
+        if (mHasMaterializedAttributes)
+            return super.getAttributSlot(index, names);
+
+        // Compare raw name
+        final int off = mRawOffset + mAttributes[index * 4];
+        final int length = mAttributes[index * 4 + 1];
+        for (int i = 0; i < names.length; ++i) {
+            final String name = names[i];
+            if (name.length() != length)
+                continue;
+
+            int j = 0;
+            while (j < length && mRaw[off + j] == name.charAt(j))
+                ++j;
+            if (j == length)
+                return i;
+        }
+
+        return -1;
+    }
+
+    @Override
+    public String getAttribut(String key) {
+        if (mHasMaterializedAttributes)
+            return super.getAttribut(key);
+
+        final int idx = indexOfAttribute(key);
+        if (idx == -1)
+            return mAttributeCount == 0 ? "" : null;
+
+        return getAttributValue(idx);
+    }
+
+    @Override
+    public boolean hasAttribute(String key) {
+        if (mHasMaterializedAttributes)
+            return super.hasAttribute(key);
+
+        return indexOfAttribute(key) != -1;
+    }
+
+    @Override
+    public boolean hasAttributValue(String key, String value) {
+        if (mHasMaterializedAttributes)
+            return super.hasAttributValue(key, value);
+
+        final int idx = indexOfAttribute(key);
+        if (idx == -1)
+            return false;
+
+        if (hasEntity(idx))
+            return value.equals(getAttributValue(idx));
+
+        // Compare raw data
+        final int length = mAttributes[idx * 4 + 3];
+        if (length != value.length())
+            return false;
+
+        final int off = mRawOffset + mAttributes[idx * 4 + 2];
+        for (int i = 0; i < length; ++i)
+            if (mRaw[off + i] != value.charAt(i))
+                return false;
+
+        return true;
+    }
+
+    @Override
+    public int getIntAttribut(String key, int def) {
+        if (mHasMaterializedAttributes)
+            return super.getIntAttribut(key, def);
+
+        final int idx = indexOfAttribute(key);
+        if (idx == -1)
+            return def;
+
+        // Parse directly from raw data
+        if (!hasEntity(idx))
+            return AFXmlValues.parseInt(mRaw, mRawOffset + mAttributes[idx * 4 + 2], mAttributes[idx * 4 + 3], def);
+
+        return AFXmlValues.parseInt(getAttributValue(idx), def);
+    }
+
+    @Override
+    public boolean getBooleanAttribut(String key, boolean def) {
+        if (mHasMaterializedAttributes)
+            return super.getBooleanAttribut(key, def);
+
+        final int idx = indexOfAttribute(key);
+        if (idx == -1)
+            return def;
+
+        if (!hasEntity(idx))
+            return AFXmlValues.parseBoolean(mRaw, mRawOffset + mAttributes[idx * 4 + 2], mAttributes[idx * 4 + 3]);
+
+        return AFXmlValues.parseBoolean(getAttributValue(idx));
+    }
+
+    @Override
+    public void setAttribut(String key, String value) {
+        // Switch to String attributes
+        if (!mHasMaterializedAttributes) {
+            final int count = mAttributeCount;
+            for (int i = 0; i < count; ++i)
+                super.setAttribut(getAttributName(i), getAttributValue(i));
+            mHasMaterializedAttributes = true;
+        }
+
+        super.setAttribut(key, value);
+    }
+
+}
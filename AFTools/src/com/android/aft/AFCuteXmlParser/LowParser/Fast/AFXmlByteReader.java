@@ -0,0 +1,197 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ */
+
+package com.android.aft.AFCuteXmlParser.LowParser.Fast;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+
+/**
+ * Reader of UTF-8 or ISO-8859-1 bytes for the char window.
+ *
+ * Bytes are read by bulk and ASCII bytes, which are all the markup of a xml
+ * document, are directly widened to chars. Only other bytes go through
+ * decoding. Invalid UTF-8 sequences are replaced by U+FFFD.
+ *
+ * The stream is only closed by close, not at the end of data.
+ */
+public class AFXmlByteReader extends Reader {
+
+    private final static char REPLACEMENT_CHAR = '\uFFFD';
+
+    private InputStream mIn;
+
+    // Decode bytes as ISO-8859-1 instead of UTF-8
+    private final boolean mLatin1;
+
+    private final byte[] mBytes = new byte[8192];
+    private int mPos;
+    private int mLimit;
+
+    // Low surrogate of a char which did not fit in the last read, 0 if none
+    private char mPendingLowSurrogate;
+
+    public AFXmlByteReader(InputStream in, boolean latin1) {
+        mIn = in;
+        mLatin1 = latin1;
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (len == 0)
+            return 0;
+
+        int o = off;
+        final int end = off + len;
+
+        if (mPendingLowSurrogate != 0) {
+            cbuf[o++] = mPendingLowSurrogate;
+            mPendingLowSurrogate = 0;
+        }
+
+        final byte[] bytes = mBytes;
+        while (o < end) {
+            if (mPos == mLimit) {
+                // Do not wait for more data if there is already something to return
+                if (o > off || !fill(1))
+                    break;
+            }
+
+            // ASCII
+            int p = mPos;
+            final int max = Math.min(mLimit, p + end - o);
+            while (p < max && bytes[p] >= 0)
+                cbuf[o++] = (char) bytes[p++];
+            mPos = p;
+
+            if (o == end || mPos == mLimit)
+                continue;
+
+            final int b0 = bytes[mPos] & 0xFF;
+            if (mLatin1) {
+                cbuf[o++] = (char) b0;
+                ++mPos;
+                continue;
+            }
+
+            // Length of UTF-8 sequence
+            int count;
+            int cp;
+            if (b0 >= 0xF0 && b0 < 0xF8) {
+                count = 4;
+                cp = b0 & 0x07;
+            }
+            else if (b0 >= 0xE0) {
+                count = b0 < 0xF0 ? 3 : 0;
+                cp = b0 & 0x0F;
+            }
+            else if (b0 >= 0xC0) {
+                count = 2;
+                cp = b0 & 0x1F;
+            }
+            else
+                count = cp = 0;
+
+            if (count == 0) {
+                cbuf[o++] = REPLACEMENT_CHAR;
+                ++mPos;
+                continue;
+            }
+
+            if (mLimit - mPos < count) {
+                if (o > off)
+                    break;
+                if (!fill(count)) {
+                    // Truncated sequence at end of data
+                    cbuf[o++] = REPLACEMENT_CHAR;
+                    mPos = mLimit;
+                    continue;
+                }
+            }
+
+            int i = 1;
+            for (; i < count; ++i) {
+                final int b = bytes[mPos + i] & 0xFF;
+                if ((b & 0xC0) != 0x80)
+                    break;
+                cp = (cp << 6) | (b & 0x3F);
+            }
+
+            if (i < count) {
+                cbuf[o++] = REPLACEMENT_CHAR;
+                mPos += i;
+                continue;
+            }
+            mPos += count;
+
+            if (cp < 0x10000)
+                cbuf[o++] = (char) cp;
+            else {
+                cp -= 0x10000;
+                final char high = (char) (0xD800 | (cp >> 10));
+                final char low = (char) (0xDC00 | (cp & 0x3FF));
+                cbuf[o++] = high;
+                if (o < end)
+                    cbuf[o++] = low;
+                else
+                    mPendingLowSurrogate = low;
+            }
+        }
+
+        return o == off ? -1 : o - off;
+    }
+
+    /**
+     * Read bytes until at least count bytes are available
+     *
+     * @return false at end of data
+     */
+    private boolean fill(int count) throws IOException {
+        if (mIn == null)
+            return false;
+
+        // Keep remaining bytes
+        if (mPos > 0) {
+            System.arraycopy(mBytes, mPos, mBytes, 0, mLimit - mPos);
+            mLimit -= mPos;
+            mPos = 0;
+        }
+
+        while (mLimit < count) {
+            final int s = mIn.read(mBytes, mLimit, mBytes.length - mLimit);
+            if (s < 0) {
+                mIn = null;
+                return false;
+            }
+            mLimit += s;
+        }
+
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (mIn != null) {
+            mIn.close();
+            mIn = null;
+        }
+    }
+
+}
@@ -0,0 +1,251 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ */
+
+package com.android.aft.AFCuteXmlParser.LowParser.Fast;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import com.android.aft.AFCuteXmlParser.AFCuteXmlParser;
+
+/**
+ * Linear char window over a Reader, a String or chars in memory.
+ *
+ * Data is read by bulk into a char array. Everything before the mark can be
+ * dropped when the window needs room, everything after the mark stays at a
+ * stable index until the next compaction. When the content to keep does not
+ * fit anymore, the array is grown.
+ *
+ * Scanners work directly on the public fields to avoid a method call per char.
+ *
+ * The Reader is not closed at the end of data, whoever opened it closes it.
+ */
+public class AFXmlCharWindow {
+
+    // Default size of the window
+    private final static int DEFAULT_WINDOW_SIZE = 8192;
+
+    // Listener called before data are moved in the window
+    public interface OnCompactListener {
+        void onCompact(AFXmlCharWindow window);
+    }
+
+    private Reader mIn;
+
+    // String read by chunks, and index of its next char to read
+    private String mString;
+    private int mStringPos;
+
+    // Buffered data
+    public char[] buf;
+
+    // Index of the next char to read
+    public int pos;
+
+    // Index after the last valid char
+    public int limit;
+
+    // Index of the first char to keep in window
+    public int mark;
+
+    // Incremented at each compaction, permit to detect obsolete index
+    private int mGeneration;
+
+    private OnCompactListener mListener;
+
+    public AFXmlCharWindow(Reader in) {
+        this(in, DEFAULT_WINDOW_SIZE);
+    }
+
+    public AFXmlCharWindow(Reader in, int size) {
+        mIn = in;
+        buf = new char[size];
+    }
+
+    /**
+     * Window on a String, the chars are copied by chunks into the window
+     * when they are needed, without a copy of the whole string
+     *
+     * @param data Xml data
+     */
+    public AFXmlCharWindow(String data) {
+        mString = data;
+        buf = new char[Math.max(16, Math.min(data.length(), DEFAULT_WINDOW_SIZE))];
+    }
+
+    /**
+     * Window on chars already in memory, the data are never moved
+     *
+     * @param data All the chars
+     * @param length Number of chars in data
+     */
+    public AFXmlCharWindow(char[] data, int length) {
+        buf = data;
+        limit = length;
+    }
+
+    /**
+     * Window filled by append, for data pushed by chunks. A fill returns
+     * false when all appended chars are read.
+     *
+     * @param size Initial size of the window
+     */
+    public AFXmlCharWindow(int size) {
+        buf = new char[size];
+    }
+
+    public void setOnCompactListener(OnCompactListener listener) {
+        mListener = listener;
+    }
+
+    public int getGeneration() {
+        return mGeneration;
+    }
+
+    /**
+     * @return true if all data has been read
+     */
+    public boolean isEmpty() {
+        return pos >= limit && mIn == null && mString == null;
+    }
+
+    /**
+     * Read more data from input
+     *
+     * Can move the content of the window: all index before mark are not valid
+     * after this call, and index after mark are shift of mark positions.
+     *
+     * @return false if there is no more data
+     */
+    public boolean fill() {
+        if (mIn == null && mString == null)
+            return false;
+
+        // Make room
+        if (limit == buf.length) {
+            if (mark > 0)
+                compact();
+            else
+                grow();
+        }
+        else if (mark > buf.length / 2)
+            compact();
+
+        if (mString != null) {
+            final int s = Math.min(buf.length - limit, mString.length() - mStringPos);
+            if (s <= 0) {
+                mString = null;
+                return false;
+            }
+
+            mString.getChars(mStringPos, mStringPos + s, buf, limit);
+            mStringPos += s;
+            limit += s;
+            return true;
+        }
+
+        try {
+            int s = mIn.read(buf, limit, buf.length - limit);
+            while (s == 0)
+                s = mIn.read(buf, limit, buf.length - limit);
+
+            if (s < 0) {
+                mIn = null;
+                return false;
+            }
+
+            limit += s;
+        } catch (IOException e) {
+            AFCuteXmlParser.dbg.e("Cannot read stream", e);
+            mIn = null;
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Append chars after the valid chars of the window
+     *
+     * Can move the content of the window like fill.
+     */
+    public void append(char[] chars, int off, int len) {
+        if (limit + len > buf.length) {
+            if (mark > 0)
+                compact();
+            while (limit + len > buf.length)
+                grow();
+        }
+
+        System.arraycopy(chars, off, buf, limit, len);
+        limit += len;
+    }
+
+    /**
+     * Ensure that length chars are available after pos
+     *
+     * @return false if there is not enough data
+     */
+    public boolean require(int length) {
+        while (limit - pos < length)
+            if (!fill())
+                return false;
+
+        return true;
+    }
+
+    private void compact() {
+        if (mListener != null)
+            mListener.onCompact(this);
+
+        final int shift = mark;
+        System.arraycopy(buf, shift, buf, 0, limit - shift);
+        limit -= shift;
+        pos -= shift;
+        mark = 0;
+        ++mGeneration;
+    }
+
+    private void grow() {
+        char[] b = new char[buf.length * 2];
+        System.arraycopy(buf, 0, b, 0, limit);
+        buf = b;
+
+        // Old array is not valid anymore for kept index
+        if (mListener != null)
+            mListener.onCompact(this);
+        ++mGeneration;
+    }
+
+    /**
+     * Test if the window start with str at position pos
+     */
+    public boolean startWith(String str) {
+        final int length = str.length();
+        if (!require(length))
+            return false;
+
+        for (int i = 0; i < length; ++i)
+            if (buf[pos + i] != str.charAt(i))
+                return false;
+
+        return true;
+    }
+
+}
@@ -0,0 +1,161 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ */
+
+package com.android.aft.AFCuteXmlParser.LowParser.Fast;
+
+/**
+ * Convert xml text slices into String
+ */
+public class AFXmlText {
+
+    /**
+     * Create a String from a slice, xml entities are replaced only if there
+     * is a '&' in the slice
+     *
+     * @param buf Data
+     * @param off Offset of the slice
+     * @param len Length of the slice
+     * @return String value
+     */
+    public static String decode(char[] buf, int off, int len) {
+        final int end = off + len;
+
+        int i = off;
+        while (i < end && buf[i] != '&')
+            ++i;
+        if (i == end)
+            return new String(buf, off, len);
+
+        StringBuilder sb = new StringBuilder(len);
+        sb.append(buf, off, i - off);
+        appendDecoded(sb, buf, i, end - i);
+
+        return sb.toString();
+    }
+
+    /**
+     * @return true if there is a '&' in the slice
+     */
+    public static boolean hasEntity(char[] buf, int off, int len) {
+        final int end = off + len;
+        for (int i = off; i < end; ++i)
+            if (buf[i] == '&')
+                return true;
+
+        return false;
+    }
+
+    /**
+     * Append a slice into a StringBuilder and replace xml entities
+     *
+     * @param sb Destination
+     * @param buf Data
+     * @param off Offset of the slice
+     * @param len Length of the slice
+     */
+    public static void appendDecoded(StringBuilder sb, char[] buf, int off, int len) {
+        final int end = off + len;
+
+        for (int i = off; i < end; ++i) {
+            final char c = buf[i];
+            if (c != '&') {
+                sb.append(c);
+                continue;
+            }
+
+            // Look for the end of entity
+            int e = i + 1;
+            while (e < end && e - i < 12 && buf[e] != ';')
+                ++e;
+
+            final int code = e < end && buf[e] == ';' ? getEntityCode(buf, i + 1, e - i - 1) : -1;
+            if (code == -1) {
+                sb.append(c);
+                continue;
+            }
+
+            if (code > 0xFFFF) {
+                sb.append(Character.toChars(code));
+            }
+            else
+                sb.append((char) code);
+            i = e;
+        }
+    }
+
+    /**
+     * @return the code point of the entity name or -1 if it is unknown
+     */
+    private static int getEntityCode(char[] buf, int off, int len) {
+        if (len < 2)
+            return -1;
+
+        if (buf[off] == '#') {
+            int code = 0;
+            if (buf[off + 1] == 'x' || buf[off + 1] == 'X') {
+                if (len < 3)
+                    return -1;
+                for (int i = off + 2; i < off + len; ++i) {
+                    final int d = Character.digit(buf[i], 16);
+                    if (d < 0)
+                        return -1;
+                    code = code * 16 + d;
+                    if (code > Character.MAX_CODE_POINT)
+                        return -1;
+                }
+            } else {
+                for (int i = off + 1; i < off + len; ++i) {
+                    final char c = buf[i];
+                    if (c < '0' || c > '9')
+                        return -1;
+                    code = code * 10 + (c - '0');
+                    if (code > Character.MAX_CODE_POINT)
+                        return -1;
+                }
+            }
+
+            return code;
+        }
+
+        if (is(buf, off, len, "lt"))
+            return '<';
+        if (is(buf, off, len, "gt"))
+            return '>';
+        if (is(buf, off, len, "amp"))
+            return '&';
+        if (is(buf, off, len, "quot"))
+            return '"';
+        if (is(buf, off, len, "apos"))
+            return '\'';
+
+        return -1;
+    }
+
+    private static boolean is(char[] buf, int off, int len, String name) {
+        if (len != name.length())
+            return false;
+
+        for (int i = 0; i < len; ++i)
+            if (buf[off + i] != name.charAt(i))
+                return false;
+
+        return true;
+    }
+
+}
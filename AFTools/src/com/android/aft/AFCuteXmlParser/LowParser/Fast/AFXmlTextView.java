@@ -0,0 +1,72 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ */
+
+package com.android.aft.AFCuteXmlParser.LowParser.Fast;
+
+/**
+ * CharSequence on a slice of the char window, without copy.
+ *
+ * A view is reused by the parser: it is only valid until the next read on
+ * the parsing context. Use toString to keep the value.
+ */
+public class AFXmlTextView implements CharSequence {
+
+    private char[] mBuf;
+    private int mOffset;
+    private int mLength;
+
+    /**
+     * Set the slice of this view
+     *
+     * @return this view
+     */
+    public AFXmlTextView set(char[] buf, int off, int len) {
+        mBuf = buf;
+        mOffset = off;
+        mLength = len;
+        return this;
+    }
+
+    @Override
+    public int length() {
+        return mLength;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= mLength)
+            throw new IndexOutOfBoundsException("index: " + index + ", length: " + mLength);
+
+        return mBuf[mOffset + index];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > mLength || start > end)
+            throw new IndexOutOfBoundsException("start: " + start + ", end: " + end + ", length: " + mLength);
+
+        return new String(mBuf, mOffset + start, end - start);
+    }
+
+    @Override
+    public String toString() {
+        return new String(mBuf, mOffset, mLength);
+    }
+
+}
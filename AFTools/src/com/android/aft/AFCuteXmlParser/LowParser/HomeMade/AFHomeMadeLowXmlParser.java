@@ -5,8 +5,14 @@ import java.io.InputStreamReader;
 import com.android.aft.AFCuteXmlParser.AFCuteXmlParser;
 import com.android.aft.AFCuteXmlParser.AFCuteXmlParserContext;
 import com.android.aft.AFCuteXmlParser.AFLowXmlParser;
+import com.android.aft.AFCuteXmlParser.AFXmlSymbolTable;
 import com.android.aft.AFCuteXmlParser.AFXmlTag;
 
+/**
+ * Low level parser based on the AFXmlTokenizer lexer.
+ *
+ * Stateless: the stream and the current token are in the parsing context.
+ */
 public class AFHomeMadeLowXmlParser extends AFLowXmlParser {
 
     @Override
@@ -34,9 +40,11 @@ public class AFHomeMadeLowXmlParser extends AFLowXmlParser {
         }
 
         // Create tag
-        AFXmlTag tag = new AFXmlTag(tag_id.getValue());
-        if (tag_begin_token.getType() == AFXmlToken.Type.TAG_BEGIN_TERMINAL)
-            tag.setType(AFXmlTag.TAG_TYPE_END);
+        final AFXmlSymbolTable symbols = ctx.getSymbolTable();
+        final int id = symbols.intern(tag_id.getValue());
+        AFXmlTag tag = ctx.obtainTag(symbols.getName(id), id,
+                                     tag_begin_token.getType() == AFXmlToken.Type.TAG_BEGIN_TERMINAL ?
+                                     AFXmlTag.TAG_TYPE_END : AFXmlTag.TAG_TYPE_START);
 
         // Read attributes until end tag token
         AFXmlToken tmp = AFXmlTokenizer.getNextToken(ctx);
@@ -1,27 +1,53 @@
 package com.android.aft.AFCuteXmlParser.LowParser.PullXmlParser;
 
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
 
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 import org.xmlpull.v1.XmlPullParserFactory;
 
-import android.text.TextUtils;
-
 import com.android.aft.AFCuteXmlParser.AFCuteXmlParser;
 import com.android.aft.AFCuteXmlParser.AFCuteXmlParserContext;
 import com.android.aft.AFCuteXmlParser.AFLowXmlParser;
+import com.android.aft.AFCuteXmlParser.AFXmlSymbolTable;
 import com.android.aft.AFCuteXmlParser.AFXmlTag;
 
+/**
+ * Low level parser based on the platform XmlPullParser.
+ *
+ * Stateless: a XmlPullParser is created for each parsing and kept in the
+ * parsing context.
+ */
 public class AFPullXmlLowXmlParser extends AFLowXmlParser {
 
     @Override
     public boolean init(AFCuteXmlParserContext context, InputStreamReader xml) {
+        return init(context, xml, null);
+    }
+
+    @Override
+    public boolean init(AFCuteXmlParserContext context, InputStream xml) {
+        // Encoding is detected by XmlPullParser
+        return init(context, null, xml);
+    }
+
+    @Override
+    public boolean init(AFCuteXmlParserContext context, String xml) {
+        return init(context, new StringReader(xml), null);
+    }
+
+    private boolean init(AFCuteXmlParserContext context, Reader reader, InputStream stream) {
         try {
             XmlPullParserFactory factory = XmlPullParserFactory.newInstance();
             factory.setNamespaceAware(true);
             XmlPullParser xpp = factory.newPullParser();
-            xpp.setInput(xml);
+            if (reader != null)
+                xpp.setInput(reader);
+            else
+                xpp.setInput(stream, null);
             context.setXmlPullParser(xpp);
             context.setHasReadCurrentXmlPullParserToken(false);
         } catch (XmlPullParserException e) {
@@ -56,13 +82,15 @@ public class AFPullXmlLowXmlParser extends AFLowXmlParser {
         ctx.setHasReadCurrentXmlPullParserToken(true);
 
         String name = xpp.getName();
-        if (!TextUtils.isEmpty(xpp.getPrefix()))
-            name = xpp.getPrefix() + ":" + name;
+        if (name == null)
+            return new AFXmlTag(null);
 
-        // Create tag
-        AFXmlTag tag = new AFXmlTag(name);
-        if (eventType == XmlPullParser.END_TAG)
-            tag.setType(AFXmlTag.TAG_TYPE_END);
+        // Create tag, prefixed name is not concatenated if it is known
+        final AFXmlSymbolTable symbols = ctx.getSymbolTable();
+        final int id = symbols.intern(xpp.getPrefix(), name);
+        AFXmlTag tag = ctx.obtainTag(symbols.getName(id), id,
+                                     eventType == XmlPullParser.END_TAG ?
+                                     AFXmlTag.TAG_TYPE_END : AFXmlTag.TAG_TYPE_START);
 
         // Read attributes
         for (int i = 0; i < xpp.getAttributeCount(); ++i)
@@ -71,6 +99,31 @@ public class AFPullXmlLowXmlParser extends AFLowXmlParser {
         return tag;
     }
 
+    @Override
+    public boolean skipChildren(AFCuteXmlParserContext ctx) {
+        XmlPullParser xpp = ctx.getXmlPullParser();
+
+        // Count only start and end events until end of current node
+        int depth = 1;
+        try {
+            while (depth != 0) {
+                final int eventType = xpp.next();
+                if (eventType == XmlPullParser.START_TAG)
+                    ++depth;
+                else if (eventType == XmlPullParser.END_TAG)
+                    --depth;
+                else if (eventType == XmlPullParser.END_DOCUMENT)
+                    break;
+            }
+        } catch (Exception e) {
+            AFCuteXmlParser.dbg.e("Cannot skip children", e);
+            return false;
+        }
+        ctx.setHasReadCurrentXmlPullParserToken(true);
+
+        return true;
+    }
+
     @Override
     public String readContent(AFCuteXmlParserContext ctx) {
         String content = "";
@@ -0,0 +1,122 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ */
+
+package com.android.aft.AFNetworkConnection;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.http.entity.AbstractHttpEntity;
+import org.json.JSONException;
+
+import com.android.aft.AFCuteJsonParser.AFJsonSerializer;
+import com.android.aft.AFCuteJsonParser.AFJsonWriter;
+
+/**
+ * Json request body written with an AFJsonWriter straight to the connection.
+ *
+ * The body is never held as a String: it is written each time the entity is
+ * sent, with chunked transfer encoding since its length is not known.
+ *
+ * Usage:
+ *  request.body = new AFJsonEntity(order, new OrderJsonMapper(""));
+ *  connection.wget(request);
+ */
+public class AFJsonEntity extends AbstractHttpEntity {
+
+    public final static String CONTENT_TYPE = "application/json; charset=UTF-8";
+
+    /**
+     * Writer of the body, called each time the entity is written
+     */
+    public interface Body {
+        void write(AFJsonWriter writer) throws IOException, JSONException;
+    }
+
+    private final Body mBody;
+
+    public AFJsonEntity(Body body) {
+        mBody = body;
+        setContentType(CONTENT_TYPE);
+        setChunked(true);
+    }
+
+    /**
+     * Body made of one object written by a serializer
+     *
+     * @param object The object, null for a null body
+     * @param serializer Serializer of the object, an object mapper for annotated models
+     */
+    public <T> AFJsonEntity(final T object, final AFJsonSerializer<? super T> serializer) {
+        this(new Body() {
+            @Override
+            public void write(AFJsonWriter writer) throws IOException, JSONException {
+                writer.value(object, serializer);
+            }
+        });
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public long getContentLength() {
+        return -1;
+    }
+
+    /**
+     * Returns the body written in memory, the entity is designed to be written with writeTo
+     */
+    @Override
+    public InputStream getContent() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeTo(out);
+        return new ByteArrayInputStream(out.toByteArray());
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        if (out == null)
+            throw new IllegalArgumentException("Output stream may not be null");
+
+        AFJsonWriter writer = new AFJsonWriter(out);
+        try {
+            mBody.write(writer);
+            if (!writer.isComplete())
+                throw new JSONException("Incomplete json body");
+        } catch (JSONException e) {
+            IOException error = new IOException("Cannot write json body: " + e.getMessage());
+            error.initCause(e);
+            throw error;
+        }
+
+        writer.flush();
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+
+}
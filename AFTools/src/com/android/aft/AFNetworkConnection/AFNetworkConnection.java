@@ -534,6 +534,9 @@ public class AFNetworkConnection {
                 if (null != request.entity) {
                     ((HttpPost) uri_request).setEntity(request.entity);
                 }
+                else if (null != request.body) {
+                    ((HttpPost) uri_request).setEntity(request.body);
+                }
                 break;
             case Delete:
                 final URI uriDelete = new URI(request.url);
@@ -593,6 +596,12 @@ public class AFNetworkConnection {
                     }
 
                 }
+                if (null != request.entity) {
+                    ((HttpPut) uri_request).setEntity(request.entity);
+                }
+                else if (null != request.body) {
+                    ((HttpPut) uri_request).setEntity(request.body);
+                }
                 break;
             case Get:
             default:
@@ -23,6 +23,7 @@ import java.util.ArrayList;
 import java.util.Map;
 
 import org.apache.http.Header;
+import org.apache.http.HttpEntity;
 import org.apache.http.client.HttpClient;
 import org.apache.http.message.BasicHeader;
 
@@ -71,6 +72,9 @@ public class AFNetworkConnectionRequest {
 
     public MultipartEntity entity;
 
+    // Body of a POST or PUT request when entity is not set: an AFJsonEntity...
+    public HttpEntity body;
+
     //
     // Ctr
     //
@@ -148,6 +152,13 @@ public class AFNetworkConnectionRequest {
         this.entity = entity;
     }
 
+    public AFNetworkConnectionRequest(Context ctx, String url, HttpMethod method, HttpEntity body) {
+        context = ctx;
+        this.url = url;
+        this.method = method;
+        this.body = body;
+    }
+
     public AFNetworkConnectionRequest(HttpClient client, String url, HttpMethod method, String postText,
             Map<String, String> parameters, ArrayList<Header> headers, boolean isGzipEnabled, boolean checkResponse) {
         this.client = client;